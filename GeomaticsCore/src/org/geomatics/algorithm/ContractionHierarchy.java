@@ -0,0 +1,383 @@
+package org.geomatics.algorithm;
+
+import java.util.Arrays;
+import org.geomatics.geom.FrozenNetwork;
+
+/**
+ * Contraction hierarchy over the links of a router. On construction, vertices are contracted one
+ * at a time in order of importance (Fewest shortcuts added first), adding shortcut links between
+ * their neighbours wherever no shorter witness path exists. Queries are then a bidirectional
+ * Dijkstra search which only moves up the hierarchy, settling very few vertices. Shortcuts are
+ * unpacked into the original links when building a route. Thread safe once constructed.
+ *
+ * @author tofarrell
+ */
+public final class ContractionHierarchy {
+
+    static final int MAX_WITNESS_SETTLED = 500;
+
+    private final FrozenNetwork network;
+    final int[] ranks;
+    final int[] upOffsets; // links from each vertex to higher ranked vertices
+    final int[] upTargets;
+    final double[] upWeights;
+    final int[] upMiddles; // vertex a shortcut bypasses, or -1 if not a shortcut
+    final int[] downOffsets; // links to each vertex from higher ranked vertices
+    final int[] downSources;
+    final double[] downWeights;
+    final int[] downMiddles;
+    private final ThreadLocal<RouteSearch[]> searches;
+
+    /**
+     * Create a new contraction hierarchy for the router given. This may take some time for large
+     * networks.
+     *
+     * @param router
+     * @throws NullPointerException if router was null
+     */
+    public ContractionHierarchy(Router router) throws NullPointerException {
+        Contractor contractor = new Contractor(router);
+        contractor.contractAll();
+        final int numVects = router.numVects();
+        this.network = router.network;
+        this.ranks = contractor.ranks;
+        this.upOffsets = new int[numVects + 1];
+        this.downOffsets = new int[numVects + 1];
+        for (int v = 0; v < numVects; v++) {
+            upOffsets[v + 1] = upOffsets[v] + contractor.ups[v].size;
+            downOffsets[v + 1] = downOffsets[v] + contractor.downs[v].size;
+        }
+        this.upTargets = new int[upOffsets[numVects]];
+        this.upWeights = new double[upTargets.length];
+        this.upMiddles = new int[upTargets.length];
+        this.downSources = new int[downOffsets[numVects]];
+        this.downWeights = new double[downSources.length];
+        this.downMiddles = new int[downSources.length];
+        for (int v = 0; v < numVects; v++) {
+            contractor.ups[v].copyTo(upTargets, upWeights, upMiddles, upOffsets[v]);
+            contractor.downs[v].copyTo(downSources, downWeights, downMiddles, downOffsets[v]);
+        }
+        this.searches = new ThreadLocal<RouteSearch[]>() {
+            @Override
+            protected RouteSearch[] initialValue() {
+                return new RouteSearch[]{new RouteSearch(numVects), new RouteSearch(numVects)};
+            }
+        };
+    }
+
+    public FrozenNetwork getNetwork() {
+        return network;
+    }
+
+    /**
+     * Find the shortest route between the vertices given
+     *
+     * @param from id of start vertex
+     * @param to id of end vertex
+     * @return route, or null if there was no route
+     * @throws IndexOutOfBoundsException if from or to was out of bounds
+     */
+    public Route findRoute(int from, int to) throws IndexOutOfBoundsException {
+        checkId(from);
+        checkId(to);
+        if (from == to) {
+            return new Route(network, new int[]{from}, 0);
+        }
+        RouteSearch[] s = searches.get();
+        RouteSearch forward = s[0];
+        RouteSearch backward = s[1];
+        forward.reset();
+        backward.reset();
+        forward.start(from, 0);
+        backward.start(to, 0);
+        double best = Double.POSITIVE_INFINITY;
+        int meet = -1;
+        while (true) {
+            double forwardMin = forward.minKey();
+            double backwardMin = backward.minKey();
+            if (Math.min(forwardMin, backwardMin) >= best) {
+                break; // neither search can find a shorter route
+            }
+            boolean isForward = (forwardMin <= backwardMin);
+            RouteSearch search = isForward ? forward : backward;
+            RouteSearch other = isForward ? backward : forward;
+            int a = search.pop();
+            if (search.isSettled(a)) {
+                continue; // stale entry
+            }
+            search.settle(a);
+            double dist = search.dists[a];
+            if (other.isVisited(a) && (dist + other.dists[a] < best)) {
+                best = dist + other.dists[a];
+                meet = a;
+            }
+            if (isForward) {
+                relax(search, a, dist, upOffsets, upTargets, upWeights);
+            } else {
+                relax(search, a, dist, downOffsets, downSources, downWeights);
+            }
+        }
+        if (meet < 0) {
+            return null;
+        }
+
+        //Unpack shortcuts from start to meeting point, then from meeting point to end
+        int[] forwardPath = forward.getPath(meet);
+        IntArray path = new IntArray();
+        path.add(from);
+        for (int i = 1; i < forwardPath.length; i++) {
+            int b = forwardPath[i];
+            unpack(forwardPath[i - 1], b, upMiddles[forward.edges[b]], path);
+        }
+        for (int a = meet; backward.prevs[a] >= 0; a = backward.prevs[a]) {
+            unpack(a, backward.prevs[a], downMiddles[backward.edges[a]], path);
+        }
+        return new Route(network, path.toArray(), best);
+    }
+
+    private static void relax(RouteSearch search, int a, double dist, int[] offsets, int[] targets, double[] weights) {
+        for (int i = offsets[a], end = offsets[a + 1]; i < end; i++) {
+            int b = targets[i];
+            if (!search.isSettled(b)) {
+                double d = dist + weights[i];
+                search.relax(b, d, a, i, d);
+            }
+        }
+    }
+
+    //Add the vertices of the link from a to b to the path given, excluding a
+    private void unpack(int a, int b, int middle, IntArray path) {
+        if (middle < 0) {
+            path.add(b);
+            return;
+        }
+        //the middle vertex has a lower rank than both a and b, so both links are stored at middle
+        int i = indexOf(downSources, downOffsets[middle], downOffsets[middle + 1], a);
+        unpack(a, middle, downMiddles[i], path);
+        int j = indexOf(upTargets, upOffsets[middle], upOffsets[middle + 1], b);
+        unpack(middle, b, upMiddles[j], path);
+    }
+
+    private static int indexOf(int[] values, int start, int end, int value) {
+        for (int i = start; i < end; i++) {
+            if (values[i] == value) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Missing link to " + value);
+    }
+
+    private void checkId(int id) throws IndexOutOfBoundsException {
+        if ((id < 0) || (id >= ranks.length)) {
+            throw new IndexOutOfBoundsException("Vertex " + id + " is outside bounds [0," + ranks.length + ']');
+        }
+    }
+
+    /**
+     * Builds the hierarchy, keeping a mutable list of links to and from each uncontracted vertex
+     */
+    private static final class Contractor {
+
+        final Edges[] outs;
+        final Edges[] ins;
+        final Edges[] ups;
+        final Edges[] downs;
+        final boolean[] contracted;
+        final int[] numContractedNeighbours;
+        final int[] ranks;
+        final RouteSearch witness;
+
+        Contractor(Router router) {
+            int numVects = router.numVects();
+            outs = new Edges[numVects];
+            ins = new Edges[numVects];
+            ups = new Edges[numVects];
+            downs = new Edges[numVects];
+            for (int v = 0; v < numVects; v++) {
+                outs[v] = new Edges();
+                ins[v] = new Edges();
+            }
+            contracted = new boolean[numVects];
+            numContractedNeighbours = new int[numVects];
+            ranks = new int[numVects];
+            witness = new RouteSearch(numVects);
+            for (int a = 0; a < numVects; a++) {
+                for (int i = router.offsets[a]; i < router.offsets[a + 1]; i++) {
+                    double w = router.weights[i];
+                    if (w != Double.POSITIVE_INFINITY) {
+                        addEdge(a, router.targets[i], w, -1);
+                    }
+                }
+            }
+        }
+
+        void contractAll() {
+            RouteSearch queue = new RouteSearch(0); // used only as a priority queue
+            for (int v = 0; v < outs.length; v++) {
+                queue.push(v, getPriority(v));
+            }
+            int rank = 0;
+            while (!queue.isEmpty()) {
+                int v = queue.pop();
+                double priority = getPriority(v);
+                if (priority > queue.minKey()) { // priority is out of date, so try again later
+                    queue.push(v, priority);
+                    continue;
+                }
+                contract(v);
+                ranks[v] = rank++;
+            }
+        }
+
+        double getPriority(int v) {
+            return addShortcuts(v, false) - outs[v].size - ins[v].size + numContractedNeighbours[v];
+        }
+
+        void contract(int v) {
+            Edges out = outs[v];
+            Edges in = ins[v];
+            ups[v] = out;
+            downs[v] = in;
+            addShortcuts(v, true);
+            contracted[v] = true;
+            for (int i = 0; i < out.size; i++) {
+                int x = out.vects[i];
+                ins[x].remove(v);
+                numContractedNeighbours[x]++;
+            }
+            for (int i = 0; i < in.size; i++) {
+                int u = in.vects[i];
+                outs[u].remove(v);
+                numContractedNeighbours[u]++;
+            }
+        }
+
+        //Count (and optionally add) the shortcuts required to contract the vertex given
+        int addShortcuts(int v, boolean apply) {
+            Edges out = outs[v];
+            Edges in = ins[v];
+            double maxOut = 0;
+            for (int j = 0; j < out.size; j++) {
+                maxOut = Math.max(maxOut, out.weights[j]);
+            }
+            int ret = 0;
+            for (int i = 0; i < in.size; i++) {
+                int u = in.vects[i];
+                double w = in.weights[i];
+                findWitnesses(u, v, w + maxOut);
+                for (int j = 0; j < out.size; j++) {
+                    int x = out.vects[j];
+                    double shortcut = w + out.weights[j];
+                    if ((x != u) && (witness.getDist(x) > shortcut)) {
+                        ret++;
+                        if (apply) {
+                            addEdge(u, x, shortcut, v);
+                        }
+                    }
+                }
+            }
+            return ret;
+        }
+
+        //Limited search for paths from source which do not pass through the vertex given
+        void findWitnesses(int source, int skip, double maxDist) {
+            witness.reset();
+            witness.start(source, 0);
+            int numSettled = 0;
+            while (!witness.isEmpty()) {
+                int a = witness.pop();
+                if (witness.isSettled(a)) {
+                    continue;
+                }
+                witness.settle(a);
+                double dist = witness.dists[a];
+                if ((dist > maxDist) || (++numSettled > MAX_WITNESS_SETTLED)) {
+                    return;
+                }
+                Edges out = outs[a];
+                for (int i = 0; i < out.size; i++) {
+                    int b = out.vects[i];
+                    if (b != skip) {
+                        double d = dist + out.weights[i];
+                        witness.relax(b, d, a, -1, d);
+                    }
+                }
+            }
+        }
+
+        void addEdge(int a, int b, double weight, int middle) {
+            outs[a].put(b, weight, middle);
+            ins[b].put(a, weight, middle);
+        }
+    }
+
+    /**
+     * Growable list of links to or from a vertex, with at most one link per other vertex
+     */
+    private static final class Edges {
+
+        int[] vects = new int[4];
+        double[] weights = new double[4];
+        int[] middles = new int[4];
+        int size;
+
+        void put(int vect, double weight, int middle) {
+            for (int i = 0; i < size; i++) {
+                if (vects[i] == vect) {
+                    if (weight < weights[i]) {
+                        weights[i] = weight;
+                        middles[i] = middle;
+                    }
+                    return;
+                }
+            }
+            if (size == vects.length) {
+                vects = Arrays.copyOf(vects, size << 1);
+                weights = Arrays.copyOf(weights, size << 1);
+                middles = Arrays.copyOf(middles, size << 1);
+            }
+            vects[size] = vect;
+            weights[size] = weight;
+            middles[size] = middle;
+            size++;
+        }
+
+        void remove(int vect) {
+            for (int i = 0; i < size; i++) {
+                if (vects[i] == vect) {
+                    size--;
+                    vects[i] = vects[size];
+                    weights[i] = weights[size];
+                    middles[i] = middles[size];
+                    return;
+                }
+            }
+        }
+
+        void copyTo(int[] targetVects, double[] targetWeights, int[] targetMiddles, int offset) {
+            System.arraycopy(vects, 0, targetVects, offset, size);
+            System.arraycopy(weights, 0, targetWeights, offset, size);
+            System.arraycopy(middles, 0, targetMiddles, offset, size);
+        }
+    }
+
+    /**
+     * Growable array of vertex ids
+     */
+    private static final class IntArray {
+
+        int[] values = new int[16];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size << 1);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
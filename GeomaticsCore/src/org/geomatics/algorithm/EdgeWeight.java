@@ -0,0 +1,51 @@
+package org.geomatics.algorithm;
+
+import org.geomatics.geom.Vect;
+
+/**
+ * Weight (cost) of travelling along links in a network. Weights may differ by direction.
+ *
+ * @author tofarrell
+ */
+public interface EdgeWeight {
+
+    /**
+     * Weight based on the length of each link
+     */
+    EdgeWeight DISTANCE = new EdgeWeight() {
+        @Override
+        public double getWeight(double ax, double ay, double bx, double by) {
+            return Math.sqrt(Vect.distSq(ax, ay, bx, by));
+        }
+
+        @Override
+        public double getLowerBound(double ax, double ay, double bx, double by) {
+            return Math.sqrt(Vect.distSq(ax, ay, bx, by));
+        }
+    };
+
+    /**
+     * Get the weight of travelling along the link from a to b
+     *
+     * @param ax
+     * @param ay
+     * @param bx
+     * @param by
+     * @return weight, which must not be negative or NaN. Positive infinity means the link may not
+     * be travelled in this direction
+     */
+    double getWeight(double ax, double ay, double bx, double by);
+
+    /**
+     * Get a lower bound for the weight of travelling from a to b by any route. Used as the
+     * heuristic for A* searches, so must never be greater than the weight of a link from a to b
+     * plus the lower bound from b to any other point. Returning 0 is always valid.
+     *
+     * @param ax
+     * @param ay
+     * @param bx
+     * @param by
+     * @return lower bound
+     */
+    double getLowerBound(double ax, double ay, double bx, double by);
+}
@@ -0,0 +1,88 @@
+package org.geomatics.algorithm;
+
+import java.util.Arrays;
+import org.geomatics.geom.FrozenNetwork;
+import org.geomatics.util.VectList;
+
+/**
+ * Immutable route through a frozen network
+ *
+ * @author tofarrell
+ */
+public final class Route {
+
+    private final FrozenNetwork network;
+    private final int[] ids;
+    private final double cost;
+
+    Route(FrozenNetwork network, int[] ids, double cost) {
+        this.network = network;
+        this.ids = ids;
+        this.cost = cost;
+    }
+
+    /**
+     * Get the total weight of this route
+     *
+     * @return
+     */
+    public double getCost() {
+        return cost;
+    }
+
+    /**
+     * Get the number of vertices in this route
+     *
+     * @return
+     */
+    public int numVects() {
+        return ids.length;
+    }
+
+    /**
+     * Get the id of the vertex at the index given
+     *
+     * @param index
+     * @return vertex id within the network
+     * @throws IndexOutOfBoundsException if index was out of bounds
+     */
+    public int getId(int index) throws IndexOutOfBoundsException {
+        return ids[index];
+    }
+
+    /**
+     * Add the vertices of this route to the list given, from start to end
+     *
+     * @param target
+     * @return target
+     * @throws NullPointerException if target was null
+     */
+    public VectList getPath(VectList target) throws NullPointerException {
+        for (int id : ids) {
+            target.add(network.getX(id), network.getY(id));
+        }
+        return target;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof Route) {
+            Route other = (Route) obj;
+            return (cost == other.cost) && Arrays.equals(ids, other.ids);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 5;
+        hash = 53 * hash + Arrays.hashCode(ids);
+        hash = 53 * hash + (int) (Double.doubleToLongBits(cost) ^ (Double.doubleToLongBits(cost) >>> 32));
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "{\"cost\":" + cost + ",\"path\":" + getPath(new VectList()) + '}';
+    }
+}
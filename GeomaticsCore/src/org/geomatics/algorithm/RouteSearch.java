@@ -0,0 +1,146 @@
+package org.geomatics.algorithm;
+
+import java.util.Arrays;
+
+/**
+ * Working state for a single source shortest path search. Per vertex state is stamped rather than
+ * cleared, so resetting between searches is constant time. The queue is a binary heap which may
+ * contain stale entries, which are skipped by checking whether a vertex was already settled.
+ *
+ * @author tofarrell
+ */
+final class RouteSearch {
+
+    private final int[] stamps;
+    private final int[] settled;
+    final double[] dists;
+    final int[] prevs; // previous vertex on path
+    final int[] edges; // index of edge from previous vertex
+    private int stamp;
+    private double[] keys;
+    private int[] ids;
+    private int size;
+
+    RouteSearch(int numVects) {
+        this.stamps = new int[numVects];
+        this.settled = new int[numVects];
+        this.dists = new double[numVects];
+        this.prevs = new int[numVects];
+        this.edges = new int[numVects];
+        this.keys = new double[16];
+        this.ids = new int[16];
+    }
+
+    void reset() {
+        if (stamp == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            Arrays.fill(settled, 0);
+            stamp = 0;
+        }
+        stamp++;
+        size = 0;
+    }
+
+    boolean isVisited(int vertex) {
+        return stamps[vertex] == stamp;
+    }
+
+    boolean isSettled(int vertex) {
+        return settled[vertex] == stamp;
+    }
+
+    void settle(int vertex) {
+        settled[vertex] = stamp;
+    }
+
+    double getDist(int vertex) {
+        return (stamps[vertex] == stamp) ? dists[vertex] : Double.POSITIVE_INFINITY;
+    }
+
+    //Update the distance to the vertex given if it is an improvement, and queue it
+    boolean relax(int vertex, double dist, int prev, int edge, double key) {
+        if ((stamps[vertex] == stamp) && (dists[vertex] <= dist)) {
+            return false;
+        }
+        stamps[vertex] = stamp;
+        dists[vertex] = dist;
+        prevs[vertex] = prev;
+        edges[vertex] = edge;
+        push(vertex, key);
+        return true;
+    }
+
+    void start(int vertex, double key) {
+        stamps[vertex] = stamp;
+        dists[vertex] = 0;
+        prevs[vertex] = -1;
+        edges[vertex] = -1;
+        push(vertex, key);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    double minKey() {
+        return (size == 0) ? Double.POSITIVE_INFINITY : keys[0];
+    }
+
+    void push(int id, double key) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size << 1);
+            ids = Arrays.copyOf(ids, size << 1);
+        }
+        int i = size++;
+        while (i > 0) { // sift up
+            int parent = (i - 1) >> 1;
+            if (keys[parent] <= key) {
+                break;
+            }
+            keys[i] = keys[parent];
+            ids[i] = ids[parent];
+            i = parent;
+        }
+        keys[i] = key;
+        ids[i] = id;
+    }
+
+    int pop() {
+        int ret = ids[0];
+        size--;
+        double key = keys[size];
+        int id = ids[size];
+        int i = 0;
+        while (true) { // sift down
+            int child = (i << 1) + 1;
+            if (child >= size) {
+                break;
+            }
+            if ((child + 1 < size) && (keys[child + 1] < keys[child])) {
+                child++;
+            }
+            if (key <= keys[child]) {
+                break;
+            }
+            keys[i] = keys[child];
+            ids[i] = ids[child];
+            i = child;
+        }
+        keys[i] = key;
+        ids[i] = id;
+        return ret;
+    }
+
+    //Get the ids of vertices on the path to the vertex given, from the start of the search
+    int[] getPath(int vertex) {
+        int length = 0;
+        for (int v = vertex; v >= 0; v = prevs[v]) {
+            length++;
+        }
+        int[] ret = new int[length];
+        for (int v = vertex; v >= 0; v = prevs[v]) {
+            ret[--length] = v;
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,147 @@
+package org.geomatics.algorithm;
+
+import org.geomatics.geom.FrozenNetwork;
+
+/**
+ * Finds shortest routes through a frozen network using Dijkstra's algorithm or A*. Link weights
+ * are calculated once on construction and stored in compressed sparse row form alongside the
+ * links. Routers are thread safe - each thread uses its own search state.
+ *
+ * @author tofarrell
+ */
+public final class Router {
+
+    final FrozenNetwork network;
+    final EdgeWeight weight;
+    final double[] xs;
+    final double[] ys;
+    final int[] offsets;
+    final int[] targets;
+    final double[] weights;
+    private final ThreadLocal<RouteSearch> searches;
+
+    /**
+     * Create a new router
+     *
+     * @param network
+     * @param weight
+     * @throws NullPointerException if network or weight was null
+     * @throws IllegalArgumentException if a link weight was negative or NaN
+     */
+    public Router(FrozenNetwork network, EdgeWeight weight) throws NullPointerException, IllegalArgumentException {
+        if (weight == null) {
+            throw new NullPointerException("Weight must not be null!");
+        }
+        final int numVects = network.numVects();
+        double[] _xs = new double[numVects];
+        double[] _ys = new double[numVects];
+        for (int i = 0; i < numVects; i++) {
+            _xs[i] = network.getX(i);
+            _ys[i] = network.getY(i);
+        }
+        int[] _offsets = new int[numVects + 1];
+        int[] _targets = new int[network.numLinks() << 1];
+        double[] _weights = new double[_targets.length];
+        for (int a = 0, i = 0; a < numVects; a++) {
+            for (int j = 0; j < network.numLinks(a); j++, i++) {
+                int b = network.getLink(a, j);
+                double w = weight.getWeight(_xs[a], _ys[a], _xs[b], _ys[b]);
+                if (!(w >= 0)) {
+                    throw new IllegalArgumentException("Invalid weight " + w + " for link [" + _xs[a] + ',' + _ys[a] + ',' + _xs[b] + ',' + _ys[b] + ']');
+                }
+                _targets[i] = b;
+                _weights[i] = w;
+            }
+            _offsets[a + 1] = _offsets[a] + network.numLinks(a);
+        }
+        this.network = network;
+        this.weight = weight;
+        this.xs = _xs;
+        this.ys = _ys;
+        this.offsets = _offsets;
+        this.targets = _targets;
+        this.weights = _weights;
+        this.searches = new ThreadLocal<RouteSearch>() {
+            @Override
+            protected RouteSearch initialValue() {
+                return new RouteSearch(numVects);
+            }
+        };
+    }
+
+    public FrozenNetwork getNetwork() {
+        return network;
+    }
+
+    public EdgeWeight getWeight() {
+        return weight;
+    }
+
+    /**
+     * Find the shortest route between the vertices given using Dijkstra's algorithm
+     *
+     * @param from id of start vertex
+     * @param to id of end vertex
+     * @return route, or null if there was no route
+     * @throws IndexOutOfBoundsException if from or to was out of bounds
+     */
+    public Route dijkstra(int from, int to) throws IndexOutOfBoundsException {
+        return search(from, to, false);
+    }
+
+    /**
+     * Find the shortest route between the vertices given using A*, with the lower bound of the
+     * weight as the heuristic. This typically settles far fewer vertices than Dijkstra's algorithm.
+     *
+     * @param from id of start vertex
+     * @param to id of end vertex
+     * @return route, or null if there was no route
+     * @throws IndexOutOfBoundsException if from or to was out of bounds
+     */
+    public Route aStar(int from, int to) throws IndexOutOfBoundsException {
+        return search(from, to, true);
+    }
+
+    private Route search(int from, int to, boolean heuristic) throws IndexOutOfBoundsException {
+        checkId(from);
+        checkId(to);
+        double tx = xs[to];
+        double ty = ys[to];
+        RouteSearch search = searches.get();
+        search.reset();
+        search.start(from, heuristic ? weight.getLowerBound(xs[from], ys[from], tx, ty) : 0);
+        while (!search.isEmpty()) {
+            int a = search.pop();
+            if (search.isSettled(a)) {
+                continue; // stale entry
+            }
+            search.settle(a);
+            if (a == to) {
+                return new Route(network, search.getPath(to), search.dists[to]);
+            }
+            double dist = search.dists[a];
+            for (int i = offsets[a], end = offsets[a + 1]; i < end; i++) {
+                double w = weights[i];
+                if (w == Double.POSITIVE_INFINITY) {
+                    continue; // link may not be travelled in this direction
+                }
+                int b = targets[i];
+                if (!search.isSettled(b)) {
+                    double d = dist + w;
+                    search.relax(b, d, a, i, heuristic ? (d + weight.getLowerBound(xs[b], ys[b], tx, ty)) : d);
+                }
+            }
+        }
+        return null;
+    }
+
+    int numVects() {
+        return xs.length;
+    }
+
+    void checkId(int id) throws IndexOutOfBoundsException {
+        if ((id < 0) || (id >= xs.length)) {
+            throw new IndexOutOfBoundsException("Vertex " + id + " is outside bounds [0," + xs.length + ']');
+        }
+    }
+}
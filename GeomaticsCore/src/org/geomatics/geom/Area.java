@@ -100,6 +100,31 @@ public final class Area implements Geom {
         return valueOfInternal(accuracy, network);
     }
     
+    /**
+     * Assuming the network given contains a number of closed rings, create a new area based on it,
+     * using the threads of the common ForkJoinPool. Links are partitioned into spatial tiles which
+     * are noded in parallel, snaps are calculated in parallel, and rings are parsed from
+     * disconnected parts of the network in parallel. The result is the same as for valueOf.
+     * @param accuracy
+     * @param network
+     * @return an area, or null if there were no closed rings
+     * @throws NullPointerException if accuracy or network was null
+     */
+    public static Area parallelValueOf(Tolerance accuracy, Network network) throws NullPointerException {
+        return parallelValueOf(accuracy, network, Ring.MIN_LINKS_PER_TASK);
+    }
+    
+    static Area parallelValueOf(Tolerance accuracy, Network network, int minLinksPerTask) {
+        network = network.clone();
+        Network.Noder noder = network.getNoder();
+        network.setNoder(Network.Noder.TILED);
+        network.explicitIntersections(accuracy);
+        network.parallelSnap(accuracy);
+        network.setNoder(noder);
+        List<Ring> rings = Ring.parallelParseAllInternal(network, accuracy, true, minLinksPerTask);
+        return valueOfInternal(rings);
+    }
+    
     static Area valueOfInternal(Tolerance accuracy, Network network) {
         List<Ring> rings = Ring.parseAllInternal(network, accuracy, true);
         return valueOfInternal(rings);
@@ -474,32 +499,7 @@ public final class Area implements Geom {
         if(amt == 0){
             return this;
         }
-        if(shell == null){
-            Geom result = null;
-            for(Area child : children){
-                Geom childResult = child.buffer(amt, linearizer, accuracy);
-                if(childResult != null){
-                    result = (result == null) ? childResult : result.union(childResult, linearizer, accuracy);
-                }
-            }
-            return result;
-        }else{
-            Geom result = shell.buffer(amt, linearizer, accuracy);
-            if(result == null){
-                return null; // buffered out of existence!
-            }
-            amt = -amt;
-            for(Area child : children){
-                Geom childResult = child.buffer(amt, linearizer, accuracy);
-                if(childResult != null){ // child may have been buffered out of existance!
-                    result = result.less(childResult, linearizer, accuracy);
-                    if(result == null){ // buffered out of existence!
-                        return null;
-                    }
-                }
-            }
-            return result;
-        }
+        return new BufferBuilder(amt, linearizer, accuracy).addArea(this).build();
     }
 
     @Override
@@ -526,6 +526,23 @@ public final class Area implements Geom {
         return relateInternal(x, y, tolerance);
     }
 
+    /**
+     * Determine the relation between each of the points given and this area. Rather than walking
+     * the line index for each point, a PreparedArea is built once and shared by all points, so this
+     * is much faster than calling relate for each point when there are many points. Results are the
+     * same as for relate.
+     *
+     * @param points
+     * @param tolerance tolerance for touch
+     * @param results array in which to place the relation for each point
+     * @return results
+     * @throws NullPointerException if points, tolerance or results was null
+     * @throws IndexOutOfBoundsException if results was shorter than points
+     */
+    public int[] relateAll(VectList points, Tolerance tolerance, int[] results) throws NullPointerException, IndexOutOfBoundsException {
+        return new PreparedArea(this, tolerance).relateAll(points, results);
+    }
+
     int relateInternal(double x, double y, Tolerance tolerance) throws IllegalArgumentException, NullPointerException {
         return Ring.relateInternal(x, y, getLineIndex(), tolerance);
     }
@@ -740,10 +757,39 @@ public final class Area implements Geom {
         } else if (other instanceof Ring) {
             GeoShape ret = intersection((Ring) other, accuracy);
             return (ret == null) ? null : ret.simplify();
+        } else if (other instanceof Rect) {
+            GeoShape ret = intersection((Rect) other, accuracy);
+            return (ret == null) ? null : ret.simplify();
         }
         return toGeoShape().intersection(other, linearizer, accuracy);
     }
     
+    /**
+     * Get the intersection of this and the rect given. Rings are clipped to the rect in linear time
+     * without building a network, except where vertices or intersections would need snapping.
+     * @param other
+     * @param accuracy
+     * @return
+     * @throws NullPointerException if other or accuracy was null
+     */
+    public GeoShape intersection(Rect other, Tolerance accuracy) throws NullPointerException{
+        Rect bounds = getBounds();
+        if (Relation.isDisjoint(bounds.relate(other, accuracy))) {
+            return null;
+        }
+        double tol = accuracy.tolerance;
+        if ((bounds.minX > other.minX + tol) && (bounds.minY > other.minY + tol)
+                && (bounds.maxX < other.maxX - tol) && (bounds.maxY < other.maxY - tol)) {
+            return new GeoShape(this, null, null); // this is inside rect
+        }
+        List<Ring> rings = RectClipper.clip(this, other, accuracy);
+        if (rings == null) {
+            return intersection(other.toArea(), accuracy);
+        }
+        Area ret = valueOfInternal(rings);
+        return (ret == null) ? null : new GeoShape(ret, null, null);
+    }
+    
     /**
      * Get the intersection of this and the ring given
      * @param other
@@ -0,0 +1,293 @@
+package org.geomatics.geom;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import org.geomatics.util.Tolerance;
+import org.geomatics.util.VectList;
+
+/**
+ * Builds a buffer from the offset curves of a number of rings and line strings. Offset curves for
+ * all sources are generated (in parallel where there are many vertices), added to a single network,
+ * and noded once. Each link in the noded network is labelled with the number of offset curves
+ * passing along it in each direction, and the winding number of each face of the network is found
+ * by walking outward from the outside of each connected component. Faces with a positive winding
+ * number are inside the buffer.
+ * <p>
+ * Inward offset curves may loop back on themselves, so a negative buffer is instead found as the
+ * faces inside the original rings but outside the positive buffer of their boundaries. Where this
+ * leaves a section of zero width (boundary buffers passing along the same link in opposite
+ * directions) that link is included in the result as a line.
+ *
+ * @author tofarrell
+ */
+final class BufferBuilder {
+
+    static final int MIN_VECTS_PER_TASK = 4096;
+    private static final int RING = 0;
+    private static final int HOLE = 1;
+    private static final int LINE_STRING = 2;
+
+    private final double amt;
+    private final boolean erode;
+    private final Linearizer linearizer;
+    private final Tolerance accuracy;
+    private final int minVectsPerTask;
+    private final List<VectList> sources;
+    private final List<Integer> types;
+    private int numVects;
+
+    /**
+     * Create a new buffer builder
+     *
+     * @param amt
+     * @param linearizer
+     * @param accuracy
+     * @throws NullPointerException if linearizer or accuracy was null
+     * @throws IllegalArgumentException if amt was infinite or NaN
+     */
+    BufferBuilder(double amt, Linearizer linearizer, Tolerance accuracy) throws NullPointerException, IllegalArgumentException {
+        this(amt, linearizer, accuracy, MIN_VECTS_PER_TASK);
+    }
+
+    BufferBuilder(double amt, Linearizer linearizer, Tolerance accuracy, int minVectsPerTask) throws NullPointerException, IllegalArgumentException {
+        Vect.check(amt, "Invalid amt {0}");
+        if (linearizer == null) {
+            throw new NullPointerException("Linearizer must not be null!");
+        }
+        if (accuracy == null) {
+            throw new NullPointerException("Accuracy must not be null!");
+        }
+        this.amt = amt;
+        this.erode = (amt < 0);
+        this.linearizer = linearizer;
+        this.accuracy = accuracy;
+        this.minVectsPerTask = minVectsPerTask;
+        this.sources = new ArrayList<>();
+        this.types = new ArrayList<>();
+    }
+
+    /**
+     * Add the rings of the area given. Shells are buffered outward and holes inward for a positive
+     * amount
+     *
+     * @param area
+     * @return this
+     * @throws NullPointerException if area was null
+     */
+    BufferBuilder addArea(Area area) throws NullPointerException {
+        return addArea(area, 0);
+    }
+
+    private BufferBuilder addArea(Area area, int depth) {
+        if (area.shell != null) {
+            add(area.shell.vects, ((depth & 1) == 0) ? RING : HOLE);
+            depth++;
+        }
+        for (Area child : area.children) {
+            addArea(child, depth);
+        }
+        return this;
+    }
+
+    /**
+     * Add a ring
+     *
+     * @param ring
+     * @return this
+     * @throws NullPointerException if ring was null
+     */
+    BufferBuilder addRing(Ring ring) throws NullPointerException {
+        return add(ring.vects, RING);
+    }
+
+    /**
+     * Add a line string
+     *
+     * @param lineString
+     * @return this
+     * @throws NullPointerException if lineString was null
+     */
+    BufferBuilder addLineString(LineString lineString) throws NullPointerException {
+        return add(lineString.vects, LINE_STRING);
+    }
+
+    private BufferBuilder add(VectList vects, int type) {
+        sources.add(vects);
+        types.add(type);
+        numVects += vects.size();
+        return this;
+    }
+
+    /**
+     * Build the buffer
+     *
+     * @return buffer, or null if the buffer was empty
+     */
+    Geom build() {
+        VectList[] curves = new VectList[sources.size()];
+        VectList[] boundaries = erode ? new VectList[curves.length] : null;
+        buildCurves(curves, boundaries);
+        Network network = new Network();
+        int numLinks = addAllLinks(network, curves);
+        if (erode) {
+            numLinks += addAllLinks(network, boundaries);
+        }
+        if (network.numVects() == 0) {
+            return null;
+        }
+        if (numLinks >= TiledNoder.LINKS_PER_TILE) {
+            network.setNoder(Network.Noder.TILED);
+            network.explicitIntersections(accuracy);
+            network.parallelSnap(accuracy);
+        } else {
+            network.explicitIntersections(accuracy);
+            network.snap(accuracy);
+        }
+        return build(network, curves, boundaries);
+    }
+
+    private static int addAllLinks(Network network, VectList[] curves) {
+        int ret = 0;
+        for (VectList curve : curves) {
+            network.addAllLinks(curve);
+            ret += curve.size();
+        }
+        return ret;
+    }
+
+    //Build offset curves for all sources, in parallel if there are enough vertices
+    private void buildCurves(VectList[] curves, VectList[] boundaries) {
+        if ((numVects < minVectsPerTask << 1) || (curves.length == 1)) {
+            buildCurves(0, curves.length, curves, boundaries);
+            return;
+        }
+        List<CurveTask> tasks = new ArrayList<>();
+        int min = 0;
+        int taskVects = 0;
+        for (int i = 0; i < curves.length; i++) {
+            taskVects += sources.get(i).size();
+            if (taskVects >= minVectsPerTask) {
+                tasks.add(new CurveTask(min, i + 1, curves, boundaries));
+                min = i + 1;
+                taskVects = 0;
+            }
+        }
+        if (min < curves.length) {
+            tasks.add(new CurveTask(min, curves.length, curves, boundaries));
+        }
+        ForkJoinPool.commonPool().invoke(new TiledNoder.Tasks(tasks));
+    }
+
+    private void buildCurves(int min, int max, VectList[] curves, VectList[] boundaries) {
+        for (int i = min; i < max; i++) {
+            VectList vects = sources.get(i);
+            int type = types.get(i);
+            if (type == HOLE) { // walk holes in reverse, so the inside of the area is on the left
+                vects = vects.clone();
+                vects.reverse();
+            }
+            if (erode) {
+                boundaries[i] = vects;
+                curves[i] = LineString.bufferInternal(vects, -amt, linearizer, accuracy);
+            } else if (type == LINE_STRING) {
+                curves[i] = LineString.bufferInternal(vects, amt, linearizer, accuracy);
+            } else {
+                curves[i] = Ring.getEdgeBuffer(vects, amt, linearizer, accuracy);
+            }
+        }
+    }
+
+    /**
+     * Builds offset curves for a range of sources
+     */
+    final class CurveTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        final int min;
+        final int max;
+        final VectList[] curves;
+        final VectList[] boundaries;
+
+        CurveTask(int min, int max, VectList[] curves, VectList[] boundaries) {
+            this.min = min;
+            this.max = max;
+            this.curves = curves;
+            this.boundaries = boundaries;
+        }
+
+        @Override
+        protected void compute() {
+            buildCurves(min, max, curves, boundaries);
+        }
+    }
+
+    //Count the curves passing along each half link
+    private static int[] countCurves(NetworkFaces faces, VectList[] curves) {
+        final int[] ret = new int[faces.network.links.length];
+        NetworkFaces.HalfLinkProcessor processor = new NetworkFaces.HalfLinkProcessor() {
+            @Override
+            public void process(int halfLink) {
+                ret[halfLink]++;
+            }
+        };
+        for (VectList curve : curves) {
+            faces.trace(curve, processor);
+        }
+        return ret;
+    }
+
+    //Get the winding number of each face
+    private static int[] calculateWindings(NetworkFaces faces, final int[] forwards) {
+        final int[] twins = faces.twins;
+        return faces.label(0, new NetworkFaces.Crossing() {
+            @Override
+            public int cross(int halfLink, int value) {
+                return value - forwards[halfLink] + forwards[twins[halfLink]];
+            }
+        });
+    }
+
+    private Geom build(Network network, VectList[] curves, VectList[] boundaries) {
+        NetworkFaces faces = new NetworkFaces(network, accuracy);
+        FrozenNetwork frozen = faces.network;
+        int[] origins = faces.origins;
+        int[] twins = faces.twins;
+        int[] forwards = countCurves(faces, curves);
+        int[] windings = calculateWindings(faces, forwards);
+        int[] boundaryWindings = erode ? calculateWindings(faces, countCurves(faces, boundaries)) : null;
+        Network areaNetwork = new Network();
+        Network lineNetwork = new Network();
+        for (int i = 0; i < origins.length; i++) {
+            int a = origins[i];
+            int b = frozen.links[i];
+            if (a > b) {
+                continue; // processed with twin
+            }
+            int left = faces.faces[i];
+            int right = faces.faces[twins[i]];
+            boolean inLeft = (windings[left] > 0);
+            boolean inRight = (windings[right] > 0);
+            if (erode) {
+                boolean inBoundaryLeft = (boundaryWindings[left] > 0);
+                boolean inBoundaryRight = (boundaryWindings[right] > 0);
+                if ((inBoundaryLeft && !inLeft) != (inBoundaryRight && !inRight)) {
+                    areaNetwork.addLinkInternal(frozen.getX(a), frozen.getY(a), frozen.getX(b), frozen.getY(b));
+                } else if (inBoundaryLeft && inBoundaryRight && inLeft && inRight
+                        && (windings[right] - forwards[twins[i]] <= 0)) { // zero width section
+                    lineNetwork.addLinkInternal(frozen.getX(a), frozen.getY(a), frozen.getX(b), frozen.getY(b));
+                }
+            } else if (inLeft != inRight) {
+                areaNetwork.addLinkInternal(frozen.getX(a), frozen.getY(a), frozen.getX(b), frozen.getY(b));
+            }
+        }
+        Area area = Area.valueOfInternal(accuracy, areaNetwork);
+        LineSet lines = LineSet.valueOfInternal(lineNetwork);
+        if ((area == null) && (lines == null)) {
+            return null;
+        }
+        return new GeoShape(area, lines, null).simplify();
+    }
+}
@@ -0,0 +1,487 @@
+package org.geomatics.geom;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import org.geomatics.util.VectList;
+
+/**
+ * Immutable snapshot of a network in compressed sparse row form. Vertices are identified by an
+ * integer id, which is their index when sorted from min to max. The links for each vertex are
+ * stored in a single shared array in the same angular order as the source network, so traversal
+ * does not require any hashing or allocation.
+ *
+ * @author tofarrell
+ */
+public final class FrozenNetwork implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    final double[] ords;
+    final int[] offsets;
+    final int[] links;
+
+    FrozenNetwork(Network network) {
+        int numVects = network.numVects();
+        VectList vects = network.getVects(new VectList());
+        double[] _ords = new double[numVects << 1];
+        for (int i = 0, j = 0; i < numVects; i++) {
+            _ords[j++] = vects.getX(i);
+            _ords[j++] = vects.getY(i);
+        }
+        int[] _offsets = new int[numVects + 1];
+        int[] _links = new int[network.numLinks() << 1];
+        for (int i = 0, j = 0; i < numVects; i++) {
+            VectList vectLinks = network.map.get(_ords[i << 1], _ords[(i << 1) | 1]);
+            for (int k = 0; k < vectLinks.size(); k++) {
+                _links[j++] = indexOf(vectLinks.getX(k), vectLinks.getY(k), _ords);
+            }
+            _offsets[i + 1] = j;
+        }
+        this.ords = _ords;
+        this.offsets = _offsets;
+        this.links = _links;
+    }
+
+    /**
+     * Get the number of vertices in this network
+     *
+     * @return
+     */
+    public int numVects() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Get the number of links in this network
+     *
+     * @return
+     */
+    public int numLinks() {
+        return links.length >> 1;
+    }
+
+    /**
+     * Get the id of the vertex given
+     *
+     * @param x
+     * @param y
+     * @return id, or -1 if the vertex does not exist
+     */
+    public int indexOf(double x, double y) {
+        return indexOf(x, y, ords);
+    }
+
+    static int indexOf(double x, double y, double[] ords) {
+        int min = 0;
+        int max = (ords.length >> 1) - 1;
+        while (min <= max) {
+            int mid = (min + max) >>> 1;
+            int cmp = Vect.compare(ords[mid << 1], ords[(mid << 1) | 1], x, y);
+            if (cmp < 0) {
+                min = mid + 1;
+            } else if (cmp > 0) {
+                max = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private void checkId(int id) throws IndexOutOfBoundsException {
+        if ((id < 0) || (id >= numVects())) {
+            throw new IndexOutOfBoundsException("Vertex " + id + " is outside bounds [0," + numVects() + ']');
+        }
+    }
+
+    /**
+     * Get the x value of the vertex with the id given
+     *
+     * @param id
+     * @return
+     * @throws IndexOutOfBoundsException if id was out of bounds
+     */
+    public double getX(int id) throws IndexOutOfBoundsException {
+        checkId(id);
+        return ords[id << 1];
+    }
+
+    /**
+     * Get the y value of the vertex with the id given
+     *
+     * @param id
+     * @return
+     * @throws IndexOutOfBoundsException if id was out of bounds
+     */
+    public double getY(int id) throws IndexOutOfBoundsException {
+        checkId(id);
+        return ords[(id << 1) | 1];
+    }
+
+    /**
+     * Get the vertex with the id given
+     *
+     * @param id
+     * @return
+     * @throws IndexOutOfBoundsException if id was out of bounds
+     */
+    public Vect getVect(int id) throws IndexOutOfBoundsException {
+        checkId(id);
+        return Vect.valueOf(ords[id << 1], ords[(id << 1) | 1]);
+    }
+
+    /**
+     * Get the vertex with the id given
+     *
+     * @param id
+     * @param target
+     * @return target
+     * @throws IndexOutOfBoundsException if id was out of bounds
+     * @throws NullPointerException if target was null
+     */
+    public VectBuilder getVect(int id, VectBuilder target) throws IndexOutOfBoundsException, NullPointerException {
+        checkId(id);
+        return target.set(ords[id << 1], ords[(id << 1) | 1]);
+    }
+
+    /**
+     * Get the number of links from the vertex with the id given
+     *
+     * @param id
+     * @return
+     * @throws IndexOutOfBoundsException if id was out of bounds
+     */
+    public int numLinks(int id) throws IndexOutOfBoundsException {
+        checkId(id);
+        return offsets[id + 1] - offsets[id];
+    }
+
+    /**
+     * Get the id of a linked vertex. Links are sorted in counter clockwise order
+     *
+     * @param id
+     * @param index index of link
+     * @return id of linked vertex
+     * @throws IndexOutOfBoundsException if id or index was out of bounds
+     */
+    public int getLink(int id, int index) throws IndexOutOfBoundsException {
+        checkId(id);
+        int offset = offsets[id];
+        if ((index < 0) || (index >= offsets[id + 1] - offset)) {
+            throw new IndexOutOfBoundsException("Link " + index + " is outside bounds [0," + (offsets[id + 1] - offset) + ']');
+        }
+        return links[offset + index];
+    }
+
+    /**
+     * Determine whether there is a link between the vertices given
+     *
+     * @param a
+     * @param b
+     * @return
+     * @throws IndexOutOfBoundsException if a was out of bounds
+     */
+    public boolean hasLink(int a, int b) throws IndexOutOfBoundsException {
+        checkId(a);
+        return linkIndex(a, b) >= 0;
+    }
+
+    //Get the index of b within the shared links array, or -1 if there is no such link
+    int linkIndex(int a, int b) {
+        for (int i = offsets[a], end = offsets[a + 1]; i < end; i++) {
+            if (links[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the next link clockwise from the link given around the origin given
+     *
+     * @param origin
+     * @param link
+     * @return id of next linked vertex, or -1 if there was no link between origin and link
+     * @throws IndexOutOfBoundsException if origin was out of bounds
+     */
+    public int nextCW(int origin, int link) throws IndexOutOfBoundsException {
+        checkId(origin);
+        int index = linkIndex(origin, link);
+        if (index < 0) {
+            return -1;
+        }
+        if (index == offsets[origin]) {
+            index = offsets[origin + 1];
+        }
+        return links[index - 1];
+    }
+
+    /**
+     * Get the next link counter clockwise from the link given around the origin given
+     *
+     * @param origin
+     * @param link
+     * @return id of next linked vertex, or -1 if there was no link between origin and link
+     * @throws IndexOutOfBoundsException if origin was out of bounds
+     */
+    public int nextCCW(int origin, int link) throws IndexOutOfBoundsException {
+        checkId(origin);
+        int index = linkIndex(origin, link);
+        if (index < 0) {
+            return -1;
+        }
+        index++;
+        if (index == offsets[origin + 1]) {
+            index = offsets[origin];
+        }
+        return links[index];
+    }
+
+    /**
+     * Add the vertices in this network to the list given, sorted from min to max
+     *
+     * @param target
+     * @return target
+     * @throws NullPointerException if target was null
+     */
+    public VectList getVects(VectList target) throws NullPointerException {
+        for (int i = 0; i < ords.length;) {
+            target.add(ords[i++], ords[i++]);
+        }
+        return target;
+    }
+
+    /**
+     * Add any vertices with no links to the list given
+     *
+     * @param target
+     * @return target
+     * @throws NullPointerException if target was null
+     */
+    public VectList extractPoints(VectList target) throws NullPointerException {
+        for (int i = 0; i < offsets.length - 1; i++) {
+            if (offsets[i] == offsets[i + 1]) {
+                target.add(ords[i << 1], ords[(i << 1) | 1]);
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Extract lines from this network. Results are the same as for the network this was frozen
+     * from.
+     *
+     * @param results
+     * @param includePoints
+     * @return results
+     * @throws NullPointerException if results was null
+     */
+    public Collection<VectList> extractLines(Collection<VectList> results, boolean includePoints) throws NullPointerException {
+        int numVects = numVects();
+        VectList result = new VectList();
+        int numLinksProcessed = 0;
+        for (int a = 0; a < numVects; a++) {
+            int start = offsets[a];
+            int end = offsets[a + 1];
+            switch (end - start) {
+                case 0:
+                    if (includePoints) {
+                        results.add(new VectList().add(ords[a << 1], ords[(a << 1) | 1]));
+                    }
+                    break;
+                case 2:
+                    //rings are found on second pass
+                    break;
+                default:
+                    for (int j = start; j < end; j++) {
+                        int b = links[j];
+                        int c = followLine(a, b);
+                        if (c < a) {
+                            continue; // line will be found starting from c
+                        }
+                        result.clear();
+                        followLine(a, b, result);
+                        if ((c != a) || result.isOrdered()) {
+                            results.add(result.clone());
+                            numLinksProcessed += (result.size() - 1);
+                        }
+                    }
+            }
+        }
+        if (numLinksProcessed == numLinks()) { // if there were no rings, then we are done
+            return results;
+        }
+
+        //Process rings in second pass. All points on a ring will be greater than its start point
+        for (int a = 0; a < numVects; a++) {
+            int start = offsets[a];
+            if (offsets[a + 1] - start != 2) {
+                continue;
+            }
+            int b = links[start];
+            int c = links[start + 1];
+            if ((a > b) || (a > c)) {
+                continue;
+            }
+
+            //to begin, we pick the direction with the lower dydx
+            double ax = ords[a << 1];
+            double ay = ords[(a << 1) | 1];
+            if (Vect.dydxTo(ax, ay, ords[b << 1], ords[(b << 1) | 1]) < Vect.dydxTo(ax, ay, ords[c << 1], ords[(c << 1) | 1])) {
+                c = b;
+            }
+            b = a;
+
+            result.clear().add(ax, ay);
+            while (true) {
+                result.add(ords[c << 1], ords[(c << 1) | 1]);
+                start = offsets[c];
+                if (offsets[c + 1] - start != 2) {
+                    break; // this is not a ring!
+                }
+                int d = links[start];
+                if (d == b) {
+                    d = links[start + 1];
+                }
+                if (d < a) {
+                    break; // found a point before origin of ring.
+                } else if (d == a) { // cycled back to origin - we have a ring!
+                    result.add(ax, ay);
+                    results.add(result.clone());
+                    break;
+                }
+                b = c;
+                c = d;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Follow a line from a through b until a vertex which does not have exactly 2 links is
+     * reached.
+     *
+     * @param a
+     * @param b
+     * @param results list to which vertices are added
+     * @return results
+     * @throws IndexOutOfBoundsException if a or b was out of bounds
+     * @throws NullPointerException if results was null
+     */
+    public VectList followLine(int a, int b, VectList results) throws IndexOutOfBoundsException, NullPointerException {
+        checkId(a);
+        checkId(b);
+        results.add(ords[a << 1], ords[(a << 1) | 1]);
+        while (true) {
+            results.add(ords[b << 1], ords[(b << 1) | 1]);
+            int start = offsets[b];
+            if (offsets[b + 1] - start != 2) {
+                return results;
+            }
+            int c = links[start + 1];
+            if (c == a) {
+                c = links[start];
+            }
+            a = b;
+            b = c;
+        }
+    }
+
+    //Get the id of the vertex at the end of the line starting a,b
+    int followLine(int a, int b) {
+        while (true) {
+            int start = offsets[b];
+            if (offsets[b + 1] - start != 2) {
+                return b;
+            }
+            int c = links[start + 1];
+            if (c == a) {
+                c = links[start];
+            }
+            a = b;
+            b = c;
+        }
+    }
+
+    //Get the id of the lowest vertex in the connected component of each vertex
+    int[] components() {
+        int numVects = numVects();
+        int[] ret = new int[numVects];
+        for (int a = 0; a < numVects; a++) {
+            ret[a] = a;
+        }
+        for (int a = 0; a < numVects; a++) {
+            for (int i = offsets[a]; i < offsets[a + 1]; i++) {
+                int b = links[i];
+                if (a < b) {
+                    int rootA = root(ret, a);
+                    int rootB = root(ret, b);
+                    if (rootA < rootB) {
+                        ret[rootB] = rootA;
+                    } else if (rootB < rootA) {
+                        ret[rootA] = rootB;
+                    }
+                }
+            }
+        }
+        for (int a = 0; a < numVects; a++) {
+            ret[a] = ret[ret[a]]; // parent always has a lower id, so is already resolved
+        }
+        return ret;
+    }
+
+    private static int root(int[] parents, int a) {
+        while (parents[a] != a) {
+            int parent = parents[parents[a]]; // path halving
+            parents[a] = parent;
+            a = parent;
+        }
+        return a;
+    }
+
+    /**
+     * Create a new mutable network containing the vertices and links in this network
+     *
+     * @return
+     */
+    public Network toNetwork() {
+        Network ret = new Network();
+        for (int a = 0; a < numVects(); a++) {
+            double ax = ords[a << 1];
+            double ay = ords[(a << 1) | 1];
+            ret.addVertexInternal(ax, ay);
+            for (int i = offsets[a]; i < offsets[a + 1]; i++) {
+                int b = links[i];
+                if (a < b) {
+                    ret.addLinkInternal(ax, ay, ords[b << 1], ords[(b << 1) | 1]);
+                }
+            }
+        }
+        return ret;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof FrozenNetwork) {
+            FrozenNetwork other = (FrozenNetwork) obj;
+            return Arrays.equals(ords, other.ords)
+                    && Arrays.equals(offsets, other.offsets)
+                    && Arrays.equals(links, other.links);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 41 * hash + Arrays.hashCode(ords);
+        hash = 41 * hash + Arrays.hashCode(links);
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return toNetwork().toString();
+    }
+}
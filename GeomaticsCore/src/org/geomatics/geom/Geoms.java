@@ -0,0 +1,112 @@
+package org.geomatics.geom;
+
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import org.geomatics.util.RTree;
+import org.geomatics.util.SpatialNode;
+import org.geomatics.util.Tolerance;
+
+/**
+ * Operations on collections of geoms
+ *
+ * @author tofarrell
+ */
+public final class Geoms {
+
+    static final int NODE_CAPACITY = 8;
+    static final int MIN_PARALLEL_SIZE = 64;
+
+    private Geoms() {
+    }
+
+    /**
+     * Get the union of all the geoms given using a cascaded union. Geoms are bulk loaded into an
+     * RTree so that geoms near each other share a node, and nodes are unioned bottom up. Each union
+     * therefore only involves geoms from a small area, rather than folding every geom into a single
+     * growing result. Independent subtrees are unioned in parallel using the threads of the common
+     * ForkJoinPool.
+     *
+     * @param geoms
+     * @param linearizer
+     * @param accuracy
+     * @return union, or null if geoms was empty
+     * @throws NullPointerException if geoms, linearizer or accuracy was null, or geoms contained
+     * null
+     */
+    public static Geom unionAll(Collection<? extends Geom> geoms, Linearizer linearizer, Tolerance accuracy) throws NullPointerException {
+        if (linearizer == null) {
+            throw new NullPointerException("Linearizer must not be null!");
+        }
+        if (accuracy == null) {
+            throw new NullPointerException("Accuracy must not be null!");
+        }
+        Geom[] values = geoms.toArray(new Geom[geoms.size()]);
+        Rect[] bounds = new Rect[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bounds[i] = values[i].getBounds();
+        }
+        switch (values.length) {
+            case 0:
+                return null;
+            case 1:
+                return values[0];
+        }
+        RTree<Geom> tree = new RTree<>(bounds, values, NODE_CAPACITY);
+        return ForkJoinPool.commonPool().invoke(new UnionTask(tree.getRoot(), linearizer, accuracy));
+    }
+
+    /**
+     * Unions the geoms in a node, forking for large branches
+     */
+    static final class UnionTask extends RecursiveTask<Geom> {
+
+        private static final long serialVersionUID = 1L;
+
+        final SpatialNode<Geom> node;
+        final Linearizer linearizer;
+        final Tolerance accuracy;
+
+        UnionTask(SpatialNode<Geom> node, Linearizer linearizer, Tolerance accuracy) {
+            this.node = node;
+            this.linearizer = linearizer;
+            this.accuracy = accuracy;
+        }
+
+        @Override
+        protected Geom compute() {
+            if (node.isLeaf()) {
+                return unionItems(0, node.size());
+            }
+            if (node.size() < MIN_PARALLEL_SIZE) {
+                return union(unionNode(node.getA()), unionNode(node.getB()));
+            }
+            UnionTask a = new UnionTask(node.getA(), linearizer, accuracy);
+            a.fork();
+            Geom b = new UnionTask(node.getB(), linearizer, accuracy).compute();
+            return union(a.join(), b);
+        }
+
+        private Geom unionNode(SpatialNode<Geom> child) {
+            return new UnionTask(child, linearizer, accuracy).compute();
+        }
+
+        //Union the items in a leaf as a balanced tree
+        private Geom unionItems(int min, int max) {
+            if (max - min == 1) {
+                return node.getItemValue(min);
+            }
+            int mid = (min + max) >>> 1;
+            return union(unionItems(min, mid), unionItems(mid, max));
+        }
+
+        private Geom union(Geom a, Geom b) {
+            if (a == null) {
+                return b;
+            } else if (b == null) {
+                return a;
+            }
+            return a.union(b, linearizer, accuracy);
+        }
+    }
+}
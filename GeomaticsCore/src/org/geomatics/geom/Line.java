@@ -3,6 +3,7 @@ package org.geomatics.geom;
 import java.beans.Transient;
 import org.jayson.JaysonWriter;
 import org.geomatics.geom.io.LineHandler;
+import org.geomatics.util.SpatialNode.DistanceFunction;
 import org.geomatics.util.Tolerance;
 import org.geomatics.util.Transform;
 import org.geomatics.util.VectList;
@@ -16,6 +17,15 @@ import org.geomatics.util.VectList;
 public final class Line implements Geom, Comparable<Line> {
 
     public static final String CODE = "LN";
+    /**
+     * Distance function for nearest neighbour searches of indexes of lines
+     */
+    public static final DistanceFunction<Line> DISTANCE_FUNCTION = new DistanceFunction<Line>() {
+        @Override
+        public double distSq(Rect bounds, Line value, double minX, double minY, double maxX, double maxY) {
+            return distSegRectSq(value.ax, value.ay, value.bx, value.by, minX, minY, maxX, maxY);
+        }
+    };
 
     /**
      * ax
@@ -485,6 +495,45 @@ public final class Line implements Geom, Comparable<Line> {
         return lenSq;
     }
 
+    /**
+     * Get the square of the distance between a line segment and a rectangle (0 if they are not
+     * disjoint)
+     *
+     * @param ax
+     * @param ay
+     * @param bx
+     * @param by
+     * @param minX
+     * @param minY
+     * @param maxX
+     * @param maxY
+     * @return
+     */
+    public static double distSegRectSq(double ax, double ay, double bx, double by, double minX, double minY, double maxX, double maxY) {
+        if ((minX == maxX) && (minY == maxY)) {
+            return distSegVectSq(ax, ay, bx, by, minX, minY);
+        }
+        double ret = Math.min(Rect.distSq(ax, ay, ax, ay, minX, minY, maxX, maxY),
+                Rect.distSq(bx, by, bx, by, minX, minY, maxX, maxY));
+        if (ret == 0) {
+            return 0;
+        }
+        double s1 = sign(ax, ay, bx, by, minX, minY);
+        double s2 = sign(ax, ay, bx, by, minX, maxY);
+        double s3 = sign(ax, ay, bx, by, maxX, minY);
+        double s4 = sign(ax, ay, bx, by, maxX, maxY);
+        boolean crossesLine = !(((s1 > 0) && (s2 > 0) && (s3 > 0) && (s4 > 0))
+                || ((s1 < 0) && (s2 < 0) && (s3 < 0) && (s4 < 0)));
+        if (crossesLine && (Rect.distSq(Math.min(ax, bx), Math.min(ay, by), Math.max(ax, bx), Math.max(ay, by), minX, minY, maxX, maxY) == 0)) {
+            return 0; // segment passes through rect
+        }
+        ret = Math.min(ret, distSegVectSq(ax, ay, bx, by, minX, minY));
+        ret = Math.min(ret, distSegVectSq(ax, ay, bx, by, minX, maxY));
+        ret = Math.min(ret, distSegVectSq(ax, ay, bx, by, maxX, minY));
+        ret = Math.min(ret, distSegVectSq(ax, ay, bx, by, maxX, maxY));
+        return ret;
+    }
+
     /**
      * Determine if this line is parallell to that given, with differences in slope within the
      * tolerance
@@ -239,12 +239,11 @@ public final class LineSet implements Geom {
         } else if (amt == 0) {
             return this;
         }
-        Geom ret = null;
+        BufferBuilder builder = new BufferBuilder(amt, linearizer, accuracy);
         for (LineString lineString : lineStrings) {
-            Geom buffer = lineString.buffer(amt, linearizer, accuracy);
-            ret = (ret == null) ? buffer : ret.union(buffer, linearizer, accuracy);
+            builder.addLineString(lineString);
         }
-        return ret;
+        return builder.build();
     }
 
     @Override
@@ -27,6 +27,7 @@ public final class LineString implements Geom {
 
     public static final String CODE = "LS";
     public static final LineString[] EMPTY = new LineString[0];
+    static final int INDEX_THRESHOLD = 32;
     final VectList vects;
     SpatialNode<Line> lineIndex;
 
@@ -255,20 +256,7 @@ public final class LineString implements Geom {
     }
 
     static double getLength(VectList vects) {
-        double ret = 0;
-        if (!vects.isEmpty()) {
-            int i = vects.size() - 1;
-            double bx = vects.getX(i);
-            double by = vects.getY(i);
-            while (--i >= 0) {
-                double ax = vects.getX(i);
-                double ay = vects.getY(i);
-                ret += Math.sqrt(Vect.distSq(ax, ay, bx, by));
-                bx = ax;
-                by = ay;
-            }
-        }
-        return ret;
+        return vects.getPathLength();
     }
 
     @Override
@@ -367,8 +355,7 @@ public final class LineString implements Geom {
         } else if (amt == 0) {
             return this;
         }
-        VectList buffer = bufferInternal(vects, amt, linearizer, accuracy);
-        return Ring.buildGeomFromRing(buffer, accuracy);
+        return new BufferBuilder(amt, linearizer, accuracy).addLineString(this).build();
     }
 
     //The buffer produced by this may be self overlapping, and will need to be cleaned in a network before use
@@ -478,8 +465,15 @@ public final class LineString implements Geom {
     }
 
     int relateInternal(double x, double y, Tolerance accuracy) {
-        RelateProcessor processor = new RelateProcessor(x, y, accuracy);
-        return Relation.A_OUTSIDE_B | (getLineIndex().forInteracting(Rect.valueOf(x, y, x, y), accuracy, processor)
+        if ((lineIndex == null) && (vects.size() < INDEX_THRESHOLD)) { // a scan is cheaper than building an index
+            return (vects.distSegVectSq(x, y) <= accuracy.toleranceSq) ? (Relation.A_OUTSIDE_B | Relation.TOUCH) : Relation.DISJOINT;
+        }
+        SpatialNode<Line> lineIndex = getLineIndex();
+        if (lineIndex.relate(x, y, accuracy) == Relation.DISJOINT) {
+            return Relation.DISJOINT;
+        }
+        RelateProcessor processor = RelateProcessor.get(x, y, accuracy);
+        return Relation.A_OUTSIDE_B | (lineIndex.forInteracting(x, y, x, y, accuracy, processor)
                 ? Relation.B_OUTSIDE_A : Relation.TOUCH);
     }
 
@@ -504,6 +498,12 @@ public final class LineString implements Geom {
 
     @Override
     public Geom intersection(Geom other, Linearizer linearizer, Tolerance accuracy) throws NullPointerException {
+        if (other instanceof Rect) { // clip without building a network where possible
+            LineString[] ret = RectClipper.clip(this, (Rect) other, accuracy);
+            if (ret != null) {
+                return (ret.length == 0) ? null : new LineSet(ret).simplify();
+            }
+        }
         return toLineSet().intersection(other, linearizer, accuracy);
     }
 
@@ -638,9 +638,15 @@ public final class LineString implements Geom {
 
     static class RelateProcessor implements NodeProcessor<Line> {
 
-        final double x;
-        final double y;
-        final double toleranceSq;
+        private static final ThreadLocal<RelateProcessor> INSTANCE = new ThreadLocal<RelateProcessor>() {
+            @Override
+            protected RelateProcessor initialValue() {
+                return new RelateProcessor(0, 0, Tolerance.ZERO);
+            }
+        };
+        double x;
+        double y;
+        double toleranceSq;
 
         public RelateProcessor(double x, double y, Tolerance tolerance) {
             this.x = x;
@@ -648,6 +654,15 @@ public final class LineString implements Geom {
             toleranceSq = tolerance.toleranceSq;
         }
 
+        //Get a processor for the current thread. It is reused by later calls, so must not be retained
+        static RelateProcessor get(double x, double y, Tolerance tolerance) {
+            RelateProcessor ret = INSTANCE.get();
+            ret.x = x;
+            ret.y = y;
+            ret.toleranceSq = tolerance.toleranceSq;
+            return ret;
+        }
+
         @Override
         public boolean process(Rect bounds, Line value) {
             double distSq = Line.distSegVectSq(value.ax, value.ay, value.bx, value.by, x, y);
@@ -207,7 +207,7 @@ public class Linearizer {
     
     private void linearizeByNumSegments(double ox, double oy, double ax, double ay, double angleSize, VectList result) throws NullPointerException {
         
-        int numSegments = (int)Math.round(Math.abs(segmentsPerQuadrant * angleSize * 2 / Math.PI));
+        int numSegments = Math.max(1, (int)Math.round(Math.abs(segmentsPerQuadrant * angleSize * 2 / Math.PI))); // very small arcs still need an end point
         double segmentSize = angleSize / numSegments;
         Transform transform = new TransformBuilder().rotateRadiansAround(segmentSize, ox, oy).build();
         VectBuilder vect = new VectBuilder();
@@ -7,10 +7,14 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
-import org.geomatics.util.RTree;
+import java.util.Map;
+import java.util.Map.Entry;
+import org.geomatics.util.ConcurrentRTree;
 import org.geomatics.util.SpatialNode;
 import org.geomatics.util.SpatialNode.NodeProcessor;
+import org.geomatics.util.SpatialNode.PairProcessor;
 import org.geomatics.util.Tolerance;
 import org.geomatics.util.VectList;
 import org.geomatics.util.VectMap;
@@ -23,9 +27,13 @@ import org.geomatics.util.VectSet;
  */
 public final class Network implements Serializable, Cloneable {
 
+    static final int MIN_LINK_INDEX_EDITS = 256;
+
     final VectMap<VectList> map;
     int numLinks;
-    SpatialNode<Line> cachedLinks;
+    transient ConcurrentRTree<Line> linkIndex; // maintained incrementally once built, null if not built
+    transient int linkIndexEdits; // edits applied to the link index since it was last queried
+    Noder noder = Noder.SPATIAL_JOIN;
 
     public Network() {
         map = new VectMap<>();
@@ -224,9 +232,9 @@ public final class Network implements Serializable, Cloneable {
             VectList backLinks = map.get(bx, by);
             int index = backLinks.indexOf(x, y, 0);
             backLinks.remove(index);
+            updateLinkIndex(x, y, bx, by, false);
         }
         numLinks -= links.size();
-        cachedLinks = null;
         return true;
     }
 
@@ -277,10 +285,38 @@ public final class Network implements Serializable, Cloneable {
             insertLink(bx, by, ax, ay, links);
         }
         numLinks++;
-        cachedLinks = null;
+        updateLinkIndex(ax, ay, bx, by, true);
         return true;
     }
 
+    //Add or remove a link from the link index if it has been built. If there have been more edits
+    //than a rebuild would cost since the index was last queried, it is discarded instead.
+    private void updateLinkIndex(double ax, double ay, double bx, double by, boolean add) {
+        ConcurrentRTree<Line> index = linkIndex;
+        if (index == null) {
+            return;
+        }
+        if (++linkIndexEdits > Math.max(MIN_LINK_INDEX_EDITS, numLinks >> 2)) {
+            linkIndex = null;
+            return;
+        }
+        if (Vect.compare(ax, ay, bx, by) > 0) {
+            double tx = ax;
+            double ty = ay;
+            ax = bx;
+            ay = by;
+            bx = tx;
+            by = ty;
+        }
+        Rect bounds = Rect.valueOf(ax, ay, bx, by);
+        Line link = Line.valueOf(ax, ay, bx, by);
+        if (add) {
+            index.add(bounds, link);
+        } else {
+            index.remove(bounds, link);
+        }
+    }
+
     private static void insertLink(double ox, double oy, double tx, double ty, VectList links) {
         int min = 0;
         int max = links.size();
@@ -346,7 +382,7 @@ public final class Network implements Serializable, Cloneable {
         index = links.indexOf(ax, ay, 0);
         links.remove(index);
         numLinks--;
-        cachedLinks = null;
+        updateLinkIndex(ax, ay, bx, by, false);
         return true;
     }
 
@@ -416,7 +452,7 @@ public final class Network implements Serializable, Cloneable {
     public Network clear() {
         map.clear();
         numLinks = 0;
-        cachedLinks = null;
+        linkIndex = null;
         return this;
     }
 
@@ -452,8 +488,8 @@ public final class Network implements Serializable, Cloneable {
     }
 
     public SpatialNode<Line> getLinks() {
-        SpatialNode<Line> ret = cachedLinks;
-        if (ret == null) {
+        ConcurrentRTree<Line> index = linkIndex;
+        if (index == null) {
             final Rect[] bounds = new Rect[numLinks];
             final Line[] links = new Line[numLinks];
             map.forEach(new VectMapProcessor<VectList>() {
@@ -475,11 +511,11 @@ public final class Network implements Serializable, Cloneable {
                 }
 
             });
-            RTree tree = new RTree<Line>(bounds, links);
-            ret = tree.getRoot();
-            cachedLinks = ret;
+            index = new ConcurrentRTree<>(bounds, links);
+            linkIndex = index;
         }
-        return ret;
+        linkIndexEdits = 0;
+        return index.getSnapshot();
     }
 
     public boolean forEachLink(final LinkProcessor processor) throws NullPointerException {
@@ -545,6 +581,15 @@ public final class Network implements Serializable, Cloneable {
 
     //Make all points of self intersection explicit
     public Network explicitIntersections(Tolerance tolerance) {
+        if (noder == Noder.TILED) {
+            applyIntersections(TiledNoder.findIntersections(getLinkArray(), tolerance));
+            return this;
+        } else if (noder == Noder.SWEEP_LINE) { // no need to build an index
+            IntersectionFinder finder = new IntersectionFinder(tolerance);
+            SweepLineNoder.join(getLinkArray(), finder);
+            applyIntersections(finder.intersections);
+            return this;
+        }
         return explicitIntersectionsWith(this, tolerance);
     }
 
@@ -553,38 +598,97 @@ public final class Network implements Serializable, Cloneable {
     }
 
     public Network explicitIntersectionsWith(final SpatialNode<Line> otherLinks, final Tolerance tolerance) {
-        SpatialNode<Line> links = getLinks();
         final IntersectionFinder finder = new IntersectionFinder(tolerance);
-        links.forEach(new NodeProcessor<Line>() {
+        if (noder != Noder.SPATIAL_JOIN) {
+            SweepLineNoder.join(getLinkArray(), toArray(otherLinks), finder);
+        } else {
+            getLinks().join(otherLinks, tolerance, finder);
+        }
+        applyIntersections(finder.intersections);
+        return this;
+    }
+
+    /**
+     * Get the strategy used to find intersections between links
+     *
+     * @return
+     */
+    public Noder getNoder() {
+        return noder;
+    }
+
+    /**
+     * Set the strategy used to find intersections between links
+     *
+     * @param noder
+     * @return this
+     * @throws NullPointerException if noder was null
+     */
+    public Network setNoder(Noder noder) throws NullPointerException {
+        if (noder == null) {
+            throw new NullPointerException("noder must not be null");
+        }
+        this.noder = noder;
+        return this;
+    }
+
+    //Get links as an array, using the cached index if available
+    Line[] getLinkArray() {
+        if (linkIndex != null) {
+            return toArray(linkIndex.getSnapshot());
+        }
+        final Line[] links = new Line[numLinks];
+        forEachLink(new LinkProcessor() {
+
+            int index = 0;
+
             @Override
-            public boolean process(Rect bounds, Line value) {
-                finder.reset(value);
-                otherLinks.forInteracting(bounds, tolerance, finder);
-                VectList intersections = finder.intersections;
-                if (intersections.size() > 0) {
-                    double ax = value.ax;
-                    double ay = value.ay;
-                    double cx = value.bx;
-                    double cy = value.by;
-                    removeLinkInternal(ax, ay, cx, cy);
-
-                    //intersections.sort(); // since a < b, sorting always puts in correct order - ORDER IS NOT ALWAYS CORRECT DUE TO ROUNDING ERRORS!!!
-                    intersections.sortByDist(ax, ay);
-
-                    for (int i = intersections.size(); i-- > 0;) {
-                        double bx = intersections.getX(i);
-                        double by = intersections.getY(i);
-                        addLinkInternal(bx, by, cx, cy);
-                        cx = bx;
-                        cy = by;
-                    }
-                    addLinkInternal(ax, ay, cx, cy);
-                }
+            public boolean process(double ax, double ay, double bx, double by) {
+                links[index++] = Line.valueOf(ax, ay, bx, by);
                 return true;
             }
+        });
+        return links;
+    }
+
+    static Line[] toArray(SpatialNode<Line> node) {
+        final Line[] ret = new Line[node.size()];
+        node.forEach(new NodeProcessor<Line>() {
 
+            int index = 0;
+
+            @Override
+            public boolean process(Rect bounds, Line value) {
+                ret[index++] = value;
+                return true;
+            }
         });
-        return this;
+        return ret;
+    }
+
+    //Split each link given at the intersections given
+    void applyIntersections(Map<Line, VectList> intersectionsByLink) {
+        for (Entry<Line, VectList> entry : intersectionsByLink.entrySet()) {
+            Line link = entry.getKey();
+            VectList intersections = entry.getValue();
+            double ax = link.ax;
+            double ay = link.ay;
+            double cx = link.bx;
+            double cy = link.by;
+            removeLinkInternal(ax, ay, cx, cy);
+
+            //intersections.sort(); // since a < b, sorting always puts in correct order - ORDER IS NOT ALWAYS CORRECT DUE TO ROUNDING ERRORS!!!
+            intersections.sortByDist(ax, ay);
+
+            for (int i = intersections.size(); i-- > 0;) {
+                double bx = intersections.getX(i);
+                double by = intersections.getY(i);
+                addLinkInternal(bx, by, cx, cy);
+                cx = bx;
+                cy = by;
+            }
+            addLinkInternal(ax, ay, cx, cy);
+        }
     }
     
     public Network removeColinearPoints(final Tolerance tolerance){
@@ -621,22 +725,42 @@ public final class Network implements Serializable, Cloneable {
     
 
     public Network snap(final Tolerance tolerance) {
+        return snapInternal(tolerance, false);
+    }
+
+    /**
+     * Snap this network, calculating candidate snaps in parallel using the threads of the common
+     * ForkJoinPool. The result is the same as for snap.
+     *
+     * @param tolerance
+     * @return this
+     * @throws NullPointerException if tolerance was null
+     */
+    public Network parallelSnap(Tolerance tolerance) throws NullPointerException {
+        return snapInternal(tolerance, true);
+    }
+
+    Network snapInternal(final Tolerance tolerance, boolean parallel) {
         final ArrayList<Snap> snapList = new ArrayList<>();
         Snap[] snaps = new Snap[10];
         while(true){
             snapList.clear();
-            map.forEach(new VectMapProcessor<VectList>(){
+            if(parallel){
+                TiledNoder.calculateSnaps(this, tolerance, snapList);
+            }else{
+                map.forEach(new VectMapProcessor<VectList>(){
 
-                final VectBuilder workingVect = new VectBuilder();
-                final SpatialNode<Line> links = getLinks();
+                    final SnapProcessor snapProcessor = new SnapProcessor(tolerance, snapList);
+                    final SpatialNode<Line> links = getLinks();
 
-                @Override
-                public boolean process(double x, double y, VectList links) {
-                    calculateSnapsForPoint(x, y, cachedLinks, tolerance, workingVect, snapList);
-                    return true;
-                }
-            });
-            calculateSnapsForPoints(tolerance, snapList);
+                    @Override
+                    public boolean process(double x, double y, VectList links) {
+                        snapProcessor.calculateSnapsForPoint(x, y, this.links);
+                        return true;
+                    }
+                });
+                calculateSnapsForPoints(tolerance, snapList);
+            }
             if(snapList.isEmpty()){
                 return this;
             }
@@ -647,16 +771,37 @@ public final class Network implements Serializable, Cloneable {
             }
         }
     }
-        
+
+    /**
+     * Snap round this network to a grid with a cell size of the tolerance given. Unlike snap, this
+     * moves every vertex to the centre of its grid cell, and adds a vertex wherever a link passes
+     * through a cell containing a vertex. The result is calculated in a single pass, and does not
+     * depend on the order in which vertices or links are processed.
+     *
+     * @param tolerance grid cell size
+     * @return this
+     * @throws NullPointerException if tolerance was null
+     */
+    public Network snapRound(Tolerance tolerance) throws NullPointerException {
+        if (tolerance.tolerance > 0) {
+            SnapRounder.snapRound(this, tolerance.tolerance);
+        }
+        return this;
+    }
+
     void calculateSnapsForPoints(Tolerance tolerance, Collection<Snap> results){
         int size = map.size();
-        int a = size - 1;
-        if (a <= 0) {
+        if (size <= 1) {
             return;
         }
-        VectList vects = getVects(new VectList());
+        calculateSnapsForPoints(getVects(new VectList()), 0, size - 1, tolerance, results);
+    }
+
+    //Calculate snaps between sorted vectors, for vectors in the range [min, max) in descending order
+    static void calculateSnapsForPoints(VectList vects, int min, int max, Tolerance tolerance, Collection<Snap> results){
+        int size = vects.size();
         final double tolSq = tolerance.toleranceSq;
-        while (a-- > 0) {
+        for (int a = max; a-- > min;) {
             double ax = vects.getX(a);
             double ay = vects.getY(a);
             int b = a;
@@ -674,31 +819,6 @@ public final class Network implements Serializable, Cloneable {
         }
     }
     
-    void calculateSnapsForPoint(double x, double y, SpatialNode<Line> node, Tolerance accuracy, VectBuilder workingVect, Collection<Snap> result){
-        if(Relation.isDisjoint(node.relate(x, y, accuracy))){
-            return;
-        }
-        if(node.isBranch()){
-            calculateSnapsForPoint(x, y, node.getA(), accuracy, workingVect, result);
-            calculateSnapsForPoint(x, y, node.getB(), accuracy, workingVect, result);
-            return;
-        }
-        double tolSq = accuracy.toleranceSq;
-        for(int i = node.size(); i-- > 0;){
-            Line line = node.getItemValue(i);
-            if((line.ax == x) && (line.ay == y)){
-                continue; // if line.a == point, skip
-            }else if((line.bx == x) && (line.by == y)){
-                continue; // if line.b == point, skip
-            }
-            double distSq = Line.distSegVectSq(line.ax, line.ay, line.bx, line.by, x, y);
-            if(distSq <= tolSq){
-                result.add(new Snap(x, y, line.ax, line.ay, line.bx, line.by, distSq));
-            }
-        }
-    }
-    
-
     public VectList extractPoints(final VectList target) throws NullPointerException {
         map.forEach(new VectMapProcessor<VectList>() {
             @Override
@@ -713,95 +833,7 @@ public final class Network implements Serializable, Cloneable {
     }
 
     public Collection<VectList> extractLines(Collection<VectList> results, boolean includePoints) {
-        VectList vects = getVects(new VectList());
-        VectList result = new VectList();
-        int numLinksProcessed = 0;
-        for (int i = 0; i < vects.size(); i++) {
-            double ax = vects.getX(i);
-            double ay = vects.getY(i);
-            VectList links = map.get(ax, ay);
-            switch (links.size()) {
-                case 0:
-                    if (includePoints) {
-                        results.add(new VectList().add(ax, ay));
-                    }
-                    break;
-                case 2:
-                    //this misses rings! Need to get these on second pass
-                    break;
-                default:
-                    for (int j = 0; j < links.size(); j++) {
-                        double bx = links.getX(j);
-                        double by = links.getY(j);
-                        result.clear();
-                        followLine(ax, ay, bx, by, result);
-                        if (result.isOrdered()) {
-                            results.add(result.clone());
-                            numLinksProcessed += (result.size() - 1);
-                        }
-                    }
-            }
-        }
-        if (numLinksProcessed == numLinks) { // if there were no rings, then we are done
-            return results;
-        }
-
-        //Process rings in second pass
-        VectBuilder a = new VectBuilder();
-        VectBuilder b = new VectBuilder();
-        VectBuilder c = new VectBuilder();
-        VectBuilder d = new VectBuilder();
-        for (int i = 0; i < vects.size(); i++) {
-            vects.getVect(i, a);
-            VectList links = map.get(vects.getX(i), vects.getY(i));
-            if (links.size() == 2) { // If there are 2 links, then this could be part of an unconnected ring
-
-                links.getVect(0, b);
-                links.getVect(1, c);
-
-                //if both linked vertices are greater than the current one, then this may be the start point
-                //of an unconnected linear ring. All points on the ring will be greater than a
-                if ((a.compareTo(b) > 0) || (a.compareTo(c) > 0)) {
-                    continue; // point was less than a - continue
-                }
-
-                //to begin, we pick the direction with the lower dydx
-                if (Vect.dydxTo(a.getX(), a.getY(), b.getX(), b.getY()) < Vect.dydxTo(a.getX(), a.getY(), c.getX(), c.getY())) {
-                    c.set(b);
-                }
-
-                b.set(a);
-
-                //follow line, copying into result. If we come across a point which is less than
-                // a or has more than 2 links, discontinue.
-                result.clear().add(b);
-                while (true) {
-                    result.add(c);
-                    links = map.get(c);
-                    if (links.size() != 2) {
-                        break; // this is not a ring!
-                    }
-                    links.getVect(0, d);
-                    if (d.equals(b)) {
-                        links.getVect(1, d);
-                    }
-                    int cmp = d.compareTo(a);
-                    if (cmp < 0) {
-                        break; // found a point before origin of ring.
-                    } else if (cmp == 0) { // cycled back to origin - we have a ring!
-                        result.add(a);
-                        results.add(result.clone());
-                        break;
-                    }
-                    VectBuilder t = b;
-                    b = c;
-                    c = d;
-                    d = t;
-                }
-            }
-        }
-
-        return results;
+        return freeze().extractLines(results, includePoints);
     }
 
     public void extractHangLines(final Collection<VectList> results) {
@@ -1002,6 +1034,16 @@ public final class Network implements Serializable, Cloneable {
         return ret;
     }
 
+    /**
+     * Get an immutable snapshot of this network. Vertices in the snapshot are identified by integer
+     * ids, and links are stored in compressed sparse row form in the same order as in this network.
+     *
+     * @return
+     */
+    public FrozenNetwork freeze() {
+        return new FrozenNetwork(this);
+    }
+
     @Override
     public Network clone() {
         final Network network = new Network();
@@ -1013,7 +1055,8 @@ public final class Network implements Serializable, Cloneable {
             }
         });
         network.numLinks = numLinks;
-        network.cachedLinks = cachedLinks;
+        network.linkIndex = (linkIndex == null) ? null : linkIndex.clone();
+        network.noder = noder;
         return network;
     }
 
@@ -1185,6 +1228,7 @@ public final class Network implements Serializable, Cloneable {
             }
 
         });
+        points.sort(); // independent of hash order
         StringBuilder str = new StringBuilder();
         if (points.size() == 0) {
             str.append("MULTILINESTRING(");
@@ -1238,36 +1282,60 @@ public final class Network implements Serializable, Cloneable {
         return str.toString();
     }
 
-    class IntersectionFinder implements NodeProcessor<Line> {
+    static class IntersectionFinder implements PairProcessor<Line, Line> {
 
         final Tolerance tolerance;
-        Line i;
-        final VectList intersections;
+        final Map<Line, VectList> intersections;
         final VectBuilder workingVect;
 
         IntersectionFinder(Tolerance tolerance) {
             this.tolerance = tolerance;
-            this.intersections = new VectList();
+            this.intersections = new LinkedHashMap<>();
             this.workingVect = new VectBuilder();
         }
 
-        void reset(Line i) {
-            this.i = i;
-            this.intersections.clear();
+        @Override
+        public boolean process(Rect iBounds, Line i, Rect jBounds, Line j) {
+            process(i, j);
+            return true;
         }
 
-        @Override
-        public boolean process(Rect bounds, Line j) {
+        //Record any intersection of j with i which is not an end point of i
+        void process(Line i, Line j) {
             if ((!i.equals(j)) && i.intersectionSeg(j, tolerance, workingVect)) {
                 if ((Vect.compare(i.ax, i.ay, workingVect.getX(), workingVect.getY()) != 0)
                         && (Vect.compare(i.bx, i.by, workingVect.getX(), workingVect.getY()) != 0)) {
-                    intersections.add(workingVect);
+                    VectList vects = intersections.get(i);
+                    if (vects == null) {
+                        vects = new VectList();
+                        intersections.put(i, vects);
+                    }
+                    vects.add(workingVect);
                 }
             }
-            return true;
         }
     }
 
+    /**
+     * Strategy used to find intersections between links
+     */
+    public enum Noder {
+        /**
+         * Join indexes of links (Default)
+         */
+        SPATIAL_JOIN,
+        /**
+         * Sort links by x, and compare each with the links overlapping it on a sweep line. No
+         * index is required, which is typically faster for noding a network only once.
+         */
+        SWEEP_LINE,
+        /**
+         * Partition links into spatial tiles, and sweep each tile in parallel using the threads of
+         * the common ForkJoinPool. Intersections with another network use a single sweep line.
+         */
+        TILED
+    }
+
     public interface VertexProcessor {
 
         public boolean process(double x, double y, int numLinks);
@@ -1278,6 +1346,40 @@ public final class Network implements Serializable, Cloneable {
         public boolean process(double ax, double ay, double bx, double by);
     }
 
+    //Reusable processor finding lines within tolerance of a point, other than those ending at it
+    static class SnapProcessor implements NodeProcessor<Line> {
+
+        final Tolerance accuracy;
+        final Collection<Snap> result;
+        double x;
+        double y;
+
+        SnapProcessor(Tolerance accuracy, Collection<Snap> result) {
+            this.accuracy = accuracy;
+            this.result = result;
+        }
+
+        void calculateSnapsForPoint(double x, double y, SpatialNode<Line> node) {
+            this.x = x;
+            this.y = y;
+            node.forInteracting(x, y, x, y, accuracy, this);
+        }
+
+        @Override
+        public boolean process(Rect bounds, Line line) {
+            if ((line.ax == x) && (line.ay == y)) {
+                return true; // if line.a == point, skip
+            } else if ((line.bx == x) && (line.by == y)) {
+                return true; // if line.b == point, skip
+            }
+            double distSq = Line.distSegVectSq(line.ax, line.ay, line.bx, line.by, x, y);
+            if (distSq <= accuracy.toleranceSq) {
+                result.add(new Snap(x, y, line.ax, line.ay, line.bx, line.by, distSq));
+            }
+            return true;
+        }
+    }
+
     static class Snap implements Comparable<Snap> {
 
         final double ax;
@@ -0,0 +1,372 @@
+package org.geomatics.geom;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.geomatics.util.SpatialNode;
+import org.geomatics.util.SpatialNode.NodeProcessor;
+import org.geomatics.util.Tolerance;
+import org.geomatics.util.VectList;
+
+/**
+ * Faces of a noded network, as cycles of half links. Half links are indexed as in the links array
+ * of the frozen network, and the face of each half link is on its left. Each connected component
+ * has exactly one face with a non positive area, which is the face outside it.
+ * <p>
+ * The curves used to build the network may be traced through it, so that values can be assigned
+ * to half links, and then to faces by walking across links outward from the outside of each
+ * component.
+ *
+ * @author tofarrell
+ */
+final class NetworkFaces {
+
+    final FrozenNetwork network;
+    final SpatialNode<Line> links;
+    final int[] origins;
+    final int[] twins;
+    final int[] nexts;
+    final int[] faces;
+    final int[] faceStarts;
+    final int numFaces;
+    private final double margin;
+
+    /**
+     * Create faces for the network given, which must already be noded
+     *
+     * @param network
+     * @param accuracy tolerance used when noding the network
+     * @throws NullPointerException if network or accuracy was null
+     */
+    NetworkFaces(Network network, Tolerance accuracy) throws NullPointerException {
+        this.network = network.freeze();
+        this.links = network.getLinks();
+        int[] _links = this.network.links;
+        int[] offsets = this.network.offsets;
+        int numHalfLinks = _links.length;
+        origins = new int[numHalfLinks];
+        for (int a = 0; a < this.network.numVects(); a++) {
+            Arrays.fill(origins, offsets[a], offsets[a + 1], a);
+        }
+        twins = new int[numHalfLinks];
+        nexts = new int[numHalfLinks];
+        for (int i = 0; i < numHalfLinks; i++) {
+            int b = _links[i];
+            int twin = this.network.linkIndex(b, origins[i]);
+            twins[i] = twin;
+            nexts[i] = (twin == offsets[b]) ? (offsets[b + 1] - 1) : (twin - 1); // next clockwise around b
+        }
+
+        //Assign half links to faces
+        faces = new int[numHalfLinks];
+        Arrays.fill(faces, -1);
+        int[] _faceStarts = new int[16];
+        int _numFaces = 0;
+        for (int i = 0; i < numHalfLinks; i++) {
+            if (faces[i] >= 0) {
+                continue;
+            }
+            if (_numFaces == _faceStarts.length) {
+                _faceStarts = Arrays.copyOf(_faceStarts, _numFaces << 1);
+            }
+            _faceStarts[_numFaces] = i;
+            int j = i;
+            do {
+                faces[j] = _numFaces;
+                j = nexts[j];
+            } while (j != i);
+            _numFaces++;
+        }
+        faceStarts = _faceStarts;
+        numFaces = _numFaces;
+
+        if (numHalfLinks == 0) {
+            margin = accuracy.tolerance * 2;
+        } else {
+            Rect bounds = links.getBounds();
+            double scale = Math.max(Math.max(Math.abs(bounds.minX), Math.abs(bounds.maxX)),
+                    Math.max(Math.abs(bounds.minY), Math.abs(bounds.maxY)));
+            margin = Math.max(accuracy.tolerance * 2, Math.ulp(scale) * 64); // allow for snapping and rounding
+        }
+    }
+
+    /**
+     * Trace a curve used to build the network through it. Each line of the curve is traced from the
+     * vertex nearest its start to the vertex nearest its end, so a closed curve always maps to a
+     * closed walk however vertices were snapped.
+     *
+     * @param curve
+     * @param processor notified of each half link along the curve
+     * @throws NullPointerException if curve or processor was null
+     */
+    void trace(VectList curve, HalfLinkProcessor processor) throws NullPointerException {
+        double marginSq = margin * margin;
+        int a = nearestVertex(curve.getX(0), curve.getY(0));
+        for (int i = 1; i < curve.size(); i++) {
+            int b = nearestVertex(curve.getX(i), curve.getY(i));
+            if (a != b) {
+                trace(a, b, marginSq, processor);
+            }
+            a = b;
+        }
+    }
+
+    private int nearestVertex(final double x, final double y) {
+        int ret = network.indexOf(x, y);
+        if (ret >= 0) {
+            return ret; // vertex was not moved by snapping
+        }
+        final double[] nearest = new double[]{Double.POSITIVE_INFINITY, 0, 0};
+        double range = margin;
+        while (Double.isInfinite(nearest[0])) {
+            links.forInteracting(x - range, y - range, x + range, y + range, Tolerance.ZERO, new NodeProcessor<Line>() {
+                @Override
+                public boolean process(Rect bounds, Line line) {
+                    check(line.ax, line.ay);
+                    check(line.bx, line.by);
+                    return true;
+                }
+
+                void check(double vx, double vy) {
+                    double distSq = Vect.distSq(x, y, vx, vy);
+                    if (distSq < nearest[0]) {
+                        nearest[0] = distSq;
+                        nearest[1] = vx;
+                        nearest[2] = vy;
+                    }
+                }
+            });
+            range *= 2;
+        }
+        return network.indexOf(nearest[1], nearest[2]);
+    }
+
+    //Trace a path from a to b, following the links lying along the line between them
+    private void trace(int a, int b, double marginSq, HalfLinkProcessor processor) {
+        int[] _links = network.links;
+        int[] offsets = network.offsets;
+        double ax = network.getX(a);
+        double ay = network.getY(a);
+        double bx = network.getX(b);
+        double by = network.getY(b);
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lenSq = dx * dx + dy * dy;
+        int c = a;
+        double t = 0;
+        while (c != b) {
+            int next = -1;
+            double nextDistSq = Double.POSITIVE_INFINITY;
+            double nextT = t;
+            for (int i = offsets[c]; i < offsets[c + 1]; i++) {
+                int v = _links[i];
+                if (v == b) {
+                    next = i;
+                    break;
+                }
+                double vx = network.getX(v);
+                double vy = network.getY(v);
+                double vt = ((vx - ax) * dx + (vy - ay) * dy) / lenSq;
+                double distSq = Line.distSegVectSq(ax, ay, bx, by, vx, vy);
+                if ((vt > t) && (distSq <= marginSq) && (distSq < nextDistSq)) {
+                    next = i;
+                    nextDistSq = distSq;
+                    nextT = vt;
+                }
+            }
+            if (next < 0) {
+                search(c, b, processor); // no link makes progress along the line
+                return;
+            }
+            processor.process(next);
+            c = _links[next];
+            t = nextT;
+        }
+    }
+
+    //Breadth first search for a path from a to b
+    private void search(int a, int b, HalfLinkProcessor processor) {
+        int[] _links = network.links;
+        int[] offsets = network.offsets;
+        Map<Integer, Integer> via = new HashMap<>(); // vertex => half link by which it was reached
+        via.put(a, -1);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(a);
+        while (!queue.isEmpty()) {
+            int c = queue.poll();
+            for (int i = offsets[c]; i < offsets[c + 1]; i++) {
+                int v = _links[i];
+                if (!via.containsKey(v)) {
+                    via.put(v, i);
+                    if (v == b) {
+                        while (v != a) {
+                            int link = via.get(v);
+                            processor.process(link);
+                            v = origins[link];
+                        }
+                        return;
+                    }
+                    queue.add(v);
+                }
+            }
+        }
+    }
+
+    /**
+     * Assign a value to each face. Faces are processed component by component from left to right,
+     * starting with the face outside each component, so that the face containing each component is
+     * known before the component is processed.
+     *
+     * @param outside value for the face outside all components
+     * @param crossing finds the value of a face from that of its neighbour
+     * @return values indexed by face
+     * @throws NullPointerException if crossing was null
+     */
+    int[] label(int outside, Crossing crossing) throws NullPointerException {
+        int[] values = new int[numFaces];
+        int[] components = network.components();
+        int[] outerFaces = new int[network.numVects()];
+        for (int f = 0; f < numFaces; f++) {
+            if (getArea(f) <= 0) {
+                outerFaces[components[origins[faceStarts[f]]]] = f;
+            }
+        }
+        boolean[] known = new boolean[numFaces];
+        int[] stack = new int[16];
+        for (int a = 0; a < components.length; a++) {
+            if (components[a] != a) {
+                continue;
+            }
+            int outer = outerFaces[a];
+            values[outer] = containingValue(a, values, outside);
+            known[outer] = true;
+            stack[0] = outer;
+            int stackSize = 1;
+            while (stackSize > 0) {
+                int face = stack[--stackSize];
+                int start = faceStarts[face];
+                int i = start;
+                do {
+                    int other = faces[twins[i]];
+                    if (!known[other]) {
+                        values[other] = crossing.cross(i, values[face]);
+                        known[other] = true;
+                        if (stackSize == stack.length) {
+                            stack = Arrays.copyOf(stack, stackSize << 1);
+                        }
+                        stack[stackSize++] = other;
+                    }
+                    i = nexts[i];
+                } while (i != start);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Get twice the signed area of the face given - positive for bounded faces
+     *
+     * @param face
+     * @return area * 2
+     */
+    double getArea(int face) {
+        double ret = 0;
+        int start = faceStarts[face];
+        int i = start;
+        do {
+            int a = origins[i];
+            int b = network.links[i];
+            ret += network.getX(a) * network.getY(b) - network.getX(b) * network.getY(a);
+            i = nexts[i];
+        } while (i != start);
+        return ret;
+    }
+
+    //Get the value of the face containing the vertex given, which must be the left most vertex of
+    //its component. The nearest link crossing a ray cast left from the vertex belongs to a
+    //component which has already been processed. The ray is checked in widening windows, as a
+    //crossing inside the current window must be the nearest one.
+    private int containingValue(int vertex, int[] values, int outside) {
+        final double x = network.getX(vertex);
+        final double y = network.getY(vertex);
+        final Line[] nearest = new Line[1];
+        final double[] nearestX = new double[]{Double.NEGATIVE_INFINITY};
+        double minX = links.getMinX();
+        double width = (links.getMaxX() - minX) / Math.sqrt(origins.length) + margin;
+        while (true) {
+            double windowX = x - width;
+            links.forInteracting(windowX, y, x, y, Tolerance.ZERO, new NodeProcessor<Line>() {
+                @Override
+                public boolean process(Rect bounds, Line line) {
+                    if ((line.ay > y) != (line.by > y)) {
+                        double ix;
+                        if (line.ay == y) {
+                            ix = line.ax;
+                        } else if (line.by == y) {
+                            ix = line.bx;
+                        } else {
+                            ix = line.ax + (y - line.ay) * (line.bx - line.ax) / (line.by - line.ay);
+                        }
+                        if ((ix < x) && ((ix > nearestX[0]) || ((ix == nearestX[0]) && isClockwiseOf(line, nearest[0])))) {
+                            nearestX[0] = ix;
+                            nearest[0] = line;
+                        }
+                    }
+                    return true;
+                }
+            });
+            if ((nearestX[0] >= windowX) || (windowX <= minX)) {
+                break;
+            }
+            width *= 2;
+        }
+        Line line = nearest[0];
+        if (line == null) {
+            return outside;
+        }
+        int a = network.indexOf(line.ax, line.ay);
+        int b = network.indexOf(line.bx, line.by);
+        int i = (line.ay < line.by) ? network.linkIndex(b, a) : network.linkIndex(a, b); // face on right of upward link
+        return values[faces[i]];
+    }
+
+    //Where the ray passes through a vertex, several lines from it cross the ray at the same point.
+    //The ray comes from the right, so it is in the face on the right of the upward line with the
+    //least angle from the x axis, which is the one with the greatest dx / dy
+    private static boolean isClockwiseOf(Line a, Line b) {
+        double adx = (a.ay < a.by) ? (a.bx - a.ax) : (a.ax - a.bx);
+        double ady = Math.abs(a.by - a.ay);
+        double bdx = (b.ay < b.by) ? (b.bx - b.ax) : (b.ax - b.bx);
+        double bdy = Math.abs(b.by - b.ay);
+        return (adx * bdy) > (bdx * ady);
+    }
+
+    /**
+     * Processor for half links
+     */
+    interface HalfLinkProcessor {
+
+        /**
+         * Process a half link
+         *
+         * @param halfLink index of half link
+         */
+        void process(int halfLink);
+    }
+
+    /**
+     * Finds the value of a face from that of its neighbour
+     */
+    interface Crossing {
+
+        /**
+         * Get the value of the face on the right of the half link given
+         *
+         * @param halfLink index of half link
+         * @param value value of the face on the left of the half link
+         * @return value of the face on the right of the half link
+         */
+        int cross(int halfLink, int value);
+    }
+}
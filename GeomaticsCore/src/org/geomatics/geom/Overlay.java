@@ -0,0 +1,342 @@
+package org.geomatics.geom;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import org.geomatics.util.Tolerance;
+
+/**
+ * Overlay of two polygon layers (Coverages). Rather than intersecting each candidate pair of
+ * features, the rings of all features in both layers are added to a single network and noded
+ * once, using the tiled noder for large layers. Each half link of the noded network is labelled
+ * with the feature on its left in each layer by tracing the rings of each feature through the
+ * network, and labels are carried across the faces of the network by walking outward from the
+ * outside of each connected component. Faces with the same labels are then merged into areas,
+ * in parallel.
+ * <p>
+ * Features within a layer are expected not to overlap. Where they do, the overlapping region is
+ * labelled with one of the overlapping features.
+ *
+ * @author tofarrell
+ * @param <A> type of value for features in layer A
+ * @param <B> type of value for features in layer B
+ */
+public final class Overlay<A, B> {
+
+    static final int MIN_LINKS_PER_TASK = 4096;
+
+    private final Tolerance accuracy;
+    private final List<Area> areasA;
+    private final List<A> valuesA;
+    private final List<Area> areasB;
+    private final List<B> valuesB;
+
+    /**
+     * Create a new overlay
+     *
+     * @param accuracy
+     * @throws NullPointerException if accuracy was null
+     */
+    public Overlay(Tolerance accuracy) throws NullPointerException {
+        if (accuracy == null) {
+            throw new NullPointerException("Accuracy must not be null!");
+        }
+        this.accuracy = accuracy;
+        this.areasA = new ArrayList<>();
+        this.valuesA = new ArrayList<>();
+        this.areasB = new ArrayList<>();
+        this.valuesB = new ArrayList<>();
+    }
+
+    /**
+     * Add a feature to layer A
+     *
+     * @param area
+     * @param value
+     * @return this
+     * @throws NullPointerException if area or value was null
+     */
+    public Overlay<A, B> addA(Area area, A value) throws NullPointerException {
+        add(area, value);
+        areasA.add(area);
+        valuesA.add(value);
+        return this;
+    }
+
+    /**
+     * Add a feature to layer B
+     *
+     * @param area
+     * @param value
+     * @return this
+     * @throws NullPointerException if area or value was null
+     */
+    public Overlay<A, B> addB(Area area, B value) throws NullPointerException {
+        add(area, value);
+        areasB.add(area);
+        valuesB.add(value);
+        return this;
+    }
+
+    private static void add(Area area, Object value) throws NullPointerException {
+        if (area == null) {
+            throw new NullPointerException("Area must not be null!");
+        }
+        if (value == null) {
+            throw new NullPointerException("Value must not be null!");
+        }
+    }
+
+    /**
+     * Overlay the layers, passing each region covered by a feature from either layer to the
+     * processor given. Regions covered by only one layer have a null value for the other.
+     *
+     * @param processor
+     * @return false if the processor returned false, true otherwise
+     * @throws NullPointerException if processor was null
+     */
+    public boolean process(OverlayProcessor<A, B> processor) throws NullPointerException {
+        if (processor == null) {
+            throw new NullPointerException("Processor must not be null!");
+        }
+        Network network = new Network();
+        int numLinks = addAllLinks(network, areasA) + addAllLinks(network, areasB);
+        if (network.numVects() == 0) {
+            return true;
+        }
+        if (numLinks >= TiledNoder.LINKS_PER_TILE) {
+            network.setNoder(Network.Noder.TILED);
+            network.explicitIntersections(accuracy);
+            network.parallelSnap(accuracy);
+        } else {
+            network.explicitIntersections(accuracy);
+            network.snap(accuracy);
+        }
+        NetworkFaces faces = new NetworkFaces(network, accuracy);
+        int[] labelsA = label(faces, areasA);
+        int[] labelsB = label(faces, areasB);
+        int[] order = sortFaces(labelsA, labelsB);
+
+        //Find groups of faces with the same labels
+        List<Integer> groupStarts = new ArrayList<>();
+        for (int i = 0; i < order.length; i++) {
+            int face = order[i];
+            if ((labelsA[face] < 0) && (labelsB[face] < 0)) {
+                continue; // not covered by either layer
+            }
+            if ((i == 0) || (labelsA[face] != labelsA[order[i - 1]]) || (labelsB[face] != labelsB[order[i - 1]])) {
+                groupStarts.add(i);
+            }
+        }
+        int numGroups = groupStarts.size();
+        groupStarts.add(order.length);
+
+        //Build the area for each group, splitting groups among tasks by number of links
+        Area[] areas = new Area[numGroups];
+        List<AreaTask> tasks = new ArrayList<>();
+        int min = 0;
+        int taskLinks = 0;
+        for (int g = 0; g < numGroups; g++) {
+            for (int i = groupStarts.get(g); i < groupStarts.get(g + 1); i++) {
+                taskLinks += faceSize(faces, order[i]);
+            }
+            if (taskLinks >= MIN_LINKS_PER_TASK) {
+                tasks.add(new AreaTask(faces, labelsA, labelsB, order, groupStarts, min, g + 1, areas));
+                min = g + 1;
+                taskLinks = 0;
+            }
+        }
+        if (min < numGroups) {
+            tasks.add(new AreaTask(faces, labelsA, labelsB, order, groupStarts, min, numGroups, areas));
+        }
+        if (tasks.size() == 1) {
+            tasks.get(0).compute();
+        } else {
+            ForkJoinPool.commonPool().invoke(new TiledNoder.Tasks(tasks));
+        }
+
+        for (int g = 0; g < numGroups; g++) {
+            if (areas[g] != null) {
+                int face = order[groupStarts.get(g)];
+                A a = (labelsA[face] < 0) ? null : valuesA.get(labelsA[face]);
+                B b = (labelsB[face] < 0) ? null : valuesB.get(labelsB[face]);
+                if (!processor.process(areas[g], a, b)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static int addAllLinks(Network network, List<Area> areas) {
+        int ret = 0;
+        for (Area area : areas) {
+            ret += addAllLinks(network, area);
+        }
+        return ret;
+    }
+
+    private static int addAllLinks(Network network, Area area) {
+        int ret = 0;
+        if (area.shell != null) {
+            network.addAllLinks(area.shell.vects);
+            ret += area.shell.vects.size();
+        }
+        for (Area child : area.children) {
+            ret += addAllLinks(network, child);
+        }
+        return ret;
+    }
+
+    //Label each face with the index of the feature from the layer given which covers it, or -1
+    private static int[] label(NetworkFaces faces, List<Area> areas) {
+        final int numHalfLinks = faces.origins.length;
+        final int[] lefts = new int[numHalfLinks]; // feature on the left of each half link
+        final boolean[] boundaries = new boolean[numHalfLinks]; // half links along a ring of the layer
+        Arrays.fill(lefts, -1);
+        final int[] twins = faces.twins;
+        for (int f = 0; f < areas.size(); f++) {
+            traceRings(faces, areas.get(f), 0, f, lefts, boundaries);
+        }
+        return faces.label(-1, new NetworkFaces.Crossing() {
+            @Override
+            public int cross(int halfLink, int value) {
+                return boundaries[halfLink] ? lefts[twins[halfLink]] : value;
+            }
+        });
+    }
+
+    //Rings are counter clockwise, so the feature is on the left of shells and the right of holes
+    private static void traceRings(NetworkFaces faces, Area area, int depth, final int feature, final int[] lefts, final boolean[] boundaries) {
+        if (area.shell != null) {
+            final boolean hole = ((depth & 1) != 0);
+            final int[] twins = faces.twins;
+            faces.trace(area.shell.vects, new NetworkFaces.HalfLinkProcessor() {
+                @Override
+                public void process(int halfLink) {
+                    lefts[hole ? twins[halfLink] : halfLink] = feature;
+                    boundaries[halfLink] = true;
+                    boundaries[twins[halfLink]] = true;
+                }
+            });
+            depth++;
+        }
+        for (Area child : area.children) {
+            traceRings(faces, child, depth, feature, lefts, boundaries);
+        }
+    }
+
+    //Sort faces by label in layer A, then label in layer B, using a pair of counting sorts
+    private int[] sortFaces(int[] labelsA, int[] labelsB) {
+        int[] byB = countingSort(identity(labelsB.length), labelsB, valuesB.size());
+        return countingSort(byB, labelsA, valuesA.size());
+    }
+
+    private static int[] identity(int size) {
+        int[] ret = new int[size];
+        for (int i = 0; i < size; i++) {
+            ret[i] = i;
+        }
+        return ret;
+    }
+
+    //Stable sort of faces by label, where labels are from -1 to numLabels - 1
+    private static int[] countingSort(int[] faces, int[] labels, int numLabels) {
+        int[] starts = new int[numLabels + 2];
+        for (int face : faces) {
+            starts[labels[face] + 2]++;
+        }
+        for (int i = 2; i < starts.length; i++) {
+            starts[i] += starts[i - 1];
+        }
+        int[] ret = new int[faces.length];
+        for (int face : faces) {
+            ret[starts[labels[face] + 1]++] = face;
+        }
+        return ret;
+    }
+
+    private static int faceSize(NetworkFaces faces, int face) {
+        int ret = 0;
+        int start = faces.faceStarts[face];
+        int i = start;
+        do {
+            ret++;
+            i = faces.nexts[i];
+        } while (i != start);
+        return ret;
+    }
+
+    /**
+     * Builds the areas for a range of groups of faces. The boundary of a group is made up of the
+     * half links of its faces which have a face from a different group on their right.
+     */
+    final class AreaTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        final NetworkFaces faces;
+        final int[] labelsA;
+        final int[] labelsB;
+        final int[] order;
+        final List<Integer> groupStarts;
+        final int min;
+        final int max;
+        final Area[] results;
+
+        AreaTask(NetworkFaces faces, int[] labelsA, int[] labelsB, int[] order, List<Integer> groupStarts, int min, int max, Area[] results) {
+            this.faces = faces;
+            this.labelsA = labelsA;
+            this.labelsB = labelsB;
+            this.order = order;
+            this.groupStarts = groupStarts;
+            this.min = min;
+            this.max = max;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute() {
+            FrozenNetwork frozen = faces.network;
+            for (int g = min; g < max; g++) {
+                Network network = new Network();
+                for (int f = groupStarts.get(g); f < groupStarts.get(g + 1); f++) {
+                    int face = order[f];
+                    int start = faces.faceStarts[face];
+                    int i = start;
+                    do {
+                        int other = faces.faces[faces.twins[i]];
+                        if ((labelsA[other] != labelsA[face]) || (labelsB[other] != labelsB[face])) {
+                            int a = faces.origins[i];
+                            int b = frozen.links[i];
+                            network.addLinkInternal(frozen.getX(a), frozen.getY(a), frozen.getX(b), frozen.getY(b));
+                        }
+                        i = faces.nexts[i];
+                    } while (i != start);
+                }
+                results[g] = Area.valueOfInternal(accuracy, network);
+            }
+        }
+    }
+
+    /**
+     * Processor for regions of an overlay
+     *
+     * @param <A> type of value for features in layer A
+     * @param <B> type of value for features in layer B
+     */
+    public interface OverlayProcessor<A, B> {
+
+        /**
+         * Process a region of the overlay
+         *
+         * @param area region
+         * @param a value of the feature from layer A covering the region, or null if there was none
+         * @param b value of the feature from layer B covering the region, or null if there was none
+         * @return true if processing should continue, false otherwise
+         */
+        boolean process(Area area, A a, B b);
+    }
+}
@@ -1,9 +1,12 @@
 package org.geomatics.geom;
 
+import java.beans.Transient;
 import java.io.IOException;
 import org.geomatics.geom.io.GeomIOException;
 import org.geomatics.geom.io.GeomJaysonWriter;
 import org.geomatics.geom.io.PointSetHandler;
+import org.geomatics.util.MortonVectIndex;
+import org.geomatics.util.MortonVectIndex.PointProcessor;
 import org.geomatics.util.Tolerance;
 import org.geomatics.util.Transform;
 import org.geomatics.util.VectList;
@@ -18,7 +21,9 @@ import org.geomatics.util.VectSet;
 public final class PointSet implements Geom {
     
     public static final String CODE = "PS";
+    static final int INDEX_THRESHOLD = 32;
     final VectList vects;
+    private transient MortonVectIndex index; // built lazily, null if not built
 
     PointSet(VectList vects) {
         this.vects = vects;
@@ -227,17 +232,46 @@ public final class PointSet implements Geom {
         if (vects.getBounds().relateInternal(x, y, tolerance) == Relation.DISJOINT) {
             return Relation.DISJOINT;
         }
-        for (int v = vects.size(); v-- > 0;) {
-            if (tolerance.match(vects.getX(v), vects.getY(v), x, y)) {
-                int ret = Relation.TOUCH;
-                if(vects.size() > 1){
-                    ret |= Relation.A_OUTSIDE_B;
+        boolean touch = false;
+        if (vects.size() >= INDEX_THRESHOLD) {
+            touch = !getIndex().forWithin(x, y, tolerance.tolerance, new PointProcessor() {
+                @Override
+                public boolean process(int index, double px, double py) {
+                    return false; // any point within tolerance is a touch
+                }
+            });
+        } else {
+            for (int v = vects.size(); v-- > 0;) {
+                if (tolerance.match(vects.getX(v), vects.getY(v), x, y)) {
+                    touch = true;
+                    break;
                 }
-                return ret;
             }
         }
+        if (touch) {
+            int ret = Relation.TOUCH;
+            if (vects.size() > 1) {
+                ret |= Relation.A_OUTSIDE_B;
+            }
+            return ret;
+        }
         return Relation.DISJOINT;
     }
+
+    /**
+     * Get a Morton ordered index of the points in this set
+     *
+     * @return
+     */
+    @Transient
+    public MortonVectIndex getIndex() {
+        MortonVectIndex ret = index;
+        if (ret == null) {
+            ret = new MortonVectIndex(vects);
+            index = ret;
+        }
+        return ret;
+    }
     
     public int relate(PointSet other, Tolerance accuracy){
         if(getBounds().relate(other.getBounds(), accuracy) == Relation.DISJOINT){
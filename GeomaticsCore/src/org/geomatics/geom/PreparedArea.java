@@ -0,0 +1,266 @@
+package org.geomatics.geom;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import org.geomatics.util.SpatialNode;
+import org.geomatics.util.SpatialNode.NodeProcessor;
+import org.geomatics.util.Tolerance;
+import org.geomatics.util.VectList;
+
+/**
+ * Area prepared for repeated point relate tests at a fixed tolerance. The bounds of the area are
+ * divided into a grid of cells, and each cell is classified as inside, outside, or boundary (Some
+ * line of the area is within tolerance of the cell). Points in inside or outside cells are
+ * resolved with a single array lookup. Points in boundary cells are checked against only the
+ * lines in their row of the grid, sorted so the scan stops at the first line left of the point.
+ * <p>
+ * Points within tolerance of a line touch the area. Otherwise, whether they are inside is
+ * determined by an exact crossing number test. Results are the same as for Area.relate. Thread
+ * safe.
+ *
+ * @author tofarrell
+ */
+public final class PreparedArea {
+
+    static final int MAX_CELLS_PER_AXIS = 1024;
+    private static final byte OUTSIDE = 0;
+    private static final byte INSIDE = 1;
+    private static final byte BOUNDARY = 2;
+    private static final Comparator<Line> MAX_X_DESC = new Comparator<Line>() {
+        @Override
+        public int compare(Line i, Line j) {
+            return Double.compare(Math.max(j.ax, j.bx), Math.max(i.ax, i.bx));
+        }
+    };
+
+    private final Area area;
+    private final Tolerance accuracy;
+    private final SpatialNode<Line> lineIndex;
+    private final double minX;
+    private final double minY;
+    private final double cellWidth;
+    private final double cellHeight;
+    private final int numColumns;
+    private final int numRows;
+    private final byte[] cells;
+    private final int[] rowOffsets;
+    private final Line[] rowLines; // lines overlapping each row, sorted by max x descending
+    private final double[] rowMaxXs;
+
+    /**
+     * Create a new prepared area
+     *
+     * @param area
+     * @param accuracy tolerance for touch
+     * @throws NullPointerException if area or accuracy was null
+     */
+    public PreparedArea(Area area, Tolerance accuracy) throws NullPointerException {
+        if (accuracy == null) {
+            throw new NullPointerException("Accuracy must not be null!");
+        }
+        this.area = area;
+        this.accuracy = accuracy;
+        this.lineIndex = area.getLineIndex();
+        final List<Line> lines = new ArrayList<>();
+        lineIndex.forEach(new NodeProcessor<Line>() {
+            @Override
+            public boolean process(Rect bounds, Line line) {
+                lines.add(line);
+                return true;
+            }
+        });
+        double tol = accuracy.tolerance;
+        Rect bounds = area.getBounds();
+        int cellsPerAxis = (int) Math.max(1, Math.min(MAX_CELLS_PER_AXIS, Math.ceil(2 * Math.sqrt(lines.size()))));
+        this.minX = (bounds == null) ? 0 : (bounds.minX - tol);
+        this.minY = (bounds == null) ? 0 : (bounds.minY - tol);
+        this.cellWidth = (bounds == null) ? 0 : ((bounds.maxX + tol - minX) / cellsPerAxis);
+        this.cellHeight = (bounds == null) ? 0 : ((bounds.maxY + tol - minY) / cellsPerAxis);
+        this.numColumns = (cellWidth > 0) ? cellsPerAxis : 1;
+        this.numRows = (cellHeight > 0) ? cellsPerAxis : 1;
+        this.cells = new byte[numColumns * numRows];
+
+        //Mark boundary cells, and count lines in each row. A margin of twice the tolerance guards
+        //against rounding errors
+        double margin = tol * 2;
+        int[] counts = new int[numRows + 1];
+        for (Line line : lines) {
+            int minRow = row(Math.min(line.ay, line.by) - margin);
+            int maxRow = row(Math.max(line.ay, line.by) + margin);
+            int minCol = column(Math.min(line.ax, line.bx) - margin);
+            int maxCol = column(Math.max(line.ax, line.bx) + margin);
+            for (int row = minRow; row <= maxRow; row++) {
+                counts[row + 1]++;
+                double cellMinY = minY + row * cellHeight;
+                for (int col = minCol; col <= maxCol; col++) {
+                    double cellMinX = minX + col * cellWidth;
+                    if (SnapRounder.crossesPixel(line.ax, line.ay, line.bx, line.by, cellMinX - margin, cellMinY - margin,
+                            cellMinX + cellWidth + margin, cellMinY + cellHeight + margin)) {
+                        cells[row * numColumns + col] = BOUNDARY;
+                    }
+                }
+            }
+        }
+
+        //Group lines by row
+        for (int row = 0; row < numRows; row++) {
+            counts[row + 1] += counts[row];
+        }
+        Line[] _rowLines = new Line[counts[numRows]];
+        int[] positions = Arrays.copyOf(counts, numRows);
+        for (Line line : lines) {
+            for (int row = row(Math.min(line.ay, line.by) - margin), maxRow = row(Math.max(line.ay, line.by) + margin); row <= maxRow; row++) {
+                _rowLines[positions[row]++] = line;
+            }
+        }
+        double[] _rowMaxXs = new double[_rowLines.length];
+        for (int row = 0; row < numRows; row++) {
+            Arrays.sort(_rowLines, counts[row], counts[row + 1], MAX_X_DESC);
+        }
+        for (int i = 0; i < _rowLines.length; i++) {
+            _rowMaxXs[i] = Math.max(_rowLines[i].ax, _rowLines[i].bx);
+        }
+        this.rowOffsets = counts;
+        this.rowLines = _rowLines;
+        this.rowMaxXs = _rowMaxXs;
+
+        //No line passes between adjacent non boundary cells in a row, so only the first cell of
+        //each run needs a full relate
+        for (int row = 0; row < numRows; row++) {
+            byte state = BOUNDARY;
+            for (int col = 0; col < numColumns; col++) {
+                int index = row * numColumns + col;
+                if (cells[index] == BOUNDARY) {
+                    state = BOUNDARY;
+                    continue;
+                }
+                if (state == BOUNDARY) {
+                    double x = minX + (col + 0.5) * cellWidth;
+                    double y = minY + (row + 0.5) * cellHeight;
+                    state = isInside(x, y, row) ? INSIDE : OUTSIDE;
+                }
+                cells[index] = state;
+            }
+        }
+    }
+
+    private int column(double x) {
+        return index(x, minX, cellWidth, numColumns);
+    }
+
+    private int row(double y) {
+        return index(y, minY, cellHeight, numRows);
+    }
+
+    private static int index(double ord, double min, double size, int max) {
+        if (!(size > 0)) {
+            return 0;
+        }
+        int ret = (int) Math.floor((ord - min) / size);
+        return Math.max(0, Math.min(max - 1, ret));
+    }
+
+    public Area getArea() {
+        return area;
+    }
+
+    public Tolerance getAccuracy() {
+        return accuracy;
+    }
+
+    /**
+     * Determine the relation between the point given and the area
+     *
+     * @param vect
+     * @return relation
+     * @throws NullPointerException if vect was null
+     */
+    public int relate(Vect vect) throws NullPointerException {
+        return relateInternal(vect.x, vect.y);
+    }
+
+    /**
+     * Determine the relation between the point given and the area
+     *
+     * @param vect
+     * @return relation
+     * @throws NullPointerException if vect was null
+     */
+    public int relate(VectBuilder vect) throws NullPointerException {
+        return relateInternal(vect.getX(), vect.getY());
+    }
+
+    /**
+     * Determine the relation between the point given and the area
+     *
+     * @param x
+     * @param y
+     * @return relation
+     * @throws IllegalArgumentException if x or y was infinite or NaN
+     */
+    public int relate(double x, double y) throws IllegalArgumentException {
+        Vect.check(x, y);
+        return relateInternal(x, y);
+    }
+
+    /**
+     * Determine the relation between each of the points given and the area
+     *
+     * @param points
+     * @param results array in which to place the relation for each point
+     * @return results
+     * @throws NullPointerException if points or results was null
+     * @throws IndexOutOfBoundsException if results was shorter than points
+     */
+    public int[] relateAll(VectList points, int[] results) throws NullPointerException, IndexOutOfBoundsException {
+        int size = points.size();
+        if (results.length < size) {
+            throw new IndexOutOfBoundsException("Results length " + results.length + " is less than " + size);
+        }
+        for (int i = 0; i < size; i++) {
+            results[i] = relateInternal(points.getX(i), points.getY(i));
+        }
+        return results;
+    }
+
+    int relateInternal(double x, double y) {
+        if (lineIndex.relate(x, y, accuracy) == Relation.DISJOINT) {
+            return Relation.DISJOINT;
+        }
+        int row = row(y);
+        switch (cells[row * numColumns + column(x)]) {
+            case INSIDE:
+                return Relation.B_INSIDE_A | Relation.A_OUTSIDE_B;
+            case OUTSIDE:
+                return Relation.B_OUTSIDE_A | Relation.A_OUTSIDE_B;
+        }
+
+        double tol = accuracy.tolerance;
+        double tolSq = accuracy.toleranceSq;
+        for (int i = rowOffsets[row], end = rowOffsets[row + 1]; (i < end) && ((x - rowMaxXs[i]) <= tol); i++) {
+            Line line = rowLines[i];
+            if (Line.distSegVectSq(line.ax, line.ay, line.bx, line.by, x, y) <= tolSq) {
+                return Relation.TOUCH | Relation.A_OUTSIDE_B;
+            }
+        }
+        return (isInside(x, y, row) ? Relation.B_INSIDE_A : Relation.B_OUTSIDE_A) | Relation.A_OUTSIDE_B;
+    }
+
+    //Crossing number test against the lines in a row, counting lines crossing a ray to the right of
+    //the point. Lines include their lower end point but not their upper, so vertices are counted once
+    private boolean isInside(double x, double y, int row) {
+        boolean ret = false;
+        for (int i = rowOffsets[row], end = rowOffsets[row + 1]; (i < end) && (rowMaxXs[i] > x); i++) {
+            Line line = rowLines[i];
+            if ((line.ay > y) != (line.by > y)) {
+                double ix = line.ax + (y - line.ay) * (line.bx - line.ax) / (line.by - line.ay);
+                if (ix > x) {
+                    ret = !ret;
+                }
+            }
+        }
+        return ret;
+    }
+}
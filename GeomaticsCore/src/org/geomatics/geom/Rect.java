@@ -416,6 +416,36 @@ public final class Rect implements Geom {
         return ret;
     }
     
+    /**
+     * Get the square of the distance between this rect and that given (0 if they are not disjoint)
+     *
+     * @param other
+     * @return
+     * @throws NullPointerException if other was null
+     */
+    public double distSq(Rect other) throws NullPointerException {
+        return distSq(minX, minY, maxX, maxY, other.minX, other.minY, other.maxX, other.maxY);
+    }
+
+    /**
+     * Get the square of the distance between the rects given (0 if they are not disjoint)
+     *
+     * @param aMinX
+     * @param aMinY
+     * @param aMaxX
+     * @param aMaxY
+     * @param bMinX
+     * @param bMinY
+     * @param bMaxX
+     * @param bMaxY
+     * @return
+     */
+    public static double distSq(double aMinX, double aMinY, double aMaxX, double aMaxY, double bMinX, double bMinY, double bMaxX, double bMaxY) {
+        double dx = Math.max(0, Math.max(aMinX - bMaxX, bMinX - aMaxX));
+        double dy = Math.max(0, Math.max(aMinY - bMaxY, bMinY - aMaxY));
+        return (dx * dx) + (dy * dy);
+    }
+    
     @Override
     public Geom union(Geom other, Linearizer linearizer, Tolerance accuracy) throws NullPointerException {
         int boundsRelate = relate(other.getBounds(), accuracy);
@@ -438,6 +468,8 @@ public final class Rect implements Geom {
             return null;
         }else if(!Relation.isBOutsideA(boundsRelation)){ // no part of other is outside this
             return other;
+        }else if((other instanceof Area) || (other instanceof Ring) || (other instanceof LineString)){ // clip other to this
+            return other.intersection(this, linearizer, accuracy);
         }else{ // long way - find intersection by area
             return toArea().intersection(other, linearizer, accuracy);
         }
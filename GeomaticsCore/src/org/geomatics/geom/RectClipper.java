@@ -0,0 +1,492 @@
+package org.geomatics.geom;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import org.geomatics.geom.Network.IntersectionFinder;
+import org.geomatics.util.Tolerance;
+import org.geomatics.util.VectList;
+import org.geomatics.util.VectSet;
+
+/**
+ * Clips areas and line strings to a rect without building a network. Each ring is walked once,
+ * clipping each line against the rect (Liang-Barsky), to give chains of vertices which enter the
+ * rect, and then exit it. Chains are then joined by walking anti clockwise around the boundary of
+ * the rect from each exit to the next entry (As in Weiler-Atherton). This runs in linear time,
+ * plus sorting the points at which rings cross the boundary of the rect.
+ * <p>
+ * The general overlay snaps vertices and intersections which are within tolerance of each other.
+ * So that results are the same, clipping gives up (returning null) wherever snapping could take
+ * place : a vertex within tolerance of the boundary of the rect, a line within tolerance of a
+ * corner of the rect, or two crossings within tolerance of each other.
+ *
+ * @author tofarrell
+ */
+final class RectClipper {
+
+    private static final int LEFT = 0;
+    private static final int RIGHT = 1;
+    private static final int BOTTOM = 2;
+    private static final int TOP = 3;
+    private static final Comparator<Crossing> POSITION = new Comparator<Crossing>() {
+        @Override
+        public int compare(Crossing i, Crossing j) {
+            return Double.compare(i.position, j.position);
+        }
+    };
+
+    private final double minX;
+    private final double minY;
+    private final double maxX;
+    private final double maxY;
+    private final double width;
+    private final double height;
+    private final double tol;
+    private final double tolSq;
+    private final Tolerance accuracy;
+    private final List<Crossing> crossings;
+    private final List<Chain> chains;
+    private final VectBuilder workingVect;
+    private int numChainRings;
+
+    private RectClipper(Rect rect, Tolerance accuracy) {
+        this.minX = rect.minX;
+        this.minY = rect.minY;
+        this.maxX = rect.maxX;
+        this.maxY = rect.maxY;
+        this.width = rect.getWidth();
+        this.height = rect.getHeight();
+        this.tol = accuracy.tolerance;
+        this.tolSq = accuracy.toleranceSq;
+        this.accuracy = accuracy;
+        this.crossings = new ArrayList<>();
+        this.chains = new ArrayList<>();
+        this.workingVect = new VectBuilder();
+    }
+
+    /**
+     * Get the rings of the intersection of the area and rect given
+     *
+     * @param area
+     * @param rect
+     * @param accuracy
+     * @return rings, or null if the result could not be determined without a network
+     * @throws NullPointerException if area, rect or accuracy was null
+     */
+    static List<Ring> clip(Area area, Rect rect, Tolerance accuracy) throws NullPointerException {
+        RectClipper clipper = new RectClipper(rect, accuracy);
+        if (!clipper.isClippable()) {
+            return null;
+        }
+        List<Ring> ret = new ArrayList<>();
+        if (!(clipper.addRings(area, 0, ret) && clipper.joinChains(ret))) {
+            return null;
+        }
+        if (clipper.chains.isEmpty() && Relation.isBInsideA(area.relateInternal(rect.minX, rect.minY, accuracy))) {
+            ret.add(rect.toRing()); // rect is inside area
+        }
+        return ret;
+    }
+
+    /**
+     * Get the line strings making up the intersection of the line string and rect given
+     *
+     * @param lineString
+     * @param rect
+     * @param accuracy
+     * @return line strings, or null if the result could not be determined without a network
+     * @throws NullPointerException if lineString, rect or accuracy was null
+     */
+    static LineString[] clip(LineString lineString, Rect rect, Tolerance accuracy) throws NullPointerException {
+        RectClipper clipper = new RectClipper(rect, accuracy);
+        if (!clipper.isClippable()) {
+            return null;
+        }
+        VectList vects = lineString.vects;
+        int last = vects.size() - 1;
+        boolean closed = (vects.getX(0) == vects.getX(last)) && (vects.getY(0) == vects.getY(last));
+        int numVects = closed ? last : (last + 1);
+        int start = clipper.findOutside(vects, numVects);
+        if (start == -2) {
+            return null;
+        } else if (start == -1) {
+            return clipper.isSimple(Arrays.asList(vects)) ? new LineString[]{lineString} : null;
+        }
+        if (!closed) {
+            start = 0;
+        }
+        List<VectList> pieces = new ArrayList<>();
+        if (!clipper.walk(vects, start, last, numVects, false, pieces)) {
+            return null;
+        }
+        if (!(clipper.checkCrossings() && clipper.isSimple(pieces))) {
+            return null;
+        }
+        LineString[] ret = new LineString[pieces.size()];
+        for (int i = 0; i < ret.length; i++) {
+            VectList piece = pieces.get(i);
+            if (!piece.isOrdered()) {
+                piece.reverse();
+            }
+            ret[i] = new LineString(piece);
+        }
+        Arrays.sort(ret, Geom.COMPARATOR);
+        return ret;
+    }
+
+    private boolean isClippable() {
+        return (width > tol * 2) && (height > tol * 2);
+    }
+
+    private boolean addRings(Area area, int depth, List<Ring> results) {
+        if (area.shell != null) {
+            if (!addRing(area.shell, (depth & 1) == 1, results)) {
+                return false;
+            }
+            depth++;
+        }
+        for (Area child : area.children) {
+            if (!addRings(child, depth, results)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //Holes are walked in reverse, so the inside of the area is always on the left
+    private boolean addRing(Ring ring, boolean hole, List<Ring> results) {
+        VectList vects = ring.vects;
+        int numVects = vects.size() - 1;
+        int start = findOutside(vects, numVects);
+        if (start == -2) {
+            return false;
+        } else if (start == -1) {
+            results.add(ring); // ring is inside rect
+            return true;
+        }
+        int numChains = chains.size();
+        if (!walk(vects, start, numVects, numVects, hole, null)) {
+            return false;
+        }
+        if (chains.size() != numChains) {
+            numChainRings++;
+        }
+        return true;
+    }
+
+    //Get the index of a vertex outside the rect, -1 if all vertices are inside, or -2 if any vertex
+    //was within tolerance of the boundary of the rect
+    private int findOutside(VectList vects, int numVects) {
+        int ret = -1;
+        for (int i = 0; i < numVects; i++) {
+            double x = vects.getX(i);
+            double y = vects.getY(i);
+            if (!isInside(x, y)) {
+                double dx = Math.max(0, Math.max(minX - x, x - maxX));
+                double dy = Math.max(0, Math.max(minY - y, y - maxY));
+                if ((dx * dx + dy * dy) <= tolSq) {
+                    return -2;
+                }
+                if (ret < 0) {
+                    ret = i;
+                }
+            }
+        }
+        return ret;
+    }
+
+    private boolean isInside(double x, double y) {
+        return (x > minX + tol) && (x < maxX - tol) && (y > minY + tol) && (y < maxY - tol);
+    }
+
+    //Walk the lines starting at the index given. Rings (pieces == null) start outside the rect and
+    //produce chains. Line strings produce pieces.
+    private boolean walk(VectList vects, int start, int numLines, int numVects, boolean reverse, List<VectList> pieces) {
+        double ax = vects.getX(start);
+        double ay = vects.getY(start);
+        boolean aInside = isInside(ax, ay);
+        Chain chain = null;
+        if (aInside) { // line string starting inside rect
+            chain = new Chain();
+            chain.vects.add(ax, ay);
+        }
+        for (int i = 1; i <= numLines; i++) {
+            int b = reverse ? ((start + numVects - i) % numVects) : ((start + i) % numVects);
+            double bx = vects.getX(b);
+            double by = vects.getY(b);
+            boolean bInside = isInside(bx, by);
+            if (aInside && bInside) {
+                chain.vects.add(bx, by);
+            } else if ((Math.max(ax, bx) >= minX - tol) && (Math.min(ax, bx) <= maxX + tol)
+                    && (Math.max(ay, by) >= minY - tol) && (Math.min(ay, by) <= maxY + tol)) {
+                if ((Line.distSegVectSq(ax, ay, bx, by, minX, minY) <= tolSq)
+                        || (Line.distSegVectSq(ax, ay, bx, by, maxX, minY) <= tolSq)
+                        || (Line.distSegVectSq(ax, ay, bx, by, maxX, maxY) <= tolSq)
+                        || (Line.distSegVectSq(ax, ay, bx, by, minX, maxY) <= tolSq)) {
+                    return false;
+                }
+                chain = clipLine(ax, ay, bx, by, aInside, bInside, chain, pieces);
+            }
+            ax = bx;
+            ay = by;
+            aInside = bInside;
+        }
+        if ((chain != null) && (pieces != null)) { // line string ending inside rect
+            pieces.add(chain.vects);
+        }
+        return true;
+    }
+
+    //Clip a line using Liang-Barsky, returning the current chain
+    private Chain clipLine(double ax, double ay, double bx, double by, boolean aInside, boolean bInside, Chain chain, List<VectList> pieces) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double t0 = 0;
+        double t1 = 1;
+        int e0 = -1;
+        int e1 = -1;
+        for (int edge = LEFT; edge <= TOP; edge++) {
+            double p;
+            double q;
+            switch (edge) {
+                case LEFT:
+                    p = -dx;
+                    q = ax - minX;
+                    break;
+                case RIGHT:
+                    p = dx;
+                    q = maxX - ax;
+                    break;
+                case BOTTOM:
+                    p = -dy;
+                    q = ay - minY;
+                    break;
+                default:
+                    p = dy;
+                    q = maxY - ay;
+            }
+            if (p == 0) {
+                if (q < 0) {
+                    return chain; // parallel and outside
+                }
+            } else {
+                double t = q / p;
+                if (p < 0) {
+                    if (t > t0) {
+                        t0 = t;
+                        e0 = edge;
+                    }
+                } else if (t < t1) {
+                    t1 = t;
+                    e1 = edge;
+                }
+            }
+        }
+        if (!(t0 < t1)) {
+            return chain; // line does not cross rect
+        }
+        if (!aInside) {
+            chain = new Chain();
+            addCrossing(e0, ax, ay, bx, by, chain, true);
+        }
+        if (bInside) {
+            chain.vects.add(bx, by);
+            return chain;
+        }
+        addCrossing(e1, ax, ay, bx, by, chain, false);
+        if (pieces == null) {
+            chains.add(chain);
+        } else {
+            pieces.add(chain.vects);
+        }
+        return null;
+    }
+
+    //Add the point at which a line crosses the edge given to the chain. The point is calculated
+    //in the same way as by the general overlay, so that results are the same
+    private void addCrossing(int edge, double ax, double ay, double bx, double by, Chain chain, boolean entry) {
+        double position;
+        switch (edge) {
+            case LEFT:
+                Line.intersectionSegInternal(ax, ay, bx, by, minX, minY, minX, maxY, accuracy, workingVect);
+                position = width * 2 + height + maxY - workingVect.getY();
+                break;
+            case RIGHT:
+                Line.intersectionSegInternal(ax, ay, bx, by, maxX, minY, maxX, maxY, accuracy, workingVect);
+                position = width + workingVect.getY() - minY;
+                break;
+            case BOTTOM:
+                Line.intersectionSegInternal(ax, ay, bx, by, minX, minY, maxX, minY, accuracy, workingVect);
+                position = workingVect.getX() - minX;
+                break;
+            default:
+                Line.intersectionSegInternal(ax, ay, bx, by, minX, maxY, maxX, maxY, accuracy, workingVect);
+                position = width + height + maxX - workingVect.getX();
+        }
+        double x = workingVect.getX();
+        double y = workingVect.getY();
+        chain.vects.add(x, y);
+        Crossing crossing = new Crossing(x, y, position, chain, entry);
+        crossings.add(crossing);
+        if (entry) {
+            chain.entry = crossing;
+        } else {
+            chain.exit = crossing;
+        }
+    }
+
+    //Sort crossings anti clockwise around the rect, and make sure no two are within tolerance
+    private boolean checkCrossings() {
+        Crossing[] sorted = crossings.toArray(new Crossing[crossings.size()]);
+        Arrays.sort(sorted, POSITION);
+        if (sorted.length > 1) {
+            Crossing a = sorted[sorted.length - 1];
+            for (Crossing b : sorted) {
+                if (Vect.distSq(a.x, a.y, b.x, b.y) <= tolSq) {
+                    return false;
+                }
+                a = b;
+            }
+        }
+        crossings.clear();
+        crossings.addAll(Arrays.asList(sorted));
+        return true;
+    }
+
+    //The general overlay splits line strings where they cross or touch themselves, so make sure
+    //that no piece touches another, or itself other than where adjacent lines meet
+    private boolean isSimple(List<VectList> pieces) {
+        VectSet vertices = new VectSet();
+        List<Line> lines = new ArrayList<>();
+        for (VectList piece : pieces) {
+            int last = piece.size() - 1;
+            boolean closed = (piece.getX(0) == piece.getX(last)) && (piece.getY(0) == piece.getY(last));
+            for (int i = closed ? 1 : 0; i <= last; i++) {
+                int size = vertices.size();
+                if (vertices.add(piece.getX(i), piece.getY(i)).size() == size) {
+                    return false; // vertex visited more than once
+                }
+            }
+            for (int i = 0; i < last; i++) {
+                lines.add(new Line(piece.getX(i), piece.getY(i), piece.getX(i + 1), piece.getY(i + 1)));
+            }
+        }
+        IntersectionFinder finder = new IntersectionFinder(accuracy);
+        SweepLineNoder.join(lines.toArray(new Line[lines.size()]), finder);
+        return finder.intersections.isEmpty();
+    }
+
+    //Join each chain to the chain with the next entry anti clockwise around the rect from its exit,
+    //and add the resulting rings
+    private boolean joinChains(List<Ring> results) {
+        if (chains.isEmpty()) {
+            return true;
+        }
+        if (!checkCrossings()) {
+            return false;
+        }
+        if (numChainRings > 1) { // rings may share vertices, which the general overlay would split
+            VectSet vects = new VectSet();
+            for (Chain chain : chains) {
+                for (int i = 0; i < chain.vects.size(); i++) {
+                    int size = vects.size();
+                    if (vects.add(chain.vects.getX(i), chain.vects.getY(i)).size() == size) {
+                        return false;
+                    }
+                }
+            }
+        }
+        for (int i = 0, size = crossings.size(); i < size; i++) {
+            Crossing crossing = crossings.get(i);
+            if (!crossing.entry) {
+                Crossing next = crossings.get((i + 1) % size);
+                if (!next.entry) {
+                    return false;
+                }
+                crossing.chain.next = next.chain;
+            }
+        }
+        for (Chain chain : chains) {
+            if (chain.visited) {
+                continue;
+            }
+            VectList vects = new VectList();
+            Chain c = chain;
+            do {
+                c.visited = true;
+                vects.addAll(c.vects);
+                addCorners(c.exit.position, c.next.entry.position, vects);
+                c = c.next;
+            } while (c != chain);
+            vects.add(vects, 0);
+            int min = Ring.minIndex(vects);
+            if (min != 0) {
+                vects = Ring.rotate(vects, min);
+            }
+            double area = Ring.getArea(vects);
+            if (!(area > 0)) {
+                return false;
+            }
+            results.add(new Ring(vects, area));
+        }
+        return true;
+    }
+
+    //Add the corners of the rect between the positions given, moving anti clockwise
+    private void addCorners(double from, double to, VectList vects) {
+        if (to < from) {
+            addCorners(from, Double.POSITIVE_INFINITY, vects);
+            from = Double.NEGATIVE_INFINITY;
+        }
+        if ((from < 0) && (to > 0)) {
+            vects.add(minX, minY);
+        }
+        if ((from < width) && (to > width)) {
+            vects.add(maxX, minY);
+        }
+        if ((from < width + height) && (to > width + height)) {
+            vects.add(maxX, maxY);
+        }
+        if ((from < width * 2 + height) && (to > width * 2 + height)) {
+            vects.add(minX, maxY);
+        }
+    }
+
+    /**
+     * Vertices of a ring from where it enters the rect to where it exits it
+     */
+    private static final class Chain {
+
+        final VectList vects;
+        Crossing entry;
+        Crossing exit;
+        Chain next;
+        boolean visited;
+
+        Chain() {
+            this.vects = new VectList();
+        }
+    }
+
+    /**
+     * Point at which a ring crosses the boundary of the rect, with its position anti clockwise
+     * around the rect from the min corner
+     */
+    private static final class Crossing {
+
+        final double x;
+        final double y;
+        final double position;
+        final Chain chain;
+        final boolean entry;
+
+        Crossing(double x, double y, double position, Chain chain, boolean entry) {
+            this.x = x;
+            this.y = y;
+            this.position = position;
+            this.chain = chain;
+            this.entry = entry;
+        }
+    }
+}
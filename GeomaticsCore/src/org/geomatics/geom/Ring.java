@@ -2,8 +2,11 @@ package org.geomatics.geom;
 
 import java.beans.Transient;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import org.geomatics.algorithm.ConvexHull;
 import org.geomatics.geom.io.GeomJaysonWriter;
 import org.geomatics.geom.io.RingHandler;
@@ -11,8 +14,6 @@ import org.geomatics.util.SpatialNode;
 import org.geomatics.util.Tolerance;
 import org.geomatics.util.Transform;
 import org.geomatics.util.VectList;
-import org.geomatics.util.VectMap;
-import org.geomatics.util.VectMap.VectMapProcessor;
 
 /**
  * Immutable 2D Linear Ring. Checks are in place to insure that:
@@ -31,6 +32,7 @@ public class Ring implements Geom {
 
     public static final String CODE = "RG";
     static final Ring[] EMPTY = new Ring[0];
+    static final int MIN_LINKS_PER_TASK = 16384;
     final VectList vects;
     private SpatialNode<Line> lineIndex;
     private Double area;
@@ -115,69 +117,220 @@ public class Ring implements Geom {
             return ret; // not enough links for a ring, so cannot be any rings!
         }
         
-        Network processed = new Network(); // this stores all processed links
-
-        //get vectors in correct order - it is important that they are processed left to right
-        VectList allVects = network.getVects(new VectList(network.numVects()));
-        VectList path = new VectList();
-        VectBuilder workingVect = new VectBuilder();
-        VectMap indices = new VectMap();
-        for(int a = 0; (processed.numLinks() < network.numLinks()) && (a < allVects.size()); a++){
-            double ax = allVects.getX(a);
-            double ay = allVects.getY(a);
-            VectList links = network.map.get(ax, ay);
-            
-            for (int b = 0; b < links.size(); b++) {
-                double bx = links.getX(b);
-                double by = links.getY(b);
-                if(processed.hasLink(ax, ay, bx, by)){
+        //vertex ids are in the correct order - it is important that they are processed left to right
+        FrozenNetwork frozen = network.freeze();
+        RingWalker walker = new RingWalker(frozen);
+        int[] offsets = frozen.offsets;
+        for(int a = 0; (walker.numProcessed < frozen.numLinks()) && (a < frozen.numVects()); a++){
+            for (int i = offsets[a]; i < offsets[a + 1]; i++) {
+                if(walker.processed[i]){
                     continue; // link was already processed
                 }
-
-                processRings(ax, ay, bx, by, network, path, workingVect, indices, processed, ret);
+                walker.processRings(a, frozen.links[i], ret);
             }
         }
         return ret;
     }
     
-    static void processRings(double ax, double ay, double bx, double by, Network network, VectList path,
-            VectBuilder workingVect, VectMap<Integer> indices, Network processed, Collection<Ring> results){
-        path.clear().add(ax, ay).add(bx, by);
-        indices.clear();
-        indices.put(ax, ay, 0);
-        indices.put(bx, by, 1);
-        while (true) {
-            network.nextCW(bx, by, ax, ay, workingVect);
-            path.add(workingVect);
-            Integer index = indices.get(workingVect);
-            
-            ax = bx;
-            ay = by;
-            bx = workingVect.getX();
-            by = workingVect.getY();
-            
-            if(index == null){ // point is not already in path, add it and continue
-                indices.put(workingVect.getX(), workingVect.getY(), path.size()-1);
-                continue;
+    static List<Ring> parallelParseAllInternal(final Network network, Tolerance accuracy, boolean removeHangLines, int minLinksPerTask) throws NullPointerException {
+        if(removeHangLines){
+            network.removeHangLines();
+        }
+        FrozenNetwork frozen = network.freeze();
+        int numVects = frozen.numVects();
+        int linksPerTask = Math.max(minLinksPerTask, frozen.links.length / (ForkJoinPool.getCommonPoolParallelism() << 2));
+        if(frozen.links.length <= linksPerTask){
+            return parseAllInternal(network, accuracy, false);
+        }
+        
+        //Assign connected components to tasks in order, and then group vertices by task
+        int[] components = frozen.components();
+        int[] taskIds = new int[numVects];
+        int numTasks = 0;
+        int taskLinks = 0;
+        for(int a = 0; a < numVects; a++){
+            int component = components[a];
+            if(component == a){ // first vertex in component
+                if(taskLinks >= linksPerTask){
+                    numTasks++;
+                    taskLinks = 0;
+                }
+                taskIds[a] = numTasks;
+            }else{
+                taskIds[a] = taskIds[component];
             }
-            
-            //we potentially have a ring, pull parts out of path to see
-            int numVects = path.size() - index;
-            VectList ringPath = new VectList(numVects);
-            ringPath.addAll(path, index, numVects);
-            path.removeAll(index+1, numVects-1);
-            double area = getArea(ringPath);
-            if(area > 0){
-                int min = minIndex(ringPath);
-                if(min != 0){
-                    ringPath = rotate(ringPath, min);
+            taskLinks += frozen.numLinks(a);
+        }
+        numTasks++;
+        int[] taskOffsets = new int[numTasks + 1];
+        for(int a = 0; a < numVects; a++){
+            taskOffsets[taskIds[a] + 1]++;
+        }
+        for(int t = 0; t < numTasks; t++){
+            taskOffsets[t + 1] += taskOffsets[t];
+        }
+        int[] taskVects = new int[numVects];
+        int[] positions = Arrays.copyOf(taskOffsets, numTasks);
+        for(int a = 0; a < numVects; a++){
+            taskVects[positions[taskIds[a]]++] = a;
+        }
+        
+        //Components are disjoint, so tasks may share working arrays
+        RingWalker walker = new RingWalker(frozen);
+        List<RingTask> tasks = new ArrayList<>(numTasks);
+        for(int t = 0; t < numTasks; t++){
+            tasks.add(new RingTask(new RingWalker(walker), Arrays.copyOfRange(taskVects, taskOffsets[t], taskOffsets[t + 1])));
+        }
+        ForkJoinPool.commonPool().invoke(new TiledNoder.Tasks(tasks));
+        
+        //Merge rings in the order of the link from which they were found, which is the sequential order
+        int numRings = 0;
+        for(RingTask task : tasks){
+            numRings += task.rings.size();
+        }
+        long[] order = new long[numRings];
+        Ring[] rings = new Ring[numRings];
+        int n = 0;
+        for(RingTask task : tasks){
+            for(int i = 0; i < task.rings.size(); i++){
+                order[n] = (((long)task.slots.get(i)) << 32) | n;
+                rings[n++] = task.rings.get(i);
+            }
+        }
+        Arrays.sort(order);
+        ArrayList<Ring> ret = new ArrayList<>(numRings);
+        for(long o : order){
+            ret.add(rings[(int)o]);
+        }
+        return ret;
+    }
+    
+    /**
+     * Finds rings starting from a set of vertices, recording the link from which each was found
+     */
+    static final class RingTask extends RecursiveAction {
+        
+        private static final long serialVersionUID = 1L;
+        
+        final RingWalker walker;
+        final int[] vects;
+        final ArrayList<Ring> rings;
+        final ArrayList<Integer> slots;
+
+        RingTask(RingWalker walker, int[] vects) {
+            this.walker = walker;
+            this.vects = vects;
+            this.rings = new ArrayList<>();
+            this.slots = new ArrayList<>();
+        }
+
+        @Override
+        protected void compute() {
+            FrozenNetwork frozen = walker.network;
+            int[] offsets = frozen.offsets;
+            for(int a : vects){
+                for (int i = offsets[a]; i < offsets[a + 1]; i++) {
+                    if(!walker.processed[i]){
+                        walker.processRings(a, frozen.links[i], rings);
+                        while(slots.size() < rings.size()){
+                            slots.add(i);
+                        }
+                    }
                 }
-                processed.addAllLinks(ringPath);
-                results.add(new Ring(ringPath, area));
             }
+        }
+    }
+    
+    /**
+     * Walks faces of a frozen network clockwise, keeping all working state in primitive arrays
+     */
+    static final class RingWalker {
+        
+        final FrozenNetwork network;
+        final boolean[] processed; // processed links, indexed in the same way as network.links
+        final int[] pathIndices; // index of each vertex within the path - valid only if stamp matches
+        final int[] stamps;
+        int[] path;
+        int numProcessed;
+        int stamp;
+
+        RingWalker(FrozenNetwork network) {
+            this.network = network;
+            this.processed = new boolean[network.links.length];
+            this.pathIndices = new int[network.numVects()];
+            this.stamps = new int[network.numVects()];
+            this.path = new int[16];
+        }
+        
+        //Create a walker sharing the working arrays of the walker given
+        RingWalker(RingWalker walker) {
+            this.network = walker.network;
+            this.processed = walker.processed;
+            this.pathIndices = walker.pathIndices;
+            this.stamps = walker.stamps;
+            this.path = new int[16];
+        }
+        
+        void processRings(int a, int b, Collection<Ring> results){
+            stamp++;
+            path[0] = a;
+            path[1] = b;
+            int pathSize = 2;
+            setIndex(a, 0);
+            setIndex(b, 1);
+            double[] ords = network.ords;
+            while (true) {
+                int c = network.nextCW(b, a);
+                if(pathSize == path.length){
+                    path = Arrays.copyOf(path, pathSize << 1);
+                }
+                path[pathSize++] = c;
+                a = b;
+                b = c;
+                
+                if(stamps[c] != stamp){ // point is not already in path, add it and continue
+                    setIndex(c, pathSize-1);
+                    continue;
+                }
+                
+                //we potentially have a ring, pull parts out of path to see
+                int index = pathIndices[c];
+                int numVects = pathSize - index;
+                VectList ringPath = new VectList(numVects);
+                for(int i = index; i < pathSize; i++){
+                    int v = path[i] << 1;
+                    ringPath.add(ords[v], ords[v+1]);
+                }
+                double area = getArea(ringPath);
+                if(area > 0){
+                    int min = minIndex(ringPath);
+                    if(min != 0){
+                        ringPath = rotate(ringPath, min);
+                    }
+                    for(int i = index + 1; i < pathSize; i++){
+                        markProcessed(path[i-1], path[i]);
+                    }
+                    results.add(new Ring(ringPath, area));
+                }
+                pathSize = index + 1;
 
-            if(index == 0){
-                return; // all finished
+                if(index == 0){
+                    return; // all finished
+                }
+            }
+        }
+        
+        void setIndex(int vertex, int index){
+            pathIndices[vertex] = index;
+            stamps[vertex] = stamp;
+        }
+        
+        void markProcessed(int a, int b){
+            int i = network.linkIndex(a, b);
+            if(!processed[i]){
+                processed[i] = true;
+                processed[network.linkIndex(b, a)] = true;
+                numProcessed++;
             }
         }
     }
@@ -211,19 +364,10 @@ public class Ring implements Geom {
      * @throws IndexOutOfBoundsException if vects does not have enough elements
      */
     public static double getArea(VectList vects) throws NullPointerException, IndexOutOfBoundsException {
-        int index = vects.size();
-        double bx = vects.getX(--index);
-        double by = vects.getY(index);
-        double area = 0;
-        while (index > 0) {
-            double ax = vects.getX(--index);
-            double ay = vects.getY(index);
-            area += (ax * by) - (bx * ay);
-            bx = ax;
-            by = ay;
+        if (vects.isEmpty()) {
+            throw new IndexOutOfBoundsException("Index -1 is outside bounds [0,0]");
         }
-        area /= 2;
-        return area;
+        return vects.getSignedArea();
     }
 
     /**
@@ -313,18 +457,31 @@ public class Ring implements Geom {
         return relateInternal(x, y, tolerance);
     }
 
+    /**
+     * Determine the relation between each of the points given and this ring, as for
+     * {@link Area#relateAll(VectList, Tolerance, int[])}
+     *
+     * @param points
+     * @param tolerance tolerance for touch
+     * @param results array in which to place the relation for each point
+     * @return results
+     * @throws NullPointerException if points, tolerance or results was null
+     * @throws IndexOutOfBoundsException if results was shorter than points
+     */
+    public int[] relateAll(VectList points, Tolerance tolerance, int[] results) throws NullPointerException, IndexOutOfBoundsException {
+        return new PreparedArea(toArea(), tolerance).relateAll(points, results);
+    }
+
     int relateInternal(double x, double y, Tolerance tolerance) throws NullPointerException {
         return relateInternal(x, y, getLineIndex(), tolerance);
     }
 
     static int relateInternal(double x, double y, SpatialNode<Line> lineIndex, Tolerance tolerance) throws NullPointerException {
-        Rect bounds = lineIndex.getBounds();
-        if (bounds.relateInternal(x, y, tolerance) == Relation.DISJOINT) { // If outside bounds, then cant be inside
+        if (lineIndex.relate(x, y, tolerance) == Relation.DISJOINT) { // If outside bounds, then cant be inside
             return Relation.DISJOINT;
         }
-        Rect selection = Rect.valueOf(x, y, bounds.maxX, y);
-        VectRelationProcessor processor = new VectRelationProcessor(tolerance, x, y);
-        lineIndex.forInteracting(selection, tolerance, processor);
+        VectRelationProcessor processor = VectRelationProcessor.get(tolerance, x, y);
+        lineIndex.forInteracting(x, y, lineIndex.getMaxX(), y, tolerance, processor);
         return processor.getRelation() | Relation.A_OUTSIDE_B;
     }
 
@@ -552,166 +709,9 @@ public class Ring implements Geom {
                 return null;
             }
         }
-        VectList buffer = getEdgeBuffer(amt, linearizer, accuracy);
-        return buildGeomFromRing(buffer, accuracy);
+        return new BufferBuilder(amt, linearizer, accuracy).addRing(this).build();
     }
 
-    static Geom buildGeomFromRing(VectList closedRing, Tolerance accuracy){
-        
-        Area union = null;
-        Area less = null;
-        Network touching = null;
-        
-        //Sanitize the ring using a network
-        Network network = new Network();
-        network.addAllLinks(closedRing);
-        network.explicitIntersections(accuracy);
-        network.snap(accuracy);
-        closedRing = parsePathFromNetwork(network, closedRing, accuracy);
-
-        VectMap<Integer> indices = new VectMap<>();
-        for(int i = 0; i < closedRing.size(); i++){
-            double x = closedRing.getX(i);
-            double y = closedRing.getY(i);
-            final Integer index = indices.get(x, y);
-            if(index != null){
-                final int numVects = i - index;
-                if(numVects == 2){
-                    if(touching == null){
-                        touching = new Network();
-                    }
-                    touching.addLink(x, y, closedRing.getX(i-1), closedRing.getY(i-1));
-                    closedRing.removeAll(index, 2);
-                    i -= 2;
-                }else{
-                    VectList ring = new VectList(numVects + 1);
-                    ring.addAll(closedRing, index, numVects + 1);
-                    closedRing.removeAll(index, i - index);
-                    final VectMap<Integer> newIndices = new VectMap<>();
-                    indices.forEach(new VectMapProcessor<Integer>() {
-                        @Override
-                        public boolean process(double x, double y, Integer value) {
-                            if(value <= index){
-                                newIndices.put(x, y, value);
-                            }
-                            return true;
-                        }
-                    });
-                    indices = newIndices;
-                    i = index;
-                    int minIndx = minIndex(ring);
-                    if(minIndx != 0){
-                        rotate(ring, minIndx);
-                    }
-                    double a = getArea(ring);
-                    if(a > 0){
-                        Area area = new Ring(ring, a).toArea();
-                        union = (union == null) ? area : union.union(area, accuracy);
-                    }else{
-                        ring.reverse();
-                        Area area = new Ring(ring, a).toArea();
-                        less = (less == null) ? area : less.union(area, accuracy);
-                    }
-                }
-            }
-            VectList links = network.map.get(x, y);
-            if((i == 0) || (links.size() != 2)){
-                indices.put(x, y, i);
-            }
-        }
-        GeoShape ret = null;
-        if(touching != null){
-            ret = LineSet.valueOfInternal(touching).toGeoShape();
-        }
-        if(union != null){
-            ret = (ret == null) ? union.toGeoShape() : union.toGeoShape().union(ret, accuracy);
-        }
-        if((ret != null) && (less != null)){
-            ret = ret.less(less.toGeoShape(), accuracy);
-        }
-        return (ret == null) ? null : ret.simplify();
-    }
-        
-    static VectList parsePathFromNetwork(Network network, VectList template, Tolerance tolerance){
-        VectList ret = new VectList();
-        VectBuilder a = new VectBuilder();
-        VectBuilder b = new VectBuilder();
-        VectBuilder c = new VectBuilder();
-        template.getVect(0, a);
-        if(!network.hasVect(a.getX(), a.getY())){ // a was snapped out - get closest point on a
-            b.set(a.getX() + tolerance.tolerance * 10, a.getY() + tolerance.tolerance * 10);
-            snapToNearest(network.getLinks(), a, tolerance, b);
-            VectBuilder tmp = a;
-            a = b;
-            b = tmp;
-        }
-        ret.add(a);
-        VectList links = new VectList();
-        double tolSq = tolerance.toleranceSq;
-        for(int i = 1; i < template.size(); i++){
-            template.getVect(i, b);
-            if(!network.hasVect(b.getX(), b.getY())){ // a was snapped out - get closest point on a
-                c.set(b.getX() + tolerance.tolerance * 10, b.getY() + tolerance.tolerance * 10);
-                snapToNearest(network.getLinks(), b, tolerance, c);
-                VectBuilder tmp = b;
-                b = c;
-                c = tmp;
-            }
-            while(!network.hasLink(a.getX(), a.getY(), b.getX(), b.getY())){
-                network.getLinks(a.getX(), a.getY(), links);
-                double distA = Vect.distSq(a.getX(), a.getY(), b.getX(), b.getY());
-                int j = links.size();
-                while(true){
-                    j--;
-                    links.getVect(j, c);
-                    //IF C is ON LINE AB, and C is closer to B than A, add C to ret and set C to A and break
-                    if(Line.distLineVectSq(a.getX(), a.getY(), b.getX(), b.getY(), c.getX(), c.getY()) <= tolSq){
-                        double distC = Vect.distSq(c.getX(), c.getY(), b.getX(), b.getY());
-                        if(distC < distA){
-                            ret.add(c);
-                            VectBuilder tmp = c;
-                            c = a;
-                            a = tmp;
-                            break;
-                        }
-                    }
-                }
-            }
-            ret.add(b);
-            VectBuilder tmp = a;
-            a = b;
-            b = tmp;
-        }
-        return ret;
-    }
-    
-    static void snapToNearest(SpatialNode<Line> node, VectBuilder vect, Tolerance tolerance, VectBuilder result){
-        double x = vect.getX();
-        double y = vect.getY();
-        if(Relation.isDisjoint(node.relate(x, y, tolerance))){
-            return;
-        }
-        if(node.isBranch()){
-            snapToNearest(node.getA(), vect, tolerance, result);
-            snapToNearest(node.getB(), vect, tolerance, result);
-            return;
-        }
-        double dist = Vect.distSq(x, y, result.getX(), result.getY());
-        for(int i = node.size(); i-- > 0;){
-            Line line = node.getItemValue(i);
-            double distA = Vect.distSq(x, y, line.ax, line.ay);
-            if(distA < dist){
-                line.getA(result);
-                dist = distA;
-            }
-            double distB = Vect.distSq(x, y, line.bx, line.by);
-            if(distB < dist){
-                line.getB(result);
-                dist = distB;
-            }
-        }
-    }
-    
     /**
      * Get an edge buffer from this ring
      *
@@ -0,0 +1,186 @@
+package org.geomatics.geom;
+
+import org.geomatics.geom.Network.LinkProcessor;
+import org.geomatics.util.VectList;
+import org.geomatics.util.VectMap;
+import org.geomatics.util.VectSet;
+import org.geomatics.util.VectMap.VectMapProcessor;
+
+/**
+ * Snap rounds a network to a uniform grid in a single pass. Each vertex is rounded to the centre
+ * of its grid pixel, making that pixel hot. Each link is then replaced with a path through the
+ * centres of all hot pixels it passes through. Hot pixels are bucketed in a coarse hash grid
+ * sized to the mean link length, so each link only tests pixels near it. All decisions are made
+ * against the original geometry, so the result does not depend on processing order.
+ *
+ * @author tofarrell
+ */
+final class SnapRounder {
+
+    private final double halfPixel;
+    private final double cellSize;
+    private final VectMap<VectList> cells;
+    private final VectList pixels;
+
+    private SnapRounder(double pixelSize, double cellSize, VectList pixels) {
+        this.halfPixel = pixelSize / 2;
+        this.cellSize = cellSize;
+        this.cells = new VectMap<>();
+        this.pixels = pixels;
+        for (int i = 0; i < pixels.size(); i++) {
+            double x = pixels.getX(i);
+            double y = pixels.getY(i);
+            double cx = Math.floor(x / cellSize);
+            double cy = Math.floor(y / cellSize);
+            VectList cell = cells.get(cx, cy);
+            if (cell == null) {
+                cell = new VectList(4);
+                cells.put(cx, cy, cell);
+            }
+            cell.add(x, y);
+        }
+    }
+
+    /**
+     * Snap round the network given
+     *
+     * @param network
+     * @param pixelSize
+     */
+    static void snapRound(Network network, final double pixelSize) {
+        final VectList links = new VectList();
+        final double[] length = new double[1];
+        network.forEachLink(new LinkProcessor() {
+            @Override
+            public boolean process(double ax, double ay, double bx, double by) {
+                links.add(ax, ay).add(bx, by);
+                length[0] += Math.sqrt(Vect.distSq(ax, ay, bx, by));
+                return true;
+            }
+        });
+        final VectList points = network.extractPoints(new VectList());
+        final VectSet hot = new VectSet();
+        network.map.forEach(new VectMapProcessor<VectList>() {
+            @Override
+            public boolean process(double x, double y, VectList value) {
+                hot.add(round(x, pixelSize), round(y, pixelSize));
+                return true;
+            }
+        });
+        double meanLength = (links.isEmpty()) ? 0 : (length[0] / (links.size() >> 1));
+        SnapRounder rounder = new SnapRounder(pixelSize, Math.max(pixelSize, meanLength), hot.toList(new VectList()));
+
+        network.clear();
+        for (int i = 0; i < points.size(); i++) {
+            network.addVertexInternal(round(points.getX(i), pixelSize), round(points.getY(i), pixelSize));
+        }
+        VectList path = new VectList();
+        for (int i = 0; i < links.size(); i += 2) {
+            double ax = links.getX(i);
+            double ay = links.getY(i);
+            double bx = links.getX(i + 1);
+            double by = links.getY(i + 1);
+            double rax = round(ax, pixelSize);
+            double ray = round(ay, pixelSize);
+            double rbx = round(bx, pixelSize);
+            double rby = round(by, pixelSize);
+            path.clear();
+            rounder.getHotPixels(ax, ay, bx, by, rax, ray, rbx, rby, path);
+            sortAlong(ax, ay, bx, by, path);
+            double px = rax;
+            double py = ray;
+            for (int j = 0; j < path.size(); j++) {
+                double qx = path.getX(j);
+                double qy = path.getY(j);
+                network.addLinkInternal(px, py, qx, qy);
+                px = qx;
+                py = qy;
+            }
+            if (!network.addLinkInternal(px, py, rbx, rby)) {
+                network.addVertexInternal(rbx, rby); // link collapsed to a point
+            }
+        }
+    }
+
+    //Insertion sort vectors by their projection onto the line given - there are typically very few
+    static void sortAlong(double ax, double ay, double bx, double by, VectList vects) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        for (int i = 1; i < vects.size(); i++) {
+            double x = vects.getX(i);
+            double y = vects.getY(i);
+            double u = (x - ax) * dx + (y - ay) * dy;
+            int j = i;
+            while ((j > 0) && (((vects.getX(j - 1) - ax) * dx + (vects.getY(j - 1) - ay) * dy) > u)) {
+                vects.swap(j, j - 1);
+                j--;
+            }
+        }
+    }
+
+    static double round(double ord, double pixelSize) {
+        return Math.rint(ord / pixelSize) * pixelSize;
+    }
+
+    //Add any hot pixels the line given passes through, other than those of its end points
+    void getHotPixels(double ax, double ay, double bx, double by, double rax, double ray, double rbx, double rby, VectList target) {
+        double minCX = Math.floor((Math.min(ax, bx) - halfPixel) / cellSize);
+        double minCY = Math.floor((Math.min(ay, by) - halfPixel) / cellSize);
+        double maxCX = Math.floor((Math.max(ax, bx) + halfPixel) / cellSize);
+        double maxCY = Math.floor((Math.max(ay, by) + halfPixel) / cellSize);
+        if ((maxCX - minCX + 1) * (maxCY - minCY + 1) > cells.size()) { // cheaper to check every pixel
+            getHotPixels(ax, ay, bx, by, rax, ray, rbx, rby, pixels, target);
+            return;
+        }
+        for (double cx = minCX; cx <= maxCX; cx++) {
+            for (double cy = minCY; cy <= maxCY; cy++) {
+                VectList cell = cells.get(cx, cy);
+                if (cell != null) {
+                    getHotPixels(ax, ay, bx, by, rax, ray, rbx, rby, cell, target);
+                }
+            }
+        }
+    }
+
+    private void getHotPixels(double ax, double ay, double bx, double by, double rax, double ray, double rbx, double rby, VectList candidates, VectList target) {
+        for (int i = 0; i < candidates.size(); i++) {
+            double x = candidates.getX(i);
+            double y = candidates.getY(i);
+            if (((x == rax) && (y == ray)) || ((x == rbx) && (y == rby))) {
+                continue;
+            }
+            if (crossesPixel(ax, ay, bx, by, x - halfPixel, y - halfPixel, x + halfPixel, y + halfPixel)) {
+                target.add(x, y);
+            }
+        }
+    }
+
+    //Liang-Barsky test for whether a segment crosses a pixel
+    static boolean crossesPixel(double ax, double ay, double bx, double by, double minX, double minY, double maxX, double maxY) {
+        double t0 = 0;
+        double t1 = 1;
+        double dx = bx - ax;
+        double dy = by - ay;
+        if (dx == 0) {
+            if ((ax < minX) || (ax > maxX)) {
+                return false;
+            }
+        } else {
+            double u = (minX - ax) / dx;
+            double v = (maxX - ax) / dx;
+            t0 = Math.max(t0, Math.min(u, v));
+            t1 = Math.min(t1, Math.max(u, v));
+        }
+        if (dy == 0) {
+            if ((ay < minY) || (ay > maxY)) {
+                return false;
+            }
+        } else {
+            double u = (minY - ay) / dy;
+            double v = (maxY - ay) / dy;
+            t0 = Math.max(t0, Math.min(u, v));
+            t1 = Math.min(t1, Math.max(u, v));
+        }
+        return t0 <= t1;
+    }
+}
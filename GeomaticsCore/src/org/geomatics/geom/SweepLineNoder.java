@@ -0,0 +1,202 @@
+package org.geomatics.geom;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import org.geomatics.geom.Network.IntersectionFinder;
+
+/**
+ * Finds candidate intersecting pairs of lines by sweeping a vertical line from left to right.
+ * Lines are sorted by their minimum x value, and the lines crossing the sweep line are kept in
+ * horizontal strips, so each line is only compared with active lines in the strips its y range
+ * overlaps. Lines ending before the sweep line are removed lazily as strips are visited. No
+ * spatial index needs to be built.
+ *
+ * @author tofarrell
+ */
+final class SweepLineNoder {
+
+    private static final Comparator<Line> MIN_X = new Comparator<Line>() {
+        @Override
+        public int compare(Line i, Line j) {
+            return Double.compare(Math.min(i.ax, i.bx), Math.min(j.ax, j.bx));
+        }
+    };
+
+    private final double tolerance;
+    private final double originY;
+    private final double stripHeight;
+    private final Strip[] strips;
+
+    private SweepLineNoder(double tolerance, double originY, double stripHeight, int numStrips) {
+        this.tolerance = tolerance;
+        this.originY = originY;
+        this.stripHeight = stripHeight;
+        this.strips = new Strip[numStrips];
+    }
+
+    //Create a noder with strips sized for the lines given
+    private static SweepLineNoder valueOf(double tolerance, Line[]... lines) {
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        double sumHeight = 0;
+        int numLines = 0;
+        for (Line[] array : lines) {
+            for (Line line : array) {
+                double lineMinY = Math.min(line.ay, line.by);
+                double lineMaxY = Math.max(line.ay, line.by);
+                minY = Math.min(minY, lineMinY);
+                maxY = Math.max(maxY, lineMaxY);
+                sumHeight += lineMaxY - lineMinY;
+            }
+            numLines += array.length;
+        }
+        double height = maxY - minY;
+        int maxStrips = Math.max(1, numLines >> 2);
+        double stripHeight = Math.max(sumHeight / Math.max(numLines, 1), height / maxStrips);
+        int numStrips = (stripHeight > 0) ? (int) Math.min(maxStrips, Math.ceil(height / stripHeight)) : 1;
+        return new SweepLineNoder(tolerance, minY, stripHeight, Math.max(numStrips, 1));
+    }
+
+    /**
+     * Pass each pair of lines given within tolerance of each other to the finder given. Each pair is
+     * passed in both directions.
+     *
+     * @param links
+     * @param finder
+     */
+    static void join(Line[] links, IntersectionFinder finder) {
+        links = links.clone();
+        Arrays.sort(links, MIN_X);
+        SweepLineNoder active = valueOf(finder.tolerance.tolerance, links);
+        for (Line link : links) {
+            active.processOverlapping(link, finder, true, true);
+            active.add(link);
+        }
+    }
+
+    /**
+     * Pass each pair of lines within tolerance of each other, where one is from a and one is from
+     * b, to the finder given. The line from a is always the first in the pair.
+     *
+     * @param a
+     * @param b
+     * @param finder
+     */
+    static void join(Line[] a, Line[] b, IntersectionFinder finder) {
+        a = a.clone();
+        b = b.clone();
+        Arrays.sort(a, MIN_X);
+        Arrays.sort(b, MIN_X);
+        SweepLineNoder activeA = valueOf(finder.tolerance.tolerance, a, b);
+        SweepLineNoder activeB = new SweepLineNoder(activeA.tolerance, activeA.originY, activeA.stripHeight, activeA.strips.length);
+        int i = 0;
+        int j = 0;
+        while ((i < a.length) || (j < b.length)) {
+            if ((j == b.length) || ((i < a.length) && (Math.min(a[i].ax, a[i].bx) <= Math.min(b[j].ax, b[j].bx)))) {
+                activeB.processOverlapping(a[i], finder, true, false);
+                if (j < b.length) { // once b is exhausted, remaining lines in a need not be active
+                    activeA.add(a[i]);
+                }
+                i++;
+            } else {
+                activeA.processOverlapping(b[j], finder, false, true);
+                if (i < a.length) {
+                    activeB.add(b[j]);
+                }
+                j++;
+            }
+        }
+    }
+
+    private int stripIndex(double y) {
+        int ret = (int) Math.floor((y - originY) / stripHeight);
+        return Math.max(0, Math.min(strips.length - 1, ret));
+    }
+
+    private void processOverlapping(Line line, IntersectionFinder finder, boolean forward, boolean backward) {
+        double minX = Math.min(line.ax, line.bx) - tolerance;
+        double minY = Math.min(line.ay, line.by) - tolerance;
+        double maxY = Math.max(line.ay, line.by) + tolerance;
+        int min = stripIndex(minY);
+        int max = stripIndex(maxY);
+        for (int s = min; s <= max; s++) {
+            Strip strip = strips[s];
+            if (strip == null) {
+                continue;
+            }
+            strip.sweep(minX);
+            for (int i = 0; i < strip.size; i++) {
+                double stripMinY = strip.minYs[i];
+                if ((stripMinY <= maxY) && (strip.maxYs[i] >= minY)
+                        && (stripIndex(Math.max(minY, stripMinY)) == s)) { // each pair is processed in one strip only
+                    Line other = strip.lines[i];
+                    if (forward) {
+                        finder.process(line, other);
+                    }
+                    if (backward) {
+                        finder.process(other, line);
+                    }
+                }
+            }
+        }
+    }
+
+    private void add(Line line) {
+        double minY = Math.min(line.ay, line.by);
+        double maxY = Math.max(line.ay, line.by);
+        double maxX = Math.max(line.ax, line.bx);
+        for (int s = stripIndex(minY), max = stripIndex(maxY); s <= max; s++) {
+            Strip strip = strips[s];
+            if (strip == null) {
+                strip = new Strip();
+                strips[s] = strip;
+            }
+            strip.add(line, maxX, minY, maxY);
+        }
+    }
+
+    /**
+     * Lines overlapping a horizontal strip, with their extents stored in parallel arrays
+     */
+    private static final class Strip {
+
+        Line[] lines = new Line[4];
+        double[] maxXs = new double[4];
+        double[] minYs = new double[4];
+        double[] maxYs = new double[4];
+        int size;
+
+        //Remove any lines which end before the x given
+        void sweep(double minX) {
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (maxXs[i] >= minX) {
+                    if (n != i) {
+                        lines[n] = lines[i];
+                        maxXs[n] = maxXs[i];
+                        minYs[n] = minYs[i];
+                        maxYs[n] = maxYs[i];
+                    }
+                    n++;
+                }
+            }
+            Arrays.fill(lines, n, size, null);
+            size = n;
+        }
+
+        void add(Line line, double maxX, double minY, double maxY) {
+            if (size == lines.length) {
+                int capacity = size << 1;
+                lines = Arrays.copyOf(lines, capacity);
+                maxXs = Arrays.copyOf(maxXs, capacity);
+                minYs = Arrays.copyOf(minYs, capacity);
+                maxYs = Arrays.copyOf(maxYs, capacity);
+            }
+            lines[size] = line;
+            maxXs[size] = maxX;
+            minYs[size] = minY;
+            maxYs[size] = maxY;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package org.geomatics.geom;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import org.geomatics.geom.Network.IntersectionFinder;
+import org.geomatics.geom.Network.Snap;
+import org.geomatics.geom.Network.SnapProcessor;
+import org.geomatics.util.SpatialNode;
+import org.geomatics.util.Tolerance;
+import org.geomatics.util.VectList;
+
+/**
+ * Splits the work of noding and snapping a network between the threads of the common
+ * ForkJoinPool. For noding, links are partitioned into a grid of spatial tiles, with each link
+ * added to every tile its bounds (Plus a tolerance margin) overlap. Each tile is swept
+ * independently, and a pair of links is only processed by the tile containing the minimum corner
+ * of the overlap of their bounds, so no pair is processed twice. Results are merged in a fixed
+ * order, so they do not depend on scheduling.
+ *
+ * @author tofarrell
+ */
+final class TiledNoder {
+
+    static final int LINKS_PER_TILE = 4096;
+    static final int VECTS_PER_TASK = 4096;
+
+    private TiledNoder() {
+    }
+
+    /**
+     * Find intersections between the links given in parallel
+     *
+     * @param links
+     * @param tolerance
+     * @return intersections by link, ordered by link
+     */
+    static Map<Line, VectList> findIntersections(Line[] links, Tolerance tolerance) {
+        TreeMap<Line, VectList> ret = new TreeMap<>();
+        if (links.length == 0) {
+            return ret;
+        }
+        double tol = tolerance.tolerance;
+        RectBuilder bounds = new RectBuilder();
+        for (Line link : links) {
+            bounds.addInternal(link.ax, link.ay).addInternal(link.bx, link.by);
+        }
+        int tilesPerAxis = (int) Math.ceil(Math.sqrt((double) links.length / LINKS_PER_TILE));
+        Grid grid = new Grid(bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY(), tilesPerAxis);
+
+        //count then fill links for each tile
+        int numTiles = tilesPerAxis * tilesPerAxis;
+        int[] offsets = new int[numTiles + 1];
+        for (Line link : links) {
+            grid.forTiles(link, tol, offsets, null, null);
+        }
+        for (int i = 0, sum = 0; i <= numTiles; i++) {
+            int count = offsets[i];
+            offsets[i] = sum;
+            sum += count;
+        }
+        Line[] tileLinks = new Line[offsets[numTiles]];
+        int[] positions = offsets.clone();
+        for (Line link : links) {
+            grid.forTiles(link, tol, null, positions, tileLinks);
+        }
+
+        List<TileTask> tasks = new ArrayList<>(numTiles);
+        for (int i = 0; i < numTiles; i++) {
+            int size = offsets[i + 1] - offsets[i];
+            if (size > 1) {
+                Line[] tile = new Line[size];
+                System.arraycopy(tileLinks, offsets[i], tile, 0, size);
+                tasks.add(new TileTask(tile, new TileFinder(tolerance, grid, i)));
+            }
+        }
+        ForkJoinPool.commonPool().invoke(new Tasks(tasks));
+        for (TileTask task : tasks) {
+            for (Entry<Line, VectList> entry : task.finder.intersections.entrySet()) {
+                VectList vects = ret.get(entry.getKey());
+                if (vects == null) {
+                    ret.put(entry.getKey(), entry.getValue());
+                } else {
+                    vects.addAll(entry.getValue());
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Calculate snaps for the network given in parallel. Results are in exactly the same order
+     * as calculating them sequentially.
+     *
+     * @param network
+     * @param tolerance
+     * @param results
+     */
+    static void calculateSnaps(Network network, Tolerance tolerance, Collection<Snap> results) {
+        final SpatialNode<Line> links = network.getLinks();
+        VectList vects = network.map.keyList(new VectList()); // in the same order as forEach
+        List<SnapTask> tasks = new ArrayList<>();
+        for (int i = 0; i < vects.size(); i += VECTS_PER_TASK) {
+            tasks.add(new SnapTask(vects, i, Math.min(vects.size(), i + VECTS_PER_TASK), links, tolerance, false));
+        }
+        VectList sorted = network.getVects(new VectList());
+        for (int a = sorted.size() - 1; a > 0; a -= VECTS_PER_TASK) { // point to point snaps are in descending order
+            tasks.add(new SnapTask(sorted, Math.max(0, a - VECTS_PER_TASK), a, null, tolerance, true));
+        }
+        ForkJoinPool.commonPool().invoke(new Tasks(tasks));
+        for (SnapTask task : tasks) {
+            results.addAll(task.results);
+        }
+    }
+
+    /**
+     * Uniform grid of tiles
+     */
+    static final class Grid {
+
+        final double minX;
+        final double minY;
+        final double tileWidth;
+        final double tileHeight;
+        final int tilesPerAxis;
+
+        Grid(double minX, double minY, double maxX, double maxY, int tilesPerAxis) {
+            this.minX = minX;
+            this.minY = minY;
+            this.tileWidth = (maxX - minX) / tilesPerAxis;
+            this.tileHeight = (maxY - minY) / tilesPerAxis;
+            this.tilesPerAxis = tilesPerAxis;
+        }
+
+        int column(double x) {
+            return index(x, minX, tileWidth);
+        }
+
+        int row(double y) {
+            return index(y, minY, tileHeight);
+        }
+
+        private int index(double ord, double min, double size) {
+            if (!(size > 0)) {
+                return 0;
+            }
+            int ret = (int) Math.floor((ord - min) / size);
+            return Math.max(0, Math.min(tilesPerAxis - 1, ret));
+        }
+
+        //Either count the link in each tile it overlaps, or add it to each tile it overlaps
+        void forTiles(Line link, double tol, int[] counts, int[] positions, Line[] tileLinks) {
+            int minCol = column(Math.min(link.ax, link.bx) - tol);
+            int maxCol = column(Math.max(link.ax, link.bx) + tol);
+            int minRow = row(Math.min(link.ay, link.by) - tol);
+            int maxRow = row(Math.max(link.ay, link.by) + tol);
+            for (int row = minRow; row <= maxRow; row++) {
+                for (int col = minCol; col <= maxCol; col++) {
+                    int tile = row * tilesPerAxis + col;
+                    if (counts != null) {
+                        counts[tile]++;
+                    } else {
+                        tileLinks[positions[tile]++] = link;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Intersection finder which only accepts pairs owned by a tile
+     */
+    static final class TileFinder extends IntersectionFinder {
+
+        final Grid grid;
+        final int tile;
+
+        TileFinder(Tolerance tolerance, Grid grid, int tile) {
+            super(tolerance);
+            this.grid = grid;
+            this.tile = tile;
+        }
+
+        @Override
+        void process(Line i, Line j) {
+            double x = Math.max(Math.min(i.ax, i.bx), Math.min(j.ax, j.bx));
+            double y = Math.max(Math.min(i.ay, i.by), Math.min(j.ay, j.by));
+            if (grid.row(y) * grid.tilesPerAxis + grid.column(x) == tile) {
+                super.process(i, j);
+            }
+        }
+    }
+
+    static final class TileTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        final Line[] links;
+        final TileFinder finder;
+
+        TileTask(Line[] links, TileFinder finder) {
+            this.links = links;
+            this.finder = finder;
+        }
+
+        @Override
+        protected void compute() {
+            SweepLineNoder.join(links, finder);
+        }
+    }
+
+    static final class SnapTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        final VectList vects;
+        final int min;
+        final int max;
+        final SpatialNode<Line> links; // null if snapping points to points
+        final Tolerance tolerance;
+        final boolean pointToPoint;
+        final List<Snap> results;
+
+        SnapTask(VectList vects, int min, int max, SpatialNode<Line> links, Tolerance tolerance, boolean pointToPoint) {
+            this.vects = vects;
+            this.min = min;
+            this.max = max;
+            this.links = links;
+            this.tolerance = tolerance;
+            this.pointToPoint = pointToPoint;
+            this.results = new ArrayList<>();
+        }
+
+        @Override
+        protected void compute() {
+            if (pointToPoint) {
+                Network.calculateSnapsForPoints(vects, min, max, tolerance, results);
+            } else {
+                SnapProcessor processor = new SnapProcessor(tolerance, results);
+                for (int i = min; i < max; i++) {
+                    processor.calculateSnapsForPoint(vects.getX(i), vects.getY(i), links);
+                }
+            }
+        }
+    }
+
+    static final class Tasks extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        final List<? extends RecursiveAction> tasks;
+
+        Tasks(List<? extends RecursiveAction> tasks) {
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected void compute() {
+            invokeAll(tasks);
+        }
+    }
+}
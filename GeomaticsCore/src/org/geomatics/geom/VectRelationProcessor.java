@@ -9,12 +9,16 @@ import org.geomatics.util.Tolerance;
  */
 class VectRelationProcessor implements NodeProcessor<Line> {
 
-    private final Tolerance tolerance;
+    private static final ThreadLocal<VectRelationProcessor> INSTANCE = new ThreadLocal<VectRelationProcessor>() {
+        @Override
+        protected VectRelationProcessor initialValue() {
+            return new VectRelationProcessor(Tolerance.ZERO);
+        }
+    };
+    private Tolerance tolerance;
     private double x;
     private double y;
     private int relation;
-    private boolean touchesLess; // there is a line which touches the ray but does not cross it and has a lower y value
-    private boolean touchesGreater; // there is a line which touches the ray but does not cross it and has a greater y value
 
     VectRelationProcessor(Tolerance tolerance) {
         this.tolerance = tolerance;
@@ -25,11 +29,21 @@ class VectRelationProcessor implements NodeProcessor<Line> {
         reset(x, y);
     }
 
+    /**
+     * Get a processor for the current thread, reset for the point given. The processor is reused
+     * by subsequent calls on the same thread, so must not be retained.
+     */
+    static VectRelationProcessor get(Tolerance tolerance, double x, double y) {
+        VectRelationProcessor ret = INSTANCE.get();
+        ret.tolerance = tolerance;
+        ret.reset(x, y);
+        return ret;
+    }
+
     public void reset(double x, double y) {
         this.x = x;
         this.y = y;
         relation = Relation.B_OUTSIDE_A;
-        touchesLess = touchesGreater = false;
     }
 
     public double getX() {
@@ -52,43 +66,17 @@ class VectRelationProcessor implements NodeProcessor<Line> {
             return false;
         }
         
-        if(tolerance.match(line.ay, line.by)){ // line is almost parallell to ray
-            return true; // skip and continue.
-        }
-        
-        //Get progress along line
-        double u = (y - line.ay) / (line.by - line.ay);
-        double ix = u * (line.bx - line.ax) + line.ax;
-        if(ix >= x){
-            if(tolerance.match(ix, y, line.ax, line.ay)){
-                touchEnd(line.ay, line.by);
-            }else if(tolerance.match(ix, y, line.bx, line.by)){
-                touchEnd(line.by, line.ay);
-            }else { // if((u > 0) && (u < 1)){
+        //The point is not within tolerance of any line processed so far, so the crossing test
+        //can be exact. Lines include their lower end point but not their upper, so a ray passing
+        //through a vertex is counted once
+        if((line.ay > y) != (line.by > y)){
+            double ix = line.ax + (y - line.ay) * (line.bx - line.ax) / (line.by - line.ay);
+            if(ix > x){
                 flipRelation();
             }
         }
         return true;
     }
-     
-    private void touchEnd(double touchY, double otherY){
-        if(touchY < otherY){
-            if (touchesLess) { // we have a crossing point
-                touchesLess = false;
-                flipRelation();
-            } else {
-                touchesGreater = !touchesGreater;
-            }
-        }else{
-            if (touchesGreater) { // we have a crossing point
-                touchesGreater = false;
-                flipRelation();
-            } else {
-                touchesLess = !touchesLess;
-            }
-        }
-    }
-        
 
     private void flipRelation() {
         relation = (relation == Relation.B_OUTSIDE_A) ? Relation.B_INSIDE_A : Relation.B_OUTSIDE_A;
@@ -0,0 +1,271 @@
+package org.geomatics.util;
+
+import java.util.Arrays;
+import java.util.Objects;
+import org.geomatics.geom.Rect;
+import org.geomatics.geom.RectBuilder;
+import org.geomatics.geom.Relation;
+import org.geomatics.util.SpatialNode.NodeProcessor;
+
+/**
+ * Thread safe spatial index. Edits never modify a node which may be visible to a reader - instead
+ * the path from the root to the edited leaf is copied, and the new root is published atomically.
+ * Readers therefore never lock, and always see a consistent snapshot of the index. Writers are
+ * serialised with each other.
+ *
+ * @author tofarrell
+ * @param <E>
+ */
+public final class ConcurrentRTree<E> {
+
+    private volatile SpatialNode<E> root;
+
+    /**
+     * Create a new empty ConcurrentRTree instance
+     */
+    public ConcurrentRTree() {
+        root = new SpatialNode<>();
+    }
+
+    /**
+     * Create a new ConcurrentRTree instance containing the entries in the node given
+     *
+     * @param node
+     * @throws NullPointerException if node was null
+     */
+    public ConcurrentRTree(SpatialNode<E> node) throws NullPointerException {
+        root = new RTree<>(node).root;
+    }
+
+    /**
+     * Create a new ConcurrentRTree instance bulk loaded with the entries given
+     *
+     * @param itemBounds
+     * @param itemValues
+     * @throws NullPointerException if itemBounds or itemValues was null
+     * @throws IllegalArgumentException if itemBounds and itemValues were different lengths
+     */
+    public ConcurrentRTree(Rect[] itemBounds, E[] itemValues) throws NullPointerException, IllegalArgumentException {
+        root = new RTree<>(itemBounds, itemValues).root;
+    }
+
+    /**
+     * Get a copy of this index. Nodes are never modified once visible, so the copy shares the
+     * current snapshot and this is a constant time operation.
+     *
+     * @return
+     */
+    @Override
+    public ConcurrentRTree<E> clone() {
+        ConcurrentRTree<E> ret = new ConcurrentRTree<>();
+        ret.root = root;
+        return ret;
+    }
+
+    /**
+     * Get a snapshot of this index. The snapshot is never modified, and may be queried freely from
+     * any thread.
+     *
+     * @return the current root node
+     */
+    public SpatialNode<E> getSnapshot() {
+        return root;
+    }
+
+    /**
+     * Add the value given at the location given
+     *
+     * @param itemBounds
+     * @param itemValue
+     * @return this
+     * @throws NullPointerException if itemBounds was null
+     */
+    public synchronized ConcurrentRTree<E> add(Rect itemBounds, E itemValue) throws NullPointerException {
+        if (itemBounds == null) {
+            throw new NullPointerException("itemBounds must not be null");
+        }
+        root = add(root, itemBounds, itemValue);
+        return this;
+    }
+
+    static <E> SpatialNode<E> add(SpatialNode<E> node, Rect itemBounds, E itemValue) {
+        RectBuilder bounds = node.bounds.clone().add(itemBounds);
+        if (node.isBranch()) {
+            SpatialNode<E> a = node.a;
+            SpatialNode<E> b = node.b;
+            if (RTree.getBestCandidateForInsert(itemBounds, a, b) == a) {
+                a = add(a, itemBounds, itemValue);
+            } else {
+                b = add(b, itemBounds, itemValue);
+            }
+            return new SpatialNode<>(a, b, bounds, null, null, node.size + 1);
+        }
+        Rect[] newItemBounds = Arrays.copyOf(node.itemBounds, node.size + 1);
+        E[] newItemValues = Arrays.copyOf(node.itemValues, node.size + 1);
+        newItemBounds[node.size] = itemBounds;
+        newItemValues[node.size] = itemValue;
+        SpatialNode<E> ret = new SpatialNode<>(null, null, bounds, newItemBounds, newItemValues, node.size + 1);
+        if (ret.size >= RTree.SPLIT_SIZE) {
+            RTree.trySplit(ret); // ret is not yet visible to readers, so may be modified
+        }
+        return ret;
+    }
+
+    /**
+     * Remove the entry given
+     *
+     * @param itemBounds
+     * @param itemValue
+     * @return true if removed, false otherwise
+     * @throws NullPointerException if itemBounds was null
+     */
+    public synchronized boolean remove(Rect itemBounds, E itemValue) throws NullPointerException {
+        if (itemBounds == null) {
+            throw new NullPointerException("itemBounds must not be null");
+        }
+        SpatialNode<E> ret = remove(root, itemBounds, itemValue);
+        if (ret == null) {
+            return false;
+        }
+        root = ret;
+        return true;
+    }
+
+    //Get a copy of the node given with the entry removed, or null if the entry was not found
+    static <E> SpatialNode<E> remove(SpatialNode<E> node, Rect itemBounds, E itemValue) {
+        if ((node.size == 0) || Relation.isAOutsideB(itemBounds.relate(node.bounds, Tolerance.ZERO))) {
+            return null;
+        } else if (node.isBranch()) {
+            SpatialNode<E> a = remove(node.a, itemBounds, itemValue);
+            SpatialNode<E> b = node.b;
+            if (a == null) {
+                b = remove(b, itemBounds, itemValue);
+                if (b == null) {
+                    return null;
+                }
+                a = node.a;
+            }
+            if (a.size == 0) {
+                return b;
+            } else if (b.size == 0) {
+                return a;
+            }
+            SpatialNode<E> ret = new SpatialNode<>(a, b, new RectBuilder().add(a.bounds).add(b.bounds), null, null, node.size - 1);
+            if (ret.size <= RTree.SPLIT_SIZE) { // merge into a leaf
+                Rect[] newItemBounds = new Rect[ret.size];
+                E[] newItemValues = SpatialNode.newValues(ret.size);
+                RTree.mergeNode(0, ret, new SpatialNode<>(null, null, null, newItemBounds, newItemValues, 0));
+                ret = new SpatialNode<>(null, null, ret.bounds, newItemBounds, newItemValues, ret.size);
+            }
+            return ret;
+        } else {
+            Rect[] _itemBounds = node.itemBounds;
+            E[] _itemValues = node.itemValues;
+            for (int i = node.size; i-- > 0;) {
+                if (itemBounds.equals(_itemBounds[i])
+                        && Objects.equals(_itemValues[i], itemValue)) {
+                    int newSize = node.size - 1;
+                    Rect[] newItemBounds = new Rect[newSize];
+                    E[] newItemValues = SpatialNode.newValues(newSize);
+                    System.arraycopy(_itemBounds, 0, newItemBounds, 0, i);
+                    System.arraycopy(_itemValues, 0, newItemValues, 0, i);
+                    System.arraycopy(_itemBounds, i + 1, newItemBounds, i, newSize - i);
+                    System.arraycopy(_itemValues, i + 1, newItemValues, i, newSize - i);
+                    RectBuilder bounds = new RectBuilder().addRects(newItemBounds, 0, newSize);
+                    return new SpatialNode<>(null, null, bounds, newItemBounds, newItemValues, newSize);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Remove all entries from this index
+     */
+    public synchronized void clear() {
+        root = new SpatialNode<>();
+    }
+
+    /**
+     * Rebuild this index to improve query performance. Readers may continue to query the
+     * existing snapshot while this takes place.
+     */
+    public synchronized void optimise() {
+        root = new RTree<>(root).root;
+    }
+
+    /**
+     * Get the bounds of this index
+     *
+     * @return bounds, or null if empty
+     */
+    public Rect getBounds() {
+        return root.getBounds();
+    }
+
+    /**
+     * Get the number of entries stored in this index
+     *
+     * @return
+     */
+    public int size() {
+        return root.size();
+    }
+
+    /**
+     * Determine if this index is empty
+     *
+     * @return
+     */
+    public boolean isEmpty() {
+        return root.isEmpty();
+    }
+
+    /**
+     * Determine whether this index contains the entry given
+     *
+     * @param rect
+     * @param value
+     * @return
+     * @throws NullPointerException if rect was null
+     */
+    public boolean contains(Rect rect, E value) throws NullPointerException {
+        return root.contains(rect, value);
+    }
+
+    /**
+     * Process all entries in the current snapshot of this index
+     *
+     * @param processor
+     * @return false if processor returned false, true otherwise
+     * @throws NullPointerException if processor was null
+     */
+    public boolean forEach(NodeProcessor<E> processor) throws NullPointerException {
+        return root.forEach(processor);
+    }
+
+    /**
+     * Get any entries in the current snapshot of this index not disjoint from the rect given
+     *
+     * @param rect
+     * @param accuracy
+     * @param processor
+     * @return false if processor returned false, true otherwise
+     * @throws NullPointerException if rect or processor was null
+     */
+    public boolean forInteracting(Rect rect, Tolerance accuracy, NodeProcessor<E> processor) throws NullPointerException {
+        return root.forInteracting(rect, accuracy, processor);
+    }
+
+    /**
+     * Get any entries in the current snapshot of this index overlapping the rect given
+     *
+     * @param rect
+     * @param processor
+     * @return false if processor returned false, true otherwise
+     * @throws NullPointerException if rect or processor was null
+     */
+    public boolean forOverlapping(Rect rect, NodeProcessor<E> processor) throws NullPointerException {
+        return root.forOverlapping(rect, processor);
+    }
+}
@@ -0,0 +1,529 @@
+package org.geomatics.util;
+
+import java.util.Arrays;
+import org.geomatics.geom.Rect;
+import org.geomatics.geom.Vect;
+
+/**
+ * Immutable index of points, ordered along a Morton (Z order) curve. Coordinates are held in a
+ * primitive array sorted by Morton key, so points which are close together in space are generally
+ * close together in the array. Box queries are performed by binary search on the key range of the
+ * box, skipping runs of the curve which leave the box (using the BIGMIN algorithm of Tropf and
+ * Herzog). Radius and nearest neighbour queries are built on top of this.
+ *
+ * @author tofarrell
+ */
+public final class MortonVectIndex {
+
+    static final int BITS = 31;
+    static final long MAX_CELL = (1L << BITS) - 1;
+    static final long EVEN_BITS = 0x5555555555555555L;
+    static final long ODD_BITS = 0xAAAAAAAAAAAAAAAAL;
+    final double[] ords;
+    final long[] keys;
+    final int[] indices;
+    final double minX;
+    final double minY;
+    final double maxX;
+    final double maxY;
+    final double scaleX;
+    final double scaleY;
+
+    /**
+     * Create a new index containing the vectors given
+     *
+     * @param vects
+     * @throws NullPointerException if vects was null
+     */
+    public MortonVectIndex(VectList vects) throws NullPointerException {
+        this(toOrds(vects));
+    }
+
+    /**
+     * Create a new index containing the ordinates given, in the format [x0, y0, x1, y1 ...]. The
+     * array given is not modified.
+     *
+     * @param ords
+     * @throws NullPointerException if ords was null
+     * @throws IllegalArgumentException if the number of ordinates was odd, or an ordinate was
+     * infinite or NaN
+     */
+    public MortonVectIndex(double... ords) throws NullPointerException, IllegalArgumentException {
+        if ((ords.length & 1) != 0) {
+            throw new IllegalArgumentException("Odd number of ordinates : " + ords.length);
+        }
+        double _minX = Double.POSITIVE_INFINITY;
+        double _minY = Double.POSITIVE_INFINITY;
+        double _maxX = Double.NEGATIVE_INFINITY;
+        double _maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < ords.length;) {
+            double x = ords[i++];
+            double y = ords[i++];
+            Vect.check(x, y);
+            _minX = Math.min(_minX, x);
+            _minY = Math.min(_minY, y);
+            _maxX = Math.max(_maxX, x);
+            _maxY = Math.max(_maxY, y);
+        }
+        int size = ords.length >> 1;
+        if (size == 0) {
+            _minX = _minY = _maxX = _maxY = Double.NaN;
+        }
+        this.minX = _minX;
+        this.minY = _minY;
+        this.maxX = _maxX;
+        this.maxY = _maxY;
+        this.scaleX = getScale(_minX, _maxX);
+        this.scaleY = getScale(_minY, _maxY);
+        long[] _keys = new long[size];
+        for (int i = 0, j = 0; i < size; i++) {
+            _keys[i] = key(cellX(ords[j++]), cellY(ords[j++]));
+        }
+        int[] order = sort(_keys);
+        this.keys = _keys;
+        this.indices = order;
+        this.ords = new double[ords.length];
+        for (int i = 0, j = 0; i < size; i++) {
+            int index = order[i] << 1;
+            this.ords[j++] = ords[index];
+            this.ords[j++] = ords[index + 1];
+        }
+    }
+
+    static double[] toOrds(VectList vects) {
+        double[] ret = new double[vects.size() << 1];
+        for (int i = 0, j = 0; i < vects.size(); i++) {
+            ret[j++] = vects.getX(i);
+            ret[j++] = vects.getY(i);
+        }
+        return ret;
+    }
+
+    static double getScale(double min, double max) {
+        double range = max - min;
+        return (range > 0) ? (MAX_CELL / range) : 0;
+    }
+
+    /**
+     * Get the order of the points given along a Morton curve over their bounds. Useful as a fast
+     * ordering for bulk loading spatial indexes.
+     *
+     * @param ords ordinates in the format [x0, y0, x1, y1 ...]
+     * @return array of indices of points in Morton order
+     * @throws NullPointerException if ords was null
+     * @throws IllegalArgumentException if the number of ordinates was odd, or an ordinate was
+     * infinite or NaN
+     */
+    public static int[] sortOrder(double... ords) throws NullPointerException, IllegalArgumentException {
+        return new MortonVectIndex(ords).indices;
+    }
+
+    long cellX(double x) {
+        return cell(x, minX, scaleX);
+    }
+
+    long cellY(double y) {
+        return cell(y, minY, scaleY);
+    }
+
+    static long cell(double value, double min, double scale) {
+        if (!(value > min)) {
+            return 0;
+        }
+        return Math.min((long) ((value - min) * scale), MAX_CELL);
+    }
+
+    static long key(long cellX, long cellY) {
+        return spread(cellX) | (spread(cellY) << 1);
+    }
+
+    //Spread the lower 32 bits of the value given to the even bits of a long
+    static long spread(long value) {
+        value &= 0xFFFFFFFFL;
+        value = (value | (value << 16)) & 0x0000FFFF0000FFFFL;
+        value = (value | (value << 8)) & 0x00FF00FF00FF00FFL;
+        value = (value | (value << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        value = (value | (value << 2)) & 0x3333333333333333L;
+        value = (value | (value << 1)) & EVEN_BITS;
+        return value;
+    }
+
+    //Inverse of spread - gather the even bits of the value given
+    static long compact(long value) {
+        value &= EVEN_BITS;
+        value = (value | (value >>> 1)) & 0x3333333333333333L;
+        value = (value | (value >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+        value = (value | (value >>> 4)) & 0x00FF00FF00FF00FFL;
+        value = (value | (value >>> 8)) & 0x0000FFFF0000FFFFL;
+        value = (value | (value >>> 16)) & 0x00000000FFFFFFFFL;
+        return value;
+    }
+
+    /**
+     * Get the smallest key greater than key which lies within the box defined by minKey and maxKey
+     * (Tropf and Herzog, 1981). key must not itself lie within the box.
+     */
+    static long bigMin(long key, long minKey, long maxKey) {
+        long ret = 0;
+        for (int bit = (BITS << 1) - 1; bit >= 0; bit--) {
+            long mask = 1L << bit;
+            long below = (((bit & 1) == 0) ? EVEN_BITS : ODD_BITS) & (mask - 1); // lower bits in same dimension
+            boolean k = (key & mask) != 0;
+            boolean min = (minKey & mask) != 0;
+            boolean max = (maxKey & mask) != 0;
+            if (!k) {
+                if (min) {
+                    return minKey; // min and max are both 1
+                } else if (max) {
+                    ret = (minKey | mask) & ~below;
+                    maxKey = (maxKey & ~mask) | below;
+                }
+            } else if (!min) {
+                if (!max) {
+                    return ret;
+                }
+                minKey = (minKey | mask) & ~below;
+            }
+        }
+        return ret;
+    }
+
+    //Radix sort keys in place, returning the original index of each sorted key
+    static int[] sort(long[] keys) {
+        int size = keys.length;
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        if (size == 0) {
+            return order;
+        }
+        long[] tmpKeys = new long[size];
+        int[] tmpOrder = new int[size];
+        int[] counts = new int[257];
+        for (int shift = 0; shift < (BITS << 1); shift += 8) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < size; i++) {
+                counts[(int) ((keys[i] >>> shift) & 0xFF) + 1]++;
+            }
+            if (counts[(int) ((keys[0] >>> shift) & 0xFF) + 1] == size) {
+                continue; // all keys have the same value for this byte
+            }
+            for (int i = 1; i < counts.length; i++) {
+                counts[i] += counts[i - 1];
+            }
+            for (int i = 0; i < size; i++) {
+                int b = (int) ((keys[i] >>> shift) & 0xFF);
+                int j = counts[b]++;
+                tmpKeys[j] = keys[i];
+                tmpOrder[j] = order[i];
+            }
+            System.arraycopy(tmpKeys, 0, keys, 0, size);
+            int[] swap = order;
+            order = tmpOrder;
+            tmpOrder = swap;
+        }
+        return order;
+    }
+
+    /**
+     * Get the number of points in this index
+     *
+     * @return
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * Determine if this index is empty
+     *
+     * @return
+     */
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    /**
+     * Get the bounds of this index
+     *
+     * @return bounds, or null if empty
+     */
+    public Rect getBounds() {
+        return isEmpty() ? null : Rect.valueOf(minX, minY, maxX, maxY);
+    }
+
+    /**
+     * Get the x value of the point at the position given in Morton order
+     *
+     * @param position
+     * @return
+     * @throws IndexOutOfBoundsException if position was out of bounds
+     */
+    public double getX(int position) throws IndexOutOfBoundsException {
+        return ords[checkPosition(position) << 1];
+    }
+
+    /**
+     * Get the y value of the point at the position given in Morton order
+     *
+     * @param position
+     * @return
+     * @throws IndexOutOfBoundsException if position was out of bounds
+     */
+    public double getY(int position) throws IndexOutOfBoundsException {
+        return ords[(checkPosition(position) << 1) + 1];
+    }
+
+    /**
+     * Get the original index of the point at the position given in Morton order
+     *
+     * @param position
+     * @return
+     * @throws IndexOutOfBoundsException if position was out of bounds
+     */
+    public int getIndex(int position) throws IndexOutOfBoundsException {
+        return indices[checkPosition(position)];
+    }
+
+    int checkPosition(int position) throws IndexOutOfBoundsException {
+        if ((position < 0) || (position >= keys.length)) {
+            throw new IndexOutOfBoundsException("Invalid position : " + position);
+        }
+        return position;
+    }
+
+    /**
+     * Process all points in Morton order
+     *
+     * @param processor
+     * @return false if processor returned false, true otherwise
+     * @throws NullPointerException if processor was null
+     */
+    public boolean forEach(PointProcessor processor) throws NullPointerException {
+        for (int i = 0, j = 0; i < keys.length; i++) {
+            if (!processor.process(indices[i], ords[j++], ords[j++])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Process all points within tolerance of the rect given
+     *
+     * @param rect
+     * @param accuracy
+     * @param processor
+     * @return false if processor returned false, true otherwise
+     * @throws NullPointerException if rect, accuracy or processor was null
+     */
+    public boolean forInteracting(Rect rect, Tolerance accuracy, PointProcessor processor) throws NullPointerException {
+        double tolerance = accuracy.tolerance;
+        return forInteractingInternal(rect.minX - tolerance, rect.minY - tolerance,
+                rect.maxX + tolerance, rect.maxY + tolerance, processor);
+    }
+
+    boolean forInteractingInternal(double qMinX, double qMinY, double qMaxX, double qMaxY, PointProcessor processor) {
+        if (isEmpty() || (qMinX > maxX) || (qMinY > maxY) || (qMaxX < minX) || (qMaxY < minY)) {
+            return true;
+        }
+        long cMinX = cellX(qMinX);
+        long cMinY = cellY(qMinY);
+        long cMaxX = cellX(qMaxX);
+        long cMaxY = cellY(qMaxY);
+        long minKey = key(cMinX, cMinY);
+        long maxKey = key(cMaxX, cMaxY);
+        long[] _keys = keys;
+        double[] _ords = ords;
+        int i = lowerBound(minKey, 0);
+        while (i < _keys.length) {
+            long k = _keys[i];
+            if (k > maxKey) {
+                break;
+            }
+            long cx = compact(k);
+            long cy = compact(k >>> 1);
+            if ((cx >= cMinX) && (cx <= cMaxX) && (cy >= cMinY) && (cy <= cMaxY)) {
+                double x = _ords[i << 1];
+                double y = _ords[(i << 1) + 1];
+                if ((x >= qMinX) && (x <= qMaxX) && (y >= qMinY) && (y <= qMaxY)) {
+                    if (!processor.process(indices[i], x, y)) {
+                        return false;
+                    }
+                }
+                i++;
+            } else { // curve has left the box - skip to where it reenters
+                i = lowerBound(bigMin(k, minKey, maxKey), i + 1);
+            }
+        }
+        return true;
+    }
+
+    //Get the position of the first key >= key given, starting at the position given
+    int lowerBound(long key, int startPosition) {
+        int lo = startPosition;
+        int hi = keys.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Process all points within the distance given of the point given
+     *
+     * @param x
+     * @param y
+     * @param radius
+     * @param processor
+     * @return false if processor returned false, true otherwise
+     * @throws NullPointerException if processor was null
+     * @throws IllegalArgumentException if x, y or radius was infinite or NaN, or radius was
+     * negative
+     */
+    public boolean forWithin(final double x, final double y, double radius, final PointProcessor processor) throws NullPointerException, IllegalArgumentException {
+        Vect.check(x, y);
+        Vect.check(radius, "Invalid radius : {0}");
+        if (radius < 0) {
+            throw new IllegalArgumentException("Invalid radius : " + radius);
+        }
+        if (processor == null) {
+            throw new NullPointerException("Processor must not be null");
+        }
+        final double radiusSq = radius * radius;
+        return forInteractingInternal(x - radius, y - radius, x + radius, y + radius, new PointProcessor() {
+            @Override
+            public boolean process(int index, double px, double py) {
+                return (Vect.distSq(x, y, px, py) > radiusSq) || processor.process(index, px, py);
+            }
+        });
+    }
+
+    /**
+     * Process the points nearest to the point given, in order of increasing distance. An upper
+     * bound for the distance of the furthest result is estimated from points adjacent in Morton
+     * order, and the results are then selected from a radius query.
+     *
+     * @param x
+     * @param y
+     * @param maxResults maximum number of results
+     * @param maxDist maximum distance (May be infinite)
+     * @param processor
+     * @return false if processor returned false, true otherwise
+     * @throws NullPointerException if processor was null
+     * @throws IllegalArgumentException if x or y was infinite or NaN, or maxDist was NaN or
+     * negative
+     */
+    public boolean forNearest(double x, double y, int maxResults, double maxDist, PointProcessor processor) throws NullPointerException, IllegalArgumentException {
+        Vect.check(x, y);
+        if (Double.isNaN(maxDist) || (maxDist < 0)) {
+            throw new IllegalArgumentException("Invalid max distance : " + maxDist);
+        }
+        if (processor == null) {
+            throw new NullPointerException("Processor must not be null");
+        }
+        int size = keys.length;
+        if ((maxResults <= 0) || (size == 0)) {
+            return true;
+        }
+
+        //Estimate search radius from points adjacent on the curve
+        double maxDistSq = maxDist * maxDist;
+        double radiusSq = maxDistSq;
+        if (size > maxResults) {
+            int windowSize = (int) Math.min(size, 2L * maxResults);
+            int start = lowerBound(key(cellX(x), cellY(y)), 0) - maxResults;
+            start = Math.max(0, Math.min(start, size - windowSize));
+            double[] windowDistSq = new double[windowSize];
+            for (int i = 0; i < windowSize; i++) {
+                int j = (start + i) << 1;
+                windowDistSq[i] = Vect.distSq(x, y, ords[j], ords[j + 1]);
+            }
+            Arrays.sort(windowDistSq);
+            radiusSq = Math.min(radiusSq, windowDistSq[maxResults - 1]);
+        }
+
+        //Collect candidates and sort by distance
+        Candidates candidates = new Candidates(x, y, radiusSq);
+        if (Double.isInfinite(radiusSq)) {
+            forEach(candidates);
+        } else {
+            double radius = Math.sqrt(radiusSq);
+            forInteractingInternal(x - radius, y - radius, x + radius, y + radius, candidates);
+        }
+        int numCandidates = candidates.size;
+        int[] order = new int[numCandidates];
+        for (int i = 0; i < numCandidates; i++) {
+            order[i] = i;
+        }
+        RTree.sortIndices(order, candidates.distSq, 0, 0, numCandidates);
+        for (int i = 0, n = Math.min(maxResults, numCandidates); i < n; i++) {
+            int c = order[i] << 1;
+            if (candidates.distSq[c] > maxDistSq) {
+                break;
+            }
+            if (!processor.process(candidates.indices[order[i]], candidates.ords[c], candidates.ords[c + 1])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //Collects points within a radius, along with their squared distance
+    static final class Candidates implements PointProcessor {
+
+        final double x;
+        final double y;
+        final double radiusSq;
+        int[] indices = new int[16];
+        double[] ords = new double[32];
+        double[] distSq = new double[32]; // pairs, with distance in the first slot, as expected by RTree.sortIndices
+        int size;
+
+        Candidates(double x, double y, double radiusSq) {
+            this.x = x;
+            this.y = y;
+            this.radiusSq = radiusSq;
+        }
+
+        @Override
+        public boolean process(int index, double px, double py) {
+            double d = Vect.distSq(x, y, px, py);
+            if (d <= radiusSq) {
+                if (size == indices.length) {
+                    indices = Arrays.copyOf(indices, size << 1);
+                    ords = Arrays.copyOf(ords, size << 2);
+                    distSq = Arrays.copyOf(distSq, size << 2);
+                }
+                int j = size << 1;
+                indices[size++] = index;
+                ords[j] = px;
+                ords[j + 1] = py;
+                distSq[j] = d;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Processor for points in an index
+     */
+    public interface PointProcessor {
+
+        /**
+         * Process the point given
+         *
+         * @param index original index of the point
+         * @param x
+         * @param y
+         * @return true if more points are acceptable, false otherwise
+         */
+        public boolean process(int index, double x, double y);
+    }
+}
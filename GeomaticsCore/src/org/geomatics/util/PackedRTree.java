@@ -0,0 +1,610 @@
+package org.geomatics.util;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import org.geomatics.geom.GeomException;
+import org.geomatics.geom.Rect;
+import org.geomatics.geom.Relation;
+import org.geomatics.util.SpatialNode.NodeProcessor;
+
+/**
+ * Immutable packed spatial index. Unlike RTree, no node or rect objects are kept per entry - the
+ * bounds of all entries and nodes are held in a single buffer of ordinates in node order, with
+ * the structure of the tree implicit in the ordering. Entries are sorted along a hilbert curve
+ * before packing, and each node has up to nodeCapacity children.
+ *
+ * Layout : bounds [minX, minY, maxX, maxY] for each entry, followed by the bounds of each node in
+ * the level above, up to the root. For entries, the index buffer holds the original index of the
+ * entry. For nodes, it holds the position of the first child.
+ *
+ * Indexes may be written to a file and later memory mapped, in which case queries run directly
+ * against the mapped buffer. File format (big endian) : magic, version, nodeCapacity, numItems,
+ * numLevels, levelBounds[numLevels], padding to an 8 byte boundary, boxes[numNodes * 4],
+ * indices[numNodes]. Values are not stored, and must be supplied when mapping if required.
+ *
+ * @author tofarrell
+ * @param <E>
+ */
+public final class PackedRTree<E> {
+
+    static final int DEFAULT_NODE_CAPACITY = 16;
+    static final int HILBERT_MAX = (1 << 15) - 1;
+    static final int MAGIC = 0x47505254; // GPRT
+    static final int VERSION = 1;
+    final int numItems;
+    final int nodeCapacity;
+    final int[] levelBounds;
+    final DoubleBuffer boxes;
+    final IntBuffer indices;
+    final E[] values;
+
+    PackedRTree(int numItems, int nodeCapacity, int[] levelBounds, DoubleBuffer boxes, IntBuffer indices, E[] values) {
+        this.numItems = numItems;
+        this.nodeCapacity = nodeCapacity;
+        this.levelBounds = levelBounds;
+        this.boxes = boxes;
+        this.indices = indices;
+        this.values = values;
+    }
+
+    /**
+     * Create a new packed index based on the values given, with the default node capacity
+     *
+     * @param itemBounds
+     * @param itemValues
+     * @throws NullPointerException if itemBounds or itemValues was null, or contained a null bounds
+     * @throws IllegalArgumentException if the number of bounds did not match the number of values
+     */
+    public PackedRTree(Rect[] itemBounds, E[] itemValues) throws NullPointerException, IllegalArgumentException {
+        this(toOrds(itemBounds), itemValues, DEFAULT_NODE_CAPACITY);
+    }
+
+    /**
+     * Create a new packed index based on the values given
+     *
+     * @param itemBounds bounds of entries in the form [minX, minY, maxX, maxY...]
+     * @param itemValues
+     * @param nodeCapacity maximum number of children for a node
+     * @throws NullPointerException if itemBounds or itemValues was null
+     * @throws IllegalArgumentException if the number of bounds did not match the number of values,
+     * a bounds was invalid, or nodeCapacity was less than 2
+     */
+    public PackedRTree(double[] itemBounds, E[] itemValues, int nodeCapacity) throws NullPointerException, IllegalArgumentException {
+        if ((itemBounds.length >> 2) != itemValues.length || ((itemBounds.length & 3) != 0)) {
+            throw new IllegalArgumentException("Different numbers of arguments : " + (itemBounds.length / 4.0) + "->" + itemValues.length);
+        }
+        RTree.checkNodeCapacity(nodeCapacity);
+        for (int i = 0; i < itemBounds.length; i += 4) {
+            Rect.check(itemBounds[i], itemBounds[i + 1], itemBounds[i + 2], itemBounds[i + 3]);
+            if ((itemBounds[i] > itemBounds[i + 2]) || (itemBounds[i + 1] > itemBounds[i + 3])) {
+                throw new IllegalArgumentException("Invalid bounds at index " + (i >> 2));
+            }
+        }
+        this.numItems = itemValues.length;
+        this.nodeCapacity = nodeCapacity;
+        this.levelBounds = getLevelBounds(numItems, nodeCapacity);
+        int numNodes = levelBounds[levelBounds.length - 1];
+        double[] _boxes = new double[numNodes << 2];
+        int[] _indices = new int[numNodes];
+        this.values = itemValues.clone();
+        pack(itemBounds, numItems, nodeCapacity, levelBounds, _boxes, _indices);
+        this.boxes = DoubleBuffer.wrap(_boxes);
+        this.indices = IntBuffer.wrap(_indices);
+    }
+
+    static double[] toOrds(Rect[] itemBounds) throws NullPointerException {
+        double[] ret = new double[itemBounds.length << 2];
+        for (int i = 0, j = 0; i < itemBounds.length; i++) {
+            Rect r = itemBounds[i];
+            if (r == null) {
+                throw new NullPointerException("Null rect at index : " + i);
+            }
+            ret[j++] = r.minX;
+            ret[j++] = r.minY;
+            ret[j++] = r.maxX;
+            ret[j++] = r.maxY;
+        }
+        return ret;
+    }
+
+    //Get the (exclusive) end position of each level, from the leaves up to the root
+    static int[] getLevelBounds(int numItems, int nodeCapacity) {
+        int numLevels = 1;
+        for (int n = numItems; n > 1;) {
+            n = (n + nodeCapacity - 1) / nodeCapacity;
+            numLevels++;
+        }
+        if (numItems <= 1) {
+            return new int[]{numItems};
+        }
+        int[] ret = new int[numLevels];
+        int n = numItems;
+        int numNodes = n;
+        ret[0] = n;
+        for (int level = 1; level < numLevels; level++) {
+            n = (n + nodeCapacity - 1) / nodeCapacity;
+            numNodes += n;
+            ret[level] = numNodes;
+        }
+        return ret;
+    }
+
+    static void pack(double[] itemBounds, int numItems, int nodeCapacity, int[] levelBounds, double[] boxes, int[] indices) {
+        if (numItems == 0) {
+            return;
+        }
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < itemBounds.length; i += 4) {
+            minX = Math.min(minX, itemBounds[i]);
+            minY = Math.min(minY, itemBounds[i + 1]);
+            maxX = Math.max(maxX, itemBounds[i + 2]);
+            maxY = Math.max(maxY, itemBounds[i + 3]);
+        }
+
+        //Sort entries along hilbert curve
+        double scaleX = (maxX > minX) ? HILBERT_MAX / (maxX - minX) : 0;
+        double scaleY = (maxY > minY) ? HILBERT_MAX / (maxY - minY) : 0;
+        long[] keys = new long[numItems];
+        for (int i = 0, j = 0; i < numItems; i++, j += 4) {
+            int x = (int) (((itemBounds[j] + itemBounds[j + 2]) / 2 - minX) * scaleX);
+            int y = (int) (((itemBounds[j + 1] + itemBounds[j + 3]) / 2 - minY) * scaleY);
+            keys[i] = (((long) hilbert(x, y)) << 32) | i; // index in lower bits keeps sort stable
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < numItems; i++) {
+            int index = (int) keys[i];
+            indices[i] = index;
+            System.arraycopy(itemBounds, index << 2, boxes, i << 2, 4);
+        }
+
+        //Build levels above entries
+        int childStart = 0;
+        for (int level = 1; level < levelBounds.length; level++) {
+            int childEnd = levelBounds[level - 1];
+            int pos = childEnd;
+            for (int child = childStart; child < childEnd; child += nodeCapacity, pos++) {
+                int end = Math.min(child + nodeCapacity, childEnd);
+                int c = child << 2;
+                minX = boxes[c];
+                minY = boxes[c + 1];
+                maxX = boxes[c + 2];
+                maxY = boxes[c + 3];
+                for (c += 4; c < (end << 2); c += 4) {
+                    minX = Math.min(minX, boxes[c]);
+                    minY = Math.min(minY, boxes[c + 1]);
+                    maxX = Math.max(maxX, boxes[c + 2]);
+                    maxY = Math.max(maxY, boxes[c + 3]);
+                }
+                int p = pos << 2;
+                boxes[p] = minX;
+                boxes[p + 1] = minY;
+                boxes[p + 2] = maxX;
+                boxes[p + 3] = maxY;
+                indices[pos] = child;
+            }
+            childStart = childEnd;
+        }
+    }
+
+    /**
+     * Get the distance along a 32768 x 32768 hilbert curve of the point given.
+     *
+     * @param x (0 - 32767)
+     * @param y (0 - 32767)
+     * @return
+     */
+    static int hilbert(int x, int y) {
+        int ret = 0;
+        for (int s = 1 << 14; s > 0; s >>= 1) {
+            int rx = ((x & s) > 0) ? 1 : 0;
+            int ry = ((y & s) > 0) ? 1 : 0;
+            ret += s * s * ((3 * rx) ^ ry);
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = HILBERT_MAX - x;
+                    y = HILBERT_MAX - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Write this index to the output given. Values are not written.
+     *
+     * @param out
+     * @throws NullPointerException if out was null
+     * @throws GeomException if there was an IO error
+     */
+    public void write(DataOutput out) throws NullPointerException, GeomException {
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(nodeCapacity);
+            out.writeInt(numItems);
+            out.writeInt(levelBounds.length);
+            for (int levelBound : levelBounds) {
+                out.writeInt(levelBound);
+            }
+            for (int i = getHeaderSize(levelBounds.length) - getUnpaddedHeaderSize(levelBounds.length); i-- > 0;) {
+                out.writeByte(0);
+            }
+            for (int i = 0, max = boxes.limit(); i < max; i++) {
+                out.writeDouble(boxes.get(i));
+            }
+            for (int i = 0, max = indices.limit(); i < max; i++) {
+                out.writeInt(indices.get(i));
+            }
+        } catch (IOException ex) {
+            throw new GeomException("Error writing PackedRTree", ex);
+        }
+    }
+
+    /**
+     * Memory map an index previously written to the channel given, starting at the position given.
+     * The mapping remains valid after the channel is closed. Queries run directly against the
+     * mapped buffer, so opening an index is constant time regardless of its size.
+     *
+     * @param <E>
+     * @param channel
+     * @param position
+     * @param values values for the index (in their original order), or null if only index based
+     * queries are required
+     * @return mapped index
+     * @throws NullPointerException if channel was null
+     * @throws IllegalArgumentException if the number of values did not match the number of entries
+     * @throws GeomException if there was an IO error, or the data was not a valid index
+     */
+    public static <E> PackedRTree<E> map(FileChannel channel, long position, E[] values) throws NullPointerException, IllegalArgumentException, GeomException {
+        try {
+            long available = channel.size() - position;
+            if (available < getUnpaddedHeaderSize(0)) {
+                throw new GeomException("Not a PackedRTree : insufficient data");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(available, getUnpaddedHeaderSize(0)));
+            if (header.getInt() != MAGIC) {
+                throw new GeomException("Not a PackedRTree : invalid header");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new GeomException("Unsupported PackedRTree version : " + version);
+            }
+            int nodeCapacity = header.getInt();
+            int numItems = header.getInt();
+            int numLevels = header.getInt();
+            if ((nodeCapacity < 2) || (numItems < 0) || (numLevels < 1) || (numLevels > 32)) {
+                throw new GeomException("Not a PackedRTree : invalid header");
+            }
+            if ((values != null) && (values.length != numItems)) {
+                throw new IllegalArgumentException("Different numbers of arguments : " + numItems + "->" + values.length);
+            }
+            int[] levelBounds = getLevelBounds(numItems, nodeCapacity);
+            int numNodes = levelBounds[levelBounds.length - 1];
+            long headerSize = getHeaderSize(numLevels);
+            long totalSize = headerSize + (numNodes * 32L) + (numNodes * 4L);
+            if ((levelBounds.length != numLevels) || (available < totalSize)) {
+                throw new GeomException("Not a PackedRTree : invalid or truncated data");
+            }
+            if (totalSize > Integer.MAX_VALUE) {
+                throw new GeomException("PackedRTree too large to map : " + totalSize);
+            }
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, position, totalSize);
+            data.position(getUnpaddedHeaderSize(0));
+            for (int levelBound : levelBounds) {
+                if (data.getInt() != levelBound) {
+                    throw new GeomException("Not a PackedRTree : invalid level bounds");
+                }
+            }
+            data.position((int) headerSize);
+            DoubleBuffer boxes = data.slice().asDoubleBuffer();
+            boxes.limit(numNodes << 2);
+            data.position((int) headerSize + (numNodes << 5));
+            IntBuffer indices = data.slice().asIntBuffer();
+            indices.limit(numNodes);
+            return new PackedRTree<>(numItems, nodeCapacity, levelBounds, boxes, indices, (values == null) ? null : values.clone());
+        } catch (IOException ex) {
+            throw new GeomException("Error mapping PackedRTree", ex);
+        }
+    }
+
+    /**
+     * Get the number of bytes required to write this index
+     *
+     * @return
+     */
+    public long getWriteSize() {
+        int numNodes = levelBounds[levelBounds.length - 1];
+        return getHeaderSize(levelBounds.length) + (numNodes * 32L) + (numNodes * 4L);
+    }
+
+    static int getUnpaddedHeaderSize(int numLevels) {
+        return (5 + numLevels) << 2;
+    }
+
+    static int getHeaderSize(int numLevels) {
+        return (getUnpaddedHeaderSize(numLevels) + 7) & ~7;
+    }
+
+    /**
+     * Get the number of entries in this index
+     *
+     * @return
+     */
+    public int size() {
+        return numItems;
+    }
+
+    /**
+     * Determine if this index is empty
+     *
+     * @return
+     */
+    public boolean isEmpty() {
+        return (numItems == 0);
+    }
+
+    /**
+     * Get the maximum number of children for a node in this index
+     *
+     * @return
+     */
+    public int getNodeCapacity() {
+        return nodeCapacity;
+    }
+
+    /**
+     * Get the bounds of this index
+     *
+     * @return bounds, or null if empty
+     */
+    public Rect getBounds() {
+        if (numItems == 0) {
+            return null;
+        }
+        int p = (levelBounds[levelBounds.length - 1] - 1) << 2;
+        return Rect.valueOf(boxes.get(p), boxes.get(p + 1), boxes.get(p + 2), boxes.get(p + 3));
+    }
+
+    /**
+     * Get the value of the entry with the original index given (null if this index was mapped
+     * without values)
+     *
+     * @param index
+     * @return
+     * @throws IndexOutOfBoundsException if index was out of bounds
+     */
+    public E getItemValue(int index) throws IndexOutOfBoundsException {
+        if ((index < 0) || (index >= numItems)) {
+            throw new IndexOutOfBoundsException(index + " is outside range [0," + numItems + "]");
+        }
+        return (values == null) ? null : values[index];
+    }
+
+    /**
+     * Process all entries in this index
+     *
+     * @param processor
+     * @return false if processor returned false, true otherwise
+     * @throws NullPointerException if processor was null
+     */
+    public boolean forEach(NodeProcessor<E> processor) throws NullPointerException {
+        return processRange(0, numItems, new ValueProcessor<>(values, processor));
+    }
+
+    /**
+     * Process all entries in this index
+     *
+     * @param processor
+     * @return false if processor returned false, true otherwise
+     * @throws NullPointerException if processor was null
+     */
+    public boolean forEach(IndexProcessor processor) throws NullPointerException {
+        return processRange(0, numItems, processor);
+    }
+
+    /**
+     * Get any entries not disjoint from the rect given
+     *
+     * @param rect
+     * @param accuracy
+     * @param processor
+     * @return false if processor returned false, true otherwise
+     * @throws NullPointerException if rect, accuracy or processor was null
+     */
+    public boolean forInteracting(Rect rect, Tolerance accuracy, NodeProcessor<E> processor) throws NullPointerException {
+        return forInteracting(rect.minX, rect.minY, rect.maxX, rect.maxY, accuracy, new ValueProcessor<>(values, processor));
+    }
+
+    /**
+     * Get any entries not disjoint from the rect given
+     *
+     * @param minX
+     * @param minY
+     * @param maxX
+     * @param maxY
+     * @param accuracy
+     * @param processor
+     * @return false if processor returned false, true otherwise
+     * @throws NullPointerException if accuracy or processor was null
+     */
+    public boolean forInteracting(double minX, double minY, double maxX, double maxY, Tolerance accuracy, IndexProcessor processor) throws NullPointerException {
+        return search(minX, minY, maxX, maxY, accuracy, false, processor);
+    }
+
+    /**
+     * Get any entries overlapping the rect given
+     *
+     * @param rect
+     * @param processor
+     * @return false if processor returned false, true otherwise
+     * @throws NullPointerException if rect or processor was null
+     */
+    public boolean forOverlapping(Rect rect, NodeProcessor<E> processor) throws NullPointerException {
+        return forOverlapping(rect.minX, rect.minY, rect.maxX, rect.maxY, new ValueProcessor<>(values, processor));
+    }
+
+    /**
+     * Get any entries overlapping the rect given
+     *
+     * @param minX
+     * @param minY
+     * @param maxX
+     * @param maxY
+     * @param processor
+     * @return false if processor returned false, true otherwise
+     * @throws NullPointerException if processor was null
+     */
+    public boolean forOverlapping(double minX, double minY, double maxX, double maxY, IndexProcessor processor) throws NullPointerException {
+        return search(minX, minY, maxX, maxY, Tolerance.ZERO, true, processor);
+    }
+
+    /**
+     * Get the number of entries which are not disjoint with the region given
+     *
+     * @param rect
+     * @return
+     * @throws NullPointerException if rect was null
+     */
+    public int sizeInteracting(Rect rect) throws NullPointerException {
+        CountProcessor counter = new CountProcessor();
+        search(rect.minX, rect.minY, rect.maxX, rect.maxY, Tolerance.ZERO, false, counter);
+        return counter.count;
+    }
+
+    /**
+     * Get the number of entries which overlap the region given
+     *
+     * @param rect
+     * @return
+     * @throws NullPointerException if rect was null
+     */
+    public int sizeOverlapping(Rect rect) throws NullPointerException {
+        CountProcessor counter = new CountProcessor();
+        search(rect.minX, rect.minY, rect.maxX, rect.maxY, Tolerance.ZERO, true, counter);
+        return counter.count;
+    }
+
+    boolean search(double minX, double minY, double maxX, double maxY, Tolerance accuracy, boolean overlapping, IndexProcessor processor) {
+        if (processor == null) {
+            throw new NullPointerException("Processor must not be null");
+        }
+        if (numItems == 0) {
+            return true;
+        }
+        DoubleBuffer _boxes = boxes;
+        int topLevel = levelBounds.length - 1;
+        int root = levelBounds[topLevel] - 1;
+        int[] stack = new int[16];
+        int stackSize = 0;
+        int pos = root;
+        int level = topLevel;
+        while (true) {
+            int p = pos << 2;
+            int relate = Rect.relate(minX, minY, maxX, maxY, _boxes.get(p), _boxes.get(p + 1), _boxes.get(p + 2), _boxes.get(p + 3), accuracy);
+            boolean match = overlapping ? Relation.isBInsideA(relate) : !Relation.isDisjoint(relate);
+            if (match) {
+                if (level == 0) {
+                    if (!processor.process(indices.get(pos), _boxes.get(p), _boxes.get(p + 1), _boxes.get(p + 2), _boxes.get(p + 3))) {
+                        return false;
+                    }
+                } else if (!Relation.isBOutsideA(relate)) { // whole node is within region - process all
+                    int start = pos;
+                    int end = pos;
+                    for (int l = level; l > 0; l--) {
+                        start = indices.get(start);
+                        end = Math.min(indices.get(end) + nodeCapacity, levelBounds[l - 1]) - 1;
+                    }
+                    if (!processRange(start, end + 1, processor)) {
+                        return false;
+                    }
+                } else {
+                    int start = indices.get(pos);
+                    int end = Math.min(start + nodeCapacity, levelBounds[level - 1]);
+                    if ((stackSize + ((end - start) << 1)) > stack.length) {
+                        stack = Arrays.copyOf(stack, (stack.length << 1) + ((end - start) << 1));
+                    }
+                    for (int child = end; child-- > start;) {
+                        stack[stackSize++] = child;
+                        stack[stackSize++] = level - 1;
+                    }
+                }
+            }
+            if (stackSize == 0) {
+                return true;
+            }
+            level = stack[--stackSize];
+            pos = stack[--stackSize];
+        }
+    }
+
+    boolean processRange(int start, int end, IndexProcessor processor) {
+        DoubleBuffer _boxes = boxes;
+        for (int pos = start; pos < end; pos++) {
+            int p = pos << 2;
+            if (!processor.process(indices.get(pos), _boxes.get(p), _boxes.get(p + 1), _boxes.get(p + 2), _boxes.get(p + 3))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Processor for entries in a packed index, identified by their original index.
+     */
+    public interface IndexProcessor {
+
+        /**
+         * Process the entry with the original index given
+         *
+         * @param index
+         * @param minX
+         * @param minY
+         * @param maxX
+         * @param maxY
+         * @return true if more entries are acceptable, false if the index should return no more
+         * entries (if present)
+         */
+        public boolean process(int index, double minX, double minY, double maxX, double maxY);
+    }
+
+    static final class ValueProcessor<E> implements IndexProcessor {
+
+        final E[] values;
+        final NodeProcessor<E> processor;
+
+        ValueProcessor(E[] values, NodeProcessor<E> processor) throws NullPointerException {
+            if (processor == null) {
+                throw new NullPointerException("Processor must not be null");
+            }
+            this.values = values;
+            this.processor = processor;
+        }
+
+        @Override
+        public boolean process(int index, double minX, double minY, double maxX, double maxY) {
+            return processor.process(Rect.valueOf(minX, minY, maxX, maxY), (values == null) ? null : values[index]);
+        }
+    }
+
+    static final class CountProcessor implements IndexProcessor {
+
+        int count;
+
+        @Override
+        public boolean process(int index, double minX, double minY, double maxX, double maxY) {
+            count++;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package org.geomatics.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import org.geomatics.geom.GeomException;
+import org.geomatics.geom.Line;
+import org.geomatics.geom.Rect;
+import org.geomatics.geom.Vect;
+import org.geomatics.geom.VectBuilder;
+import org.geomatics.geom.io.GeomJaysonWriter;
+
+/**
+ * Immutable packed list of vectors snapped to a grid with a fixed resolution. Each vector is
+ * stored as a pair of int cell offsets from an origin cell, using half the memory of a VectList.
+ * Cells are relative to 0,0, so a given vector is always snapped to the same value regardless of
+ * the list it is in. Lists may also be written as delta encoded variable length integers for cold
+ * storage, which typically requires only a few bytes per vector.
+ *
+ * @author tofarrell
+ */
+public final class QuantizedVectList implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final double resolution;
+    private final long originX;
+    private final long originY;
+    private final int[] cells;
+    private transient Rect cachedRect;
+
+    /**
+     * Create a new QuantizedVectList containing the vectors given snapped to the resolution given
+     *
+     * @param vects
+     * @param resolution grid cell size (e.g.: 0.01 for 1cm precision in a metric projection)
+     * @throws NullPointerException if vects was null
+     * @throws IllegalArgumentException if resolution was not positive and finite, or the range of
+     * vects was too large to be stored at the resolution given
+     */
+    public QuantizedVectList(VectList vects, double resolution) throws NullPointerException, IllegalArgumentException {
+        checkResolution(resolution);
+        int size = vects.size();
+        long[] snapped = new long[size << 1];
+        long minX = Long.MAX_VALUE;
+        long minY = Long.MAX_VALUE;
+        for (int i = 0, j = 0; i < size; i++) {
+            long x = snap(vects.getX(i), resolution);
+            long y = snap(vects.getY(i), resolution);
+            snapped[j++] = x;
+            snapped[j++] = y;
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+        }
+        this.resolution = resolution;
+        this.originX = (size == 0) ? 0 : minX;
+        this.originY = (size == 0) ? 0 : minY;
+        this.cells = new int[snapped.length];
+        for (int i = 0; i < snapped.length;) {
+            cells[i] = toCell(snapped[i++] - originX);
+            cells[i] = toCell(snapped[i++] - originY);
+        }
+    }
+
+    QuantizedVectList(double resolution, long originX, long originY, int[] cells) {
+        this.resolution = resolution;
+        this.originX = originX;
+        this.originY = originY;
+        this.cells = cells;
+    }
+
+    static void checkResolution(double resolution) throws IllegalArgumentException {
+        if (!((resolution > 0) && (resolution < Double.POSITIVE_INFINITY))) {
+            throw new IllegalArgumentException("Invalid resolution : " + resolution);
+        }
+    }
+
+    static long snap(double ord, double resolution) throws IllegalArgumentException {
+        double cell = Math.rint(ord / resolution);
+        if (Math.abs(cell) >= 0x1p62) {
+            throw new IllegalArgumentException("Ordinate " + ord + " can not be stored at resolution " + resolution);
+        }
+        return (long) cell;
+    }
+
+    static int toCell(long offset) throws IllegalArgumentException {
+        if (offset > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Range of vectors too large for resolution");
+        }
+        return (int) offset;
+    }
+
+    /**
+     * Get the grid cell size
+     *
+     * @return
+     */
+    public double getResolution() {
+        return resolution;
+    }
+
+    /**
+     * Get the number of vectors in this list
+     *
+     * @return
+     */
+    public int size() {
+        return cells.length >> 1;
+    }
+
+    /**
+     * Determine whether there are any vectors stored in this object
+     *
+     * @return
+     */
+    public boolean isEmpty() {
+        return cells.length == 0;
+    }
+
+    private void checkIndex(int index) throws IndexOutOfBoundsException {
+        if ((index < 0) || (index >= size())) {
+            throw new IndexOutOfBoundsException("Index " + index + " is outside bounds [0," + size() + ']');
+        }
+    }
+
+    /**
+     * Get x value at the index given
+     *
+     * @param index
+     * @return
+     * @throws IndexOutOfBoundsException if index is out of bounds
+     */
+    public double getX(int index) throws IndexOutOfBoundsException {
+        checkIndex(index);
+        return (originX + cells[index << 1]) * resolution;
+    }
+
+    /**
+     * Get y value at the index given
+     *
+     * @param index
+     * @return
+     * @throws IndexOutOfBoundsException if index is out of bounds
+     */
+    public double getY(int index) throws IndexOutOfBoundsException {
+        checkIndex(index);
+        return (originY + cells[(index << 1) | 1]) * resolution;
+    }
+
+    /**
+     * Get the vector at the index given
+     *
+     * @param index
+     * @return vector
+     * @throws IndexOutOfBoundsException if index was out of bounds
+     */
+    public Vect getVect(int index) throws IndexOutOfBoundsException {
+        return Vect.valueOf(getX(index), getY(index));
+    }
+
+    /**
+     * Get the vector at the index given
+     *
+     * @param index
+     * @param target target vector
+     * @return target
+     * @throws IndexOutOfBoundsException if index is out of bounds
+     * @throws NullPointerException if target was null
+     */
+    public VectBuilder getVect(int index, VectBuilder target) throws IndexOutOfBoundsException, NullPointerException {
+        return target.set(getX(index), getY(index));
+    }
+
+    /**
+     * Get the line at the index given
+     *
+     * @param index
+     * @return target
+     * @throws IndexOutOfBoundsException if index is out of bounds
+     */
+    public Line getLine(int index) throws IndexOutOfBoundsException {
+        if ((index < 0) || ((index + 1) >= size())) {
+            throw new IndexOutOfBoundsException(index + " is not within range [0," + (size() - 1) + "]");
+        }
+        return Line.valueOf(getX(index), getY(index), getX(index + 1), getY(index + 1));
+    }
+
+    /**
+     * Copy ordinates from this list to the array given
+     *
+     * @param srcIndex index of first vector to copy
+     * @param dst destination array
+     * @param dstIndex offset within destination array
+     * @param numVects number of vectors to copy
+     * @throws IndexOutOfBoundsException if an index was out of bounds
+     * @throws NullPointerException if dst was null
+     */
+    public void getOrds(int srcIndex, double[] dst, int dstIndex, int numVects) throws IndexOutOfBoundsException, NullPointerException {
+        checkIndex(srcIndex);
+        if ((numVects < 0) || (srcIndex + numVects > size())) {
+            throw new IndexOutOfBoundsException("Index " + (srcIndex + numVects) + " is outside bounds [0," + size() + ']');
+        }
+        int index = srcIndex << 1;
+        int end = dstIndex + (numVects << 1);
+        while (dstIndex < end) {
+            dst[dstIndex++] = (originX + cells[index++]) * resolution;
+            dst[dstIndex++] = (originY + cells[index++]) * resolution;
+        }
+    }
+
+    /**
+     * Get the bounds of all vectors in this list
+     *
+     * @return bounds, or null if empty
+     */
+    public Rect getBounds() {
+        Rect ret = cachedRect;
+        if ((ret == null) && (cells.length != 0)) {
+            int maxX = 0;
+            int maxY = 0;
+            for (int i = 0; i < cells.length;) {
+                maxX = Math.max(maxX, cells[i++]);
+                maxY = Math.max(maxY, cells[i++]);
+            }
+            ret = Rect.valueOf(originX * resolution, originY * resolution, (originX + maxX) * resolution, (originY + maxY) * resolution);
+            cachedRect = ret;
+        }
+        return ret;
+    }
+
+    /**
+     * Add the vectors in this list to the target given
+     *
+     * @param target
+     * @return target
+     * @throws NullPointerException if target was null
+     */
+    public VectList toVectList(VectList target) throws NullPointerException {
+        for (int i = 0; i < cells.length;) {
+            target.addInternal((originX + cells[i++]) * resolution, (originY + cells[i++]) * resolution);
+        }
+        return target;
+    }
+
+    /**
+     * Read a QuantizedVectList from the DataInput given
+     *
+     * @param in
+     * @return a QuantizedVectList
+     * @throws NullPointerException if in was null
+     * @throws GeomException if there was an IO error or the data was invalid
+     */
+    public static QuantizedVectList read(DataInput in) throws NullPointerException, GeomException {
+        try {
+            double resolution = in.readDouble();
+            long originX = in.readLong();
+            long originY = in.readLong();
+            int size = in.readInt();
+            if (!((resolution > 0) && (resolution < Double.POSITIVE_INFINITY)) || (size < 0) || (size > (Integer.MAX_VALUE >> 1))) {
+                throw new GeomException("Invalid QuantizedVectList");
+            }
+            int[] cells = new int[size << 1];
+            int x = 0;
+            int y = 0;
+            for (int i = 0; i < cells.length;) {
+                x += readVarInt(in);
+                y += readVarInt(in);
+                cells[i++] = x;
+                cells[i++] = y;
+            }
+            return new QuantizedVectList(resolution, originX, originY, cells);
+        } catch (IOException ex) {
+            throw new GeomException("Error reading QuantizedVectList", ex);
+        }
+    }
+
+    /**
+     * Write this list to the DataOutput given. Each vector is written as the difference from the
+     * previous vector encoded as a zig zag variable length integer, so adjacent vectors which are
+     * close together require few bytes.
+     *
+     * @param out
+     * @throws NullPointerException if out was null
+     * @throws GeomException if there was an IO error
+     */
+    public void write(DataOutput out) throws NullPointerException, GeomException {
+        try {
+            out.writeDouble(resolution);
+            out.writeLong(originX);
+            out.writeLong(originY);
+            out.writeInt(size());
+            int x = 0;
+            int y = 0;
+            for (int i = 0; i < cells.length;) {
+                int cx = cells[i++];
+                int cy = cells[i++];
+                writeVarInt(cx - x, out);
+                writeVarInt(cy - y, out);
+                x = cx;
+                y = cy;
+            }
+        } catch (IOException ex) {
+            throw new GeomException("Error writing QuantizedVectList", ex);
+        }
+    }
+
+    static void writeVarInt(int value, DataOutput out) throws IOException {
+        int zigZag = (value << 1) ^ (value >> 31);
+        while ((zigZag & ~0x7F) != 0) {
+            out.writeByte((zigZag & 0x7F) | 0x80);
+            zigZag >>>= 7;
+        }
+        out.writeByte(zigZag);
+    }
+
+    static int readVarInt(DataInput in) throws IOException, GeomException {
+        int zigZag = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            zigZag |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigZag >>> 1) ^ -(zigZag & 1);
+            }
+        }
+        throw new GeomException("Invalid variable length integer");
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof QuantizedVectList) {
+            QuantizedVectList other = (QuantizedVectList) obj;
+            return (resolution == other.resolution)
+                    && (originX == other.originX)
+                    && (originY == other.originY)
+                    && Arrays.equals(cells, other.cells);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 5;
+        hash = 53 * hash + Vect.hash(resolution);
+        hash = 53 * hash + (int) (originX ^ (originX >>> 32));
+        hash = 53 * hash + (int) (originY ^ (originY >>> 32));
+        hash = 53 * hash + Arrays.hashCode(cells);
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        GeomJaysonWriter writer = new GeomJaysonWriter(str);
+        writer.beginArray();
+        for (int i = 0; i < size(); i++) {
+            writer.num(getX(i)).num(getY(i));
+        }
+        writer.endArray();
+        return str.toString();
+    }
+}
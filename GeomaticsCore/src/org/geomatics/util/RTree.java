@@ -5,13 +5,15 @@ import java.util.Objects;
 import org.geomatics.geom.Rect;
 import org.geomatics.geom.RectBuilder;
 import org.geomatics.geom.Relation;
+import org.geomatics.util.SpatialNode.DistanceFunction;
+import org.geomatics.util.SpatialNode.NodeAccumulator;
 import org.geomatics.util.SpatialNode.NodeProcessor;
 
 /**
  * Class for spatially indexing data for rapid searching. Spatially, queries are
- * performed by bounding box and may result in zero or more results. Typically,
- * the more edits applied to an index, the less efficient it is, so indexes
- * should be reoptimised after batchs of edits.
+ * performed by bounding box and may result in zero or more results. Entries
+ * are added using R* style overlap minimisation and forced reinsertion, so
+ * query performance remains stable under edits without needing a rebuild.
  *
  * @author tofar_000
  * @param <E>
@@ -20,14 +22,16 @@ public final class RTree<E> {
 
     static final int INITIAL_CAPACITY = 16;
     static final int SPLIT_SIZE = 10;
+    static final int MIN_SIZE = 3;
+    static final int REINSERT_SIZE = 3;
     final SpatialNode<E> root;
 
     /**
      * Create a new empty RTree instance
      */
     public RTree() {
-        this.root = new SpatialNode(null, null, new RectBuilder(),
-                new Rect[INITIAL_CAPACITY], (E[]) new Object[INITIAL_CAPACITY],
+        this.root = new SpatialNode<>(null, null, new RectBuilder(),
+                new Rect[INITIAL_CAPACITY], SpatialNode.newValues(INITIAL_CAPACITY),
                 0);
     }
 
@@ -42,7 +46,7 @@ public final class RTree<E> {
         root.bounds.set(node.bounds);
         root.size = node.size;
         root.itemBounds = new Rect[node.size];
-        root.itemValues = (E[]) new Object[node.size];
+        root.itemValues = SpatialNode.newValues(node.size);
         node.forEach(new NodeProcessor<E>() {
 
             int rootIndex;
@@ -81,6 +85,35 @@ public final class RTree<E> {
         }
     }
 
+    /**
+     * Create a new RTree instance bulk loaded from the values given using
+     * Sort-Tile-Recursive packing. Leaves are filled to the node capacity given,
+     * and each level above is tiled into groups of up to node capacity children
+     * (Represented as balanced binary subtrees of SpatialNode). This is
+     * typically much faster to build than the optimised constructor for large
+     * data sets, and produces a tree with less overlap between nodes.
+     *
+     * @param itemBounds
+     * @param itemValues
+     * @param nodeCapacity maximum number of entries in a leaf / children in a group
+     * @throws NullPointerException if itemBounds or itemValues was null, or contained a null bounds
+     * @throws IllegalArgumentException if the number of bounds did not match
+     * the number of values or nodeCapacity was less than 2
+     */
+    public RTree(Rect[] itemBounds, E[] itemValues, int nodeCapacity) throws NullPointerException, IllegalArgumentException {
+        if (itemBounds.length != itemValues.length) {
+            throw new IllegalArgumentException("Different numbers of arguments : " + itemBounds.length + "->" + itemValues.length);
+        }
+        checkNodeCapacity(nodeCapacity);
+        for (int i = 0; i < itemBounds.length; i++) {
+            if (itemBounds[i] == null) {
+                throw new NullPointerException("Null rect at index : " + i);
+            }
+        }
+        root = new SpatialNode<>();
+        pack(root, itemBounds, itemValues, itemBounds.length, nodeCapacity);
+    }
+
     /**
      * Add the value given at the location given
      *
@@ -90,24 +123,122 @@ public final class RTree<E> {
      * @throws NullPointerException if itemBounds was null
      */
     public RTree<E> add(Rect itemBounds, E itemValue) throws NullPointerException {
-        SpatialNode<E> node = root;
-        while (node.isBranch()) {
-            node.bounds.add(itemBounds);
-            node.size++;
-            node = getBestCandidateForAdd(itemBounds, node.a, node.b);
-        }
-        if (node.size == node.itemValues.length) {
-            int newCapacity = node.size * 3 / 2 + 1;
+        SpatialNode<E> removed = insert(root, itemBounds, itemValue, root.isBranch());
+        if (removed != null) {
+            for (int i = 0; i < removed.size; i++) {
+                insert(root, removed.itemBounds[i], removed.itemValues[i], false);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Insert the entry given into the node given. If reinsert is true and this causes a leaf
+     * to overflow for the first time, the entries furthest from the centre of that leaf are
+     * removed from the tree (R* forced reinsertion) and returned in a new leaf so they may
+     * be added again from the root. Otherwise, the leaf is split as required.
+     */
+    static <E> SpatialNode<E> insert(SpatialNode<E> node, Rect itemBounds, E itemValue, boolean reinsert) {
+        node.bounds.add(itemBounds);
+        node.size++;
+        if (node.isBranch()) {
+            SpatialNode<E> removed = insert(getBestCandidateForInsert(itemBounds, node.a, node.b), itemBounds, itemValue, reinsert);
+            if (removed != null) {
+                node.size -= removed.size;
+                node.bounds.reset().add(node.a.bounds).add(node.b.bounds);
+            }
+            return removed;
+        }
+        int index = node.size - 1;
+        if (index == node.itemValues.length) {
+            int newCapacity = index * 3 / 2 + 1;
             node.itemBounds = Arrays.copyOf(node.itemBounds, newCapacity);
             node.itemValues = Arrays.copyOf(node.itemValues, newCapacity);
         }
-        node.itemBounds[node.size] = itemBounds;
-        node.itemValues[node.size++] = itemValue;
-        node.bounds.add(itemBounds);
+        node.itemBounds[index] = itemBounds;
+        node.itemValues[index] = itemValue;
         if (node.size >= SPLIT_SIZE) {
+            if (reinsert && (node.size == SPLIT_SIZE)) {
+                return removeFurthest(node, REINSERT_SIZE);
+            }
             trySplit(node);
         }
-        return this;
+        return null;
+    }
+
+    static <E> SpatialNode<E> removeFurthest(SpatialNode<E> node, int numToRemove) {
+        double cx = node.bounds.getCx();
+        double cy = node.bounds.getCy();
+        Rect[] itemBounds = node.itemBounds;
+        E[] itemValues = node.itemValues;
+        double[] distSq = new double[node.size];
+        for (int i = node.size; i-- > 0;) {
+            Rect r = itemBounds[i];
+            double dx = (r.minX + r.maxX) / 2 - cx;
+            double dy = (r.minY + r.maxY) / 2 - cy;
+            distSq[i] = dx * dx + dy * dy;
+        }
+        //partial selection sort, moving furthest entries to the end
+        int newSize = node.size - numToRemove;
+        for (int i = node.size; i-- > newSize;) {
+            int max = i;
+            for (int j = i; j-- > 0;) {
+                if (distSq[j] > distSq[max]) {
+                    max = j;
+                }
+            }
+            swap(distSq, itemBounds, itemValues, i, max);
+        }
+        Rect[] removedBounds = Arrays.copyOfRange(itemBounds, newSize, node.size);
+        E[] removedValues = Arrays.copyOfRange(itemValues, newSize, node.size);
+        Arrays.fill(itemBounds, newSize, node.size, null);
+        Arrays.fill(itemValues, newSize, node.size, null);
+        node.size = newSize;
+        node.bounds.reset().addRects(itemBounds, 0, newSize);
+        return new SpatialNode<>(null, null, new RectBuilder().addRects(removedBounds), removedBounds, removedValues, numToRemove);
+    }
+
+    static <E> void swap(double[] distSq, Rect[] itemBounds, E[] itemValues, int i, int j) {
+        double d = distSq[i];
+        distSq[i] = distSq[j];
+        distSq[j] = d;
+        Rect r = itemBounds[i];
+        itemBounds[i] = itemBounds[j];
+        itemBounds[j] = r;
+        E v = itemValues[i];
+        itemValues[i] = itemValues[j];
+        itemValues[j] = v;
+    }
+
+    /**
+     * Choose the child to add an entry to, preferring the child for which the overlap between
+     * a and b grows least (The R* choose subtree criteria), and then the child requiring the
+     * least area enlargement.
+     */
+    static <E> SpatialNode<E> getBestCandidateForInsert(Rect bounds, SpatialNode<E> a, SpatialNode<E> b) {
+        RectBuilder ra = a.bounds;
+        RectBuilder rb = b.bounds;
+        double overlap = overlapArea(ra.getMinX(), ra.getMinY(), ra.getMaxX(), ra.getMaxY(),
+                rb.getMinX(), rb.getMinY(), rb.getMaxX(), rb.getMaxY());
+        double oa = overlapArea(Math.min(bounds.minX, ra.getMinX()), Math.min(bounds.minY, ra.getMinY()),
+                Math.max(bounds.maxX, ra.getMaxX()), Math.max(bounds.maxY, ra.getMaxY()),
+                rb.getMinX(), rb.getMinY(), rb.getMaxX(), rb.getMaxY()) - overlap;
+        double ob = overlapArea(ra.getMinX(), ra.getMinY(), ra.getMaxX(), ra.getMaxY(),
+                Math.min(bounds.minX, rb.getMinX()), Math.min(bounds.minY, rb.getMinY()),
+                Math.max(bounds.maxX, rb.getMaxX()), Math.max(bounds.maxY, rb.getMaxY())) - overlap;
+        if (oa < ob) {
+            return a;
+        } else if (ob < oa) {
+            return b;
+        } else {
+            return getBestCandidateForAdd(bounds, a, b);
+        }
+    }
+
+    static double overlapArea(double aMinX, double aMinY, double aMaxX, double aMaxY, double bMinX, double bMinY, double bMaxX, double bMaxY) {
+        double w = Math.min(aMaxX, bMaxX) - Math.max(aMinX, bMinX);
+        double h = Math.min(aMaxY, bMaxY) - Math.max(aMinY, bMinY);
+        return ((w > 0) && (h > 0)) ? (w * h) : 0;
     }
 
     static <E> SpatialNode<E> getBestCandidateForAdd(Rect bounds, SpatialNode<E> a, SpatialNode<E> b) {
@@ -149,10 +280,10 @@ public final class RTree<E> {
         if ((width == 0) && (height == 0)) {
             return;
         }
-        SpatialNode<E> xa = new SpatialNode<>(null, null, new RectBuilder(bounds.getMinX(), bounds.getMinY(), bounds.getCx(), bounds.getMaxY()), new Rect[node.size], (E[]) new Object[node.size], 0);
-        SpatialNode<E> xb = new SpatialNode<>(null, null, new RectBuilder(bounds.getCx(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY()), new Rect[node.size], (E[]) new Object[node.size], 0);
-        SpatialNode<E> ya = new SpatialNode<>(null, null, new RectBuilder(bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getCy()), new Rect[node.size], (E[]) new Object[node.size], 0);
-        SpatialNode<E> yb = new SpatialNode<>(null, null, new RectBuilder(bounds.getMinX(), bounds.getCy(), bounds.getMaxX(), bounds.getMaxY()), new Rect[node.size], (E[]) new Object[node.size], 0);
+        SpatialNode<E> xa = new SpatialNode<>(null, null, new RectBuilder(bounds.getMinX(), bounds.getMinY(), bounds.getCx(), bounds.getMaxY()), new Rect[node.size], SpatialNode.newValues(node.size), 0);
+        SpatialNode<E> xb = new SpatialNode<>(null, null, new RectBuilder(bounds.getCx(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY()), new Rect[node.size], SpatialNode.newValues(node.size), 0);
+        SpatialNode<E> ya = new SpatialNode<>(null, null, new RectBuilder(bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getCy()), new Rect[node.size], SpatialNode.newValues(node.size), 0);
+        SpatialNode<E> yb = new SpatialNode<>(null, null, new RectBuilder(bounds.getMinX(), bounds.getCy(), bounds.getMaxX(), bounds.getMaxY()), new Rect[node.size], SpatialNode.newValues(node.size), 0);
 
         Rect[] itemBounds = node.itemBounds;
         E[] itemValues = node.itemValues;
@@ -200,7 +331,7 @@ public final class RTree<E> {
             root.bounds.set(node.bounds);
             root.size = node.size;
             root.itemBounds = new Rect[node.size];
-            root.itemValues = (E[]) new Object[node.size];
+            root.itemValues = SpatialNode.newValues(node.size);
             node.forEach(new NodeProcessor<E>() {
 
                 int rootIndex;
@@ -251,6 +382,7 @@ public final class RTree<E> {
             if (ret) {
                 node.size--;
                 tryMerge(node);
+                resetBounds(node);
             }
             return ret;
         } else {
@@ -262,6 +394,9 @@ public final class RTree<E> {
                     System.arraycopy(itemBounds, i + 1, itemBounds, i, node.size - (i + 1));
                     System.arraycopy(itemValues, i + 1, itemValues, i, node.size - (i + 1));
                     node.size--;
+                    itemBounds[node.size] = null;
+                    itemValues[node.size] = null;
+                    resetBounds(node);
                     return true;
                 }
             }
@@ -286,7 +421,7 @@ public final class RTree<E> {
             if (node.isBranch()) {
                 node.a = node.b = null;
                 node.itemBounds = new Rect[INITIAL_CAPACITY];
-                node.itemValues = (E[]) new Object[INITIAL_CAPACITY];
+                node.itemValues = SpatialNode.newValues(INITIAL_CAPACITY);
             }
             int ret = node.size;
             node.bounds.reset();
@@ -306,7 +441,7 @@ public final class RTree<E> {
             Rect[] itemBounds = node.itemBounds;
             E[] itemValues = node.itemValues;
             Rect[] newItemBounds = new Rect[node.itemBounds.length];
-            E[] newItemValues = (E[]) new Object[node.itemValues.length];
+            E[] newItemValues = SpatialNode.newValues(node.itemValues.length);
             int n = 0;
             for (int i = 0; i < node.size; i++) {
                 if(!Relation.isBInsideA(bounds.relate(itemBounds[i], Tolerance.ZERO))){
@@ -342,7 +477,7 @@ public final class RTree<E> {
             if (node.isBranch()) {
                 node.a = node.b = null;
                 node.itemBounds = new Rect[INITIAL_CAPACITY];
-                node.itemValues = (E[]) new Object[INITIAL_CAPACITY];
+                node.itemValues = SpatialNode.newValues(INITIAL_CAPACITY);
             }
             int ret = node.size;
             node.bounds.reset();
@@ -362,7 +497,7 @@ public final class RTree<E> {
             Rect[] itemBounds = node.itemBounds;
             E[] itemValues = node.itemValues;
             Rect[] newItemBounds = new Rect[node.itemBounds.length];
-            E[] newItemValues = (E[]) new Object[node.itemValues.length];
+            E[] newItemValues = SpatialNode.newValues(node.itemValues.length);
             int n = 0;
             for (int i = 0; i < node.size; i++) {
                 Rect itemBound = itemBounds[i];
@@ -386,20 +521,43 @@ public final class RTree<E> {
     static <E> void tryMerge(SpatialNode<E> node) {
         if (node.size <= SPLIT_SIZE) {
             node.itemBounds = new Rect[INITIAL_CAPACITY];
-            node.itemValues = (E[]) new Object[INITIAL_CAPACITY];
+            node.itemValues = SpatialNode.newValues(INITIAL_CAPACITY);
             int index = mergeNode(0, node.a, node);
             mergeNode(index, node.b, node);
             node.a = node.b = null;
-        } else if (node.a.size == 0) {
-            node.a = node.b.a;
-            node.b = node.b.b;
-            node.itemBounds = node.b.itemBounds;
-            node.itemValues = node.b.itemValues;
-        } else if (node.b.size == 0) {
-            node.b = node.a.b;
-            node.a = node.a.a;
-            node.itemBounds = node.a.itemBounds;
-            node.itemValues = node.a.itemValues;
+        } else if (node.a.size < MIN_SIZE) {
+            SpatialNode<E> underflow = node.a;
+            collapse(node, node.b);
+            reinsertAll(node, underflow);
+        } else if (node.b.size < MIN_SIZE) {
+            SpatialNode<E> underflow = node.b;
+            collapse(node, node.a);
+            reinsertAll(node, underflow);
+        }
+    }
+
+    //Replace the content of the node given with that of its child
+    static <E> void collapse(SpatialNode<E> node, SpatialNode<E> child) {
+        node.a = child.a;
+        node.b = child.b;
+        node.itemBounds = child.itemBounds;
+        node.itemValues = child.itemValues;
+        node.size = child.size;
+        node.bounds.set(child.bounds);
+    }
+
+    //An underflowing child is always a leaf, as branches with few entries are merged into leaves
+    static <E> void reinsertAll(SpatialNode<E> node, SpatialNode<E> underflow) {
+        for (int i = 0; i < underflow.size; i++) {
+            insert(node, underflow.itemBounds[i], underflow.itemValues[i], false);
+        }
+    }
+
+    static <E> void resetBounds(SpatialNode<E> node) {
+        if (node.isBranch()) {
+            node.bounds.reset().add(node.a.bounds).add(node.b.bounds);
+        } else {
+            node.bounds.reset().addRects(node.itemBounds, 0, node.size);
         }
     }
 
@@ -423,13 +581,167 @@ public final class RTree<E> {
     public void optimise() {
         if (!root.isLeaf()) {
             root.itemBounds = new Rect[root.size];
-            root.itemValues = (E[]) new Object[root.size];
+            root.itemValues = SpatialNode.newValues(root.size);
             mergeNode(0, root, root); // turn into a leaf.
             root.a = root.b = null;
         }
         tryRecursiveSplit(root); //recursively subdivide while size > SPLIT_SIZE
     }
 
+    /**
+     * Rebuild this index using Sort-Tile-Recursive packing. Generally a better
+     * idea than optimise() for large indexes which will be mostly queried
+     * rather than edited.
+     *
+     * @param nodeCapacity maximum number of entries in a leaf / children in a group
+     * @throws IllegalArgumentException if nodeCapacity was less than 2
+     */
+    public void pack(int nodeCapacity) throws IllegalArgumentException {
+        checkNodeCapacity(nodeCapacity);
+        Rect[] itemBounds = new Rect[root.size];
+        E[] itemValues = SpatialNode.newValues(root.size);
+        SpatialNode<E> leaf = new SpatialNode<>(null, null, new RectBuilder(), itemBounds, itemValues, root.size);
+        mergeNode(0, root, leaf);
+        pack(root, itemBounds, itemValues, itemBounds.length, nodeCapacity);
+    }
+
+    static void checkNodeCapacity(int nodeCapacity) throws IllegalArgumentException {
+        if (nodeCapacity < 2) {
+            throw new IllegalArgumentException("Invalid node capacity : " + nodeCapacity);
+        }
+    }
+
+    static <E> void pack(SpatialNode<E> target, Rect[] itemBounds, E[] itemValues, int size, int nodeCapacity) {
+        target.a = target.b = null;
+        target.size = size;
+        target.bounds.reset().addRects(itemBounds, 0, size);
+        if (size <= nodeCapacity) {
+            target.itemBounds = Arrays.copyOf(itemBounds, Math.max(size, INITIAL_CAPACITY));
+            target.itemValues = Arrays.copyOf(itemValues, Math.max(size, INITIAL_CAPACITY));
+            return;
+        }
+
+        //Build leaves
+        double[] centers = new double[size << 1];
+        for (int i = 0, j = 0; i < size; i++) {
+            Rect r = itemBounds[i];
+            centers[j++] = (r.minX + r.maxX) / 2;
+            centers[j++] = (r.minY + r.maxY) / 2;
+        }
+        int[] order = sortTileRecursive(centers, size, nodeCapacity);
+        SpatialNode<E>[] nodes = SpatialNode.newNodes((size + nodeCapacity - 1) / nodeCapacity);
+        for (int n = 0, i = 0; n < nodes.length; n++) {
+            int leafSize = Math.min(nodeCapacity, size - i);
+            Rect[] leafBounds = new Rect[leafSize];
+            E[] leafValues = SpatialNode.newValues(leafSize);
+            for (int j = 0; j < leafSize; j++) {
+                int index = order[i++];
+                leafBounds[j] = itemBounds[index];
+                leafValues[j] = itemValues[index];
+            }
+            nodes[n] = new SpatialNode<>(null, null, new RectBuilder().addRects(leafBounds, 0, leafSize), leafBounds, leafValues, leafSize);
+        }
+
+        //Build levels above leaves until there is a single group
+        while (nodes.length > nodeCapacity) {
+            centers = new double[nodes.length << 1];
+            for (int i = 0, j = 0; i < nodes.length; i++) {
+                RectBuilder r = nodes[i].bounds;
+                centers[j++] = r.getCx();
+                centers[j++] = r.getCy();
+            }
+            order = sortTileRecursive(centers, nodes.length, nodeCapacity);
+            SpatialNode<E>[] sorted = SpatialNode.newNodes(nodes.length);
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = nodes[order[i]];
+            }
+            SpatialNode<E>[] parents = SpatialNode.newNodes((nodes.length + nodeCapacity - 1) / nodeCapacity);
+            for (int n = 0, i = 0; n < parents.length; n++, i += nodeCapacity) {
+                parents[n] = buildGroup(sorted, i, Math.min(i + nodeCapacity, sorted.length));
+            }
+            nodes = parents;
+        }
+
+        SpatialNode<E> top = buildGroup(nodes, 0, nodes.length);
+        target.a = top.a;
+        target.b = top.b;
+        target.itemBounds = null;
+        target.itemValues = null;
+    }
+
+    static <E> SpatialNode<E> buildGroup(SpatialNode<E>[] nodes, int startIndex, int endIndex) {
+        if ((endIndex - startIndex) == 1) {
+            return nodes[startIndex];
+        }
+        int mid = (startIndex + endIndex) >>> 1;
+        return new SpatialNode<>(buildGroup(nodes, startIndex, mid), buildGroup(nodes, mid, endIndex));
+    }
+
+    /**
+     * Get the Sort-Tile-Recursive ordering for the centroids given. Centroids
+     * are sorted by x into vertical slices, each of which is sorted by y so
+     * that each consecutive run of nodeCapacity indices forms a compact tile.
+     *
+     * @param centers centroid ordinates in the form [x0, y0, x1, y1...]
+     * @param numCenters number of centroids
+     * @param nodeCapacity number of entries in each tile
+     * @return indices of centroids in tile order
+     */
+    static int[] sortTileRecursive(double[] centers, int numCenters, int nodeCapacity) {
+        int[] order = new int[numCenters];
+        for (int i = 0; i < numCenters; i++) {
+            order[i] = i;
+        }
+        int numTiles = (numCenters + nodeCapacity - 1) / nodeCapacity;
+        int numSlices = (int) Math.ceil(Math.sqrt(numTiles));
+        int sliceSize = numSlices * nodeCapacity;
+        sortIndices(order, centers, 0, 0, numCenters);
+        for (int i = 0; i < numCenters; i += sliceSize) {
+            sortIndices(order, centers, 1, i, Math.min(i + sliceSize, numCenters));
+        }
+        return order;
+    }
+
+    static void sortIndices(int[] order, double[] centers, int offset, int startIndex, int endIndex) {
+        while ((endIndex - startIndex) > 7) {
+            int mid = (startIndex + endIndex) >>> 1;
+            double pivot = centers[(order[mid] << 1) + offset];
+            int i = startIndex;
+            int j = endIndex - 1;
+            while (i <= j) {
+                while (centers[(order[i] << 1) + offset] < pivot) {
+                    i++;
+                }
+                while (centers[(order[j] << 1) + offset] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int tmp = order[i];
+                    order[i++] = order[j];
+                    order[j--] = tmp;
+                }
+            }
+            //recurse on smaller partition, iterate on larger
+            if ((j - startIndex) < (endIndex - i)) {
+                sortIndices(order, centers, offset, startIndex, j + 1);
+                startIndex = i;
+            } else {
+                sortIndices(order, centers, offset, i, endIndex);
+                endIndex = j + 1;
+            }
+        }
+        for (int i = startIndex + 1; i < endIndex; i++) {
+            int index = order[i];
+            double value = centers[(index << 1) + offset];
+            int j = i;
+            while ((j > startIndex) && (centers[(order[j - 1] << 1) + offset] > value)) {
+                order[j] = order[j - 1];
+                j--;
+            }
+            order[j] = index;
+        }
+    }
+
     static <E> void tryRecursiveSplit(SpatialNode<E> node) {
         if (node.size >= SPLIT_SIZE) {
             trySplit(node);
@@ -570,4 +882,105 @@ public final class RTree<E> {
     public boolean forOverlapping(Rect rect, NodeProcessor<E> processor) throws NullPointerException {
         return root.forOverlapping(rect, processor);
     }
+
+    /**
+     * Process all entries in this index in parallel. The processor must be thread safe.
+     *
+     * @param processor
+     * @return false if processor returned false, true otherwise
+     * @throws NullPointerException if processor was null
+     */
+    public boolean parallelForEach(NodeProcessor<E> processor) throws NullPointerException {
+        return root.parallelForEach(processor);
+    }
+
+    /**
+     * Get any entries not disjoint from the rect given in parallel. The processor must be thread
+     * safe.
+     *
+     * @param rect
+     * @param accuracy
+     * @param processor
+     * @return false if processor returned false, true otherwise
+     * @throws NullPointerException if rect, accuracy or processor was null
+     */
+    public boolean parallelForInteracting(Rect rect, Tolerance accuracy, NodeProcessor<E> processor) throws NullPointerException {
+        return root.parallelForInteracting(rect, accuracy, processor);
+    }
+
+    /**
+     * Accumulate a result from all entries in this index in parallel
+     *
+     * @param <A>
+     * @param accumulator
+     * @return accumulated result
+     * @throws NullPointerException if accumulator was null
+     */
+    public <A> A parallelAccumulate(NodeAccumulator<E, A> accumulator) throws NullPointerException {
+        return root.parallelAccumulate(accumulator);
+    }
+
+    /**
+     * Accumulate a result from all entries not disjoint from the rect given in parallel
+     *
+     * @param <A>
+     * @param rect
+     * @param accuracy
+     * @param accumulator
+     * @return accumulated result
+     * @throws NullPointerException if rect, accuracy or accumulator was null
+     */
+    public <A> A parallelAccumulateInteracting(Rect rect, Tolerance accuracy, NodeAccumulator<E, A> accumulator) throws NullPointerException {
+        return root.parallelAccumulateInteracting(rect, accuracy, accumulator);
+    }
+
+    /**
+     * Process entries in order of increasing distance from the point given, up
+     * to a maximum number of results or distance.
+     *
+     * @param x
+     * @param y
+     * @param maxResults maximum number of entries to process
+     * @param maxDist maximum distance (May be infinite)
+     * @param distanceFunction function for getting the squared distance to an entry
+     * @param processor
+     * @return false if processor returned false, true otherwise
+     * @throws NullPointerException if distanceFunction or processor was null
+     * @throws IllegalArgumentException if x, y or maxDist was invalid
+     */
+    public boolean forNearest(double x, double y, int maxResults, double maxDist, DistanceFunction<? super E> distanceFunction, NodeProcessor<E> processor) throws NullPointerException, IllegalArgumentException {
+        return root.forNearest(x, y, maxResults, maxDist, distanceFunction, processor);
+    }
+
+    /**
+     * Process entries in order of increasing distance from the rect given, up
+     * to a maximum number of results or distance.
+     *
+     * @param rect
+     * @param maxResults maximum number of entries to process
+     * @param maxDist maximum distance (May be infinite)
+     * @param distanceFunction function for getting the squared distance to an entry
+     * @param processor
+     * @return false if processor returned false, true otherwise
+     * @throws NullPointerException if rect, distanceFunction or processor was null
+     * @throws IllegalArgumentException if maxDist was invalid
+     */
+    public boolean forNearest(Rect rect, int maxResults, double maxDist, DistanceFunction<? super E> distanceFunction, NodeProcessor<E> processor) throws NullPointerException, IllegalArgumentException {
+        return root.forNearest(rect, maxResults, maxDist, distanceFunction, processor);
+    }
+
+    /**
+     * Get the value of the entry nearest to the point given
+     *
+     * @param x
+     * @param y
+     * @param maxDist maximum distance (May be infinite)
+     * @param distanceFunction function for getting the squared distance to an entry
+     * @return the nearest value, or null if there were no entries within maxDist
+     * @throws NullPointerException if distanceFunction was null
+     * @throws IllegalArgumentException if x, y or maxDist was invalid
+     */
+    public E getNearest(double x, double y, double maxDist, DistanceFunction<? super E> distanceFunction) throws NullPointerException, IllegalArgumentException {
+        return root.getNearest(x, y, maxDist, distanceFunction);
+    }
 }
@@ -4,7 +4,14 @@ import java.io.Externalizable;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.geomatics.geom.Rect;
 import org.geomatics.geom.RectBuilder;
 import org.geomatics.geom.Relation;
@@ -22,6 +29,13 @@ public final class SpatialNode<E> implements Externalizable, Cloneable {
 
     static final Rect[] EMPTY_BOUNDS = new Rect[0];
     static final Object[] EMPTY_VALUES = new Object[0];
+    static final int PARALLEL_THRESHOLD = 4096;
+    static final ThreadLocal<NodeStack> NODE_STACK = new ThreadLocal<NodeStack>() {
+        @Override
+        protected NodeStack initialValue() {
+            return new NodeStack();
+        }
+    };
     SpatialNode<E> a;
     SpatialNode<E> b;
 
@@ -83,6 +97,17 @@ public final class SpatialNode<E> implements Externalizable, Cloneable {
         this.size = size;
     }
 
+    //Arrays of values are only ever read back as E, so the erased array type is safe
+    @SuppressWarnings("unchecked")
+    static <E> E[] newValues(int size) {
+        return (E[]) new Object[size];
+    }
+
+    @SuppressWarnings("unchecked")
+    static <E> SpatialNode<E>[] newNodes(int size) {
+        return (SpatialNode<E>[]) new SpatialNode<?>[size];
+    }
+
     /**
      * Get the bounds for this node
      *
@@ -92,6 +117,42 @@ public final class SpatialNode<E> implements Externalizable, Cloneable {
         return bounds.build();
     }
 
+    /**
+     * Get the minX of the bounds of this node, without creating a rect
+     *
+     * @return minX, or NaN if empty
+     */
+    public double getMinX() {
+        return bounds.getMinX();
+    }
+
+    /**
+     * Get the minY of the bounds of this node, without creating a rect
+     *
+     * @return minY, or NaN if empty
+     */
+    public double getMinY() {
+        return bounds.getMinY();
+    }
+
+    /**
+     * Get the maxX of the bounds of this node, without creating a rect
+     *
+     * @return maxX, or NaN if empty
+     */
+    public double getMaxX() {
+        return bounds.getMaxX();
+    }
+
+    /**
+     * Get the maxY of the bounds of this node, without creating a rect
+     *
+     * @return maxY, or NaN if empty
+     */
+    public double getMaxY() {
+        return bounds.getMaxY();
+    }
+
     /**
      * Get the relation between the bounds of this node and the bounds given
      *
@@ -289,22 +350,71 @@ public final class SpatialNode<E> implements Externalizable, Cloneable {
      * @throws NullPointerException if rect or processor was null
      */
     public boolean forInteracting(Rect rect, Tolerance accuracy, NodeProcessor<E> processor) throws NullPointerException {
-        int relate = relate(rect, accuracy);
-        if (!Relation.isAOutsideB(relate)) {
-            return forEach(processor);
-        } else if (Relation.isDisjoint(relate)) {
-            return true;
-        } else if (isBranch()) {
-            return a.forInteracting(rect, accuracy, processor) && b.forInteracting(rect, accuracy, processor);
-        } else {
-            for (int i = 0; i < size; i++) {
-                if (!Relation.isDisjoint(rect.relate(itemBounds[i], accuracy))) {
-                    if (!processor.process(itemBounds[i], itemValues[i])) {
+        return forInteractingInternal(rect.minX, rect.minY, rect.maxX, rect.maxY, accuracy.tolerance, processor);
+    }
+
+    /**
+     * Get any entries not disjoint from the bounds given. Equivalent to
+     * forInteracting(Rect.valueOf(minX, minY, maxX, maxY), accuracy, processor), but does not
+     * require a rect to be created.
+     *
+     * @param minX
+     * @param minY
+     * @param maxX
+     * @param maxY
+     * @param accuracy
+     * @param processor
+     * @return false if processor returned false, true otherwise
+     * @throws NullPointerException if accuracy or processor was null
+     * @throws IllegalArgumentException if an ordinate was infinite or NaN
+     */
+    public boolean forInteracting(double minX, double minY, double maxX, double maxY, Tolerance accuracy, NodeProcessor<E> processor) throws NullPointerException, IllegalArgumentException {
+        Vect.check(minX, minY);
+        Vect.check(maxX, maxY);
+        return forInteractingInternal(Math.min(minX, maxX), Math.min(minY, maxY),
+                Math.max(minX, maxX), Math.max(minY, maxY), accuracy.tolerance, processor);
+    }
+
+    boolean forInteractingInternal(double minX, double minY, double maxX, double maxY, double tolerance, NodeProcessor<E> processor) {
+        NodeStack stack = NODE_STACK.get();
+        int base = stack.size;
+        try {
+            stack.push(this);
+            while (stack.size > base) {
+                SpatialNode<E> node = stack.pop();
+                if (node.size == 0) {
+                    continue;
+                }
+                RectBuilder b = node.bounds;
+                double nMinX = b.getMinX();
+                double nMinY = b.getMinY();
+                double nMaxX = b.getMaxX();
+                double nMaxY = b.getMaxY();
+                if (isDisjoint(nMinX, nMinY, nMaxX, nMaxY, minX, minY, maxX, maxY, tolerance)) {
+                    continue;
+                } else if (isInside(nMinX, nMinY, nMaxX, nMaxY, minX, minY, maxX, maxY, tolerance)) {
+                    if (!node.forEach(processor)) {
                         return false;
                     }
+                } else if (node.isBranch()) {
+                    stack.push(node.b);
+                    stack.push(node.a);
+                } else {
+                    Rect[] _itemBounds = node.itemBounds;
+                    E[] _itemValues = node.itemValues;
+                    for (int i = 0; i < node.size; i++) {
+                        Rect r = _itemBounds[i];
+                        if (!isDisjoint(r.minX, r.minY, r.maxX, r.maxY, minX, minY, maxX, maxY, tolerance)) {
+                            if (!processor.process(r, _itemValues[i])) {
+                                return false;
+                            }
+                        }
+                    }
                 }
             }
             return true;
+        } finally {
+            stack.clear(base);
         }
     }
 
@@ -317,22 +427,316 @@ public final class SpatialNode<E> implements Externalizable, Cloneable {
      * @throws NullPointerException if rect or processor was null
      */
     public boolean forOverlapping(Rect rect, NodeProcessor<E> processor) throws NullPointerException {
-        int relate = relate(rect, Tolerance.ZERO);
-        if (!Relation.isAOutsideB(relate)) {
-            return forEach(processor);
-        } else if (relate == Relation.DISJOINT) {
-            return true;
-        } else if (isBranch()) {
-            return a.forOverlapping(rect, processor) && b.forOverlapping(rect, processor);
-        } else {
-            for (int i = 0; i < size; i++) {
-                if (Relation.isBInsideA(rect.relate(itemBounds[i], Tolerance.ZERO))) {
-                    if (!processor.process(itemBounds[i], itemValues[i])) {
+        double minX = rect.minX;
+        double minY = rect.minY;
+        double maxX = rect.maxX;
+        double maxY = rect.maxY;
+        NodeStack stack = NODE_STACK.get();
+        int base = stack.size;
+        try {
+            stack.push(this);
+            while (stack.size > base) {
+                SpatialNode<E> node = stack.pop();
+                if (node.size == 0) {
+                    continue;
+                }
+                RectBuilder b = node.bounds;
+                double nMinX = b.getMinX();
+                double nMinY = b.getMinY();
+                double nMaxX = b.getMaxX();
+                double nMaxY = b.getMaxY();
+                if (isDisjoint(nMinX, nMinY, nMaxX, nMaxY, minX, minY, maxX, maxY, 0)) {
+                    continue;
+                } else if (isInside(nMinX, nMinY, nMaxX, nMaxY, minX, minY, maxX, maxY, 0)) {
+                    if (!node.forEach(processor)) {
                         return false;
                     }
+                } else if (node.isBranch()) {
+                    stack.push(node.b);
+                    stack.push(node.a);
+                } else {
+                    Rect[] _itemBounds = node.itemBounds;
+                    E[] _itemValues = node.itemValues;
+                    for (int i = 0; i < node.size; i++) {
+                        Rect r = _itemBounds[i];
+                        if ((r.minX < maxX) && (r.maxX > minX) && (r.minY < maxY) && (r.maxY > minY)) {
+                            if (!processor.process(r, _itemValues[i])) {
+                                return false;
+                            }
+                        }
+                    }
                 }
             }
             return true;
+        } finally {
+            stack.clear(base);
+        }
+    }
+
+    /**
+     * Process all entries in this node, splitting the work between the threads of the common
+     * ForkJoinPool at branches. The processor may be invoked from several threads at once, so must
+     * be thread safe. Entries are not processed in any particular order.
+     *
+     * @param processor
+     * @return false if processor returned false, true otherwise
+     * @throws NullPointerException if processor was null
+     */
+    public boolean parallelForEach(NodeProcessor<E> processor) throws NullPointerException {
+        return parallelForInteractingInternal(null, Tolerance.ZERO, processor);
+    }
+
+    /**
+     * Get any entries not disjoint from the rect given, splitting the work between the threads of
+     * the common ForkJoinPool at branches. The processor may be invoked from several threads at
+     * once, so must be thread safe. Entries are not processed in any particular order.
+     *
+     * @param rect
+     * @param accuracy
+     * @param processor
+     * @return false if processor returned false, true otherwise
+     * @throws NullPointerException if rect, accuracy or processor was null
+     */
+    public boolean parallelForInteracting(Rect rect, Tolerance accuracy, NodeProcessor<E> processor) throws NullPointerException {
+        if (rect == null) {
+            throw new NullPointerException("Rect must not be null");
+        }
+        return parallelForInteractingInternal(rect, accuracy, processor);
+    }
+
+    boolean parallelForInteractingInternal(Rect rect, Tolerance accuracy, NodeProcessor<E> processor) {
+        if (accuracy == null) {
+            throw new NullPointerException("Accuracy must not be null");
+        }
+        if (processor == null) {
+            throw new NullPointerException("Processor must not be null");
+        }
+        return ForkJoinPool.commonPool().invoke(new ProcessorTask<>(this, rect, accuracy, processor, new AtomicBoolean()));
+    }
+
+    /**
+     * Accumulate a result from all entries in this node, splitting the work between the threads of
+     * the common ForkJoinPool at branches. Each task accumulates into its own accumulation, and
+     * these are merged as tasks complete, so the accumulator need not be thread safe.
+     *
+     * @param <A>
+     * @param accumulator
+     * @return accumulated result
+     * @throws NullPointerException if accumulator was null
+     */
+    public <A> A parallelAccumulate(NodeAccumulator<E, A> accumulator) throws NullPointerException {
+        return parallelAccumulateInternal(null, Tolerance.ZERO, accumulator);
+    }
+
+    /**
+     * Accumulate a result from all entries not disjoint from the rect given, splitting the work
+     * between the threads of the common ForkJoinPool at branches. Each task accumulates into its
+     * own accumulation, and these are merged as tasks complete, so the accumulator need not be
+     * thread safe.
+     *
+     * @param <A>
+     * @param rect
+     * @param accuracy
+     * @param accumulator
+     * @return accumulated result
+     * @throws NullPointerException if rect, accuracy or accumulator was null
+     */
+    public <A> A parallelAccumulateInteracting(Rect rect, Tolerance accuracy, NodeAccumulator<E, A> accumulator) throws NullPointerException {
+        if (rect == null) {
+            throw new NullPointerException("Rect must not be null");
+        }
+        return parallelAccumulateInternal(rect, accuracy, accumulator);
+    }
+
+    <A> A parallelAccumulateInternal(Rect rect, Tolerance accuracy, NodeAccumulator<E, A> accumulator) {
+        if (accuracy == null) {
+            throw new NullPointerException("Accuracy must not be null");
+        }
+        if (accumulator == null) {
+            throw new NullPointerException("Accumulator must not be null");
+        }
+        return ForkJoinPool.commonPool().invoke(new AccumulatorTask<>(this, rect, accuracy, accumulator));
+    }
+
+    /**
+     * Process all pairs of entries from this node and the node given which are not disjoint. Both
+     * trees are walked at the same time, so pairs of nodes which are disjoint are pruned without
+     * examining their entries.
+     *
+     * @param <F>
+     * @param other
+     * @param accuracy
+     * @param processor
+     * @return false if processor returned false, true otherwise
+     * @throws NullPointerException if other, accuracy or processor was null
+     */
+    public <F> boolean join(SpatialNode<F> other, Tolerance accuracy, PairProcessor<E, F> processor) throws NullPointerException {
+        if (processor == null) {
+            throw new NullPointerException("Processor must not be null");
+        }
+        return join(this, other, accuracy, processor);
+    }
+
+    static <E, F> boolean join(SpatialNode<E> a, SpatialNode<F> b, Tolerance accuracy, PairProcessor<E, F> processor) {
+        if ((a.size == 0) || (b.size == 0)) {
+            return true;
+        }
+        double tol = accuracy.tolerance;
+        RectBuilder ab = a.bounds;
+        RectBuilder bb = b.bounds;
+        if (isDisjoint(ab.getMinX(), ab.getMinY(), ab.getMaxX(), ab.getMaxY(), bb.getMinX(), bb.getMinY(), bb.getMaxX(), bb.getMaxY(), tol)) {
+            return true;
+        }
+        if (a.isBranch() && ((!b.isBranch()) || (a.size >= b.size))) {
+            return join(a.a, b, accuracy, processor) && join(a.b, b, accuracy, processor);
+        } else if (b.isBranch()) {
+            return join(a, b.a, accuracy, processor) && join(a, b.b, accuracy, processor);
+        }
+        Rect[] bItemBounds = b.itemBounds;
+        F[] bItemValues = b.itemValues;
+        for (int i = 0; i < a.size; i++) {
+            Rect ai = a.itemBounds[i];
+            if (!isDisjoint(ai.minX, ai.minY, ai.maxX, ai.maxY, bb.getMinX(), bb.getMinY(), bb.getMaxX(), bb.getMaxY(), tol)) {
+                E av = a.itemValues[i];
+                for (int j = 0; j < b.size; j++) {
+                    Rect bj = bItemBounds[j];
+                    if (!isDisjoint(ai.minX, ai.minY, ai.maxX, ai.maxY, bj.minX, bj.minY, bj.maxX, bj.maxY, tol)) {
+                        if (!processor.process(ai, av, bj, bItemValues[j])) {
+                            return false;
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    // Equivalent to Relation.isDisjoint(Rect.relate(...)), without the full relation
+    static boolean isDisjoint(double aMinX, double aMinY, double aMaxX, double aMaxY, double bMinX, double bMinY, double bMaxX, double bMaxY, double tolerance) {
+        return ((aMinX - bMaxX) > tolerance)
+                || ((aMinY - bMaxY) > tolerance)
+                || ((bMinX - aMaxX) > tolerance)
+                || ((bMinY - aMaxY) > tolerance);
+    }
+
+    //Determine if a is inside b, within the tolerance given
+    static boolean isInside(double aMinX, double aMinY, double aMaxX, double aMaxY, double bMinX, double bMinY, double bMaxX, double bMaxY, double tolerance) {
+        return ((bMinX - aMinX) <= tolerance)
+                && ((bMinY - aMinY) <= tolerance)
+                && ((aMaxX - bMaxX) <= tolerance)
+                && ((aMaxY - bMaxY) <= tolerance);
+    }
+
+    /**
+     * Process entries in order of increasing distance from the point given, up to a maximum number
+     * of results or distance. Entries are visited best first, so subtrees which cannot contain a
+     * closer entry are never visited.
+     *
+     * @param x
+     * @param y
+     * @param maxResults maximum number of entries to process
+     * @param maxDist maximum distance (May be infinite)
+     * @param distanceFunction function for getting the squared distance to an entry
+     * @param processor
+     * @return false if processor returned false, true otherwise
+     * @throws NullPointerException if distanceFunction or processor was null
+     * @throws IllegalArgumentException if x, y or maxDist was invalid
+     */
+    public boolean forNearest(double x, double y, int maxResults, double maxDist, DistanceFunction<? super E> distanceFunction, NodeProcessor<E> processor) throws NullPointerException, IllegalArgumentException {
+        Vect.check(x, y);
+        return forNearestInternal(x, y, x, y, maxResults, maxDist, distanceFunction, processor);
+    }
+
+    /**
+     * Process entries in order of increasing distance from the rect given, up to a maximum number
+     * of results or distance. Entries are visited best first, so subtrees which cannot contain a
+     * closer entry are never visited.
+     *
+     * @param rect
+     * @param maxResults maximum number of entries to process
+     * @param maxDist maximum distance (May be infinite)
+     * @param distanceFunction function for getting the squared distance to an entry
+     * @param processor
+     * @return false if processor returned false, true otherwise
+     * @throws NullPointerException if rect, distanceFunction or processor was null
+     * @throws IllegalArgumentException if maxDist was invalid
+     */
+    public boolean forNearest(Rect rect, int maxResults, double maxDist, DistanceFunction<? super E> distanceFunction, NodeProcessor<E> processor) throws NullPointerException, IllegalArgumentException {
+        return forNearestInternal(rect.minX, rect.minY, rect.maxX, rect.maxY, maxResults, maxDist, distanceFunction, processor);
+    }
+
+    /**
+     * Get the value of the entry nearest to the point given
+     *
+     * @param x
+     * @param y
+     * @param maxDist maximum distance (May be infinite)
+     * @param distanceFunction function for getting the squared distance to an entry
+     * @return the nearest value, or null if there were no entries within maxDist
+     * @throws NullPointerException if distanceFunction was null
+     * @throws IllegalArgumentException if x, y or maxDist was invalid
+     */
+    public E getNearest(double x, double y, double maxDist, DistanceFunction<? super E> distanceFunction) throws NullPointerException, IllegalArgumentException {
+        final List<E> ret = new ArrayList<>(1);
+        forNearest(x, y, 1, maxDist, distanceFunction, new NodeProcessor<E>() {
+            @Override
+            public boolean process(Rect bounds, E value) {
+                ret.add(value);
+                return false;
+            }
+        });
+        return ret.isEmpty() ? null : ret.get(0);
+    }
+
+    boolean forNearestInternal(double minX, double minY, double maxX, double maxY, int maxResults, double maxDist, DistanceFunction<? super E> distanceFunction, NodeProcessor<E> processor) {
+        if (Double.isNaN(maxDist) || (maxDist < 0)) {
+            throw new IllegalArgumentException("Invalid max distance : " + maxDist);
+        }
+        if (processor == null) {
+            throw new NullPointerException("Processor must not be null");
+        }
+        if((maxResults <= 0) || (size == 0)){
+            return true;
+        }
+        double maxDistSq = maxDist * maxDist;
+        PriorityQueue<NearestEntry<E>> queue = new PriorityQueue<>();
+        queue.add(new NearestEntry<>(0, this, null, null));
+        NearestEntry<E> entry;
+        while ((entry = queue.poll()) != null) {
+            SpatialNode<E> node = entry.node;
+            if (node == null) {
+                if (!processor.process(entry.bounds, entry.value)) {
+                    return false;
+                }
+                if (--maxResults == 0) {
+                    return true;
+                }
+            } else if (node.isBranch()) {
+                node.a.addNearestEntry(minX, minY, maxX, maxY, maxDistSq, queue);
+                node.b.addNearestEntry(minX, minY, maxX, maxY, maxDistSq, queue);
+            } else {
+                Rect[] _itemBounds = node.itemBounds;
+                E[] _itemValues = node.itemValues;
+                for (int i = 0; i < node.size; i++) {
+                    Rect r = _itemBounds[i];
+                    if (Rect.distSq(r.minX, r.minY, r.maxX, r.maxY, minX, minY, maxX, maxY) <= maxDistSq) {
+                        double distSq = distanceFunction.distSq(r, _itemValues[i], minX, minY, maxX, maxY);
+                        if (distSq <= maxDistSq) {
+                            queue.add(new NearestEntry<>(distSq, null, r, _itemValues[i]));
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    void addNearestEntry(double minX, double minY, double maxX, double maxY, double maxDistSq, PriorityQueue<NearestEntry<E>> queue) {
+        if (size != 0) {
+            double distSq = Rect.distSq(bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY(), minX, minY, maxX, maxY);
+            if (distSq <= maxDistSq) {
+                queue.add(new NearestEntry<>(distSq, this, null, null));
+            }
         }
     }
 
@@ -580,6 +984,246 @@ public final class SpatialNode<E> implements Externalizable, Cloneable {
         public boolean process(Rect bounds, E value);
     }
 
+    /**
+     * Processor for pairs of entries from 2 nodes
+     *
+     * @param <E>
+     * @param <F>
+     */
+    public interface PairProcessor<E, F> {
+
+        /**
+         * Process the pair of entries given
+         *
+         * @param aBounds
+         * @param aValue
+         * @param bBounds
+         * @param bValue
+         * @return true if more pairs are acceptable, false if the join should return no more
+         * pairs (if present)
+         */
+        public boolean process(Rect aBounds, E aValue, Rect bBounds, F bValue);
+    }
+
+    /**
+     * Function for getting the squared distance between an entry and a query region. The distance
+     * returned must not be less than the distance between the bounds of the entry and the region, as
+     * this is used to exclude subtrees from nearest neighbour searches.
+     *
+     * @param <E>
+     */
+    public interface DistanceFunction<E> {
+
+        /**
+         * Distance function based only on the bounds of entries
+         */
+        static final DistanceFunction<Object> BOUNDS = new DistanceFunction<Object>() {
+            @Override
+            public double distSq(Rect bounds, Object value, double minX, double minY, double maxX, double maxY) {
+                return Rect.distSq(bounds.minX, bounds.minY, bounds.maxX, bounds.maxY, minX, minY, maxX, maxY);
+            }
+        };
+
+        /**
+         * Get the squared distance between the entry given and the query region
+         *
+         * @param bounds bounds of entry
+         * @param value value of entry
+         * @param minX
+         * @param minY
+         * @param maxX
+         * @param maxY
+         * @return squared distance
+         */
+        public double distSq(Rect bounds, E value, double minX, double minY, double maxX, double maxY);
+    }
+
+    /**
+     * Accumulator for parallel queries. Each task creates its own accumulation, adds entries to it,
+     * and accumulations from separate tasks are merged when the tasks complete.
+     *
+     * @param <E>
+     * @param <A> accumulation type
+     */
+    public interface NodeAccumulator<E, A> {
+
+        /**
+         * Create a new empty accumulation
+         *
+         * @return
+         */
+        public A create();
+
+        /**
+         * Add the entry given to the accumulation given
+         *
+         * @param accumulation
+         * @param bounds
+         * @param value
+         * @return the updated accumulation (may be the same instance)
+         */
+        public A add(A accumulation, Rect bounds, E value);
+
+        /**
+         * Merge the accumulations given
+         *
+         * @param a
+         * @param b
+         * @return the merged accumulation (may be a or b)
+         */
+        public A merge(A a, A b);
+    }
+
+    //Task which forks at branches until the number of entries is below the threshold
+    static final class ProcessorTask<E> extends RecursiveTask<Boolean> implements NodeProcessor<E> {
+
+        private static final long serialVersionUID = 1L;
+
+        final SpatialNode<E> node;
+        final Rect rect; // null if all entries are to be processed
+        final Tolerance accuracy;
+        final NodeProcessor<E> processor;
+        final AtomicBoolean stopped;
+
+        ProcessorTask(SpatialNode<E> node, Rect rect, Tolerance accuracy, NodeProcessor<E> processor, AtomicBoolean stopped) {
+            this.node = node;
+            this.rect = rect;
+            this.accuracy = accuracy;
+            this.processor = processor;
+            this.stopped = stopped;
+        }
+
+        @Override
+        protected Boolean compute() {
+            Rect r = rect;
+            if (r != null) {
+                int relate = node.relate(r, accuracy);
+                if (Relation.isDisjoint(relate)) {
+                    return true;
+                } else if (!Relation.isAOutsideB(relate)) {
+                    r = null; // all entries in node are interacting
+                }
+            }
+            if (node.isBranch() && (node.size > PARALLEL_THRESHOLD)) {
+                ProcessorTask<E> bTask = new ProcessorTask<>(node.b, r, accuracy, processor, stopped);
+                bTask.fork();
+                boolean ret = new ProcessorTask<>(node.a, r, accuracy, processor, stopped).compute();
+                return bTask.join() && ret;
+            }
+            boolean ret = (r == null) ? node.forEach(this) : node.forInteracting(r, accuracy, this);
+            if (!ret) {
+                stopped.set(true);
+            }
+            return ret;
+        }
+
+        @Override
+        public boolean process(Rect bounds, E value) {
+            return (!stopped.get()) && processor.process(bounds, value);
+        }
+    }
+
+    static final class AccumulatorTask<E, A> extends RecursiveTask<A> implements NodeProcessor<E> {
+
+        private static final long serialVersionUID = 1L;
+
+        final SpatialNode<E> node;
+        final Rect rect; // null if all entries are to be accumulated
+        final Tolerance accuracy;
+        final NodeAccumulator<E, A> accumulator;
+        A accumulation;
+
+        AccumulatorTask(SpatialNode<E> node, Rect rect, Tolerance accuracy, NodeAccumulator<E, A> accumulator) {
+            this.node = node;
+            this.rect = rect;
+            this.accuracy = accuracy;
+            this.accumulator = accumulator;
+        }
+
+        @Override
+        protected A compute() {
+            Rect r = rect;
+            if (r != null) {
+                int relate = node.relate(r, accuracy);
+                if (Relation.isDisjoint(relate)) {
+                    return accumulator.create();
+                } else if (!Relation.isAOutsideB(relate)) {
+                    r = null; // all entries in node are interacting
+                }
+            }
+            if (node.isBranch() && (node.size > PARALLEL_THRESHOLD)) {
+                AccumulatorTask<E, A> bTask = new AccumulatorTask<>(node.b, r, accuracy, accumulator);
+                bTask.fork();
+                A ret = new AccumulatorTask<>(node.a, r, accuracy, accumulator).compute();
+                return accumulator.merge(ret, bTask.join());
+            }
+            accumulation = accumulator.create();
+            if (r == null) {
+                node.forEach(this);
+            } else {
+                node.forInteracting(r, accuracy, this);
+            }
+            return accumulation;
+        }
+
+        @Override
+        public boolean process(Rect bounds, E value) {
+            accumulation = accumulator.add(accumulation, bounds, value);
+            return true;
+        }
+    }
+
+    static final class NearestEntry<E> implements Comparable<NearestEntry<E>> {
+
+        final double distSq;
+        final SpatialNode<E> node;
+        final Rect bounds;
+        final E value;
+
+        NearestEntry(double distSq, SpatialNode<E> node, Rect bounds, E value) {
+            this.distSq = distSq;
+            this.node = node;
+            this.bounds = bounds;
+            this.value = value;
+        }
+
+        @Override
+        public int compareTo(NearestEntry<E> other) {
+            int ret = Double.compare(distSq, other.distSq);
+            if (ret == 0) { // Entries before nodes at the same distance
+                ret = Boolean.compare(node != null, other.node != null);
+            }
+            return ret;
+        }
+    }
+
+    //Reusable stack for iterative traversal. Each traversal only uses the portion of the stack
+    //above the size at which it started, so traversals may be nested within processors.
+    static final class NodeStack {
+
+        SpatialNode<?>[] nodes = new SpatialNode<?>[64];
+        int size;
+
+        void push(SpatialNode<?> node) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size << 1);
+            }
+            nodes[size++] = node;
+        }
+
+        @SuppressWarnings("unchecked") // a traversal only pops the nodes it pushed
+        <E> SpatialNode<E> pop() {
+            SpatialNode<E> ret = (SpatialNode<E>) nodes[--size];
+            nodes[size] = null;
+            return ret;
+        }
+
+        void clear(int newSize) {
+            Arrays.fill(nodes, newSize, Math.max(size, newSize), null);
+            size = newSize;
+        }
+    }
+
     static class HashCodeProcessor<E> implements NodeProcessor<E> {
 
         int hash = 5;
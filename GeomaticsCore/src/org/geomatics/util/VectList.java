@@ -8,7 +8,6 @@ import java.util.Iterator;
 import org.geomatics.geom.GeomException;
 import org.geomatics.geom.Line;
 import org.geomatics.geom.Rect;
-import org.geomatics.geom.RectBuilder;
 import org.geomatics.geom.Vect;
 import org.geomatics.geom.VectBuilder;
 import org.geomatics.geom.io.GeomIOException;
@@ -187,15 +186,122 @@ public final class VectList implements Serializable, Cloneable, Iterable<Vect>,
      */
     public Rect getBounds() {
         Rect ret = cachedRect;
-        if (ret == null) {
-            RectBuilder builder = new RectBuilder();
-            builder.addAll(ords, 0, size);
-            ret = builder.build();
+        if ((ret == null) && (size != 0)) {
+            ret = bounds(ords, size);
             cachedRect = ret;
         }
         return ret;
     }
 
+    /**
+     * Get the signed area of the ring formed by the vectors in this list (The last vector is
+     * considered to link back to the first). Area is positive if the vectors are anticlockwise,
+     * and negative otherwise.
+     *
+     * @return signed area
+     */
+    public double getSignedArea() {
+        return (size < 3) ? 0 : signedArea(ords, size);
+    }
+
+    /**
+     * Get the total length of the lines between consecutive vectors in this list
+     *
+     * @return length
+     */
+    public double getPathLength() {
+        return pathLength(ords, size);
+    }
+
+    /**
+     * Get the square of the min distance from the lines between consecutive vectors in this list
+     * to the vector given. If this list contains a single vector, the square of the distance to
+     * that vector is returned.
+     *
+     * @param x
+     * @param y
+     * @return square of the distance, or positive infinity if this list is empty
+     */
+    public double distSegVectSq(double x, double y) {
+        return distSegVectSq(ords, size, x, y);
+    }
+
+    // The following kernels work directly on the ords array, avoiding index checks and keeping
+    // loop carried dependencies to a minimum so that the JIT can pipeline them effectively
+    static Rect bounds(double[] ords, int size) {
+        double minX = ords[0];
+        double minY = ords[1];
+        double maxX = minX;
+        double maxY = minY;
+        for (int i = 2, end = size << 1; i < end; i += 2) {
+            double x = ords[i];
+            double y = ords[i + 1];
+            minX = (x < minX) ? x : minX;
+            maxX = (x > maxX) ? x : maxX;
+            minY = (y < minY) ? y : minY;
+            maxY = (y > maxY) ? y : maxY;
+        }
+        return Rect.valueOf(minX, minY, maxX, maxY);
+    }
+
+    static double signedArea(double[] ords, int size) {
+        int end = size << 1;
+        double bx = ords[end - 2];
+        double by = ords[end - 1];
+        double area = 0;
+        for (int i = 0; i < end; i += 2) {
+            double ax = ords[i];
+            double ay = ords[i + 1];
+            area += (bx * ay) - (ax * by);
+            bx = ax;
+            by = ay;
+        }
+        return area / 2;
+    }
+
+    static double pathLength(double[] ords, int size) {
+        double ret = 0;
+        for (int i = 2, end = size << 1; i < end; i += 2) {
+            double dx = ords[i] - ords[i - 2];
+            double dy = ords[i + 1] - ords[i - 1];
+            ret += Math.sqrt((dx * dx) + (dy * dy));
+        }
+        return ret;
+    }
+
+    static double distSegVectSq(double[] ords, int size, double x, double y) {
+        if (size <= 1) {
+            return (size == 0) ? Double.POSITIVE_INFINITY : Vect.distSq(ords[0], ords[1], x, y);
+        }
+        double ret = Double.POSITIVE_INFINITY;
+        double ax = ords[0];
+        double ay = ords[1];
+        for (int i = 2, end = size << 1; i < end; i += 2) {
+            double bx = ords[i];
+            double by = ords[i + 1];
+            double dx = bx - ax;
+            double dy = by - ay;
+            double px = x - ax;
+            double py = y - ay;
+            double dot = (px * dx) + (py * dy);
+            double lenSq = (dx * dx) + (dy * dy);
+            double distSq;
+            if (dot <= 0) {
+                distSq = (px * px) + (py * py);
+            } else if (dot >= lenSq) {
+                double qx = x - bx;
+                double qy = y - by;
+                distSq = (qx * qx) + (qy * qy);
+            } else {
+                distSq = Math.max((px * px) + (py * py) - (dot * dot / lenSq), 0);
+            }
+            ret = (distSq < ret) ? distSq : ret;
+            ax = bx;
+            ay = by;
+        }
+        return ret;
+    }
+
     /**
      * Get the first index of the vector given in this list, after the index
      * given (inclusive)
@@ -11,42 +11,64 @@ import org.geomatics.geom.Vect;
 import org.geomatics.geom.VectBuilder;
 
 /**
+ * Map from vectors to values backed by an open hash table using Robin Hood linear probing (See
+ * {@link VectSet})
  *
  * @author tofar_000
  * @param <E>
  */
 public final class VectMap<E> implements Serializable, Cloneable {
 
-    static final int MAX_JUMPS = 4;
     static final int INITIAL_CAPACITY = 16;
-    final int maxJumps;
+    final double loadFactor;
     double[] ords;
+    byte[] probes;
     E[] values;
     int size;
     boolean copyOnEdit;
+    transient int iterating;
     int version;
 
     /**
      * Create a new instance of VectMap
      *
      * @param initialCapacity initial table size
-     * @param maxJumps max jumps before a rehash occurs
-     * @throws IllegalArgumentException if initialCapacity or maxJumps < 1
+     * @param loadFactor ratio of size to table size beyond which the table grows
+     * @throws IllegalArgumentException if initialCapacity < 1 or loadFactor was not in the range
+     * (0,0.9]
      */
-    public VectMap(int initialCapacity, int maxJumps) throws IllegalArgumentException {
+    public VectMap(int initialCapacity, double loadFactor) throws IllegalArgumentException {
         if (initialCapacity <= 1) {
             throw new IllegalArgumentException("Invalid initialCapacity : " + initialCapacity);
         }
-        if (maxJumps < 1) {
-            throw new IllegalArgumentException("Invalid maxJumps : " + maxJumps);
+        if (!((loadFactor > 0) && (loadFactor <= VectSet.MAX_LOAD_FACTOR))) {
+            throw new IllegalArgumentException("Invalid loadFactor : " + loadFactor);
         }
         initialCapacity = Integer.highestOneBit(initialCapacity - 1) << 1; // make sure capacity is a power of 2
-        this.maxJumps = maxJumps;
+        this.loadFactor = loadFactor;
         this.ords = new double[initialCapacity << 1];
+        this.probes = new byte[initialCapacity];
         this.values = (E[]) new Object[initialCapacity];
         Arrays.fill(ords, Double.NaN); // All entries must initially be NaN
     }
 
+    /**
+     * Create a new instance of VectMap
+     *
+     * @param initialCapacity initial table size
+     * @param maxJumps ignored - the table grows once the default load factor is exceeded
+     * @throws IllegalArgumentException if initialCapacity or maxJumps < 1
+     * @deprecated probe lengths are now kept short by Robin Hood probing. Use
+     * {@link #VectMap(int, double)} to control when the table grows.
+     */
+    @Deprecated
+    public VectMap(int initialCapacity, int maxJumps) throws IllegalArgumentException {
+        this(initialCapacity, VectSet.LOAD_FACTOR);
+        if (maxJumps < 1) {
+            throw new IllegalArgumentException("Invalid maxJumps : " + maxJumps);
+        }
+    }
+
     /**
      * Create a new instance of VectMap
      *
@@ -54,7 +76,7 @@ public final class VectMap<E> implements Serializable, Cloneable {
      * @throws IllegalArgumentException if initialCapacity < 1
      */
     public VectMap(int initialCapacity) {
-        this(initialCapacity, MAX_JUMPS);
+        this(initialCapacity, VectSet.LOAD_FACTOR);
     }
 
     /**
@@ -64,9 +86,10 @@ public final class VectMap<E> implements Serializable, Cloneable {
         this(INITIAL_CAPACITY);
     }
 
-    VectMap(int maxJumps, double[] ords, E[] values, int size, boolean copyOnEdit) {
-        this.maxJumps = maxJumps;
+    VectMap(double loadFactor, double[] ords, byte[] probes, E[] values, int size, boolean copyOnEdit) {
+        this.loadFactor = loadFactor;
         this.ords = ords;
+        this.probes = probes;
         this.values = values;
         this.size = size;
         this.copyOnEdit = copyOnEdit;
@@ -115,14 +138,7 @@ public final class VectMap<E> implements Serializable, Cloneable {
     }
 
     boolean containsInternal(double x, double y) {
-        int index = VectSet.hashIndex(x, y, ords);
-        for (int s = maxJumps; s-- > 0;) {
-            if ((ords[index] == x) && (ords[index + 1] == y)) {
-                return true;
-            }
-            index = (index + 2) % ords.length;
-        }
-        return false;
+        return VectSet.findSlot(x, y, ords, probes) >= 0;
     }
 
     /**
@@ -161,14 +177,8 @@ public final class VectMap<E> implements Serializable, Cloneable {
     }
 
     E getInternal(double x, double y) {
-        int index = VectSet.hashIndex(x, y, ords);
-        for (int s = maxJumps; s-- > 0;) {
-            if ((ords[index] == x) && (ords[index + 1] == y)) {
-                return values[index >> 1];
-            }
-            index = (index + 2) % ords.length;
-        }
-        return null;
+        int slot = VectSet.findSlot(x, y, ords, probes);
+        return (slot < 0) ? null : values[slot];
     }
 
     /**
@@ -236,21 +246,19 @@ public final class VectMap<E> implements Serializable, Cloneable {
     VectMap putInternal(double x, double y, E value) {
         version++;
         beforeUpdate();
-        int capacity = ords.length;
-        while (true) {
-            switch (putMapping(x, y, value, ords, values, maxJumps)) {
-                case 0:
-                    return this; // exists
-                case -1:
-                    do{
-                        capacity = capacity << 1;
-                    }while(!rehash(capacity));
-                    break;
-                default: // case 1
-                    size++;
-                    return this;
-            }
+        int slot = VectSet.findSlot(x, y, ords, probes);
+        if (slot >= 0) {
+            values[slot] = value;
+            return this; // exists
+        }
+        if (size >= VectSet.threshold(probes.length, loadFactor)) {
+            rehash(VectSet.capacityFor(size + 1, loadFactor));
         }
+        if (VectSet.insert(x, y, value, ords, probes, values)) {
+            rehash(probes.length << 1);
+        }
+        size++;
+        return this;
     }
 
     /**
@@ -278,17 +286,15 @@ public final class VectMap<E> implements Serializable, Cloneable {
     }
 
     E removeInternal(double x, double y) {
-        beforeUpdate();
-        int index = VectSet.hashIndex(x, y, ords);
-        for (int s = maxJumps; s-- > 0;) {
-            if ((ords[index] == x) && (ords[index + 1] == y)) {
-                ords[index] = Double.NaN;
-                size--;
-                return values[index >> 1];
-            }
-            index = (index + 2) % ords.length;
+        int slot = VectSet.findSlot(x, y, ords, probes);
+        if (slot < 0) {
+            return null;
         }
-        return null;
+        beforeUpdate();
+        E ret = values[slot];
+        VectSet.removeSlot(slot, ords, probes, values);
+        size--;
+        return ret;
     }
 
     /**
@@ -296,33 +302,61 @@ public final class VectMap<E> implements Serializable, Cloneable {
      */
     public void clear() {
         if (size != 0) {
-            if (copyOnEdit) {
+            if (copyOnEdit || (iterating != 0)) {
                 ords = new double[ords.length];
-                values = (E[]) new Object[ords.length >> 1];
+                probes = new byte[probes.length];
+                values = (E[]) new Object[values.length];
                 copyOnEdit = false;
+                iterating = 0;
+            } else {
+                Arrays.fill(values, null);
             }
             Arrays.fill(ords, Double.NaN);
             size = 0;
         }
     }
 
-    public boolean forEach(VectMapProcessor<E> processor) {
-        int index = 0;
+    /**
+     * Process all mappings in this map. If this map is modified by the processor, iteration
+     * continues over the keys present when iteration started, skipping any which have since been
+     * removed.
+     *
+     * @param processor
+     * @return false if processor returned false, true otherwise
+     * @throws NullPointerException if processor was null
+     * @throws ConcurrentModificationException if a mapping was added or updated by the processor
+     */
+    public boolean forEach(VectMapProcessor<E> processor) throws NullPointerException, ConcurrentModificationException {
+        final double[] _ords = ords;
+        final E[] _values = values;
         final int storedVersion = version;
-        while (true) {
-            if (index >= ords.length) {
-                return true;
-            }
-            if (Double.isNaN(ords[index])) {
-                index += 2;
-            } else {
-                E value = values[index >> 1];
-                if(storedVersion != version){
+        iterating++;
+        try {
+            for (int index = 0; index < _ords.length; index += 2) {
+                double x = _ords[index];
+                if (Double.isNaN(x)) {
+                    continue;
+                }
+                double y = _ords[index + 1];
+                E value = _values[index >> 1];
+                if (storedVersion != version) {
                     throw new ConcurrentModificationException();
-                }else if (!processor.process(ords[index++], ords[index++], value)) {
+                } else if (_ords != ords) { // modified during iteration
+                    int slot = VectSet.findSlot(x, y, ords, probes);
+                    if (slot < 0) {
+                        continue; // removed
+                    }
+                    value = values[slot];
+                }
+                if (!processor.process(x, y, value)) {
                     return false;
                 }
             }
+            return true;
+        } finally {
+            if (_ords == ords) {
+                iterating--;
+            }
         }
     }
 
@@ -375,7 +409,7 @@ public final class VectMap<E> implements Serializable, Cloneable {
         int hash = 3;
         for (int i = list.size(); i-- > 0;) {
             hash = 41 * hash + Vect.hashCode(list.getX(i), list.getY(i));
-            hash = 41 * hash + Objects.hashCode(values[i]);
+            hash = 41 * hash + Objects.hashCode(getInternal(list.getX(i), list.getY(i)));
         }
         return hash;
     }
@@ -447,54 +481,41 @@ public final class VectMap<E> implements Serializable, Cloneable {
 
     @Override
     public VectMap clone() {
-        VectMap ret = new VectMap(maxJumps, ords, values, size, true);
+        VectMap ret = new VectMap(loadFactor, ords, probes, values, size, true);
         copyOnEdit = true;
         return ret;
     }
 
-    boolean rehash(int capacity) {
-        double[] newOrds = new double[capacity];
-        E[] newValues = (E[]) new Object[capacity];
-        Arrays.fill(newOrds, Double.NaN);
-        int index = ords.length;
-        while (index > 0) {
-            double y = ords[--index];
-            double x = ords[--index];
-            if (!Double.isNaN(x)) {
-                if(putMapping(x, y, values[index >> 1], newOrds, newValues, maxJumps) == -1){
-                    return false; //DIDNT THINK THIS WAS POSSIBLE - RETURNS -1 - A REHASH FAILS ON A BIGGER ONE THAN THE ORIGINAL
+    void rehash(int capacity) {
+        while (true) {
+            double[] newOrds = new double[capacity << 1];
+            byte[] newProbes = new byte[capacity];
+            E[] newValues = (E[]) new Object[capacity];
+            Arrays.fill(newOrds, Double.NaN);
+            boolean saturated = false;
+            for (int index = 0; index < ords.length; index += 2) {
+                double x = ords[index];
+                if (!Double.isNaN(x)) {
+                    saturated |= VectSet.insert(x, ords[index + 1], values[index >> 1], newOrds, newProbes, newValues);
                 }
-                
             }
-        }
-        ords = newOrds;
-        values = newValues;
-        return true;
-    }
-
-    static <E> int putMapping(double x, double y, E value, double[] ords, E[] values, int maxJumps) {
-        int index = VectSet.hashIndex(x, y, ords);
-        for (int s = maxJumps; s-- > 0;) {
-            int next = index + 1;
-            if (Double.isNaN(ords[index])) {
-                ords[index] = x;
-                ords[next] = y;
-                values[index >> 1] = value;
-                return 1;
-            } else if ((ords[index] == x) && (ords[next] == y)) {
-                values[index >> 1] = value;
-                return 0;
+            if (!saturated) {
+                ords = newOrds;
+                probes = newProbes;
+                values = newValues;
+                return;
             }
-            index = (index + 2) % ords.length;
+            capacity <<= 1;
         }
-        return -1;
     }
 
     void beforeUpdate() {
-        if (copyOnEdit) {
+        if (copyOnEdit || (iterating != 0)) {
             ords = ords.clone();
+            probes = probes.clone();
             values = values.clone();
             copyOnEdit = false;
+            iterating = 0; // any iteration in progress uses the previous arrays
         }
     }
 
@@ -12,40 +12,68 @@ import org.geomatics.geom.Vect;
 import org.geomatics.geom.VectBuilder;
 
 /**
- * Set of vectors backed by an open hash table
+ * Set of vectors backed by an open hash table. Collisions are resolved using Robin Hood linear
+ * probing : the probe length of each slot is stored alongside the ordinates, and an entry being
+ * inserted displaces any entry closer to its home slot. This keeps probe lengths short and
+ * uniform even for clustered or gridded coordinates, so the table only grows when the load factor
+ * is exceeded, or in the rare case that a probe length would no longer fit in a byte. Removal
+ * shifts subsequent entries back, so no tombstones are required.
  *
  * @author tofar_000
  */
 public final class VectSet implements Serializable, Cloneable, Iterable<Vect> {
 
-    static final int MAX_JUMPS = 4;
     static final int INITIAL_CAPACITY = 16;
-    final int maxJumps;
+    static final double LOAD_FACTOR = 0.75;
+    static final double MAX_LOAD_FACTOR = 0.9;
+    static final int MAX_PROBE = Byte.MAX_VALUE; // probe lengths are stored in a byte - the table grows before reaching this
+    final double loadFactor;
     double[] ords;
+    byte[] probes;
     int size;
     transient boolean copyOnEdit;
+    transient int iterating;
     int version;
 
     /**
      * Create a new instance of VectSet
      *
      * @param initialCapacity initial table size
-     * @param maxJumps max jumps before a rehash occurs
-     * @throws IllegalArgumentException if initialCapacity or maxJumps < 1
+     * @param loadFactor ratio of size to table size beyond which the table grows
+     * @throws IllegalArgumentException if initialCapacity < 1 or loadFactor was not in the range
+     * (0,0.9]
      */
-    public VectSet(int initialCapacity, int maxJumps) throws IllegalArgumentException {
+    public VectSet(int initialCapacity, double loadFactor) throws IllegalArgumentException {
         if (initialCapacity <= 1) {
             throw new IllegalArgumentException("Invalid initialCapacity : " + initialCapacity);
         }
-        if (maxJumps < 1) {
-            throw new IllegalArgumentException("Invalid maxJumps : " + maxJumps);
+        if (!((loadFactor > 0) && (loadFactor <= MAX_LOAD_FACTOR))) {
+            throw new IllegalArgumentException("Invalid loadFactor : " + loadFactor);
         }
         initialCapacity = Integer.highestOneBit(initialCapacity - 1) << 1; // make sure capacity is a power of 2
-        this.maxJumps = maxJumps;
+        this.loadFactor = loadFactor;
         this.ords = new double[initialCapacity << 1];
+        this.probes = new byte[initialCapacity];
         Arrays.fill(ords, Double.NaN); // All entries must initially be NaN
     }
 
+    /**
+     * Create a new instance of VectSet
+     *
+     * @param initialCapacity initial table size
+     * @param maxJumps ignored - the table grows once the default load factor is exceeded
+     * @throws IllegalArgumentException if initialCapacity or maxJumps < 1
+     * @deprecated probe lengths are now kept short by Robin Hood probing. Use
+     * {@link #VectSet(int, double)} to control when the table grows.
+     */
+    @Deprecated
+    public VectSet(int initialCapacity, int maxJumps) throws IllegalArgumentException {
+        this(initialCapacity, LOAD_FACTOR);
+        if (maxJumps < 1) {
+            throw new IllegalArgumentException("Invalid maxJumps : " + maxJumps);
+        }
+    }
+
     /**
      * Create a new instance of VectSet
      *
@@ -53,7 +81,7 @@ public final class VectSet implements Serializable, Cloneable, Iterable<Vect> {
      * @throws IllegalArgumentException if initialCapacity < 1
      */
     public VectSet(int initialCapacity) throws IllegalArgumentException {
-        this(initialCapacity, MAX_JUMPS);
+        this(initialCapacity, LOAD_FACTOR);
     }
 
     /**
@@ -69,8 +97,9 @@ public final class VectSet implements Serializable, Cloneable, Iterable<Vect> {
      * @throws NullPointerException if other was null
      */
     public VectSet(VectSet other) throws NullPointerException {
-        this.maxJumps = other.maxJumps;
+        this.loadFactor = other.loadFactor;
         this.ords = other.ords;
+        this.probes = other.probes;
         this.copyOnEdit = true;
         other.copyOnEdit = true;
         this.size = other.size;
@@ -83,7 +112,7 @@ public final class VectSet implements Serializable, Cloneable, Iterable<Vect> {
      * @throws IllegalArgumentException if ord was infinite or NaN, or number of ords was not even
      */
     public VectSet(double... ords) throws NullPointerException, IllegalArgumentException{
-        this(((ords.length >> 1) > INITIAL_CAPACITY) ? (ords.length >> 1) : INITIAL_CAPACITY);
+        this(Math.max((int) ((ords.length >> 1) / LOAD_FACTOR) + 1, INITIAL_CAPACITY));
         if ((ords.length & 1) == 1) {
             throw new IllegalArgumentException("Number of ordinates must be even : " + ords.length);
         }
@@ -147,14 +176,7 @@ public final class VectSet implements Serializable, Cloneable, Iterable<Vect> {
     }
     
     boolean containsInternal(double x, double y) {
-        int index = hashIndex(x, y, ords);
-        for (int s = maxJumps; s-- > 0;) {
-            if ((ords[index] == x) && (ords[index + 1] == y)) {
-                return true;
-            }
-            index = (index + 2) % ords.length;
-        }
-        return false;
+        return findSlot(x, y, ords, probes) >= 0;
     }
 
     /**
@@ -218,6 +240,7 @@ public final class VectSet implements Serializable, Cloneable, Iterable<Vect> {
             return this;
         } else if (isEmpty()) {
             this.ords = vects.ords;
+            this.probes = vects.probes;
             this.copyOnEdit = true;
             vects.copyOnEdit = true;
             this.size = vects.size;
@@ -249,26 +272,19 @@ public final class VectSet implements Serializable, Cloneable, Iterable<Vect> {
     }
 
     VectSet addInternal(double x, double y) {
+        if (findSlot(x, y, ords, probes) >= 0) {
+            return this; // exists
+        }
         beforeUpdate();
-        int capacity = ords.length;
-        while (true) {
-            switch (addToOrds(x, y, ords, maxJumps)) {
-                case 0:
-                    return this; // exists
-                case -1:
-                    double[] newOrds;
-                    do{
-                        capacity = capacity << 1;
-                        newOrds = rehash(ords, maxJumps, capacity);
-                    }while(newOrds == null);
-                    ords = newOrds;
-                    break;
-                default: // case 1
-                    size++;
-                    version++;
-                    return this;
-            }
+        if (size >= threshold(probes.length, loadFactor)) {
+            rehash(capacityFor(size + 1, loadFactor));
         }
+        if (insert(x, y, null, ords, probes, null)) {
+            rehash(probes.length << 1);
+        }
+        size++;
+        version++;
+        return this;
     }
 
     /**
@@ -296,17 +312,14 @@ public final class VectSet implements Serializable, Cloneable, Iterable<Vect> {
     }
 
     boolean removeInternal(double x, double y) {
-        beforeUpdate();
-        int index = hashIndex(x, y, ords);
-        for (int s = maxJumps; s-- > 0;) {
-            if ((ords[index] == x) && (ords[index + 1] == y)) {
-                ords[index] = Double.NaN;
-                size--;
-                return true;
-            }
-            index = (index + 2) % ords.length;
+        int slot = findSlot(x, y, ords, probes);
+        if (slot < 0) {
+            return false;
         }
-        return false;
+        beforeUpdate();
+        removeSlot(slot, ords, probes, null);
+        size--;
+        return true;
     }
 
     /**
@@ -314,9 +327,11 @@ public final class VectSet implements Serializable, Cloneable, Iterable<Vect> {
      */
     public VectSet clear() {
         if (size != 0) {
-            if (copyOnEdit) {
+            if (copyOnEdit || (iterating != 0)) {
                 ords = new double[ords.length];
+                probes = new byte[probes.length];
                 copyOnEdit = false;
+                iterating = 0;
             }
             Arrays.fill(ords, Double.NaN);
             size = 0;
@@ -324,19 +339,39 @@ public final class VectSet implements Serializable, Cloneable, Iterable<Vect> {
         return this;
     }
 
-    public boolean forEach(VectSetProcessor processor) {
-        int index = 0;
+    /**
+     * Process all vectors in this set. If this set is modified by the processor, iteration
+     * continues over the vectors present when iteration started, skipping any which have since
+     * been removed.
+     *
+     * @param processor
+     * @return false if processor returned false, true otherwise
+     * @throws NullPointerException if processor was null
+     * @throws ConcurrentModificationException if a vector was added by the processor
+     */
+    public boolean forEach(VectSetProcessor processor) throws NullPointerException, ConcurrentModificationException {
+        final double[] _ords = ords;
         final int storedVersion = version;
-        while (true) {
-            if (index >= ords.length) {
-                return true;
+        iterating++;
+        try {
+            for (int index = 0; index < _ords.length; index += 2) {
+                double x = _ords[index];
+                if (Double.isNaN(x)) {
+                    continue;
+                }
+                double y = _ords[index + 1];
+                if (storedVersion != version) {
+                    throw new ConcurrentModificationException();
+                } else if ((_ords != ords) && (findSlot(x, y, ords, probes) < 0)) {
+                    continue; // removed during iteration
+                } else if (!processor.process(x, y)) {
+                    return false;
+                }
             }
-            if (Double.isNaN(ords[index])) {
-                index += 2;
-            } else if(storedVersion != version){
-                throw new ConcurrentModificationException();
-            } else if (!processor.process(ords[index++], ords[index++])) {
-                return false;
+            return true;
+        } finally {
+            if (_ords == ords) {
+                iterating--;
             }
         }
     }
@@ -465,60 +500,154 @@ public final class VectSet implements Serializable, Cloneable, Iterable<Vect> {
         return new VectSet(this);
     }
 
-    static double[] rehash(double[] ords, int maxJumps, int capacity) {
-        double[] newOrds = new double[capacity];
-        Arrays.fill(newOrds, Double.NaN);
-        int index = ords.length;
-        while (index > 0) {
-            double y = ords[--index];
-            double x = ords[--index];
-            if (!Double.isNaN(x)) {
-                int added = addToOrds(x, y, newOrds, maxJumps);
-                if (added == -1) { // add failed
-                    return null;
+    void rehash(int capacity) {
+        while (true) {
+            double[] newOrds = new double[capacity << 1];
+            byte[] newProbes = new byte[capacity];
+            Arrays.fill(newOrds, Double.NaN);
+            boolean saturated = false;
+            for (int index = 0; index < ords.length; index += 2) {
+                double x = ords[index];
+                if (!Double.isNaN(x)) {
+                    saturated |= insert(x, ords[index + 1], null, newOrds, newProbes, null);
                 }
             }
+            if (!saturated) {
+                ords = newOrds;
+                probes = newProbes;
+                return;
+            }
+            capacity <<= 1;
         }
-        return newOrds;
     }
 
-    static int hashIndex(double x, double y, double[] ords) {
+    static int threshold(int capacity, double loadFactor) {
+        return Math.min(capacity - 1, (int) (capacity * loadFactor)); // there must always be at least one empty slot
+    }
+
+    static int capacityFor(int size, double loadFactor) {
+        int capacity = INITIAL_CAPACITY;
+        while (threshold(capacity, loadFactor) < size) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    static int hashSlot(double x, double y, int mask) {
         int hash = Vect.hashCode(x, y);
-        int ret = (hash & ((ords.length >> 1) - 1)) << 1;
-        return ret;
+        hash ^= (hash >>> 16); // Vect hashes are poorly distributed in the low bits for gridded data, so mix them
+        hash *= 0x85ebca6b;
+        hash ^= (hash >>> 13);
+        hash *= 0xc2b2ae35;
+        hash ^= (hash >>> 16);
+        return hash & mask;
+    }
+
+    static int findSlot(double x, double y, double[] ords, byte[] probes) {
+        int mask = probes.length - 1;
+        int slot = hashSlot(x, y, mask);
+        int probe = 0;
+        while (true) {
+            int index = slot << 1;
+            double ox = ords[index];
+            if (Double.isNaN(ox) || (probes[slot] < probe)) {
+                return -1; // an entry for x,y would have displaced the entry in this slot
+            } else if ((ox == x) && (ords[index + 1] == y)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+            probe++;
+        }
     }
 
-    static int addToOrds(double x, double y, double[] ords, int maxJumps) {
-        int index = hashIndex(x, y, ords);
-        for (int s = maxJumps; s-- > 0;) {
-            int next = index + 1;
-            if (Double.isNaN(ords[index])) {
+    //Insert an entry which is not already present. Returns true if a probe length would have
+    //exceeded MAX_PROBE, in which case all entries are present but some probe lengths are wrong, so
+    //the table must be rehashed before the next lookup.
+    static boolean insert(double x, double y, Object value, double[] ords, byte[] probes, Object[] values) {
+        int mask = probes.length - 1;
+        int slot = hashSlot(x, y, mask);
+        int probe = 0;
+        boolean saturated = false;
+        while (true) {
+            int index = slot << 1;
+            double ox = ords[index];
+            if (Double.isNaN(ox)) {
                 ords[index] = x;
-                ords[next] = y;
-                return 1;
-            } else if ((ords[index] == x) && (ords[next] == y)) {
-                return 0;
+                ords[index + 1] = y;
+                probes[slot] = (byte) probe;
+                if (values != null) {
+                    values[slot] = value;
+                }
+                return saturated;
+            }
+            int existing = probes[slot];
+            if (existing < probe) { // displace the existing entry, which is closer to its home slot
+                double oy = ords[index + 1];
+                ords[index] = x;
+                ords[index + 1] = y;
+                probes[slot] = (byte) probe;
+                x = ox;
+                y = oy;
+                probe = existing;
+                if (values != null) {
+                    Object ov = values[slot];
+                    values[slot] = value;
+                    value = ov;
+                }
+            }
+            slot = (slot + 1) & mask;
+            if (probe < MAX_PROBE) {
+                probe++;
+            } else {
+                saturated = true;
+            }
+        }
+    }
+
+    static void removeSlot(int slot, double[] ords, byte[] probes, Object[] values) {
+        int mask = probes.length - 1;
+        while (true) { // shift back subsequent entries until an empty slot or an entry in its home slot
+            int next = (slot + 1) & mask;
+            int index = slot << 1;
+            int nextIndex = next << 1;
+            double x = ords[nextIndex];
+            int probe = probes[next];
+            if (Double.isNaN(x) || (probe == 0)) {
+                ords[index] = Double.NaN;
+                if (values != null) {
+                    values[slot] = null;
+                }
+                return;
             }
-            index = (index + 2) % ords.length;
+            ords[index] = x;
+            ords[index + 1] = ords[nextIndex + 1];
+            probes[slot] = (byte) (probe - 1);
+            if (values != null) {
+                values[slot] = values[next];
+            }
+            slot = next;
         }
-        return -1;
     }
 
     void beforeUpdate() {
-        if (copyOnEdit) {
+        if (copyOnEdit || (iterating != 0)) {
             ords = ords.clone();
+            probes = probes.clone();
             copyOnEdit = false;
+            iterating = 0; // any iteration in progress uses the previous arrays
         }
     }
 
     final class VectSetIterator implements Iterator<Vect> {
 
         final int storedVersion;
+        final double[] _ords; // ords at the start of iteration - removals are applied to a copy
         int prevIndex;
         int nextIndex;
 
         VectSetIterator() {
             storedVersion = version;
+            _ords = ords;
             prevIndex = -1;
             nextIndex = nextIndex();
         }
@@ -534,14 +663,15 @@ public final class VectSet implements Serializable, Cloneable, Iterable<Vect> {
                 throw new ConcurrentModificationException();
             }
             prevIndex = nextIndex;
-            Vect ret = Vect.valueOf(ords[nextIndex++], ords[nextIndex++]);
+            Vect ret = Vect.valueOf(_ords[nextIndex++], _ords[nextIndex++]);
             nextIndex = nextIndex();
             return ret;
         }
 
         int nextIndex() {
-            for (int i = nextIndex; i < ords.length; i += 2) {
-                if (!Double.isNaN(ords[i])) {
+            for (int i = nextIndex; i < _ords.length; i += 2) {
+                double x = _ords[i];
+                if (!(Double.isNaN(x) || ((_ords != ords) && (findSlot(x, _ords[i + 1], ords, probes) < 0)))) {
                     return i;
                 }
             }
@@ -550,12 +680,16 @@ public final class VectSet implements Serializable, Cloneable, Iterable<Vect> {
 
         @Override
         public void remove() {
-            if(!Double.isNaN(ords[prevIndex])){
-                ords[prevIndex] = Double.NaN;
-                size--;
-            }else{
+            if (prevIndex < 0) {
                 throw new IllegalStateException("Already Removed");
             }
+            if (_ords == ords) {
+                ords = ords.clone();
+                probes = probes.clone();
+                copyOnEdit = false;
+            }
+            removeInternal(_ords[prevIndex], _ords[prevIndex + 1]);
+            prevIndex = -1;
         }
     }
 
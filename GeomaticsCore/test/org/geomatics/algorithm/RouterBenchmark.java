@@ -0,0 +1,64 @@
+package org.geomatics.algorithm;
+
+import java.util.Random;
+import org.geomatics.geom.FrozenNetwork;
+import org.geomatics.geom.Network;
+
+/**
+ * Query latency benchmark for routing on a randomized grid road network. Not run as part of the
+ * test suite. Usage: RouterBenchmark [gridSize] [numQueries]
+ *
+ * @author tofarrell
+ */
+public class RouterBenchmark {
+
+    public static void main(String[] args) {
+        int gridSize = (args.length > 0) ? Integer.parseInt(args[0]) : 300;
+        int numQueries = (args.length > 1) ? Integer.parseInt(args[1]) : 1000;
+        Random random = new Random(1);
+        Network network = new Network();
+        for (int x = 0; x < gridSize; x++) {
+            for (int y = 0; y < gridSize; y++) {
+                if (random.nextInt(5) != 0) {
+                    network.addLink(x, y, x + 1, y);
+                }
+                if (random.nextInt(5) != 0) {
+                    network.addLink(x, y, x, y + 1);
+                }
+            }
+        }
+        FrozenNetwork frozen = network.freeze();
+        Router router = new Router(frozen, EdgeWeight.DISTANCE);
+        System.out.println("Vertices: " + frozen.numVects() + ", Links: " + frozen.numLinks());
+
+        long start = System.nanoTime();
+        ContractionHierarchy hierarchy = new ContractionHierarchy(router);
+        System.out.println("Contraction: " + ((System.nanoTime() - start) / 1000000) + "ms");
+
+        int[] queries = new int[numQueries << 1];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = random.nextInt(frozen.numVects());
+        }
+        for (int pass = 0; pass < 2; pass++) { // first pass is warm up
+            start = System.nanoTime();
+            for (int i = 0; i < queries.length; i += 2) {
+                router.dijkstra(queries[i], queries[i + 1]);
+            }
+            long dijkstra = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < queries.length; i += 2) {
+                router.aStar(queries[i], queries[i + 1]);
+            }
+            long aStar = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < queries.length; i += 2) {
+                hierarchy.findRoute(queries[i], queries[i + 1]);
+            }
+            long ch = System.nanoTime() - start;
+            if (pass == 1) {
+                System.out.println("Mean query latency - Dijkstra: " + (dijkstra / numQueries / 1000) + "us, A*: "
+                        + (aStar / numQueries / 1000) + "us, Contraction hierarchy: " + (ch / numQueries / 1000) + "us");
+            }
+        }
+    }
+}
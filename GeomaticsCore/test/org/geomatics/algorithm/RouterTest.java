@@ -0,0 +1,140 @@
+package org.geomatics.algorithm;
+
+import java.util.Random;
+import org.geomatics.geom.FrozenNetwork;
+import org.geomatics.geom.Network;
+import org.geomatics.util.VectList;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author tofarrell
+ */
+public class RouterTest {
+
+    @Test
+    public void testDijkstra() {
+        Network network = new Network();
+        network.addAllLinks(new VectList(0, 0, 10, 0, 10, 10, 20, 10));
+        network.addAllLinks(new VectList(0, 0, 0, 30, 20, 30, 20, 10));
+        network.addVertex(50, 50);
+        FrozenNetwork frozen = network.freeze();
+        Router router = new Router(frozen, EdgeWeight.DISTANCE);
+        int a = frozen.indexOf(0, 0);
+        int b = frozen.indexOf(20, 10);
+        Route route = router.dijkstra(a, b);
+        assertEquals(30, route.getCost(), 0.0001);
+        assertEquals(new VectList(0, 0, 10, 0, 10, 10, 20, 10), route.getPath(new VectList()));
+        assertEquals(route, router.aStar(a, b));
+        assertEquals(route, new ContractionHierarchy(router).findRoute(a, b));
+        assertEquals(new VectList(20, 10, 10, 10, 10, 0, 0, 0), router.dijkstra(b, a).getPath(new VectList()));
+        assertEquals(0, router.dijkstra(a, a).getCost(), 0);
+        assertEquals(1, router.dijkstra(a, a).numVects());
+        assertNull(router.dijkstra(a, frozen.indexOf(50, 50)));
+        assertNull(router.aStar(a, frozen.indexOf(50, 50)));
+        assertNull(new ContractionHierarchy(router).findRoute(a, frozen.indexOf(50, 50)));
+        assertEquals("{\"cost\":30.0,\"path\":[0,0, 10,0, 10,10, 20,10]}", route.toString());
+        try {
+            router.dijkstra(a, 7);
+            fail("Exception expected");
+        } catch (IndexOutOfBoundsException ex) {
+        }
+        try {
+            new Router(frozen, null);
+            fail("Exception expected");
+        } catch (NullPointerException ex) {
+        }
+    }
+
+    @Test
+    public void testOneWay() {
+        Network network = new Network();
+        network.addAllLinks(new VectList(0, 0, 10, 0, 20, 0, 20, 10, 0, 10, 0, 0));
+        FrozenNetwork frozen = network.freeze();
+        Router router = new Router(frozen, new EdgeWeight() {
+            @Override
+            public double getWeight(double ax, double ay, double bx, double by) {
+                return (bx < ax) ? Double.POSITIVE_INFINITY : EdgeWeight.DISTANCE.getWeight(ax, ay, bx, by);
+            }
+
+            @Override
+            public double getLowerBound(double ax, double ay, double bx, double by) {
+                return 0;
+            }
+        });
+        int a = frozen.indexOf(10, 0);
+        int b = frozen.indexOf(0, 10);
+        assertNull(router.dijkstra(a, b));
+        assertNull(new ContractionHierarchy(router).findRoute(a, b));
+        Route route = new ContractionHierarchy(router).findRoute(b, a);
+        assertEquals(new VectList(0, 10, 0, 0, 10, 0), route.getPath(new VectList()));
+        assertEquals(router.dijkstra(b, a), route);
+        try {
+            new Router(frozen, new EdgeWeight() {
+                @Override
+                public double getWeight(double ax, double ay, double bx, double by) {
+                    return -1;
+                }
+
+                @Override
+                public double getLowerBound(double ax, double ay, double bx, double by) {
+                    return 0;
+                }
+            });
+            fail("Exception expected");
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+
+    @Test
+    public void testRandomGrid() {
+        Random random = new Random(1);
+        Network network = new Network();
+        for (int x = 0; x < 40; x++) {
+            for (int y = 0; y < 40; y++) {
+                if (random.nextInt(5) != 0) {
+                    network.addLink(x, y, x + 1, y);
+                }
+                if (random.nextInt(5) != 0) {
+                    network.addLink(x, y, x, y + 1);
+                }
+                if (random.nextInt(10) == 0) {
+                    network.addLink(x, y, x + 1, y + 1);
+                }
+            }
+        }
+        FrozenNetwork frozen = network.freeze();
+        Router router = new Router(frozen, EdgeWeight.DISTANCE);
+        ContractionHierarchy hierarchy = new ContractionHierarchy(router);
+        for (int i = 0; i < 200; i++) {
+            int a = random.nextInt(frozen.numVects());
+            int b = random.nextInt(frozen.numVects());
+            Route expected = router.dijkstra(a, b);
+            Route aStar = router.aStar(a, b);
+            Route ch = hierarchy.findRoute(a, b);
+            if (expected == null) {
+                assertNull(aStar);
+                assertNull(ch);
+                continue;
+            }
+            assertEquals(expected.getCost(), aStar.getCost(), 0.0001);
+            assertEquals(expected.getCost(), ch.getCost(), 0.0001);
+            assertValid(frozen, aStar, a, b);
+            assertValid(frozen, ch, a, b);
+        }
+    }
+
+    static void assertValid(FrozenNetwork network, Route route, int a, int b) {
+        assertEquals(a, route.getId(0));
+        assertEquals(b, route.getId(route.numVects() - 1));
+        double cost = 0;
+        for (int i = 1; i < route.numVects(); i++) {
+            int c = route.getId(i - 1);
+            int d = route.getId(i);
+            assertTrue(network.hasLink(c, d));
+            cost += EdgeWeight.DISTANCE.getWeight(network.getX(c), network.getY(c), network.getX(d), network.getY(d));
+        }
+        assertEquals(route.getCost(), cost, 0.0001);
+    }
+}
@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 import org.geomatics.geom.Network.LinkProcessor;
 import org.geomatics.geom.Network.VertexProcessor;
@@ -99,6 +100,27 @@ public class AreaTest {
         assertEquals(Rect.valueOf(-100,-50,90,50), a.getBounds());
     }
 
+    @Test
+    public void testParallelValueOf() {
+        Random random = new Random(4);
+        Network network = new Network();
+        for (int i = 0; i < 100; i++) {
+            double x = (i % 10) * 4 + random.nextInt(100) / 100.0;
+            double y = (i / 10) * 4 + random.nextInt(100) / 100.0;
+            double size = 1 + random.nextInt(150) / 100.0;
+            network.addAllLinks(new VectList(x, y, x + size, y, x + size, y + size, x, y + size, x, y));
+            if (random.nextBoolean()) {
+                network.addAllLinks(new VectList(x + 0.5, y + 0.5, x + size + 0.5, y + 0.5, x + size + 0.5, y + size + 0.5, x + 0.5, y + size + 0.5, x + 0.5, y + 0.5));
+            }
+        }
+        Area expected = Area.valueOf(Tolerance.DEFAULT, network);
+        Area actual = Area.parallelValueOf(Tolerance.DEFAULT, network, 64); // enough disjoint rings for multiple tasks
+        assertEquals(expected, actual);
+        assertEquals(expected, Area.parallelValueOf(Tolerance.DEFAULT, network));
+        assertEquals(Network.Noder.SPATIAL_JOIN, network.getNoder());
+        assertNull(Area.parallelValueOf(Tolerance.DEFAULT, new Network()));
+    }
+
     @Test
     public void testValueOf_Tolerance_Network() {
         Network network = new Network();
@@ -422,6 +444,60 @@ public class AreaTest {
         assertEquals(Relation.DISJOINT, area.relate(55, 55, TOL));
         assertEquals(Relation.DISJOINT, area.relate(65, 55, TOL));
     }
+
+    @Test
+    public void testRelateAll() {
+        Area area = Area.valueOf(TOL, 0, 0, 100, 0, 100, 100, 0, 100, 0, 0);
+        area = area.less(Area.valueOf(TOL, 20, 20, 80, 20, 80, 80, 20, 80, 20, 20), TOL);
+        Random random = new Random(1);
+        VectList points = new VectList();
+        for (int i = 0; i < 10000; i++) {
+            points.add(random.nextInt(1200) / 10.0 - 10, random.nextInt(1200) / 10.0 - 10);
+        }
+        int[] results = area.relateAll(points, TOL, new int[points.size()]);
+        for (int i = 0; i < points.size(); i++) {
+            assertEquals(area.relate(points.getX(i), points.getY(i), TOL), results[i]);
+        }
+        assertEquals(0, area.relateAll(new VectList(), TOL, new int[0]).length);
+        try {
+            area.relateAll(points, null, results);
+            fail("Exception expected");
+        } catch (NullPointerException ex) {
+        }
+        try {
+            area.relateAll(points, TOL, null);
+            fail("Exception expected");
+        } catch (NullPointerException ex) {
+        }
+    }
+    
+    @Test
+    public void testRelateAll_Random() {
+        Random random = new Random(3);
+        VectList ords = new VectList();
+        for (int i = 0; i < 300; i++) { // wavy circle, with lines close to horizontal
+            double angle = 2 * Math.PI * i / 300;
+            double radius = 30 + 5 * Math.sin(angle * 17);
+            ords.add(50 + radius * Math.cos(angle), 50 + radius * Math.sin(angle));
+        }
+        for (int i = 0; i < 20; i++) {
+            ords.add(random.nextInt(1000) / 10.0, random.nextInt(1000) / 10.0);
+        }
+        ords.add(ords.getX(0), ords.getY(0));
+        Area area = Area.valueOf(TOL, ords); // self intersecting, so many rings
+        VectList points = new VectList();
+        for (int i = 0; i < 2000; i++) {
+            points.add(random.nextDouble() * 110 - 5, random.nextDouble() * 110 - 5);
+            double y = ords.getY(random.nextInt(ords.size())) + (random.nextDouble() - 0.5) * 4 * TOL.tolerance;
+            points.add(random.nextDouble() * 110 - 5, y); // ray passing close to a vertex
+        }
+        int[] results = area.relateAll(points, TOL, new int[points.size()]);
+        for (int i = 0; i < points.size(); i++) {
+            double x = points.getX(i);
+            double y = points.getY(i);
+            assertEquals("(" + x + "," + y + ")", area.relate(x, y, TOL), results[i]);
+        }
+    }
     
     @Test
     public void testRelate_Area() {
@@ -539,6 +615,106 @@ public class AreaTest {
         
     }
     
+    @Test
+    public void testBuffer_ManyChildren() {
+        List<Ring> rings = new ArrayList<>();
+        for(int x = 0; x < 160; x += 40){
+            for(int y = 0; y < 160; y += 40){
+                rings.add(square(x, y, 30));
+                rings.add(square(x + 10, y + 10, 10));
+            }
+        }
+        Area area = Area.valueOfInternal(rings);
+        assertEquals(16, area.numChildren());
+        
+        Area shrunk = (Area)area.buffer(-2, Linearizer.DEFAULT, TOL);
+        assertEquals(16, shrunk.numChildren());
+        assertEquals(32, shrunk.numRings());
+        assertEquals(16 * ((26 * 26) - (10 * 10) - (4 * 10 * 2) - (Math.PI * 4)), shrunk.getArea(), 16 * 0.5); // holes get rounded corners
+        assertTrue(Rect.valueOf(2, 2, 148, 148).match(shrunk.getBounds(), TOL));
+        
+        Area grown = (Area)area.buffer(4, Linearizer.DEFAULT, TOL); // holes shrink, gaps between children remain open
+        assertEquals(16, grown.numChildren());
+        assertEquals(32, grown.numRings());
+        assertTrue(Rect.valueOf(-4, -4, 154, 154).match(grown.getBounds(), TOL));
+        assertEquals(16 * ((30 * 30) + (4 * 30 * 4) + (Math.PI * 16) - (2 * 2)), grown.getArea(), 16 * 0.5);
+        
+        Area merged = (Area)area.buffer(6, Linearizer.DEFAULT, TOL); // gaps close except between corners
+        assertNotNull(merged.shell);
+        assertEquals(9, merged.numChildren());
+        assertTrue(Rect.valueOf(-6, -6, 156, 156).match(merged.getBounds(), TOL));
+        
+        //Offset curves built in parallel give the same result
+        assertEquals(shrunk, new BufferBuilder(-2, Linearizer.DEFAULT, TOL, 256).addArea(area).build());
+        assertEquals(grown, new BufferBuilder(4, Linearizer.DEFAULT, TOL, 256).addArea(area).build());
+    }
+    
+    @Test
+    public void testBuffer_Random() {
+        Random random = new Random(7);
+        for(int t = 0; t < 5; t++){
+            VectList ords = new VectList();
+            int n = 5 + random.nextInt(20);
+            for (int i = 0; i < n; i++) {
+                ords.add(random.nextInt(1000) / 10.0, random.nextInt(1000) / 10.0);
+            }
+            ords.add(ords.getX(0), ords.getY(0));
+            Area area = Area.valueOf(TOL, ords);
+            for(double amt : new double[]{-3, 1, 8}){
+                Geom buffer = area.buffer(amt, Linearizer.DEFAULT, TOL);
+                GeoShape shape = (buffer == null) ? null : buffer.toGeoShape(Linearizer.DEFAULT, TOL);
+                for(int i = 0; i < 200; i++){
+                    double x = random.nextDouble() * 140 - 20;
+                    double y = random.nextDouble() * 140 - 20;
+                    double dist = distToBoundary(area, x, y);
+                    if(Relation.isBInsideA(area.relate(x, y, TOL))){
+                        dist = -dist;
+                    }
+                    if(Math.abs(dist - amt) < 0.2){
+                        continue; // too close to the edge of the buffer, given linearization
+                    }
+                    boolean inside = (shape != null) && (shape.area != null) && Relation.isBInsideA(shape.area.relate(x, y, TOL));
+                    assertEquals(dist < amt, inside); // point is in buffer if it is close enough to the area
+                }
+            }
+        }
+    }
+
+    private static double distToBoundary(Area area, final double x, final double y){
+        final double[] minDistSq = new double[]{Double.POSITIVE_INFINITY};
+        area.getLineIndex().forEach(new NodeProcessor<Line>(){
+            @Override
+            public boolean process(Rect bounds, Line line) {
+                minDistSq[0] = Math.min(minDistSq[0], Line.distSegVectSq(line.ax, line.ay, line.bx, line.by, x, y));
+                return true;
+            }
+        });
+        return Math.sqrt(minDistSq[0]);
+    }
+
+    //Square with 10 vertices along each side
+    private static Ring square(double x, double y, double size){
+        VectList vects = new VectList();
+        for(int i = 0; i < 40; i++){
+            double offset = size * (i % 10) / 10;
+            switch(i / 10){
+                case 0:
+                    vects.add(x + offset, y);
+                    break;
+                case 1:
+                    vects.add(x + size, y + offset);
+                    break;
+                case 2:
+                    vects.add(x + size - offset, y + size);
+                    break;
+                default:
+                    vects.add(x, y + size - offset);
+            }
+        }
+        vects.add(x, y);
+        return new Ring(vects, null);
+    }
+    
     @Test
     public void testHashCode() {
         Set<Integer> hashCodes = new HashSet<>();
@@ -679,6 +855,41 @@ public class AreaTest {
         assertNull(a.intersection(e, Linearizer.DEFAULT, TOL));
     }
 
+    @Test
+    public void testIntersection_Rect() {
+        Area a = Area.valueOf(TOL, 0,0, 100,0, 100,100, 0,100, 0,0).less(Area.valueOf(TOL, 40,40, 60,40, 60,60, 40,60, 40,40), TOL);
+        Area u = Area.valueOf(TOL, 0,0, 100,0, 100,100, 70,100, 70,30, 30,30, 30,100, 0,100, 0,0);
+        assertEquals(Area.valueOf(TOL, 50,-10, 110,-10, 110,50, 50,50, 50,-10).intersection(a, Linearizer.DEFAULT, TOL),
+                a.intersection(Rect.valueOf(50,-10, 110,50), Linearizer.DEFAULT, TOL)); // crosses hole
+        assertEquals(Area.valueOf(TOL, 10,50, 90,50, 90,80, 10,80, 10,50).intersection(u, Linearizer.DEFAULT, TOL),
+                u.intersection(Rect.valueOf(10,50, 90,80), Linearizer.DEFAULT, TOL)); // two pieces
+        assertEquals(a, a.intersection(Rect.valueOf(-10,-10, 110,110), Linearizer.DEFAULT, TOL));
+        assertEquals(Area.valueOf(TOL, 10,10, 90,10, 90,90, 10,90, 10,10).less(Area.valueOf(TOL, 40,40, 60,40, 60,60, 40,60, 40,40), TOL),
+                a.intersection(Rect.valueOf(10,10, 90,90), Linearizer.DEFAULT, TOL)); // rect inside area with hole inside rect
+        assertEquals(Rect.valueOf(10,10, 30,30).toRing(), a.intersection(Rect.valueOf(10,10, 30,30), Linearizer.DEFAULT, TOL));
+        assertNull(a.intersection(Rect.valueOf(45,45, 55,55), Linearizer.DEFAULT, TOL)); // inside hole
+        assertEquals(Line.valueOf(100,20, 100,30), a.intersection(Rect.valueOf(100,20, 110,30), Linearizer.DEFAULT, TOL)); // touch
+        assertEquals(Rect.valueOf(0,0, 40,40).toRing(), a.intersection(Rect.valueOf(-10,-10, 40,40), Linearizer.DEFAULT, TOL)); // touch hole
+
+        Random random = new Random(1);
+        VectList ords = new VectList();
+        for (int i = 0; i < 400; i++) { // wavy circle
+            double angle = 2 * Math.PI * i / 400;
+            double radius = 30 + 5 * Math.sin(angle * 17);
+            ords.add(50 + radius * Math.cos(angle), 50 + radius * Math.sin(angle));
+        }
+        ords.add(ords.getX(0), ords.getY(0));
+        Area b = Area.valueOf(TOL, ords).less(Area.valueOf(TOL, 40,40, 60,40, 60,60, 40,60, 40,40), TOL);
+        for (int i = 0; i < 30; i++) {
+            double x = random.nextDouble() * 100;
+            double y = random.nextDouble() * 100;
+            Rect rect = Rect.valueOf(x, y, x + random.nextDouble() * 40, y + random.nextDouble() * 40);
+            GeoShape expected = b.intersection(rect.toArea(), TOL);
+            assertEquals((expected == null) ? null : expected.simplify(), b.intersection(rect, Linearizer.DEFAULT, TOL));
+            assertEquals((expected == null) ? null : expected.simplify(), rect.intersection(b, Linearizer.DEFAULT, TOL));
+        }
+    }
+
     @Test
     public void testLess_Area_Tolerance() {
         Area a = Area.valueOf(TOL, 0,0, 100,0, 100,100, 0,100, 0,0);
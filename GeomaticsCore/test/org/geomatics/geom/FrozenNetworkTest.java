@@ -0,0 +1,109 @@
+package org.geomatics.geom;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Random;
+import org.geomatics.util.VectList;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author tofarrell
+ */
+public class FrozenNetworkTest {
+
+    @Test
+    public void testFreeze() {
+        Network network = new Network();
+        network.addAllLinks(new VectList(0, 0, 10, 0, 10, 10, 0, 0));
+        network.addLink(10, 10, 20, 20);
+        network.addVertex(30, 0);
+        FrozenNetwork frozen = network.freeze();
+        assertEquals(5, frozen.numVects());
+        assertEquals(4, frozen.numLinks());
+        assertEquals(network.getVects(new VectList()), frozen.getVects(new VectList()));
+        assertEquals(new VectList(30, 0), frozen.extractPoints(new VectList()));
+        for (int i = 0; i < frozen.numVects(); i++) {
+            assertEquals(i, frozen.indexOf(frozen.getX(i), frozen.getY(i)));
+            assertEquals(network.numLinks(frozen.getVect(i)), frozen.numLinks(i));
+        }
+        assertEquals(-1, frozen.indexOf(5, 5));
+        int a = frozen.indexOf(10, 10);
+        int b = frozen.indexOf(20, 20);
+        assertEquals(Vect.valueOf(10, 10), frozen.getVect(a, new VectBuilder()).build());
+        assertTrue(frozen.hasLink(a, b));
+        assertTrue(frozen.hasLink(b, a));
+        assertFalse(frozen.hasLink(b, frozen.indexOf(0, 0)));
+        assertEquals(-1, frozen.nextCW(b, frozen.indexOf(0, 0)));
+        assertEquals(a, frozen.nextCCW(b, a));
+        assertEquals(network.toString(), frozen.toString());
+        assertEquals(network, frozen.toNetwork());
+        assertEquals(frozen, frozen.toNetwork().freeze());
+        assertEquals(frozen.hashCode(), frozen.toNetwork().freeze().hashCode());
+        assertFalse(frozen.equals(new Network().freeze()));
+        try {
+            frozen.getX(5);
+            fail("Exception expected");
+        } catch (IndexOutOfBoundsException ex) {
+        }
+        try {
+            frozen.getLink(b, 1);
+            fail("Exception expected");
+        } catch (IndexOutOfBoundsException ex) {
+        }
+        try {
+            frozen.nextCW(-1, 0);
+            fail("Exception expected");
+        } catch (IndexOutOfBoundsException ex) {
+        }
+
+        frozen = new Network().freeze();
+        assertEquals(0, frozen.numVects());
+        assertEquals(0, frozen.numLinks());
+        assertEquals(-1, frozen.indexOf(0, 0));
+        assertTrue(frozen.extractLines(new ArrayList<VectList>(), true).isEmpty());
+    }
+
+    @Test
+    public void testNextCWCCW() {
+        Random random = new Random(1);
+        Network network = new Network();
+        for (int i = 0; i < 500; i++) {
+            network.addLink(random.nextInt(20), random.nextInt(20), random.nextInt(20), random.nextInt(20));
+        }
+        FrozenNetwork frozen = network.freeze();
+        assertEquals(network.numLinks(), frozen.numLinks());
+        VectBuilder expected = new VectBuilder();
+        for (int a = 0; a < frozen.numVects(); a++) {
+            double ax = frozen.getX(a);
+            double ay = frozen.getY(a);
+            for (int i = 0; i < frozen.numLinks(a); i++) {
+                int b = frozen.getLink(a, i);
+                double bx = frozen.getX(b);
+                double by = frozen.getY(b);
+                network.getLink(ax, ay, i, expected);
+                assertEquals(expected.build(), frozen.getVect(b));
+                assertTrue(network.nextCW(ax, ay, bx, by, expected));
+                assertEquals(expected.build(), frozen.getVect(frozen.nextCW(a, b)));
+                assertTrue(network.nextCCW(ax, ay, bx, by, expected));
+                assertEquals(expected.build(), frozen.getVect(frozen.nextCCW(a, b)));
+            }
+        }
+    }
+
+    @Test
+    public void testExtractLines() {
+        Network network = new Network();
+        network.addAllLinks(new VectList(0, 0, 10, 0, 10, 10, 0, 10, 0, 0)); // unconnected ring
+        network.addAllLinks(new VectList(20, 0, 30, 0, 30, 10, 20, 10, 20, 0)); // ring with a tail
+        network.addAllLinks(new VectList(20, 0, 20, -10, 40, -10));
+        network.addVertex(50, 50);
+        FrozenNetwork frozen = network.freeze();
+        Collection<VectList> lines = frozen.extractLines(new ArrayList<VectList>(), true);
+        assertEquals("[[20,0, 20,-10, 40,-10], [20,0, 20,10, 30,10, 30,0, 20,0], [50,50], [0,0, 10,0, 10,10, 0,10, 0,0]]", lines.toString());
+        lines = frozen.extractLines(new ArrayList<VectList>(), false);
+        assertEquals(3, lines.size());
+        assertEquals(new VectList(20, 0, 20, -10, 40, -10), frozen.followLine(frozen.indexOf(20, 0), frozen.indexOf(20, -10), new VectList()));
+    }
+}
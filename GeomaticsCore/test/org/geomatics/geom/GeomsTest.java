@@ -0,0 +1,70 @@
+package org.geomatics.geom;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.geomatics.util.Tolerance;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author tofarrell
+ */
+public class GeomsTest {
+
+    @Test
+    public void testUnionAll() {
+        List<Geom> geoms = new ArrayList<>();
+        for (int x = 0; x < 20; x++) {
+            for (int y = 0; y < 20; y++) { // overlapping squares
+                geoms.add(Area.valueOf(Tolerance.DEFAULT, x, y, x + 1.5, y, x + 1.5, y + 1.5, x, y + 1.5, x, y));
+            }
+        }
+        Collections.shuffle(geoms, new Random(1));
+        Geom union = Geoms.unionAll(geoms, Linearizer.DEFAULT, Tolerance.DEFAULT);
+        Area area = union.toGeoShape(Linearizer.DEFAULT, Tolerance.DEFAULT).area;
+        assertEquals(1, area.numRings());
+        assertEquals(20.5 * 20.5, area.getArea(), 0.0001);
+        assertEquals(Rect.valueOf(0, 0, 20.5, 20.5), union.getBounds());
+
+        assertNull(Geoms.unionAll(new ArrayList<Geom>(), Linearizer.DEFAULT, Tolerance.DEFAULT));
+        Geom geom = geoms.get(0);
+        assertSame(geom, Geoms.unionAll(Arrays.asList(geom), Linearizer.DEFAULT, Tolerance.DEFAULT));
+        try {
+            Geoms.unionAll(Arrays.asList(geom, null), Linearizer.DEFAULT, Tolerance.DEFAULT);
+            fail("Exception expected");
+        } catch (NullPointerException ex) {
+        }
+        try {
+            Geoms.unionAll(geoms, Linearizer.DEFAULT, null);
+            fail("Exception expected");
+        } catch (NullPointerException ex) {
+        }
+    }
+
+    @Test
+    public void testUnionAll_Random() {
+        Random random = new Random(2);
+        List<Geom> geoms = new ArrayList<>();
+        for (int i = 0; i < 100; i++) { // more than MIN_PARALLEL_SIZE, so the union is split into tasks
+            double x = random.nextInt(500) / 10.0;
+            double y = random.nextInt(500) / 10.0;
+            double size = 1 + random.nextInt(50) / 10.0;
+            geoms.add(Area.valueOf(Tolerance.DEFAULT, x, y, x + size, y, x + size, y + size, x, y + size, x, y));
+        }
+        geoms.add(Vect.valueOf(200, 200));
+        Geom expected = geoms.get(0);
+        for (int i = 1; i < geoms.size(); i++) {
+            expected = expected.union(geoms.get(i), Linearizer.DEFAULT, Tolerance.DEFAULT);
+        }
+        Geom actual = Geoms.unionAll(geoms, Linearizer.DEFAULT, Tolerance.DEFAULT);
+        GeoShape a = expected.toGeoShape(Linearizer.DEFAULT, Tolerance.DEFAULT);
+        GeoShape b = actual.toGeoShape(Linearizer.DEFAULT, Tolerance.DEFAULT);
+        assertEquals(a.area.getArea(), b.area.getArea(), 0.0001);
+        assertEquals(a.area.numRings(), b.area.numRings());
+        assertEquals(a.points, b.points);
+    }
+}
@@ -240,6 +240,19 @@ public class LineSetTest {
         assertEquals(Relation.DISJOINT, area.relate(110, 50, TOL));
     }
 
+    @Test
+    public void testBuffer_RayThroughVertex() {
+        LineString a = LineString.valueOf(TOL, 0,0, 0,5);
+        LineString b = LineString.valueOf(TOL, 10,-1, 12,-1, 12,1, 10,1, 10,-1); // ray left from (9, -1) passes through bottom of cap on a
+        LineSet ls = new LineSet(new LineString[]{a, b});
+        Area area = (Area)ls.buffer(1, Linearizer.DEFAULT, TOL);
+        assertEquals(2, area.numChildren());
+        double expected = a.buffer(1, Linearizer.DEFAULT, TOL).getArea(Linearizer.DEFAULT, TOL)
+                + b.buffer(1, Linearizer.DEFAULT, TOL).getArea(Linearizer.DEFAULT, TOL);
+        assertEquals(expected, area.getArea(), 0.0001);
+        assertEquals(Relation.A_OUTSIDE_B | Relation.B_INSIDE_A, area.relate(9.5, 0, TOL));
+    }
+
     @Test
     public void testRelate_Vect_Tolerance() {
         LineSet ls = LineSet.valueOf(TOL, 0,0, 100,100, 200,0, 200,100, 100,0, 0,100);
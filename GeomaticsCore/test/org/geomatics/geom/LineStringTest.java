@@ -626,6 +626,50 @@ public class LineStringTest {
         assertNull(a.intersection(f, Linearizer.DEFAULT, Tolerance.ZERO));
     }
 
+    @Test
+    public void testIntersection_Rect() {
+        LineString a = new LineString(new VectList(0,0, 10,50, 20,0, 30,50, 40,0));
+        LineString b = new LineString(new VectList(0,0, 100,0, 100,100, 0,100, 0,0)); // closed
+        Rect c = Rect.valueOf(5,10, 35,30);
+        assertEquals(a.toLineSet().intersection(c.toArea(), Linearizer.DEFAULT, Tolerance.DEFAULT),
+                a.intersection(c, Linearizer.DEFAULT, Tolerance.DEFAULT));
+        assertEquals(Vect.valueOf(0,100), b.intersection(Rect.valueOf(-10,100, 0,110), Linearizer.DEFAULT, Tolerance.DEFAULT)); // touch
+        assertEquals(Line.valueOf(90,0, 100,0).intersection(b, Linearizer.DEFAULT, Tolerance.DEFAULT),
+                b.intersection(Rect.valueOf(90,-10, 110,0), Linearizer.DEFAULT, Tolerance.DEFAULT)); // along edge
+        assertEquals(new LineString(new VectList(90,0, 100,0, 100,10)), b.intersection(Rect.valueOf(90,-10, 110,10), Linearizer.DEFAULT, Tolerance.DEFAULT));
+        assertEquals(a, a.intersection(Rect.valueOf(-10,-10, 50,60), Linearizer.DEFAULT, Tolerance.DEFAULT));
+        assertNull(a.intersection(Rect.valueOf(45,10, 50,60), Linearizer.DEFAULT, Tolerance.DEFAULT));
+        for (int x = 0; x < 40; x += 3) {
+            for (int y = 0; y < 50; y += 7) {
+                Rect rect = Rect.valueOf(x + 0.5, y + 0.5, x + 12.5, y + 20.5);
+                assertEquals(a.toLineSet().intersection(rect, Linearizer.DEFAULT, Tolerance.DEFAULT),
+                        a.intersection(rect, Linearizer.DEFAULT, Tolerance.DEFAULT));
+                assertEquals(b.toLineSet().intersection(rect, Linearizer.DEFAULT, Tolerance.DEFAULT),
+                        rect.intersection(b, Linearizer.DEFAULT, Tolerance.DEFAULT));
+            }
+        }
+    }
+
+    @Test
+    public void testIntersection_Rect_SelfIntersecting() {
+        LineString a = new LineString(new VectList(0,0, 10,10, 10,0, 0,10));
+        Rect rect = Rect.valueOf(-1,-1, 11,8);
+        assertEquals("[\"LT\",[0,0, 5,5],[2,8, 5,5],[5,5, 10,0, 10,8],[5,5, 8,8]]",
+                a.intersection(rect, Linearizer.DEFAULT, Tolerance.DEFAULT).toString());
+        assertEquals(a.toLineSet().intersection(rect, Linearizer.DEFAULT, Tolerance.DEFAULT),
+                a.intersection(rect, Linearizer.DEFAULT, Tolerance.DEFAULT));
+        rect = Rect.valueOf(-1,-1, 11,11); // inside rect
+        assertEquals(a.toLineSet().intersection(rect, Linearizer.DEFAULT, Tolerance.DEFAULT),
+                a.intersection(rect, Linearizer.DEFAULT, Tolerance.DEFAULT));
+        LineString b = new LineString(new VectList(0,0, 10,0, 10,10, 5,0, 5,-5)); // passes through a vertex
+        rect = Rect.valueOf(-1,-1, 11,11);
+        assertEquals(b.toLineSet().intersection(rect, Linearizer.DEFAULT, Tolerance.DEFAULT),
+                b.intersection(rect, Linearizer.DEFAULT, Tolerance.DEFAULT));
+        LineString c = new LineString(new VectList(-5,0, 10,0, 5,0, 5,5)); // doubles back on itself
+        assertEquals(c.toLineSet().intersection(rect, Linearizer.DEFAULT, Tolerance.DEFAULT),
+                c.intersection(rect, Linearizer.DEFAULT, Tolerance.DEFAULT));
+    }
+
     @Test
     public void testLess() {
         LineString a = new LineString(new VectList(0, 90, 90,90, 90, 0)); //touch on point
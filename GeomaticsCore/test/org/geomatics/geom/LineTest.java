@@ -610,6 +610,18 @@ public class LineTest {
         assertEquals(Math.PI/4, Line.valueOf(0, 0, 10, 10).getDirectionInRadians(), 0.00001);
     }
     
+    @Test
+    public void testDistSegRectSq() {
+        assertEquals(25, Line.distSegRectSq(2, 5, 6, 8, 9, 4, 9, 4), 0.00001);
+        assertEquals(0, Line.distSegRectSq(0, 0, 10, 10, 4, 4, 6, 6), 0.00001); // end points outside
+        assertEquals(0, Line.distSegRectSq(0, 0, 10, 10, 9, 9, 12, 12), 0.00001); // end point inside
+        assertEquals(9, Line.distSegRectSq(0, 0, 10, 0, 3, 3, 5, 5), 0.00001);
+        assertEquals(8, Line.distSegRectSq(0, 0, 10, 10, 7, 1, 9, 3), 0.00001);
+        assertEquals(2, Line.distSegRectSq(0, 4, 4, 0, 3, 3, 5, 5), 0.00001);
+        assertEquals(25, Line.distSegRectSq(0, 0, 10, 0, 13, 4, 15, 5), 0.00001);
+        assertEquals(8, Line.DISTANCE_FUNCTION.distSq(null, Line.valueOf(0, 0, 10, 10), 7, 1, 9, 3), 0.00001);
+    }
+
     @Test
     public void testDistSegVectSq() {
         Line a = Line.valueOf(5, 7, 11, 15);
@@ -1,6 +1,8 @@
 package org.geomatics.geom;
 
+import java.util.Random;
 import org.geomatics.geom.Network;
+import org.geomatics.util.SpatialNode;
 import org.geomatics.util.Tolerance;
 import org.geomatics.util.VectList;
 import org.junit.Test;
@@ -88,6 +90,173 @@ public class NetworkTest {
 //        String wkt = "MULTILINESTRING"+network.toString().replace(",", " ").replace("  ", ", ").replace("[", "(").replace("]",")").replace(") (", "),(");
 //        System.out.println(wkt);
     }
+
+    @Test
+    public void testLinkIndex(){
+        Random random = new Random(4);
+        Network network = new Network();
+        for (int i = 0; i < 1000; i++) {
+            network.addLink(random.nextInt(100), random.nextInt(100), random.nextInt(100), random.nextInt(100));
+        }
+        SpatialNode<Line> before = network.getLinks();
+        assertEquals(network.numLinks(), before.size());
+        Network clone = network.clone();
+        for (int i = 0; i < 100; i++) { // few enough edits to maintain index
+            network.addLink(random.nextInt(100), random.nextInt(100), random.nextInt(100), random.nextInt(100));
+            VectList vects = network.getVects(new VectList());
+            Vect a = vects.getVect(random.nextInt(vects.size()));
+            VectList links = new VectList();
+            if (network.getLinks(a, links) && !links.isEmpty()) {
+                assertTrue(network.removeLink(a, links.getVect(0)));
+            }
+            network.removeVertex(random.nextInt(100), random.nextInt(100));
+        }
+        assertNotNull(network.linkIndex);
+        assertEquals(1000, before.size()); // snapshots are never modified
+        assertEquals(1000, clone.getLinks().size());
+        assertLinkIndexValid(network);
+        assertLinkIndexValid(clone);
+
+        for (int i = 0; i < 1000; i++) { // too many edits without a query - index is discarded
+            network.addLink(random.nextInt(100), random.nextInt(100), random.nextInt(100), random.nextInt(100));
+        }
+        assertNull(network.linkIndex);
+        assertLinkIndexValid(network);
+        network.clear();
+        assertEquals(0, network.getLinks().size());
+    }
+
+    static void assertLinkIndexValid(final Network network){
+        final SpatialNode<Line> links = network.getLinks();
+        assertEquals(network.numLinks(), links.size());
+        assertTrue(network.forEachLink(new Network.LinkProcessor() {
+            @Override
+            public boolean process(double ax, double ay, double bx, double by) {
+                return links.contains(Rect.valueOf(ax, ay, bx, by), Line.valueOf(ax, ay, bx, by));
+            }
+        }));
+    }
+
+    @Test
+    public void testSnapRound(){
+        Network network = new Network();
+        network.addLink(0, 0, 10, 0);
+        network.addVertex(5, 0.3);
+        network.addLink(1.2, 3.7, 2.4, 3.6);
+        network.addLink(7.4, 7.4, 7.45, 7.3); // collapses to a point
+        assertSame(network, network.snapRound(new Tolerance(1)));
+        Network expected = new Network();
+        expected.addAllLinks(new VectList(0, 0, 5, 0, 10, 0));
+        expected.addLink(1, 4, 2, 4);
+        expected.addVertex(7, 7);
+        assertEquals(expected, network);
+        assertEquals(expected, network.clone().snapRound(new Tolerance(1)));
+        assertEquals(expected, network.clone().snapRound(Tolerance.ZERO));
+
+        Random random = new Random(3);
+        VectList links = new VectList();
+        for (int i = 0; i < 500; i++) {
+            double x = random.nextDouble() * 100;
+            double y = random.nextDouble() * 100;
+            links.add(x, y).add(x + random.nextDouble() * 20 - 10, y + random.nextDouble() * 20 - 10);
+        }
+        Network a = new Network();
+        Network b = new Network();
+        for (int i = 0; i < links.size(); i += 2) {
+            a.addLink(links.getX(i), links.getY(i), links.getX(i + 1), links.getY(i + 1));
+            int j = links.size() - 2 - i;
+            b.addLink(links.getX(j + 1), links.getY(j + 1), links.getX(j), links.getY(j));
+        }
+        a.snapRound(new Tolerance(0.5));
+        b.snapRound(new Tolerance(0.5));
+        assertEquals(a, b);
+        assertTrue(a.forEachVertex(new Network.VertexProcessor() {
+            @Override
+            public boolean process(double x, double y, int numLinks) {
+                return (x == Math.rint(x / 0.5) * 0.5) && (y == Math.rint(y / 0.5) * 0.5);
+            }
+        }));
+        assertEquals(0, new Network().snapRound(Tolerance.DEFAULT).numVects());
+    }
+
+    @Test
+    public void testCrossesPixel(){
+        assertTrue(SnapRounder.crossesPixel(0, 0, 10, 0, 4, -1, 6, 1));
+        assertTrue(SnapRounder.crossesPixel(0, 0, 10, 10, 4, 4, 6, 6));
+        assertTrue(SnapRounder.crossesPixel(5, 0, 5, 10, 4, 4, 6, 6));
+        assertTrue(SnapRounder.crossesPixel(0, 3, 3, 0, 1, 1, 2, 2));
+        assertFalse(SnapRounder.crossesPixel(0, 0, 10, 0, 4, 1, 6, 2));
+        assertFalse(SnapRounder.crossesPixel(0, 0, 3, 0, 4, -1, 6, 1));
+        assertFalse(SnapRounder.crossesPixel(0, 4.1, 4.1, 0, 1, 1, 2, 2));
+        assertFalse(SnapRounder.crossesPixel(7, 7, 7, 7, 4, 4, 6, 6));
+    }
+
+    @Test
+    public void testExplicitIntersection_SweepLine(){
+        Network network = new Network();
+        network.addAllLinks(new VectList(0,15, 65,15, 65,65, 15,65, 15,0, 25,0, 25,55, 55,55, 55,25, 0,25, 0,15));
+        assertEquals(Network.Noder.SPATIAL_JOIN, network.getNoder());
+        assertSame(network, network.setNoder(Network.Noder.SWEEP_LINE));
+        assertEquals(Network.Noder.SWEEP_LINE, network.clone().getNoder());
+        network.explicitIntersections(Tolerance.DEFAULT);
+        assertEquals("[[15,15, 0,15, 0,25, 15,25],[15,15, 15,0, 25,0, 25,15],[15,15, 15,25],[15,15, 25,15],[15,25, 15,65, 65,65, 65,15, 25,15],[15,25, 25,25],[25,15, 25,25],[25,25, 25,55, 55,55, 55,25, 25,25]]", network.toString());
+        try {
+            network.setNoder(null);
+            fail("Exception expected");
+        } catch (NullPointerException ex) {
+        }
+
+        Random random = new Random(1);
+        Network a = new Network();
+        Network b = new Network();
+        for (int i = 0; i < 2000; i++) {
+            double x = random.nextDouble() * 100;
+            double y = random.nextDouble() * 100;
+            Network n = ((i & 1) == 0) ? a : b;
+            n.addLink(x, y, x + random.nextDouble() * 10 - 5, random.nextBoolean() ? y : (y + random.nextDouble() * 10 - 5));
+        }
+        Network expected = a.clone().explicitIntersections(Tolerance.DEFAULT);
+        Network actual = a.clone().setNoder(Network.Noder.SWEEP_LINE).explicitIntersections(Tolerance.DEFAULT);
+        assertTrue(expected.numLinks() > a.numLinks());
+        assertEquals(expected, actual);
+
+        expected = a.clone().explicitIntersectionsWith(b, Tolerance.DEFAULT);
+        actual = a.clone().setNoder(Network.Noder.SWEEP_LINE).explicitIntersectionsWith(b, Tolerance.DEFAULT);
+        assertTrue(expected.numLinks() > a.numLinks());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testExplicitIntersection_Tiled(){
+        Random random = new Random(2);
+        Network network = new Network();
+        for (int i = 0; i < 12000; i++) { // enough links for multiple tiles
+            double x = random.nextDouble() * 400;
+            double y = random.nextDouble() * 400;
+            network.addLink(x, y, x + random.nextDouble() * 10 - 5, random.nextBoolean() ? y : (y + random.nextDouble() * 10 - 5));
+        }
+        Network expected = network.clone().explicitIntersections(Tolerance.DEFAULT);
+        Network actual = network.clone().setNoder(Network.Noder.TILED).explicitIntersections(Tolerance.DEFAULT);
+        assertTrue(expected.numLinks() > network.numLinks());
+        assertEquals(expected, actual);
+        assertEquals(new Network().explicitIntersections(Tolerance.DEFAULT), new Network().setNoder(Network.Noder.TILED).explicitIntersections(Tolerance.DEFAULT));
+    }
+
+    @Test
+    public void testParallelSnap(){
+        Random random = new Random(3);
+        Network network = new Network();
+        for (int i = 0; i < 6000; i++) { // enough vertices for multiple tasks
+            double x = random.nextInt(20000) / 100.0;
+            double y = random.nextInt(20000) / 100.0;
+            network.addLink(x, y, x + random.nextInt(200) / 100.0, y + random.nextInt(200) / 100.0);
+        }
+        Tolerance tolerance = new Tolerance(0.05);
+        Network expected = network.clone().snap(tolerance);
+        Network actual = network.clone().parallelSnap(tolerance);
+        assertTrue(expected.numVects() < network.numVects());
+        assertEquals(expected, actual);
+    }
     
 //    @Test
 //    public void testClone(){
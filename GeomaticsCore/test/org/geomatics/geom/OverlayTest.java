@@ -0,0 +1,196 @@
+package org.geomatics.geom;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.geomatics.util.Tolerance;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author tofarrell
+ */
+public class OverlayTest {
+
+    static final Tolerance TOL = Tolerance.DEFAULT;
+
+    @Test
+    public void testProcess() {
+        Overlay<String, String> overlay = new Overlay<>(TOL);
+        overlay.addA(Rect.valueOf(0, 0, 10, 10).toArea(), "a1")
+                .addA(Rect.valueOf(10, 0, 20, 10).toArea(), "a2")
+                .addB(Rect.valueOf(5, -5, 15, 5).toArea(), "b1");
+        Map<String, Area> results = process(overlay);
+        assertEquals(5, results.size());
+        assertEquals(Rect.valueOf(5, 0, 10, 5).toArea(), results.get("a1,b1"));
+        assertEquals(Rect.valueOf(10, 0, 15, 5).toArea(), results.get("a2,b1"));
+        assertEquals(75, results.get("a1,null").getArea(), 0.0001);
+        assertEquals(75, results.get("a2,null").getArea(), 0.0001);
+        assertEquals(50, results.get("null,b1").getArea(), 0.0001);
+        assertEquals(Rect.valueOf(5, -5, 15, 0), results.get("null,b1").getBounds());
+    }
+
+    @Test
+    public void testProcess_Holes() {
+        Area donut = Rect.valueOf(0, 0, 30, 30).toArea().less(Rect.valueOf(10, 10, 20, 20).toArea(), TOL);
+        Overlay<String, String> overlay = new Overlay<>(TOL);
+        overlay.addA(donut, "donut")
+                .addA(Rect.valueOf(10, 10, 20, 20).toArea(), "island")
+                .addA(Rect.valueOf(50, 0, 60, 10).toArea(), "away")
+                .addB(Rect.valueOf(15, 12, 40, 18).toArea(), "strip");
+        Map<String, Area> results = process(overlay);
+        assertEquals(6, results.size());
+        assertEquals(Rect.valueOf(15, 12, 20, 18).toArea(), results.get("island,strip"));
+        assertEquals(Rect.valueOf(20, 12, 30, 18).toArea(), results.get("donut,strip"));
+        assertEquals(Rect.valueOf(30, 12, 40, 18).toArea(), results.get("null,strip"));
+        assertEquals(Rect.valueOf(50, 0, 60, 10).toArea(), results.get("away,null"));
+        assertEquals(100 - 30, results.get("island,null").getArea(), 0.0001);
+        Area donutOnly = results.get("donut,null");
+        assertEquals(800 - 60, donutOnly.getArea(), 0.0001);
+        assertEquals(Relation.B_INSIDE_A | Relation.A_OUTSIDE_B, donutOnly.relate(5, 5, TOL));
+        assertEquals(Relation.B_OUTSIDE_A | Relation.A_OUTSIDE_B, donutOnly.relate(12, 15, TOL));
+    }
+
+    @Test
+    public void testProcess_RayThroughVertex() {
+        Overlay<String, String> overlay = new Overlay<>(TOL);
+        overlay.addA(Rect.valueOf(-20, -20, 20, 20).toArea(), "square")
+                .addB(Area.valueOf(TOL, 0, 0, 1, 2, -5, 1, 0, 0), "triangle")
+                .addB(Rect.valueOf(10, 0, 12, 2).toArea(), "small"); // ray left from (10, 0) passes through (0, 0)
+        Map<String, Area> results = process(overlay);
+        assertEquals(3, results.size());
+        assertEquals(Rect.valueOf(10, 0, 12, 2).toArea(), results.get("square,small"));
+        assertEquals(5.5, results.get("square,triangle").getArea(), 0.0001);
+        assertEquals(1600 - 4 - 5.5, results.get("square,null").getArea(), 0.0001);
+    }
+
+    @Test
+    public void testProcess_Random() {
+        Random random = new Random(3);
+        for (int t = 0; t < 20; t++) {
+            Overlay<String, String> overlay = new Overlay<>(TOL);
+            overlay.addA(Rect.valueOf(-20, -20, 20, 20).toArea(), "square");
+            double triangleArea = 0;
+            for (int i = 0; i < 49; i++) { // triangles in separate cells, with integer vertices so rays often pass through them
+                int x = (i % 7) * 5 - 17;
+                int y = (i / 7) * 5 - 17;
+                int ax = x + random.nextInt(5);
+                int ay = y + random.nextInt(5);
+                int bx = x + random.nextInt(5);
+                int by = y + random.nextInt(5);
+                int cx = x + random.nextInt(5);
+                int cy = y + random.nextInt(5);
+                if ((random.nextInt(2) == 0) || ((bx - ax) * (cy - ay) == (by - ay) * (cx - ax))) {
+                    continue;
+                }
+                Area triangle = Area.valueOf(TOL, ax, ay, bx, by, cx, cy, ax, ay);
+                overlay.addB(triangle, Integer.toString(i));
+                triangleArea += triangle.getArea();
+            }
+            final double[] areas = new double[2];
+            overlay.process(new Overlay.OverlayProcessor<String, String>() {
+                @Override
+                public boolean process(Area area, String a, String b) {
+                    assertEquals("square", a);
+                    areas[(b == null) ? 0 : 1] += area.getArea();
+                    return true;
+                }
+            });
+            assertEquals(1600 - triangleArea, areas[0], 0.0001);
+            assertEquals(triangleArea, areas[1], 0.0001);
+        }
+    }
+
+    @Test
+    public void testProcess_MatchesIntersection() {
+        Overlay<Integer, Integer> overlay = new Overlay<>(TOL);
+        Area[] zones = new Area[16];
+        Area[] parcels = new Area[25];
+        for (int i = 0; i < zones.length; i++) {
+            int x = (i % 4) * 25;
+            int y = (i / 4) * 25;
+            zones[i] = Rect.valueOf(x, y, x + 25, y + 25).toArea();
+            overlay.addA(zones[i], i);
+        }
+        for (int i = 0; i < parcels.length; i++) {
+            double x = (i % 5) * 20 + 3;
+            double y = (i / 5) * 20 + 7;
+            parcels[i] = Area.valueOf(TOL, x, y, x + 17, y + 2, x + 15, y + 16, x + 1, y + 13, x, y);
+            overlay.addB(parcels[i], i);
+        }
+        final Map<String, Area> results = new HashMap<>();
+        overlay.process(new Overlay.OverlayProcessor<Integer, Integer>() {
+            @Override
+            public boolean process(Area area, Integer a, Integer b) {
+                if ((a != null) && (b != null)) {
+                    results.put(a + "," + b, area);
+                }
+                return true;
+            }
+        });
+        int numIntersections = 0;
+        for (int a = 0; a < zones.length; a++) {
+            for (int b = 0; b < parcels.length; b++) {
+                GeoShape expected = zones[a].intersection(parcels[b], TOL);
+                Area actual = results.get(a + "," + b);
+                if ((expected == null) || (expected.area == null)) {
+                    assertNull(actual);
+                } else {
+                    assertEquals(expected.area.getArea(), actual.getArea(), 0.0001);
+                    numIntersections++;
+                }
+            }
+        }
+        assertEquals(numIntersections, results.size());
+    }
+
+    @Test
+    public void testProcess_Stop() {
+        Overlay<String, String> overlay = new Overlay<>(TOL);
+        overlay.addA(Rect.valueOf(0, 0, 10, 10).toArea(), "a1")
+                .addB(Rect.valueOf(5, 5, 15, 15).toArea(), "b1");
+        final int[] count = new int[1];
+        assertFalse(overlay.process(new Overlay.OverlayProcessor<String, String>() {
+            @Override
+            public boolean process(Area area, String a, String b) {
+                count[0]++;
+                return false;
+            }
+        }));
+        assertEquals(1, count[0]);
+        assertTrue(new Overlay<String, String>(TOL).process(new Overlay.OverlayProcessor<String, String>() {
+            @Override
+            public boolean process(Area area, String a, String b) {
+                throw new IllegalStateException();
+            }
+        }));
+        try {
+            overlay.addA(null, "a2");
+            fail("Exception expected");
+        } catch (NullPointerException ex) {
+        }
+        try {
+            overlay.addB(Rect.valueOf(0, 0, 1, 1).toArea(), null);
+            fail("Exception expected");
+        } catch (NullPointerException ex) {
+        }
+        try {
+            new Overlay<String, String>(null);
+            fail("Exception expected");
+        } catch (NullPointerException ex) {
+        }
+    }
+
+    private static Map<String, Area> process(Overlay<String, String> overlay) {
+        final Map<String, Area> results = new HashMap<>();
+        assertTrue(overlay.process(new Overlay.OverlayProcessor<String, String>() {
+            @Override
+            public boolean process(Area area, String a, String b) {
+                assertNull(results.put(a + "," + b, area));
+                return true;
+            }
+        }));
+        return results;
+    }
+}
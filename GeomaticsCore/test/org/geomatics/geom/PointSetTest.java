@@ -12,7 +12,11 @@ import org.geomatics.geom.PointSet;
 import org.geomatics.geom.Rect;
 import org.geomatics.geom.Vect;
 import org.geomatics.geom.Ring;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.HashSet;
 import java.util.Set;
 import org.geomatics.util.Tolerance;
@@ -255,6 +259,27 @@ public class PointSetTest {
         assertEquals(Relation.TOUCH | Relation.B_OUTSIDE_A, e.relate(a, new Tolerance(0.22)));
     }
     
+    @Test
+    public void testSerialize() throws Exception {
+        VectList vects = new VectList();
+        for (int i = 0; i < 64; i++) {
+            vects.add(i, i * 2);
+        }
+        PointSet a = new PointSet(vects);
+        assertEquals(Relation.TOUCH | Relation.A_OUTSIDE_B, a.relate(new VectBuilder(10, 20), Tolerance.DEFAULT)); // builds the index
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bout)) {
+            out.writeObject(a);
+        }
+        PointSet b;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bout.toByteArray()))) {
+            b = (PointSet) in.readObject();
+        }
+        assertEquals(a, b);
+        assertEquals(Relation.TOUCH | Relation.A_OUTSIDE_B, b.relate(new VectBuilder(10, 20), Tolerance.DEFAULT));
+        assertEquals(Relation.DISJOINT, b.relate(new VectBuilder(10, 21), Tolerance.DEFAULT));
+    }
+
     @Test
     public void testRelate_Geom() {
         PointSet a = PointSet.valueOf(1,2, 3,4, 5,6, 7,8);
@@ -0,0 +1,93 @@
+package org.geomatics.geom;
+
+import java.util.Random;
+import org.geomatics.util.SpatialNode.NodeProcessor;
+import org.geomatics.util.Tolerance;
+import org.geomatics.util.VectList;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author tofarrell
+ */
+public class PreparedAreaTest {
+
+    @Test
+    public void testRelate() {
+        Area area = Area.valueOf(Tolerance.DEFAULT, 0, 0, 100, 0, 100, 100, 0, 100, 0, 0);
+        area = area.less(Area.valueOf(Tolerance.DEFAULT, 20, 20, 80, 20, 80, 80, 20, 80, 20, 20), Tolerance.DEFAULT);
+        PreparedArea prepared = new PreparedArea(area, Tolerance.DEFAULT);
+        assertSame(area, prepared.getArea());
+        assertSame(Tolerance.DEFAULT, prepared.getAccuracy());
+        assertEquals(Relation.B_INSIDE_A | Relation.A_OUTSIDE_B, prepared.relate(10, 10));
+        assertEquals(Relation.B_OUTSIDE_A | Relation.A_OUTSIDE_B, prepared.relate(50, 50));
+        assertEquals(Relation.TOUCH | Relation.A_OUTSIDE_B, prepared.relate(Vect.valueOf(20, 50)));
+        assertEquals(Relation.TOUCH | Relation.A_OUTSIDE_B, prepared.relate(new VectBuilder(0, 0)));
+        assertEquals(Relation.DISJOINT, prepared.relate(150, 50));
+        try {
+            prepared.relate(Double.NaN, 0);
+            fail("Exception expected");
+        } catch (IllegalArgumentException ex) {
+        }
+        try {
+            new PreparedArea(area, null);
+            fail("Exception expected");
+        } catch (NullPointerException ex) {
+        }
+    }
+
+    @Test
+    public void testRelate_Random() {
+        Random random = new Random(1);
+        VectList ords = new VectList();
+        for (int i = 0; i < 50; i++) {
+            ords.add(random.nextInt(1000) / 10.0, random.nextInt(1000) / 10.0);
+        }
+        for (int i = 0; i < 400; i++) { // wavy circle, with lines within tolerance of horizontal
+            double angle = 2 * Math.PI * i / 400;
+            double radius = 30 + 5 * Math.sin(angle * 17);
+            ords.add(50 + radius * Math.cos(angle), 50 + radius * Math.sin(angle));
+        }
+        ords.add(ords.getX(0), ords.getY(0));
+        Area area = Area.valueOf(Tolerance.DEFAULT, ords); // self intersecting, so many rings
+        for (Tolerance tolerance : new Tolerance[]{Tolerance.DEFAULT, new Tolerance(0.5)}) {
+            PreparedArea prepared = new PreparedArea(area, tolerance);
+            for (int i = 0; i < 500; i++) {
+                double x = random.nextInt(1100) / 10.0 - 5;
+                double y = random.nextInt(1100) / 10.0 - 5;
+                assertEquals(expectedRelate(area, x, y, tolerance), prepared.relate(x, y));
+                x = random.nextDouble() * 110 - 5;
+                y = random.nextDouble() * 110 - 5;
+                assertEquals(expectedRelate(area, x, y, tolerance), prepared.relate(x, y));
+            }
+            for (int i = 0; i < ords.size(); i++) { // vertices and points near them
+                double x = ords.getX(i);
+                double y = ords.getY(i);
+                assertEquals(expectedRelate(area, x, y, tolerance), prepared.relate(x, y));
+                assertEquals(expectedRelate(area, x + 0.3, y, tolerance), prepared.relate(x + 0.3, y));
+                assertEquals(expectedRelate(area, x, y - 0.7, tolerance), prepared.relate(x, y - 0.7));
+            }
+        }
+    }
+
+    //Touch is as for the area, and inside / outside is by brute force crossing number
+    static int expectedRelate(Area area, final double x, final double y, Tolerance tolerance) {
+        int ret = area.relate(x, y, tolerance);
+        if (Relation.isTouch(ret) || (area.getLineIndex().relate(x, y, tolerance) == Relation.DISJOINT)) {
+            return ret;
+        }
+        final boolean[] inside = new boolean[1];
+        area.getLineIndex().forEach(new NodeProcessor<Line>() {
+            @Override
+            public boolean process(Rect bounds, Line line) {
+                if (((line.ay > y) != (line.by > y))
+                        && (line.ax + (y - line.ay) * (line.bx - line.ax) / (line.by - line.ay) > x)) {
+                    inside[0] = !inside[0];
+                }
+                return true;
+            }
+        });
+        return (inside[0] ? Relation.B_INSIDE_A : Relation.B_OUTSIDE_A) | Relation.A_OUTSIDE_B;
+    }
+}
@@ -185,6 +185,29 @@ public class RingTest {
         assertEquals(Relation.A_OUTSIDE_B | Relation.B_INSIDE_A, ring.relate(Vect.valueOf(2, 3), TOL));
     }
 
+    @Test
+    public void testRelateAll() {
+        Ring ring = Ring.valueOf(TOL, 0,0, 6,8, 6,14, 0,10, 0,0);
+        VectList points = new VectList();
+        for (int x = -1; x <= 7; x++) {
+            for (int y = -1; y <= 15; y++) {
+                points.add(x, y);
+                points.add(x + 0.5, y + 0.25);
+            }
+        }
+        int[] results = new int[points.size() + 1];
+        assertSame(results, ring.relateAll(points, TOL, results));
+        for (int i = 0; i < points.size(); i++) {
+            assertEquals(ring.relate(points.getX(i), points.getY(i), TOL), results[i]);
+        }
+        assertEquals(0, results[points.size()]);
+        try {
+            ring.relateAll(points, TOL, new int[points.size() - 1]);
+            fail("Exception expected");
+        } catch (IndexOutOfBoundsException ex) {
+        }
+    }
+
     @Test
     public void testRelate() {
         Ring a = Ring.valueOf(TOL, 0,0, 100,0, 0,100, 0,0);
@@ -661,26 +684,12 @@ public class RingTest {
         assertEquals("[\"RG\",0,0, 6,8, 6,14, 0,10, 0,0]", ring.toString());
     }
     
-    @Test
-    public void testBuildGeomFromRing(){
-        assertEquals(Ring.valueOf(TOL, 0,0, 10,0, 0,10, 0,0), Ring.buildGeomFromRing(new VectList(0,0, 10,0, 0,10, 0,0), TOL));
-        assertNull(Ring.buildGeomFromRing(new VectList(0,0, 0,10, 10,0 ,0,0), TOL));
-    }
-    
     @Test
     public void testGetEdgeBuffer(){
         Ring ring = Ring.valueOf(TOL, 0,0, 10,0, 0,10, 0,0);
         assertEquals(new VectList(0,0, 10,0, 0,10, 0,0), ring.getEdgeBuffer(0, Linearizer.DEFAULT, TOL));
     }
     
-    @Test
-    public void testParsePathFromNetwork(){
-        Network network = new Network().addAllLinks(new VectList(0,0, 10,0, 0,10, 0,0));
-        VectList template = new VectList(0.01,0.01, 10.01,0.01, 0.01,10.01, 0.01,0.01);
-        VectList result = Ring.parsePathFromNetwork(network, template, new Tolerance(0.05));
-        assertEquals(new VectList(0,0, 10,0, 0,10, 0,0), result);
-    }
-    
     @Test
     public void testConvexHull(){
         Ring a = Ring.valueOf(TOL, 20,0, 100,0, 100,90, 20,90, 20,20, 80,20, 80,70, 40,70, 40,40, 60,40, 50,60, 70,60, 70,30, 30,30, 30,80, 90,80, 90,10, 20,10, 20,0);
@@ -60,7 +60,7 @@ public class VectRelationProcessorTest {
     public void testProcess() {
         VectRelationProcessor processor = new VectRelationProcessor(Tolerance.DEFAULT, 3, 7);
         //Line line = Line.valueOf(5, 4, 8, 8);
-        Line line = Line.valueOf(7, 4, 12, 6.9999);
+        Line line = Line.valueOf(7, 4, 12, 7.0001);
         assertTrue(processor.process(line.getBounds(), line));
         assertEquals(Relation.B_INSIDE_A, processor.getRelation());
         
@@ -0,0 +1,151 @@
+package org.geomatics.util;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.geomatics.geom.Rect;
+import org.geomatics.util.SpatialNode.NodeProcessor;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author tofar
+ */
+public class ConcurrentRTreeTest {
+
+    @Test
+    public void testAddRemove() {
+        ConcurrentRTree<String> tree = new ConcurrentRTree<>();
+        assertTrue(tree.isEmpty());
+        assertNull(tree.getBounds());
+        for (int i = 0; i < 50; i++) {
+            for (int j = 0; j < 50; j++) {
+                tree.add(Rect.valueOf(i, j, i + 1, j + 1), i + "_" + j);
+            }
+        }
+        assertEquals(2500, tree.size());
+        assertEquals(Rect.valueOf(0, 0, 50, 50), tree.getBounds());
+        RTreeTest.checkIntegrity(tree.getSnapshot());
+        assertEquals(2304, tree.getSnapshot().sizeOverlapping(Rect.valueOf(1, 1, 49, 49)));
+        assertTrue(tree.contains(Rect.valueOf(3, 4, 4, 5), "3_4"));
+
+        SpatialNode<String> snapshot = tree.getSnapshot();
+        for (int i = 0; i < 50; i++) {
+            for (int j = 0; j < 50; j += 2) {
+                assertTrue(tree.remove(Rect.valueOf(i, j, i + 1, j + 1), i + "_" + j));
+            }
+        }
+        assertFalse(tree.remove(Rect.valueOf(0, 0, 1, 1), "0_0"));
+        assertFalse(tree.remove(Rect.valueOf(100, 100, 101, 101), "0_0"));
+        assertEquals(1250, tree.size());
+        RTreeTest.checkIntegrity(tree.getSnapshot());
+        assertFalse(tree.contains(Rect.valueOf(3, 4, 4, 5), "3_4"));
+        assertTrue(tree.contains(Rect.valueOf(3, 5, 4, 6), "3_5"));
+
+        //snapshot is unaffected by edits
+        assertEquals(2500, snapshot.size());
+        assertTrue(snapshot.contains(Rect.valueOf(3, 4, 4, 5), "3_4"));
+        RTreeTest.checkIntegrity(snapshot);
+        final int[] count = new int[1];
+        snapshot.forEach(new NodeProcessor<String>() {
+            @Override
+            public boolean process(Rect bounds, String value) {
+                count[0]++;
+                return true;
+            }
+        });
+        assertEquals(2500, count[0]);
+
+        int depth = tree.getSnapshot().getDepth();
+        tree.optimise();
+        assertTrue(tree.getSnapshot().getDepth() <= depth);
+        assertEquals(1250, tree.size());
+
+        for (int i = 0; i < 50; i++) {
+            for (int j = 1; j < 50; j += 2) {
+                assertTrue(tree.remove(Rect.valueOf(i, j, i + 1, j + 1), i + "_" + j));
+            }
+        }
+        assertTrue(tree.isEmpty());
+        tree.add(Rect.valueOf(0, 0, 1, 1), "A");
+        assertEquals(1, tree.size());
+        tree.clear();
+        assertTrue(tree.isEmpty());
+    }
+
+    @Test
+    public void testBulkLoadAndClone() {
+        Rect[] bounds = new Rect[100];
+        Integer[] values = new Integer[100];
+        for (int i = 0; i < 100; i++) {
+            bounds[i] = Rect.valueOf(i, i, i + 1, i + 1);
+            values[i] = i;
+        }
+        ConcurrentRTree<Integer> tree = new ConcurrentRTree<>(bounds, values);
+        assertEquals(100, tree.size());
+        assertEquals(Rect.valueOf(0, 0, 100, 100), tree.getBounds());
+        ConcurrentRTree<Integer> clone = tree.clone();
+        assertSame(tree.getSnapshot(), clone.getSnapshot());
+        clone.add(Rect.valueOf(200, 200, 201, 201), 200);
+        assertTrue(clone.remove(bounds[0], 0));
+        assertEquals(100, tree.size());
+        assertTrue(tree.contains(bounds[0], 0));
+        assertFalse(tree.contains(Rect.valueOf(200, 200, 201, 201), 200));
+        assertEquals(100, clone.size());
+        assertFalse(clone.contains(bounds[0], 0));
+        try {
+            new ConcurrentRTree<>(bounds, new Integer[99]);
+            fail("Exception expected");
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+
+    @Test
+    public void testConcurrentReads() throws InterruptedException {
+        final ConcurrentRTree<Integer> tree = new ConcurrentRTree<>();
+        for (int i = 0; i < 1000; i++) {
+            tree.add(Rect.valueOf(i, 0, i + 1, 1), i);
+        }
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread[] readers = new Thread[4];
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        while (!done.get()) {
+                            SpatialNode<Integer> snapshot = tree.getSnapshot();
+                            int size = snapshot.size();
+                            final int[] count = new int[1];
+                            snapshot.forInteracting(Rect.valueOf(-1, -1, 2001, 2), Tolerance.ZERO, new NodeProcessor<Integer>() {
+                                @Override
+                                public boolean process(Rect bounds, Integer value) {
+                                    count[0]++;
+                                    return true;
+                                }
+                            });
+                            if (count[0] != size) {
+                                throw new IllegalStateException("Inconsistent snapshot : " + count[0] + " != " + size);
+                            }
+                        }
+                    } catch (Throwable ex) {
+                        error.set(ex);
+                    }
+                }
+            };
+            readers[r].start();
+        }
+        for (int i = 0; i < 1000; i++) {
+            tree.add(Rect.valueOf(i + 1000, 0, i + 1001, 1), i + 1000);
+            assertTrue(tree.remove(Rect.valueOf(i, 0, i + 1, 1), i));
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(error.get());
+        assertEquals(1000, tree.size());
+        assertEquals(Rect.valueOf(1000, 0, 2000, 1), tree.getBounds());
+    }
+}
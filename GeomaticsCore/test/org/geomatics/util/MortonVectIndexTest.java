@@ -0,0 +1,238 @@
+package org.geomatics.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.geomatics.geom.Rect;
+import org.geomatics.geom.Relation;
+import org.geomatics.geom.Vect;
+import org.geomatics.util.MortonVectIndex.PointProcessor;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author tofar
+ */
+public class MortonVectIndexTest {
+
+    @Test
+    public void testConstructor() {
+        MortonVectIndex index = new MortonVectIndex(3, 4, 1, 2, 5, 6, 1, 2);
+        assertEquals(4, index.size());
+        assertFalse(index.isEmpty());
+        assertEquals(Rect.valueOf(1, 2, 5, 6), index.getBounds());
+        Set<Integer> indices = new HashSet<>();
+        for (int i = 0; i < index.size(); i++) {
+            int j = index.getIndex(i);
+            assertTrue(indices.add(j));
+            assertEquals(new double[]{3, 1, 5, 1}[j], index.getX(i), 0);
+            assertEquals(new double[]{4, 2, 6, 2}[j], index.getY(i), 0);
+        }
+        for (int i = 1; i < index.size(); i++) {
+            assertTrue(index.keys[i - 1] <= index.keys[i]);
+        }
+        assertEquals(index.indices.length, index.size());
+
+        index = new MortonVectIndex(new VectList());
+        assertTrue(index.isEmpty());
+        assertNull(index.getBounds());
+        assertTrue(index.forNearest(0, 0, 3, Double.POSITIVE_INFINITY, new PointProcessor() {
+            @Override
+            public boolean process(int index, double x, double y) {
+                throw new IllegalStateException();
+            }
+        }));
+        try {
+            new MortonVectIndex(1, 2, 3);
+            fail("Exception expected");
+        } catch (IllegalArgumentException ex) {
+        }
+        try {
+            new MortonVectIndex(1, Double.NaN);
+            fail("Exception expected");
+        } catch (IllegalArgumentException ex) {
+        }
+        try {
+            index.getX(0);
+            fail("Exception expected");
+        } catch (IndexOutOfBoundsException ex) {
+        }
+    }
+
+    @Test
+    public void testSpreadCompact() {
+        Random random = new Random(1);
+        for (int i = 0; i < 1000; i++) {
+            long x = random.nextInt() & MortonVectIndex.MAX_CELL;
+            long y = random.nextInt() & MortonVectIndex.MAX_CELL;
+            long key = MortonVectIndex.key(x, y);
+            assertTrue(key >= 0);
+            assertEquals(x, MortonVectIndex.compact(key));
+            assertEquals(y, MortonVectIndex.compact(key >>> 1));
+        }
+        assertEquals(0b1011, MortonVectIndex.key(0b01, 0b11));
+    }
+
+    @Test
+    public void testBigMin() {
+        for (int minX = 0; minX < 8; minX += 3) {
+            for (int minY = 1; minY < 8; minY += 2) {
+                int maxX = minX + 5;
+                int maxY = minY + 3;
+                long minKey = MortonVectIndex.key(minX, minY);
+                long maxKey = MortonVectIndex.key(maxX, maxY);
+                for (long key = minKey; key < maxKey; key++) {
+                    long x = MortonVectIndex.compact(key);
+                    long y = MortonVectIndex.compact(key >>> 1);
+                    if ((x >= minX) && (x <= maxX) && (y >= minY) && (y <= maxY)) {
+                        continue;
+                    }
+                    long expected = key + 1;
+                    while (true) {
+                        long ex = MortonVectIndex.compact(expected);
+                        long ey = MortonVectIndex.compact(expected >>> 1);
+                        if ((ex >= minX) && (ex <= maxX) && (ey >= minY) && (ey <= maxY)) {
+                            break;
+                        }
+                        expected++;
+                    }
+                    assertEquals(expected, MortonVectIndex.bigMin(key, minKey, maxKey));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSortOrder() {
+        int[] order = MortonVectIndex.sortOrder(1, 1, 0, 0, 1, 0, 0, 1);
+        assertArrayEquals(new int[]{1, 2, 3, 0}, order);
+        assertEquals(0, MortonVectIndex.sortOrder().length);
+    }
+
+    @Test
+    public void testForInteracting() {
+        Random random = new Random(2);
+        double[] ords = randomOrds(random, 5000);
+        MortonVectIndex index = new MortonVectIndex(ords);
+        for (int q = 0; q < 100; q++) {
+            double x = random.nextDouble() * 1100 - 50;
+            double y = random.nextDouble() * 1100 - 50;
+            Rect rect = Rect.valueOf(x, y, x + random.nextDouble() * 200, y + random.nextDouble() * 50);
+            Tolerance accuracy = new Tolerance(random.nextDouble());
+            final Set<Integer> expected = new HashSet<>();
+            for (int i = 0; i < ords.length; i += 2) {
+                if (Rect.relate(ords[i], ords[i + 1], rect.minX, rect.minY, rect.maxX, rect.maxY, accuracy) != Relation.DISJOINT) {
+                    expected.add(i >> 1);
+                }
+            }
+            final double[] _ords = ords;
+            assertTrue(index.forInteracting(rect, accuracy, new PointProcessor() {
+                @Override
+                public boolean process(int index, double x, double y) {
+                    assertEquals(_ords[index << 1], x, 0);
+                    assertEquals(_ords[(index << 1) + 1], y, 0);
+                    assertTrue(expected.remove(index));
+                    return true;
+                }
+            }));
+            assertTrue(expected.isEmpty());
+        }
+        assertFalse(index.forInteracting(index.getBounds(), Tolerance.ZERO, new PointProcessor() {
+            @Override
+            public boolean process(int index, double x, double y) {
+                return false;
+            }
+        }));
+    }
+
+    @Test
+    public void testForWithin() {
+        Random random = new Random(3);
+        double[] ords = randomOrds(random, 5000);
+        MortonVectIndex index = new MortonVectIndex(ords);
+        for (int q = 0; q < 100; q++) {
+            double x = random.nextDouble() * 1000;
+            double y = random.nextDouble() * 1000;
+            double radius = random.nextDouble() * 100;
+            final Set<Integer> expected = new HashSet<>();
+            for (int i = 0; i < ords.length; i += 2) {
+                if (Vect.distSq(x, y, ords[i], ords[i + 1]) <= radius * radius) {
+                    expected.add(i >> 1);
+                }
+            }
+            assertTrue(index.forWithin(x, y, radius, new PointProcessor() {
+                @Override
+                public boolean process(int index, double x, double y) {
+                    assertTrue(expected.remove(index));
+                    return true;
+                }
+            }));
+            assertTrue(expected.isEmpty());
+        }
+        try {
+            index.forWithin(0, 0, -1, null);
+            fail("Exception expected");
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+
+    @Test
+    public void testForNearest() {
+        Random random = new Random(4);
+        final double[] ords = randomOrds(random, 3000);
+        MortonVectIndex index = new MortonVectIndex(ords);
+        for (int q = 0; q < 100; q++) {
+            final double x = random.nextDouble() * 1200 - 100;
+            final double y = random.nextDouble() * 1200 - 100;
+            int maxResults = 1 + random.nextInt(20);
+            double maxDist = (q % 3 == 0) ? Double.POSITIVE_INFINITY : random.nextDouble() * 100;
+            List<Double> expected = new ArrayList<>();
+            for (int i = 0; i < ords.length; i += 2) {
+                double d = Math.sqrt(Vect.distSq(x, y, ords[i], ords[i + 1]));
+                if (d <= maxDist) {
+                    expected.add(d);
+                }
+            }
+            expected.sort(null);
+            expected = expected.subList(0, Math.min(maxResults, expected.size()));
+            final List<Double> found = new ArrayList<>();
+            assertTrue(index.forNearest(x, y, maxResults, maxDist, new PointProcessor() {
+                @Override
+                public boolean process(int index, double px, double py) {
+                    found.add(Math.sqrt(Vect.distSq(x, y, px, py)));
+                    return true;
+                }
+            }));
+            assertEquals(expected, found);
+        }
+        final List<Integer> found = new ArrayList<>();
+        new MortonVectIndex(0, 0, 10, 10, 3, 3, 4, 4, 1, 1).forNearest(4, 4, 3, 100, new PointProcessor() {
+            @Override
+            public boolean process(int index, double x, double y) {
+                found.add(index);
+                return true;
+            }
+        });
+        assertEquals(3, found.size());
+        assertEquals(3, found.get(0).intValue());
+        assertEquals(2, found.get(1).intValue());
+        assertEquals(4, found.get(2).intValue());
+    }
+
+    static double[] randomOrds(Random random, int numVects) {
+        double[] ords = new double[numVects << 1];
+        for (int i = 0; i < ords.length; i += 2) {
+            if ((i & 2) == 0) { // half on a grid, half random
+                ords[i] = random.nextInt(100) * 10;
+                ords[i + 1] = random.nextInt(100) * 10;
+            } else {
+                ords[i] = random.nextDouble() * 1000;
+                ords[i + 1] = random.nextDouble() * 1000;
+            }
+        }
+        return ords;
+    }
+}
@@ -0,0 +1,245 @@
+package org.geomatics.util;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.BufferedOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.geomatics.geom.GeomException;
+import org.geomatics.geom.Rect;
+import org.geomatics.geom.Relation;
+import org.geomatics.util.PackedRTree.IndexProcessor;
+import org.geomatics.util.SpatialNode.NodeProcessor;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author tofar
+ */
+public class PackedRTreeTest {
+
+    private final PackedRTree<String> staticTree;
+
+    public PackedRTreeTest() {
+        Rect[] bounds = new Rect[2500];
+        String[] values = new String[2500];
+        for (int i = 0; i < 50; i++) {
+            for (int j = 0; j < 50; j++) {
+                bounds[i * 50 + j] = Rect.valueOf(i, j, i + 1, j + 1);
+                values[i * 50 + j] = i + "_" + j;
+            }
+        }
+        staticTree = new PackedRTree<>(bounds, values);
+    }
+
+    @Test
+    public void testConstructor() {
+        assertEquals(2500, staticTree.size());
+        assertFalse(staticTree.isEmpty());
+        assertEquals(16, staticTree.getNodeCapacity());
+        assertEquals(Rect.valueOf(0, 0, 50, 50), staticTree.getBounds());
+        assertEquals("3_4", staticTree.getItemValue(3 * 50 + 4));
+
+        PackedRTree<String> tree = new PackedRTree<>(new Rect[0], new String[0]);
+        assertTrue(tree.isEmpty());
+        assertNull(tree.getBounds());
+        assertEquals(0, tree.sizeInteracting(Rect.valueOf(0, 0, 1, 1)));
+
+        tree = new PackedRTree<>(new Rect[]{Rect.valueOf(0, 0, 1, 1)}, new String[]{"A"});
+        assertEquals(1, tree.sizeInteracting(Rect.valueOf(1, 1, 2, 2)));
+        assertEquals(0, tree.sizeOverlapping(Rect.valueOf(1, 1, 2, 2)));
+
+        try {
+            new PackedRTree<>(new double[]{0, 0, 1}, new String[]{"A"}, 4);
+            fail("Exception expected");
+        } catch (IllegalArgumentException ex) {
+        }
+        try {
+            new PackedRTree<>(new double[]{1, 1, 0, 0}, new String[]{"A"}, 4);
+            fail("Exception expected");
+        } catch (IllegalArgumentException ex) {
+        }
+        try {
+            new PackedRTree<>(new double[]{0, 0, 1, 1}, new String[]{"A"}, 1);
+            fail("Exception expected");
+        } catch (IllegalArgumentException ex) {
+        }
+        try {
+            new PackedRTree<>(new Rect[]{null}, new String[]{"A"});
+            fail("Exception expected");
+        } catch (NullPointerException ex) {
+        }
+    }
+
+    @Test
+    public void testGetLevelBounds() {
+        assertArrayEquals(new int[]{0}, PackedRTree.getLevelBounds(0, 4));
+        assertArrayEquals(new int[]{1}, PackedRTree.getLevelBounds(1, 4));
+        assertArrayEquals(new int[]{4, 5}, PackedRTree.getLevelBounds(4, 4));
+        assertArrayEquals(new int[]{17, 22, 24, 25}, PackedRTree.getLevelBounds(17, 4));
+    }
+
+    @Test
+    public void testForEach() {
+        final Set<String> found = new HashSet<>();
+        assertTrue(staticTree.forEach(new NodeProcessor<String>() {
+            @Override
+            public boolean process(Rect bounds, String value) {
+                assertTrue(found.add(value));
+                return true;
+            }
+        }));
+        assertEquals(2500, found.size());
+        assertFalse(staticTree.forEach(new IndexProcessor() {
+            @Override
+            public boolean process(int index, double minX, double minY, double maxX, double maxY) {
+                return false;
+            }
+        }));
+    }
+
+    @Test
+    public void testForInteracting() {
+        final Map<Rect, String> map = new HashMap<>();
+        for (int i = 1; i <= 7; i++) {
+            for (int j = 2; j <= 13; j++) {
+                map.put(Rect.valueOf(i, j, i + 1, j + 1), i + "_" + j);
+            }
+        }
+        assertTrue(staticTree.forInteracting(Rect.valueOf(2, 3, 7, 13), Tolerance.DEFAULT, new NodeProcessor<String>() {
+            @Override
+            public boolean process(Rect bounds, String value) {
+                assertEquals(map.remove(bounds), value);
+                return true;
+            }
+        }));
+        assertTrue(map.isEmpty());
+        assertEquals(2500, staticTree.sizeInteracting(Rect.valueOf(1, 1, 49, 49)));
+        assertEquals(2500, staticTree.sizeInteracting(Rect.valueOf(-1, -1, 51, 51)));
+    }
+
+    @Test
+    public void testForOverlapping() {
+        final Map<Rect, String> map = new HashMap<>();
+        for (int i = 2; i < 7; i++) {
+            for (int j = 3; j < 13; j++) {
+                map.put(Rect.valueOf(i, j, i + 1, j + 1), i + "_" + j);
+            }
+        }
+        assertTrue(staticTree.forOverlapping(Rect.valueOf(2, 3, 7, 13), new NodeProcessor<String>() {
+            @Override
+            public boolean process(Rect bounds, String value) {
+                assertEquals(map.remove(bounds), value);
+                return true;
+            }
+        }));
+        assertTrue(map.isEmpty());
+        assertEquals(2304, staticTree.sizeOverlapping(Rect.valueOf(1, 1, 49, 49)));
+    }
+
+    @Test
+    public void testMatchesRTree() {
+        Random random = new Random(3);
+        Rect[] bounds = new Rect[3000];
+        Integer[] values = new Integer[bounds.length];
+        for (int i = 0; i < bounds.length; i++) {
+            double x = random.nextDouble() * 1000;
+            double y = random.nextDouble() * 1000;
+            bounds[i] = Rect.valueOf(x, y, x + random.nextDouble() * 20, y + random.nextDouble() * 20);
+            values[i] = i;
+        }
+        RTree<Integer> rtree = new RTree<>(bounds, values);
+        for (int nodeCapacity = 2; nodeCapacity <= 64; nodeCapacity *= 4) {
+            PackedRTree<Integer> packed = new PackedRTree<>(PackedRTree.toOrds(bounds), values, nodeCapacity);
+            for (int q = 0; q < 50; q++) {
+                double x = random.nextDouble() * 1000;
+                double y = random.nextDouble() * 1000;
+                Rect query = Rect.valueOf(x, y, x + random.nextDouble() * 100, y + random.nextDouble() * 100);
+                assertEquals(rtree.sizeInteracting(query), packed.sizeInteracting(query));
+                assertEquals(rtree.sizeOverlapping(query), packed.sizeOverlapping(query));
+                final Set<Integer> expected = new HashSet<>();
+                for (int i = 0; i < bounds.length; i++) {
+                    if (!Relation.isDisjoint(query.relate(bounds[i], Tolerance.ZERO))) {
+                        expected.add(i);
+                    }
+                }
+                packed.forInteracting(query.minX, query.minY, query.maxX, query.maxY, Tolerance.ZERO, new IndexProcessor() {
+                    @Override
+                    public boolean process(int index, double minX, double minY, double maxX, double maxY) {
+                        assertTrue(expected.remove(index));
+                        return true;
+                    }
+                });
+                assertTrue(expected.isEmpty());
+            }
+        }
+    }
+
+    @Test
+    public void testWriteMap() throws IOException {
+        File file = File.createTempFile("packed", ".idx");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+                out.writeInt(12345); // arbitrary preceding data
+                staticTree.write(out);
+            }
+            assertEquals(4 + staticTree.getWriteSize(), file.length());
+            PackedRTree<String> mapped;
+            PackedRTree<String> mappedNoValues;
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                mapped = PackedRTree.map(channel, 4, staticTree.values);
+                mappedNoValues = PackedRTree.map(channel, 4, null);
+                try {
+                    PackedRTree.map(channel, 0, null);
+                    fail("Exception expected");
+                } catch (GeomException ex) {
+                }
+                try {
+                    PackedRTree.map(channel, 4, new String[3]);
+                    fail("Exception expected");
+                } catch (IllegalArgumentException ex) {
+                }
+            }
+            assertEquals(2500, mapped.size());
+            assertEquals(Rect.valueOf(0, 0, 50, 50), mapped.getBounds());
+            assertEquals("3_4", mapped.getItemValue(3 * 50 + 4));
+            assertNull(mappedNoValues.getItemValue(3 * 50 + 4));
+            assertEquals(2304, mapped.sizeOverlapping(Rect.valueOf(1, 1, 49, 49)));
+            assertEquals(2304, mappedNoValues.sizeOverlapping(Rect.valueOf(1, 1, 49, 49)));
+            final Map<Rect, String> map = new HashMap<>();
+            for (int i = 1; i <= 7; i++) {
+                for (int j = 2; j <= 13; j++) {
+                    map.put(Rect.valueOf(i, j, i + 1, j + 1), i + "_" + j);
+                }
+            }
+            assertTrue(mapped.forInteracting(Rect.valueOf(2, 3, 7, 13), Tolerance.DEFAULT, new NodeProcessor<String>() {
+                @Override
+                public boolean process(Rect bounds, String value) {
+                    assertEquals(map.remove(bounds), value);
+                    return true;
+                }
+            }));
+            assertTrue(map.isEmpty());
+            
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) { // truncate
+                raf.setLength(file.length() - 8);
+            }
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                PackedRTree.map(channel, 4, null);
+                fail("Exception expected");
+            } catch (GeomException ex) {
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
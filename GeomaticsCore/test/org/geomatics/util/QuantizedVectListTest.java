@@ -0,0 +1,178 @@
+package org.geomatics.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Random;
+import org.geomatics.geom.GeomException;
+import org.geomatics.geom.Line;
+import org.geomatics.geom.Rect;
+import org.geomatics.geom.Vect;
+import org.geomatics.geom.VectBuilder;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author tofar
+ */
+public class QuantizedVectListTest {
+
+    @Test
+    public void testConstructor() {
+        QuantizedVectList vects = new QuantizedVectList(new VectList(1.004, 2.006, 3, 4.5, -1.5, 2), 0.01);
+        assertEquals(3, vects.size());
+        assertFalse(vects.isEmpty());
+        assertEquals(0.01, vects.getResolution(), 0);
+        assertEquals(1, vects.getX(0), 0.000001);
+        assertEquals(2.01, vects.getY(0), 0.000001);
+        assertEquals(Vect.valueOf(3, 4.5), vects.getVect(1));
+        assertEquals(new VectBuilder(-1.5, 2), vects.getVect(2, new VectBuilder()));
+        assertEquals(Line.valueOf(vects.getX(0), vects.getY(0), 3, 4.5), vects.getLine(0));
+        assertEquals(Rect.valueOf(-1.5, 2, 3, 4.5), vects.getBounds());
+
+        vects = new QuantizedVectList(new VectList(), 0.01);
+        assertTrue(vects.isEmpty());
+        assertNull(vects.getBounds());
+        try {
+            vects.getX(0);
+            fail("Exception expected");
+        } catch (IndexOutOfBoundsException ex) {
+        }
+        try {
+            new QuantizedVectList(new VectList(1, 2), 0);
+            fail("Exception expected");
+        } catch (IllegalArgumentException ex) {
+        }
+        try {
+            new QuantizedVectList(new VectList(1, 2), Double.NaN);
+            fail("Exception expected");
+        } catch (IllegalArgumentException ex) {
+        }
+        try {
+            new QuantizedVectList(new VectList(0, 0, 1E8, 0), 0.01);
+            fail("Exception expected");
+        } catch (IllegalArgumentException ex) {
+        }
+        try {
+            new QuantizedVectList(null, 0.01);
+            fail("Exception expected");
+        } catch (NullPointerException ex) {
+        }
+    }
+
+    @Test
+    public void testSnapping() {
+        Random random = new Random(1);
+        VectList a = randomWalk(random, 1000);
+        VectList b = new VectList();
+        for (int i = a.size(); i-- > 500;) {
+            b.add(a.getX(i), a.getY(i));
+        }
+        QuantizedVectList qa = new QuantizedVectList(a, 0.01);
+        QuantizedVectList qb = new QuantizedVectList(b, 0.01);
+        for (int i = 0; i < a.size(); i++) {
+            assertEquals(a.getX(i), qa.getX(i), 0.005);
+            assertEquals(a.getY(i), qa.getY(i), 0.005);
+        }
+        for (int i = 0; i < b.size(); i++) { // same vector is snapped to same value regardless of list
+            assertEquals(qa.getX(a.size() - 1 - i), qb.getX(i), 0);
+            assertEquals(qa.getY(a.size() - 1 - i), qb.getY(i), 0);
+        }
+        double[] ords = new double[6];
+        qa.getOrds(10, ords, 0, 3);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(qa.getX(10 + i), ords[i << 1], 0);
+            assertEquals(qa.getY(10 + i), ords[(i << 1) + 1], 0);
+        }
+        try {
+            qa.getOrds(999, ords, 0, 2);
+            fail("Exception expected");
+        } catch (IndexOutOfBoundsException ex) {
+        }
+        VectList list = qa.toVectList(new VectList());
+        assertEquals(a.size(), list.size());
+        assertEquals(qa, new QuantizedVectList(list, 0.01));
+        assertEquals(qa.hashCode(), new QuantizedVectList(list, 0.01).hashCode());
+        assertFalse(qa.equals(qb));
+        assertFalse(qa.equals(new QuantizedVectList(a, 0.1)));
+        assertEquals(list.toString(), qa.toString());
+    }
+
+    @Test
+    public void testReadWrite() throws Exception {
+        VectList vects = randomWalk(new Random(2), 1000);
+        QuantizedVectList a = new QuantizedVectList(vects, 0.01);
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        a.write(new DataOutputStream(bout));
+        assertTrue(bout.size() < 5 * vects.size()); // VectList requires 16 per vector
+        QuantizedVectList b = QuantizedVectList.read(new DataInputStream(new ByteArrayInputStream(bout.toByteArray())));
+        assertEquals(a, b);
+
+        bout = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bout)) {
+            out.writeObject(a);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bout.toByteArray()))) {
+            b = (QuantizedVectList) in.readObject();
+        }
+        assertEquals(a, b);
+        assertEquals(a.getBounds(), b.getBounds());
+
+        bout = new ByteArrayOutputStream();
+        a.write(new DataOutputStream(bout));
+        byte[] data = bout.toByteArray();
+        try {
+            QuantizedVectList.read(new DataInputStream(new ByteArrayInputStream(data, 0, data.length - 1)));
+            fail("Exception expected");
+        } catch (GeomException ex) {
+        }
+        ByteArrayOutputStream invalid = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(invalid);
+        out.writeDouble(0.01);
+        out.writeLong(0);
+        out.writeLong(0);
+        out.writeInt(1);
+        for (int i = 0; i < 6; i++) {
+            out.writeByte(0xFF);
+        }
+        try {
+            QuantizedVectList.read(new DataInputStream(new ByteArrayInputStream(invalid.toByteArray())));
+            fail("Exception expected");
+        } catch (GeomException ex) {
+        }
+    }
+
+    @Test
+    public void testVarInt() throws IOException {
+        int[] values = new int[]{0, 1, -1, 63, -64, 64, 300, -300, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bout);
+        for (int value : values) {
+            QuantizedVectList.writeVarInt(value, out);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bout.toByteArray()));
+        for (int value : values) {
+            assertEquals(value, QuantizedVectList.readVarInt(in));
+        }
+        bout.reset();
+        QuantizedVectList.writeVarInt(-64, out);
+        assertEquals(1, bout.size());
+    }
+
+    static VectList randomWalk(Random random, int size) {
+        VectList ret = new VectList();
+        double x = 512000 + random.nextDouble() * 1000;
+        double y = 6100000 + random.nextDouble() * 1000;
+        for (int i = 0; i < size; i++) {
+            ret.add(x, y);
+            x += random.nextDouble() * 20 - 10;
+            y += random.nextDouble() * 20 - 10;
+        }
+        return ret;
+    }
+}
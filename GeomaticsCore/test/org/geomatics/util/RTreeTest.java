@@ -3,10 +3,12 @@ package org.geomatics.util;
 import org.geomatics.util.RTree;
 import org.geomatics.util.Tolerance;
 import org.geomatics.util.SpatialNode;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Random;
 import java.util.Set;
 import org.jayson.Jayson;
 import org.geomatics.geom.Rect;
@@ -432,6 +434,98 @@ public class RTreeTest {
         checkIntegrity(tree.getRoot());
     }
 
+    @Test
+    public void testConstructor_Packed(){
+        Rect[] bounds = new Rect[2500];
+        String[] values = new String[2500];
+        for (int i = 0; i < 50; i++) {
+            for (int j = 0; j < 50; j++) {
+                bounds[i * 50 + j] = Rect.valueOf(i, j, i + 1, j + 1);
+                values[i * 50 + j] = i + "_" + j;
+            }
+        }
+        RTree<String> tree = new RTree<>(bounds, values, 16);
+        assertEquals(Rect.valueOf(0,0,50,50), tree.getBounds());
+        assertEquals(2500, tree.size());
+        checkIntegrity(tree.getRoot());
+        checkLeafSize(tree.getRoot(), 16);
+        for (int i = 0; i < 50; i++) {
+            for (int j = 0; j < 50; j++) {
+                assertTrue(tree.contains(Rect.valueOf(i, j, i+1, j+1), i+"_"+j));
+            }
+        }
+        assertEquals(2304, tree.sizeOverlapping(Rect.valueOf(1, 1, 49, 49)));
+        assertEquals(2500, tree.sizeInteracting(Rect.valueOf(1, 1, 49, 49)));
+        tree.add(Rect.valueOf(50, 50, 51, 51), "50_50");
+        assertEquals(2501, tree.size());
+        assertTrue(tree.remove(Rect.valueOf(0, 0, 1, 1), "0_0"));
+        assertEquals(2500, tree.size());
+        checkIntegrity(tree.getRoot());
+        
+        tree = new RTree<>(new Rect[]{Rect.valueOf(0, 0, 1, 1)}, new String[]{"A"}, 4);
+        assertTrue(tree.getRoot().isLeaf());
+        assertEquals(1, tree.size());
+        tree = new RTree<>(new Rect[0], new String[0], 4);
+        assertTrue(tree.isEmpty());
+        tree.add(Rect.valueOf(0, 0, 1, 1), "A");
+        assertEquals(1, tree.size());
+        
+        try{
+            new RTree<>(bounds, values, 1);
+            fail("Exception expected");
+        }catch(IllegalArgumentException ex){
+        }
+        try{
+            new RTree<>(bounds, new String[3], 16);
+            fail("Exception expected");
+        }catch(IllegalArgumentException ex){
+        }
+    }
+    
+    @Test
+    public void testPack() {
+        RTree<String> tree = new RTree<>();
+        for (int i = 0; i < 50; i++) {
+            for (int j = 0; j < 50; j++) {
+                Rect bounds = Rect.valueOf(i, j, i + 1, j + 1);
+                String value = i + "_" + j;
+                tree.add(bounds, value);
+            }
+        }
+        int depth = tree.getRoot().getDepth();
+        tree.pack(32);
+        assertTrue(tree.getRoot().getDepth() < depth);
+        assertEquals(Rect.valueOf(0,0,50,50), tree.getBounds());
+        assertEquals(2500, tree.size());
+        checkIntegrity(tree.getRoot());
+        checkLeafSize(tree.getRoot(), 32);
+        assertEquals(2304, tree.sizeOverlapping(Rect.valueOf(1, 1, 49, 49)));
+    }
+    
+    @Test
+    public void testSortTileRecursive() {
+        double[] centers = new double[]{3,3, 0,0, 3,0, 0,3, 1,1, 2,2, 1,2, 2,1};
+        int[] order = RTree.sortTileRecursive(centers, 8, 2);
+        assertEquals(8, order.length);
+        // 4 tiles -> 2 slices of 4, sorted by x then y within each slice
+        for(int i = 0; i < 4; i++){
+            assertTrue(centers[order[i] << 1] <= centers[order[4] << 1]);
+        }
+        for(int i = 1; i < 4; i++){
+            assertTrue(centers[(order[i-1] << 1) + 1] <= centers[(order[i] << 1) + 1]);
+            assertTrue(centers[(order[i+3] << 1) + 1] <= centers[(order[i+4] << 1) + 1]);
+        }
+    }
+    
+    static void checkLeafSize(SpatialNode<String> node, int nodeCapacity) {
+        if (node.isBranch()) {
+            checkLeafSize(node.a, nodeCapacity);
+            checkLeafSize(node.b, nodeCapacity);
+        }else{
+            assertTrue(node.size <= nodeCapacity);
+        }
+    }
+
     @Test
     public void testForEach() {
         RTree<Integer> tree = new RTree<>();
@@ -484,5 +578,100 @@ public class RTreeTest {
         b.bounds.set(10, 0, 30, 10);
         assertSame(a, RTree.getBestCandidateForAdd(Rect.valueOf(0, 0, 10, 10), a, b));
         assertSame(b, RTree.getBestCandidateForAdd(Rect.valueOf(20, 0, 30, 10), a, b));
-    }    
+    }
+
+    @Test
+    public void testGetBestCandidateForInsert(){
+        SpatialNode<Integer> a = new SpatialNode<>();
+        SpatialNode<Integer> b = new SpatialNode<>();
+        a.bounds.set(0, 0, 10, 10);
+        b.bounds.set(10, 0, 11, 100);
+        Rect rect = Rect.valueOf(10.5, 5, 12, 6);
+        assertSame(a, RTree.getBestCandidateForAdd(rect, a, b)); // least area enlargement
+        assertSame(b, RTree.getBestCandidateForInsert(rect, a, b)); // least overlap enlargement
+        assertSame(a, RTree.getBestCandidateForInsert(Rect.valueOf(1, 1, 2, 2), a, b));
+    }
+
+    @Test
+    public void testRemoveFurthest(){
+        Rect[] itemBounds = new Rect[10];
+        String[] itemValues = new String[10];
+        for (int i = 0; i < 10; i++) {
+            itemBounds[i] = Rect.valueOf(i, 0, i + 1, 1);
+            itemValues[i] = Integer.toString(i);
+        }
+        SpatialNode<String> node = new SpatialNode<>(null, null, new RectBuilder(0, 0, 10, 1), itemBounds, itemValues, 10);
+        SpatialNode<String> removed = RTree.removeFurthest(node, 2);
+        assertEquals(2, removed.size);
+        assertEquals(new HashSet<>(Arrays.asList("0", "9")), new HashSet<>(Arrays.asList(removed.itemValues)));
+        assertEquals(new RectBuilder(0, 0, 10, 1), removed.bounds);
+        assertEquals(8, node.size);
+        assertEquals(new RectBuilder(1, 0, 9, 1), node.bounds);
+        assertNull(node.itemBounds[8]);
+    }
+
+    @Test
+    public void testTryMerge_Underflow(){
+        Rect[] aBounds = new Rect[]{Rect.valueOf(100, 0, 101, 1), Rect.valueOf(101, 0, 102, 1)};
+        SpatialNode<String> a = new SpatialNode<>(null, null, new RectBuilder(100, 0, 102, 1), aBounds, new String[]{"A", "B"}, 2);
+        Rect[] bBounds = new Rect[11];
+        String[] bValues = new String[11];
+        for (int i = 0; i < 11; i++) {
+            bBounds[i] = Rect.valueOf(i, 0, i + 1, 1);
+            bValues[i] = Integer.toString(i);
+        }
+        SpatialNode<String> b = new SpatialNode<>(null, null, new RectBuilder(0, 0, 11, 1), bBounds, bValues, 11);
+        SpatialNode<String> node = new SpatialNode<>(a, b, new RectBuilder(0, 0, 102, 1), null, null, 13);
+        RTree.tryMerge(node);
+        assertNotSame(a, node.a);
+        assertEquals(13, node.size);
+        assertEquals(new RectBuilder(0, 0, 102, 1), node.bounds);
+        checkIntegrity(node);
+        assertTrue(node.contains(aBounds[0], "A"));
+        assertTrue(node.contains(aBounds[1], "B"));
+        for (int i = 0; i < 11; i++) {
+            assertTrue(node.contains(bBounds[i], bValues[i]));
+        }
+    }
+
+    @Test
+    public void testAddRemoveChurn(){
+        Random random = new Random(7);
+        RTree<String> tree = new RTree<>();
+        Rect[] rects = new Rect[1000];
+        for (int i = 0; i < rects.length; i++) {
+            rects[i] = randomRect(random);
+            tree.add(rects[i], Integer.toString(i));
+        }
+        for (int n = 0; n < 5000; n++) {
+            int i = random.nextInt(rects.length);
+            assertTrue(tree.remove(rects[i], Integer.toString(i)));
+            rects[i] = randomRect(random);
+            tree.add(rects[i], Integer.toString(i));
+        }
+        assertEquals(rects.length, tree.size());
+        checkIntegrity(tree.getRoot());
+        RectBuilder expectedBounds = new RectBuilder().addRects(rects);
+        assertEquals(expectedBounds.build(), tree.getBounds());
+        for (int q = 0; q < 50; q++) {
+            Rect query = randomRect(random);
+            int expected = 0;
+            for (Rect rect : rects) {
+                if (!Relation.isDisjoint(query.relate(rect, Tolerance.ZERO))) {
+                    expected++;
+                }
+            }
+            assertEquals(expected, tree.sizeInteracting(query));
+        }
+        for (int i = 0; i < rects.length; i++) {
+            assertTrue(tree.remove(rects[i], Integer.toString(i)));
+        }
+        assertTrue(tree.isEmpty());
+    }
+
+    static Rect randomRect(Random random) {
+        double x = random.nextDouble() * 100;
+        double y = random.nextDouble() * 100;
+        return Rect.valueOf(x, y, x + random.nextDouble() * 10, y + random.nextDouble() * 10);
+    }
 }
@@ -7,14 +7,27 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.geomatics.geom.Line;
 import org.geomatics.geom.Rect;
 import org.geomatics.geom.RectBuilder;
 import org.geomatics.geom.Relation;
 import org.geomatics.geom.Vect;
 import org.geomatics.geom.VectBuilder;
+import org.geomatics.util.SpatialNode.DistanceFunction;
+import org.geomatics.util.SpatialNode.NodeAccumulator;
 import org.geomatics.util.SpatialNode.NodeProcessor;
+import org.geomatics.util.SpatialNode.PairProcessor;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -561,6 +574,116 @@ public class SpatialNodeTest {
         assertFalse(a.equals(b));
     }
 
+    @Test
+    public void testForNearest() {
+        Random random = new Random(7);
+        Rect[] itemBounds = new Rect[500];
+        Line[] itemValues = new Line[500];
+        for (int i = 0; i < itemBounds.length; i++) {
+            double ax = random.nextDouble() * 100;
+            double ay = random.nextDouble() * 100;
+            Line line = Line.valueOf(ax, ay, ax + random.nextDouble() * 5, ay + random.nextDouble() * 5);
+            itemBounds[i] = line.getBounds();
+            itemValues[i] = line;
+        }
+        SpatialNode<Line> node = new RTree<>(itemBounds, itemValues).getRoot();
+        for (int q = 0; q < 20; q++) {
+            final double x = random.nextDouble() * 100;
+            final double y = random.nextDouble() * 100;
+            Line[] expected = itemValues.clone();
+            Arrays.sort(expected, new Comparator<Line>() {
+                @Override
+                public int compare(Line a, Line b) {
+                    return Double.compare(a.distSegVectSq(Vect.valueOf(x, y)), b.distSegVectSq(Vect.valueOf(x, y)));
+                }
+            });
+            final List<Line> found = new ArrayList<>();
+            assertTrue(node.forNearest(x, y, 5, Double.POSITIVE_INFINITY, Line.DISTANCE_FUNCTION, new NodeProcessor<Line>() {
+                @Override
+                public boolean process(Rect bounds, Line value) {
+                    found.add(value);
+                    return true;
+                }
+            }));
+            assertEquals(Arrays.asList(expected).subList(0, 5), found);
+            assertSame(expected[0], node.getNearest(x, y, Double.POSITIVE_INFINITY, Line.DISTANCE_FUNCTION));
+        }
+        
+        SpatialNode<String> abc = createABC();
+        final List<String> found = new ArrayList<>();
+        NodeProcessor<String> processor = new NodeProcessor<String>() {
+            @Override
+            public boolean process(Rect bounds, String value) {
+                found.add(value);
+                return true;
+            }
+        };
+        assertTrue(abc.forNearest(Rect.valueOf(-20, -20, -10, -10), 10, 50, DistanceFunction.BOUNDS, processor));
+        assertEquals(Arrays.asList("A", "C", "E"), found);
+        found.clear();
+        assertTrue(abc.forNearest(-20, -20, 10, 1, DistanceFunction.BOUNDS, processor));
+        assertTrue(found.isEmpty());
+        assertNull(abc.getNearest(-20, -20, 1, DistanceFunction.BOUNDS));
+        assertNull(new SpatialNode<String>().getNearest(0, 0, Double.POSITIVE_INFINITY, DistanceFunction.BOUNDS));
+        try {
+            abc.forNearest(0, 0, 1, -1, DistanceFunction.BOUNDS, processor);
+            fail("Exception expected");
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+
+    @Test
+    public void testJoin() {
+        Random random = new Random(11);
+        Rect[] aBounds = new Rect[400];
+        Integer[] aValues = new Integer[aBounds.length];
+        for (int i = 0; i < aBounds.length; i++) {
+            double x = random.nextDouble() * 100;
+            double y = random.nextDouble() * 100;
+            aBounds[i] = Rect.valueOf(x, y, x + random.nextDouble() * 5, y + random.nextDouble() * 5);
+            aValues[i] = i;
+        }
+        Rect[] bBounds = new Rect[300];
+        String[] bValues = new String[bBounds.length];
+        for (int i = 0; i < bBounds.length; i++) {
+            double x = random.nextDouble() * 100;
+            double y = random.nextDouble() * 100;
+            bBounds[i] = Rect.valueOf(x, y, x + random.nextDouble() * 5, y + random.nextDouble() * 5);
+            bValues[i] = Integer.toString(i);
+        }
+        SpatialNode<Integer> a = new RTree<>(aBounds, aValues).getRoot();
+        SpatialNode<String> b = new RTree<>(bBounds, bValues).getRoot();
+        final Set<String> expected = new HashSet<>();
+        for (int i = 0; i < aBounds.length; i++) {
+            for (int j = 0; j < bBounds.length; j++) {
+                if (!Relation.isDisjoint(aBounds[i].relate(bBounds[j], Tolerance.DEFAULT))) {
+                    expected.add(i + ":" + j);
+                }
+            }
+        }
+        assertFalse(expected.isEmpty());
+        assertTrue(a.join(b, Tolerance.DEFAULT, new PairProcessor<Integer, String>() {
+            @Override
+            public boolean process(Rect aBounds, Integer aValue, Rect bBounds, String bValue) {
+                assertTrue(expected.remove(aValue + ":" + bValue));
+                return true;
+            }
+        }));
+        assertTrue(expected.isEmpty());
+        assertFalse(a.join(b, Tolerance.DEFAULT, new PairProcessor<Integer, String>() {
+            @Override
+            public boolean process(Rect aBounds, Integer aValue, Rect bBounds, String bValue) {
+                return false;
+            }
+        }));
+        assertTrue(a.join(new SpatialNode<String>(), Tolerance.DEFAULT, new PairProcessor<Integer, String>() {
+            @Override
+            public boolean process(Rect aBounds, Integer aValue, Rect bBounds, String bValue) {
+                throw new IllegalStateException();
+            }
+        }));
+    }
+
     @Test
     public void testClone() {
         SpatialNode<String> a = createABC();
@@ -577,4 +700,180 @@ public class SpatialNodeTest {
         assertEquals(Relation.A_OUTSIDE_B | Relation.B_INSIDE_A, a.relate(Vect.valueOf(15, 20), Tolerance.DEFAULT));
         assertEquals(Relation.A_OUTSIDE_B | Relation.B_INSIDE_A, a.relate(new VectBuilder(15,20), Tolerance.DEFAULT));
     }
+
+    @Test
+    public void testParallelForInteracting() {
+        RTree<Integer> tree = new RTree<>();
+        for (int i = 0; i < 200; i++) {
+            for (int j = 0; j < 100; j++) {
+                tree.add(Rect.valueOf(i, j, i + 1, j + 1), i * 100 + j);
+            }
+        }
+        SpatialNode<Integer> node = tree.getRoot();
+        final Set<Integer> found = Collections.synchronizedSet(new HashSet<Integer>());
+        assertTrue(node.parallelForEach(new NodeProcessor<Integer>() {
+            @Override
+            public boolean process(Rect bounds, Integer value) {
+                assertTrue(found.add(value));
+                return true;
+            }
+        }));
+        assertEquals(20000, found.size());
+
+        found.clear();
+        Rect query = Rect.valueOf(10.5, 10.5, 150.5, 80.5);
+        assertTrue(node.parallelForInteracting(query, Tolerance.ZERO, new NodeProcessor<Integer>() {
+            @Override
+            public boolean process(Rect bounds, Integer value) {
+                assertTrue(found.add(value));
+                return true;
+            }
+        }));
+        assertEquals(node.sizeInteracting(query), found.size());
+        assertEquals(141 * 71, found.size());
+
+        final AtomicInteger count = new AtomicInteger();
+        assertFalse(node.parallelForEach(new NodeProcessor<Integer>() {
+            @Override
+            public boolean process(Rect bounds, Integer value) {
+                return count.incrementAndGet() < 10;
+            }
+        }));
+        assertTrue(count.get() < 20000);
+        try {
+            node.parallelForEach(null);
+            fail("Exception expected");
+        } catch (NullPointerException ex) {
+        }
+    }
+
+    @Test
+    public void testParallelAccumulate() {
+        RTree<Integer> tree = new RTree<>();
+        for (int i = 0; i < 200; i++) {
+            for (int j = 0; j < 100; j++) {
+                tree.add(Rect.valueOf(i, j, i + 1, j + 1), i * 100 + j);
+            }
+        }
+        NodeAccumulator<Integer, RectBuilder> accumulator = new NodeAccumulator<Integer, RectBuilder>() {
+            @Override
+            public RectBuilder create() {
+                return new RectBuilder();
+            }
+
+            @Override
+            public RectBuilder add(RectBuilder accumulation, Rect bounds, Integer value) {
+                return accumulation.add(bounds);
+            }
+
+            @Override
+            public RectBuilder merge(RectBuilder a, RectBuilder b) {
+                return a.add(b);
+            }
+        };
+        assertEquals(new RectBuilder(0, 0, 200, 100), tree.parallelAccumulate(accumulator));
+        assertEquals(new RectBuilder(10, 10, 151, 81), tree.parallelAccumulateInteracting(Rect.valueOf(10.5, 10.5, 150.5, 80.5), Tolerance.ZERO, accumulator));
+        assertFalse(tree.parallelAccumulateInteracting(Rect.valueOf(500, 500, 600, 600), Tolerance.ZERO, accumulator).isValid());
+        Long sum = tree.parallelAccumulate(new NodeAccumulator<Integer, Long>() {
+            @Override
+            public Long create() {
+                return 0L;
+            }
+
+            @Override
+            public Long add(Long accumulation, Rect bounds, Integer value) {
+                return accumulation + value;
+            }
+
+            @Override
+            public Long merge(Long a, Long b) {
+                return a + b;
+            }
+        });
+        assertEquals(19999L * 20000 / 2, sum.longValue());
+    }
+
+    @Test
+    public void testForInteracting_Ords() {
+        Random random = new Random(5);
+        RTree<Integer> tree = new RTree<>();
+        for (int i = 0; i < 2000; i++) {
+            double x = random.nextDouble() * 1000;
+            double y = random.nextDouble() * 1000;
+            tree.add(Rect.valueOf(x, y, x + random.nextDouble() * 10, y + random.nextDouble() * 10), i);
+        }
+        SpatialNode<Integer> node = tree.getRoot();
+        for (int q = 0; q < 20; q++) {
+            double ax = random.nextDouble() * 1000;
+            double ay = random.nextDouble() * 1000;
+            double bx = ax + random.nextDouble() * 100;
+            double by = ay + random.nextDouble() * 100;
+            final Set<Integer> expected = new HashSet<>();
+            node.forInteracting(Rect.valueOf(ax, ay, bx, by), Tolerance.DEFAULT, new NodeProcessor<Integer>() {
+                @Override
+                public boolean process(Rect bounds, Integer value) {
+                    expected.add(value);
+                    return true;
+                }
+            });
+            final Set<Integer> found = new HashSet<>();
+            assertTrue(node.forInteracting(bx, by, ax, ay, Tolerance.DEFAULT, new NodeProcessor<Integer>() {
+                @Override
+                public boolean process(Rect bounds, Integer value) {
+                    assertTrue(found.add(value));
+                    return true;
+                }
+            }));
+            assertEquals(expected, found);
+        }
+        try {
+            node.forInteracting(0, Double.NaN, 1, 1, Tolerance.DEFAULT, new NodeProcessor<Integer>() {
+                @Override
+                public boolean process(Rect bounds, Integer value) {
+                    return true;
+                }
+            });
+            fail("Exception expected");
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+
+    @Test
+    public void testForInteracting_Nested() {
+        final RTree<Integer> tree = new RTree<>();
+        for (int i = 0; i < 100; i++) {
+            for (int j = 0; j < 100; j++) {
+                tree.add(Rect.valueOf(i, j, i + 1, j + 1), i * 100 + j);
+            }
+        }
+        final int[] count = new int[2];
+        assertTrue(tree.forInteracting(Rect.valueOf(10.5, 10.5, 20.5, 20.5), Tolerance.ZERO, new NodeProcessor<Integer>() {
+            @Override
+            public boolean process(Rect outer, Integer value) {
+                count[0]++;
+                tree.forOverlapping(outer, new NodeProcessor<Integer>() {
+                    @Override
+                    public boolean process(Rect inner, Integer value) {
+                        count[1]++;
+                        return true;
+                    }
+                });
+                return true;
+            }
+        }));
+        assertEquals(121, count[0]);
+        assertEquals(121, count[1]);
+        try {
+            tree.forInteracting(Rect.valueOf(0, 0, 100, 50), Tolerance.ZERO, new NodeProcessor<Integer>() {
+                @Override
+                public boolean process(Rect bounds, Integer value) {
+                    throw new IllegalStateException();
+                }
+            });
+            fail("Exception expected");
+        } catch (IllegalStateException ex) {
+        }
+        assertEquals(0, SpatialNode.NODE_STACK.get().size);
+        assertEquals(10000, tree.sizeInteracting(Rect.valueOf(0, 0, 100, 100)));
+    }
 }
@@ -14,6 +14,7 @@ import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.Random;
 import org.geomatics.geom.GeomException;
 import org.geomatics.geom.Line;
 import org.geomatics.geom.Rect;
@@ -227,6 +228,41 @@ public class VectListTest {
         assertEquals(Rect.valueOf(2, 4, 10, 12), vects.getBounds());
     }
 
+    @Test
+    public void testGetSignedArea() {
+        assertEquals(0, new VectList(0, 0, 1, 1).getSignedArea(), 0);
+        assertEquals(12, new VectList(0, 0, 4, 0, 4, 3, 0, 3, 0, 0).getSignedArea(), 0);
+        assertEquals(12, new VectList(0, 0, 4, 0, 4, 3, 0, 3).getSignedArea(), 0); // implicitly closed
+        assertEquals(-12, new VectList(0, 0, 0, 3, 4, 3, 4, 0, 0, 0).getSignedArea(), 0);
+    }
+
+    @Test
+    public void testGetPathLength() {
+        assertEquals(0, new VectList().getPathLength(), 0);
+        assertEquals(0, new VectList(1, 1).getPathLength(), 0);
+        assertEquals(12, new VectList(0, 0, 3, 4, 3, 11).getPathLength(), 0);
+    }
+
+    @Test
+    public void testDistSegVectSq() {
+        assertEquals(Double.POSITIVE_INFINITY, new VectList().distSegVectSq(1, 1), 0);
+        assertEquals(25, new VectList(3, 4).distSegVectSq(0, 0), 0);
+        Random random = new Random(1);
+        VectList vects = new VectList();
+        for (int i = 0; i < 50; i++) {
+            vects.add(random.nextInt(100), random.nextInt(100));
+        }
+        for (int q = 0; q < 1000; q++) {
+            double x = random.nextDouble() * 120 - 10;
+            double y = random.nextDouble() * 120 - 10;
+            double expected = Double.POSITIVE_INFINITY;
+            for (int i = 1; i < vects.size(); i++) {
+                expected = Math.min(expected, Line.distSegVectSq(vects.getX(i - 1), vects.getY(i - 1), vects.getX(i), vects.getY(i), x, y));
+            }
+            assertEquals(expected, vects.distSegVectSq(x, y), 0.000001);
+        }
+    }
+
     @Test
     public void testIndexOf() {
         VectList vects = new VectList(1, 2, 3, 4, 5, 6, 7, 8, 1, 2, 3, 4, 1, 2);
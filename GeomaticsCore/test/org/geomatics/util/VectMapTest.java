@@ -12,6 +12,7 @@ import java.util.Arrays;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
 import org.geomatics.geom.Vect;
 import org.geomatics.geom.VectBuilder;
 import org.geomatics.util.VectMap.VectMapProcessor;
@@ -34,12 +35,12 @@ public class VectMapTest {
         assertEquals(16, vects.ords.length);
         assertEquals(8, vects.values.length);
         assertEquals(0, vects.size());
-        assertEquals(1, vects.maxJumps);
+        assertEquals(VectSet.LOAD_FACTOR, vects.loadFactor, 0); // maxJumps is ignored
         vects = new VectMap(9, 3);
         assertEquals(32, vects.ords.length);
         assertEquals(16, vects.values.length);
         assertEquals(0, vects.size());
-        assertEquals(3, vects.maxJumps);
+        assertEquals(VectSet.LOAD_FACTOR, vects.loadFactor, 0);
         try {
             vects = new VectMap(0, 1);
             fail("Exception expected");
@@ -54,6 +55,29 @@ public class VectMapTest {
         }
     }
 
+    @Test
+    public void testConstructor_LoadFactor() {
+        VectMap vects = new VectMap(9, 0.5);
+        assertEquals(32, vects.ords.length);
+        assertEquals(16, vects.values.length);
+        assertEquals(16, vects.probes.length);
+        assertEquals(0, vects.size());
+        assertEquals(0.5, vects.loadFactor, 0);
+        try {
+            vects = new VectMap(5, 0.0);
+            fail("Exception expected");
+        } catch (IllegalArgumentException ex) {
+            //expection expected
+        }
+        assertEquals(VectSet.MAX_LOAD_FACTOR, new VectMap(5, VectSet.MAX_LOAD_FACTOR).loadFactor, 0);
+        try {
+            vects = new VectMap(5, 1.0); // a full table would leave probe lengths unbounded
+            fail("Exception expected");
+        } catch (IllegalArgumentException ex) {
+            //expection expected
+        }
+    }
+
     @Test
     public void testSize() {
         VectMap<String> vects = new VectMap();
@@ -451,4 +475,56 @@ public class VectMapTest {
         map.keyList(keys);
         assertEquals(keys.size(), 15);
     }
+
+    @Test
+    public void testAddRemoveChurn() {
+        Random random = new Random(1);
+        VectMap<Integer> vects = new VectMap<>(2, 1);
+        Map<Vect, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            Vect vect = Vect.valueOf(random.nextInt(40) * 0.1, random.nextInt(40) * 0.1);
+            if (random.nextBoolean()) {
+                vects.put(vect, i);
+                expected.put(vect, i);
+            } else {
+                assertEquals(expected.remove(vect), vects.remove(vect));
+            }
+            assertEquals(expected.size(), vects.size());
+        }
+        for (Map.Entry<Vect, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), vects.get(entry.getKey()));
+        }
+        VectSetTest.checkProbes(vects.ords, vects.probes);
+        final VectMap<Integer> _vects = vects;
+        assertTrue(vects.forEach(new VectMapProcessor<Integer>() {
+            @Override
+            public boolean process(double x, double y, Integer value) {
+                assertEquals(value, _vects.remove(x, y));
+                return true;
+            }
+        }));
+        assertTrue(vects.isEmpty());
+    }
+
+    @Test
+    public void testAddRemoveChurn_MaxLoadFactor() {
+        Random random = new Random(1);
+        VectMap<Integer> vects = new VectMap<>(16, VectSet.MAX_LOAD_FACTOR);
+        Map<Vect, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 100000; i++) {
+            Vect vect = Vect.valueOf(random.nextInt(300) * 0.01, random.nextInt(300) * 0.01);
+            if (random.nextBoolean()) {
+                assertEquals(expected.put(vect, i), vects.get(vect));
+                vects.put(vect, i);
+            } else {
+                assertEquals(expected.remove(vect), vects.remove(vect));
+            }
+            assertEquals(expected.get(vect), vects.get(vect));
+            assertEquals(expected.size(), vects.size());
+        }
+        for (Map.Entry<Vect, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), vects.get(entry.getKey()));
+        }
+        VectSetTest.checkProbes(vects.ords, vects.probes);
+    }
 }
@@ -15,6 +15,7 @@ import java.util.Arrays;
 import java.util.ConcurrentModificationException;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Random;
 import java.util.Set;
 import org.geomatics.geom.GeomException;
 import org.geomatics.geom.Vect;
@@ -34,11 +35,11 @@ public class VectSetTest {
         VectSet vects = new VectSet(5, 1);
         assertEquals(16, vects.ords.length);
         assertEquals(0, vects.size());
-        assertEquals(1, vects.maxJumps);
+        assertEquals(VectSet.LOAD_FACTOR, vects.loadFactor, 0); // maxJumps is ignored
         vects = new VectSet(9, 3);
         assertEquals(32, vects.ords.length);
         assertEquals(0, vects.size());
-        assertEquals(3, vects.maxJumps);
+        assertEquals(VectSet.LOAD_FACTOR, vects.loadFactor, 0);
         
         vects = new VectSet(1,2, 3,4);
         assertEquals(32, vects.ords.length);
@@ -77,6 +78,28 @@ public class VectSetTest {
         }
     }
 
+
+    @Test
+    public void testConstructor_LoadFactor() {
+        VectSet vects = new VectSet(9, 0.5);
+        assertEquals(32, vects.ords.length);
+        assertEquals(16, vects.probes.length);
+        assertEquals(0, vects.size());
+        assertEquals(0.5, vects.loadFactor, 0);
+        try {
+            vects = new VectSet(5, 0.0);
+            fail("Exception expected");
+        } catch (IllegalArgumentException ex) {
+            //expection expected
+        }
+        assertEquals(VectSet.MAX_LOAD_FACTOR, new VectSet(5, VectSet.MAX_LOAD_FACTOR).loadFactor, 0);
+        try {
+            vects = new VectSet(5, 1.0); // a full table would leave probe lengths unbounded
+            fail("Exception expected");
+        } catch (IllegalArgumentException ex) {
+            //expection expected
+        }
+    }
     @Test
     public void testSize() {
         VectSet vects = new VectSet();
@@ -328,6 +351,16 @@ public class VectSetTest {
         }
         assertEquals(2, vects.size());
         assertEquals("[3,4, 5,6]", vects.toString());
+        int count = 0;
+        while (iter.hasNext()) {
+            iter.next();
+            iter.remove();
+            count++;
+        }
+        assertEquals(2, count);
+        assertTrue(vects.isEmpty());
+        vects.add(1, 2).add(3, 4).add(5, 6);
+        iter = vects.iterator();
         iter.next();
         vects.add(7, 8);
         try {
@@ -495,4 +528,118 @@ public class VectSetTest {
         set.toList(list);
         assertEquals(list.size(), 15);
     }
+
+    @Test
+    public void testGrid() {
+        VectSet vects = new VectSet();
+        for (int i = 0; i < 300; i++) {
+            for (int j = 0; j < 300; j++) {
+                vects.add(512000 + i * 0.5, 6100000 + j * 0.5);
+            }
+        }
+        assertEquals(90000, vects.size());
+        assertTrue(vects.probes.length <= 131072); // only grows once the load factor is exceeded
+        for (int i = 0; i < 300; i++) {
+            for (int j = 0; j < 300; j++) {
+                assertTrue(vects.contains(512000 + i * 0.5, 6100000 + j * 0.5));
+                assertFalse(vects.contains(512000 + i * 0.5, 6100000.25 + j * 0.5));
+            }
+        }
+    }
+
+    @Test
+    public void testAddRemoveChurn() {
+        Random random = new Random(1);
+        VectSet vects = new VectSet(2, 1);
+        Set<Vect> expected = new HashSet<>();
+        for (int i = 0; i < 20000; i++) {
+            Vect vect = Vect.valueOf(random.nextInt(40), random.nextInt(40));
+            if (random.nextBoolean()) {
+                vects.add(vect);
+                expected.add(vect);
+            } else {
+                assertEquals(expected.remove(vect), vects.remove(vect));
+            }
+            assertEquals(expected.size(), vects.size());
+        }
+        for (int x = 0; x < 40; x++) {
+            for (int y = 0; y < 40; y++) {
+                assertEquals(expected.contains(Vect.valueOf(x, y)), vects.contains(x, y));
+            }
+        }
+        checkProbes(vects.ords, vects.probes);
+    }
+
+    @Test
+    public void testAddRemoveChurn_MaxLoadFactor() {
+        Random random = new Random(1);
+        VectSet vects = new VectSet(16, VectSet.MAX_LOAD_FACTOR);
+        Set<Vect> expected = new HashSet<>();
+        for (int i = 0; i < 100000; i++) {
+            Vect vect = Vect.valueOf(random.nextInt(300) * 0.01, random.nextInt(300) * 0.01);
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(vect), !vects.contains(vect));
+                vects.add(vect);
+            } else {
+                assertEquals(expected.remove(vect), vects.remove(vect));
+            }
+            assertEquals(expected.contains(vect), vects.contains(vect));
+            assertEquals(expected.size(), vects.size());
+        }
+        for (Vect vect : expected) {
+            assertTrue(vects.contains(vect));
+        }
+        checkProbes(vects.ords, vects.probes);
+    }
+
+    @Test
+    public void testAdd_SaturatedProbe() {
+        VectSet vects = new VectSet(256, VectSet.MAX_LOAD_FACTOR);
+        VectList added = new VectList();
+        for (int i = 0; added.size() < 150; i++) { // vectors which all have the same home slot
+            if (VectSet.hashSlot(i, 0, 255) == 0) {
+                added.add(i, 0);
+                vects.add(i, 0);
+                for (int j = 0; j < added.size(); j++) {
+                    assertTrue(vects.contains(added.getX(j), 0));
+                }
+            }
+        }
+        assertEquals(150, vects.size());
+        assertTrue(vects.probes.length > 256); // grew before reaching the load factor
+        checkProbes(vects.ords, vects.probes);
+    }
+
+    @Test
+    public void testForEach_Remove() {
+        final VectSet vects = new VectSet();
+        for (int i = 0; i < 100; i++) {
+            vects.add(i, i % 7);
+        }
+        final Set<Vect> found = new HashSet<>();
+        assertTrue(vects.forEach(new VectSetProcessor() {
+            @Override
+            public boolean process(double x, double y) {
+                assertTrue(found.add(Vect.valueOf(x, y)));
+                vects.remove(x, y);
+                vects.remove(x + 1, (x + 1) % 7); // remove a vector which may not have been visited yet
+                return true;
+            }
+        }));
+        assertTrue(vects.isEmpty());
+        assertTrue(found.size() >= 50);
+        assertTrue(found.size() < 100);
+    }
+
+    static void checkProbes(double[] ords, byte[] probes) {
+        int mask = probes.length - 1;
+        for (int slot = 0; slot < probes.length; slot++) {
+            double x = ords[slot << 1];
+            if (!Double.isNaN(x)) {
+                int probe = (slot - VectSet.hashSlot(x, ords[(slot << 1) + 1], mask)) & mask;
+                assertTrue(probe < VectSet.MAX_PROBE);
+                assertEquals(probe, probes[slot]);
+            }
+        }
+    }
 }